@@ -31,16 +31,24 @@ import org.springframework.context.annotation.Lazy;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
 import org.thingsboard.rule.engine.api.MailService;
+import org.thingsboard.rule.engine.api.RuleNode;
+import org.thingsboard.server.actors.ruleChain.DefaultRuleEngineAlarmCache;
+import org.thingsboard.server.actors.ruleChain.RuleNodeReadCacheManager;
 import org.thingsboard.server.actors.service.ActorService;
 import org.thingsboard.server.actors.tenant.DebugTbRateLimits;
 import org.thingsboard.server.common.data.DataConstants;
 import org.thingsboard.server.common.data.Event;
 import org.thingsboard.server.common.data.id.EntityId;
+import org.thingsboard.server.common.data.id.RuleChainId;
 import org.thingsboard.server.common.data.id.TenantId;
 import org.thingsboard.server.common.data.plugin.ComponentLifecycleEvent;
+import org.thingsboard.server.common.msg.MsgType;
 import org.thingsboard.server.common.msg.TbActorMsg;
 import org.thingsboard.server.common.msg.TbMsg;
+import org.thingsboard.server.common.msg.aware.DeviceAwareMsg;
+import org.thingsboard.server.common.msg.queue.QueueToRuleEngineMsg;
 import org.thingsboard.server.common.msg.queue.ServiceType;
 import org.thingsboard.server.common.msg.queue.TopicPartitionInfo;
 import org.thingsboard.server.common.msg.tools.TbRateLimits;
@@ -80,15 +88,20 @@ import org.thingsboard.server.service.telemetry.TelemetrySubscriptionService;
 import org.thingsboard.server.service.transport.TbCoreToTransportService;
 
 import javax.annotation.Nullable;
+import javax.annotation.PostConstruct;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Slf4j
 @Component
@@ -120,6 +133,14 @@ public class ActorSystemContext {
     @Getter
     private DataDecodingEncodingService encodingService;
 
+    @Autowired
+    @Getter
+    private RuleNodeReadCacheManager ruleNodeReadCacheManager;
+
+    @Autowired
+    @Getter
+    private DefaultRuleEngineAlarmCache alarmCache;
+
     @Autowired
     @Getter
     private DeviceService deviceService;
@@ -264,6 +285,29 @@ public class ActorSystemContext {
     @Getter
     private long ruleNodeErrorPersistFrequency;
 
+    @Value("${actors.rule.node.parallelism.default:1}")
+    @Getter
+    private int ruleNodeDefaultParallelism;
+
+    @Value("${actors.rule.node.parallelism.per_type:}")
+    @Getter
+    private String ruleNodeParallelismPerType;
+
+    private final Map<String, Integer> ruleNodeParallelismOverrides = new HashMap<>();
+    private final ConcurrentMap<String, Integer> ruleNodeParallelism = new ConcurrentHashMap<>();
+
+    @Value("${actors.rule.node.state.max_entities:100000}")
+    @Getter
+    private int ruleNodeStateMaxEntities;
+
+    @Value("${actors.rule.node.state.flush_interval_ms:1000}")
+    @Getter
+    private long ruleNodeStateFlushInterval;
+
+    @Value("${actors.rule.node.state.flush_batch_size:1000}")
+    @Getter
+    private int ruleNodeStateFlushBatchSize;
+
     @Value("${actors.statistics.enabled}")
     @Getter
     private boolean statisticsEnabled;
@@ -272,6 +316,20 @@ public class ActorSystemContext {
     @Getter
     private long statisticsPersistFrequency;
 
+    @Value("${actors.device.passivation.enabled:false}")
+    @Getter
+    private boolean deviceActorPassivationEnabled;
+
+    @Value("${actors.device.passivation.idle_timeout:3600000}")
+    @Getter
+    private long deviceActorIdleTimeout;
+
+    @Getter
+    private final AtomicInteger deviceActorsCount = new AtomicInteger(0);
+    @Getter
+    private final AtomicLong passivatedDeviceActorsCount = new AtomicLong(0);
+    private long lastPassivatedDeviceActorsCount;
+
     @Getter
     private final AtomicInteger jsInvokeRequestsCount = new AtomicInteger(0);
     @Getter
@@ -286,9 +344,18 @@ public class ActorSystemContext {
                 log.info("Rule Engine JS Invoke Stats: requests [{}] responses [{}] failures [{}]",
                         jsInvokeRequestsCount.getAndSet(0), jsInvokeResponsesCount.getAndSet(0), jsInvokeFailuresCount.getAndSet(0));
             }
+            long passivated = passivatedDeviceActorsCount.get();
+            if (deviceActorsCount.get() > 0 || passivated > lastPassivatedDeviceActorsCount) {
+                log.info("Device Actor Stats: active [{}] passivated [{}]", deviceActorsCount.get(), passivated - lastPassivatedDeviceActorsCount);
+            }
+            lastPassivatedDeviceActorsCount = passivated;
         }
     }
 
+    @Value("${actors.system.direct_routing_enabled:true}")
+    @Getter
+    private boolean directRoutingEnabled;
+
     @Value("${actors.tenant.create_components_on_init}")
     @Getter
     private boolean tenantComponentsInitEnabled;
@@ -314,9 +381,10 @@ public class ActorSystemContext {
     private String debugPerTenantLimitsConfiguration;
 
     @Getter
-    @Setter
     private TbActorSystem actorSystem;
 
+    private TbActorDirectRoutes directRoutes;
+
     @Setter
     private TbActorRef appActor;
 
@@ -336,6 +404,62 @@ public class ActorSystemContext {
     @Getter
     private RedisTemplate<String, Object> redisTemplate;
 
+    @PostConstruct
+    public void initRuleNodeParallelism() {
+        if (ruleNodeDefaultParallelism < 1) {
+            throw new IllegalArgumentException("Invalid actors.rule.node.parallelism.default value: " + ruleNodeDefaultParallelism
+                    + ". The number of actors must be positive");
+        }
+        if (StringUtils.isEmpty(ruleNodeParallelismPerType)) {
+            return;
+        }
+        for (String entry : ruleNodeParallelismPerType.split(",")) {
+            if (entry.trim().isEmpty()) {
+                continue;
+            }
+            String[] parts = entry.trim().split(":");
+            int parallelism;
+            try {
+                parallelism = parts.length == 2 ? Integer.parseInt(parts[1].trim()) : 0;
+            } catch (NumberFormatException e) {
+                parallelism = 0;
+            }
+            if (parallelism < 1 || parts[0].trim().isEmpty()) {
+                throw new IllegalArgumentException("Invalid actors.rule.node.parallelism.per_type entry: '" + entry.trim()
+                        + "'. Expected format is <rule node type>:<positive number of actors>, for example: TbRestApiCallNode:8");
+            }
+            ruleNodeParallelismOverrides.put(parts[0].trim(), parallelism);
+        }
+    }
+
+    /**
+     * Returns the number of actors that should process messages of the rule node of the given type.
+     * Only rule nodes marked as {@link RuleNode#parallelizable()} are processed by more than one actor.
+     * The value is fixed for the lifetime of the server, so it is resolved once per rule node type.
+     */
+    public int getRuleNodeParallelism(String ruleNodeType) {
+        return ruleNodeParallelism.computeIfAbsent(ruleNodeType, this::resolveRuleNodeParallelism);
+    }
+
+    private int resolveRuleNodeParallelism(String ruleNodeType) {
+        RuleNode annotation;
+        try {
+            annotation = Class.forName(ruleNodeType).getAnnotation(RuleNode.class);
+        } catch (ClassNotFoundException e) {
+            log.warn("[{}] Failed to resolve rule node class", ruleNodeType);
+            return 1;
+        }
+        if (annotation == null || !annotation.parallelizable()) {
+            return 1;
+        }
+        Integer parallelism = ruleNodeParallelismOverrides.get(ruleNodeType);
+        if (parallelism == null) {
+            String simpleName = ruleNodeType.substring(ruleNodeType.lastIndexOf('.') + 1);
+            parallelism = ruleNodeParallelismOverrides.getOrDefault(simpleName, ruleNodeDefaultParallelism);
+        }
+        return parallelism;
+    }
+
     public ScheduledExecutorService getScheduler() {
         return actorSystem.getScheduler();
     }
@@ -510,17 +634,84 @@ public class ActorSystemContext {
         return Exception.class.isInstance(error) ? (Exception) error : new Exception(error);
     }
 
+    public void setActorSystem(TbActorSystem actorSystem) {
+        this.actorSystem = actorSystem;
+        this.directRoutes = new TbActorDirectRoutes(actorSystem);
+    }
+
     public void tell(TbActorMsg tbActorMsg) {
-        appActor.tell(tbActorMsg);
+        if (!tellDirectly(tbActorMsg)) {
+            appActor.tell(tbActorMsg);
+        }
     }
 
     public void tellWithHighPriority(TbActorMsg tbActorMsg) {
-        appActor.tellWithHighPriority(tbActorMsg);
+        if (!tellDirectly(tbActorMsg)) {
+            appActor.tellWithHighPriority(tbActorMsg);
+        }
+    }
+
+    /**
+     * Called by the tenant actor once it has handled a message that was not delivered directly.
+     * The target becomes reachable directly only if the tenant actor has accepted the message and told it to the target.
+     */
+    public void onRoutedByTenant(TbActorMsg tbActorMsg, TbActorRef target) {
+        if (directRoutingEnabled) {
+            TbActorId targetId = getDirectTargetId(tbActorMsg);
+            if (targetId != null) {
+                directRoutes.onForwarded(targetId, target);
+            }
+        }
+    }
+
+    /**
+     * Called by the app and tenant actors for every message that was not delivered directly and was dropped by them
+     * or by their mailboxes, so that the direct route to its target is not disabled for good.
+     */
+    public void onForwardedMsgDropped(TbActorMsg tbActorMsg) {
+        onRoutedByTenant(tbActorMsg, null);
+    }
+
+    public void onActorStopped(TbActorRef actorRef) {
+        if (directRoutingEnabled && actorRef != null) {
+            directRoutes.remove(actorRef.getActorId(), actorRef);
+        }
+    }
+
+    /**
+     * Delivers device and rule chain messages straight to the target actor if the tenant actor has already routed
+     * messages to it and none of them are still on the way.
+     * Otherwise, the message goes through the app and tenant actors that are responsible for the actor creation and checks.
+     */
+    private boolean tellDirectly(TbActorMsg tbActorMsg) {
+        if (!directRoutingEnabled) {
+            return false;
+        }
+        TbActorId targetId = getDirectTargetId(tbActorMsg);
+        return targetId != null && directRoutes.tell(targetId, tbActorMsg, tbActorMsg.getMsgType() != MsgType.TRANSPORT_TO_DEVICE_ACTOR_MSG
+                && tbActorMsg.getMsgType() != MsgType.QUEUE_TO_RULE_ENGINE_MSG);
+    }
+
+    private TbActorId getDirectTargetId(TbActorMsg tbActorMsg) {
+        switch (tbActorMsg.getMsgType()) {
+            case TRANSPORT_TO_DEVICE_ACTOR_MSG:
+            case DEVICE_ATTRIBUTES_UPDATE_TO_DEVICE_ACTOR_MSG:
+            case DEVICE_CREDENTIALS_UPDATE_TO_DEVICE_ACTOR_MSG:
+            case DEVICE_NAME_OR_TYPE_UPDATE_TO_DEVICE_ACTOR_MSG:
+            case DEVICE_RPC_REQUEST_TO_DEVICE_ACTOR_MSG:
+            case SERVER_RPC_RESPONSE_TO_DEVICE_ACTOR_MSG:
+                return new TbEntityActorId(((DeviceAwareMsg) tbActorMsg).getDeviceId());
+            case QUEUE_TO_RULE_ENGINE_MSG:
+                RuleChainId ruleChainId = ((QueueToRuleEngineMsg) tbActorMsg).getTbMsg().getRuleChainId();
+                return ruleChainId != null ? new TbEntityActorId(ruleChainId) : null;
+            default:
+                return null;
+        }
     }
 
-    public void schedulePeriodicMsgWithDelay(TbActorRef ctx, TbActorMsg msg, long delayInMs, long periodInMs) {
+    public ScheduledFuture<?> schedulePeriodicMsgWithDelay(TbActorRef ctx, TbActorMsg msg, long delayInMs, long periodInMs) {
         log.debug("Scheduling periodic msg {} every {} ms with delay {} ms", msg, periodInMs, delayInMs);
-        getScheduler().scheduleWithFixedDelay(() -> ctx.tell(msg), delayInMs, periodInMs, TimeUnit.MILLISECONDS);
+        return getScheduler().scheduleWithFixedDelay(() -> ctx.tell(msg), delayInMs, periodInMs, TimeUnit.MILLISECONDS);
     }
 
     public void scheduleMsgWithDelay(TbActorRef ctx, TbActorMsg msg, long delayInMs) {
@@ -27,6 +27,7 @@ import org.thingsboard.server.actors.service.DefaultActorService;
 import org.thingsboard.server.actors.tenant.TenantActor;
 import org.thingsboard.server.common.data.EntityType;
 import org.thingsboard.server.common.data.Tenant;
+import org.thingsboard.server.common.data.id.AlarmId;
 import org.thingsboard.server.common.data.id.EntityId;
 import org.thingsboard.server.common.data.id.TenantId;
 import org.thingsboard.server.common.data.page.PageDataIterable;
@@ -129,13 +130,25 @@ public class AppActor extends ContextAwareActor {
         }
     }
 
+    @Override
+    public void onUndeliveredMsg(TbActorMsg msg) {
+        systemContext.onForwardedMsgDropped(msg);
+    }
+
+    @Override
+    public void onRejectedMsg(TbActorMsg msg) {
+        systemContext.onForwardedMsgDropped(msg);
+    }
+
     private void onQueueToRuleEngineMsg(QueueToRuleEngineMsg msg) {
         if (SYSTEM_TENANT.equals(msg.getTenantId())) {
+            systemContext.onForwardedMsgDropped(msg);
             msg.getTbMsg().getCallback().onFailure(new RuleEngineException("Message has system tenant id!"));
         } else {
             if (!deletedTenants.contains(msg.getTenantId())) {
-                getOrCreateTenantActor(msg.getTenantId()).tell(msg);
+                tellTenantActor(msg.getTenantId(), msg, false);
             } else {
+                systemContext.onForwardedMsgDropped(msg);
                 msg.getTbMsg().getCallback().onSuccess();
             }
         }
@@ -145,6 +158,9 @@ public class AppActor extends ContextAwareActor {
         TbActorRef target = null;
         if (SYSTEM_TENANT.equals(msg.getTenantId())) {
             log.warn("Message has system tenant id: {}", msg);
+        } else if (msg.getEntityId().getEntityType() == EntityType.ALARM) {
+            systemContext.getAlarmCache().onAlarmStateChange(msg.getTenantId(), new AlarmId(msg.getEntityId().getId()), msg.getEvent());
+            return;
         } else {
             if (msg.getEntityId().getEntityType() == EntityType.TENANT
                     && msg.getEvent() == ComponentLifecycleEvent.DELETED) {
@@ -165,16 +181,26 @@ public class AppActor extends ContextAwareActor {
 
     private void onToDeviceActorMsg(TenantAwareMsg msg, boolean priority) {
         if (!deletedTenants.contains(msg.getTenantId())) {
-            TbActorRef tenantActor = getOrCreateTenantActor(msg.getTenantId());
+            tellTenantActor(msg.getTenantId(), msg, priority);
+        } else {
+            systemContext.onForwardedMsgDropped(msg);
+            if (msg instanceof TransportToDeviceActorMsgWrapper) {
+                ((TransportToDeviceActorMsgWrapper) msg).getCallback().onSuccess();
+            }
+        }
+    }
+
+    private void tellTenantActor(TenantId tenantId, TbActorMsg msg, boolean priority) {
+        try {
+            TbActorRef tenantActor = getOrCreateTenantActor(tenantId);
             if (priority) {
                 tenantActor.tellWithHighPriority(msg);
             } else {
                 tenantActor.tell(msg);
             }
-        } else {
-            if (msg instanceof TransportToDeviceActorMsgWrapper) {
-                ((TransportToDeviceActorMsgWrapper) msg).getCallback().onSuccess();
-            }
+        } catch (RuntimeException e) {
+            systemContext.onForwardedMsgDropped(msg);
+            throw e;
         }
     }
 
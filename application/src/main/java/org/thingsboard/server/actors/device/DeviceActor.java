@@ -24,7 +24,9 @@ import org.thingsboard.server.actors.TbActorException;
 import org.thingsboard.server.actors.service.ContextAwareActor;
 import org.thingsboard.server.common.data.id.DeviceId;
 import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.msg.MsgType;
 import org.thingsboard.server.common.msg.TbActorMsg;
+import org.thingsboard.server.common.msg.aware.DeviceAwareMsg;
 import org.thingsboard.server.common.msg.timeout.DeviceActorServerSideRpcTimeoutMsg;
 import org.thingsboard.server.service.rpc.ToDeviceRpcRequestActorMsg;
 import org.thingsboard.server.service.transport.msg.TransportToDeviceActorMsgWrapper;
@@ -33,10 +35,12 @@ import org.thingsboard.server.service.transport.msg.TransportToDeviceActorMsgWra
 public class DeviceActor extends ContextAwareActor {
 
     private final DeviceActorMessageProcessor processor;
+    private volatile boolean passivated;
 
     DeviceActor(ActorSystemContext systemContext, TenantId tenantId, DeviceId deviceId) {
         super(systemContext);
         this.processor = new DeviceActorMessageProcessor(systemContext, tenantId, deviceId);
+        systemContext.getDeviceActorsCount().incrementAndGet();
     }
 
     @Override
@@ -52,8 +56,31 @@ public class DeviceActor extends ContextAwareActor {
         }
     }
 
+    @Override
+    public void destroy() {
+        processor.stopSessionTimeout();
+        systemContext.onActorStopped(ctx);
+        systemContext.getDeviceActorsCount().decrementAndGet();
+    }
+
+    /**
+     * Re-sends the messages left in the mailbox of a passivated actor, so that the tenant actor creates a new one.
+     * The re-sent messages keep their order and go after the messages that were processed by this actor.
+     * Messages that were sent after the actor was stopped may reach the new actor before them.
+     */
+    @Override
+    public void onUndeliveredMsg(TbActorMsg msg) {
+        if (passivated && msg instanceof DeviceAwareMsg) {
+            log.trace("[{}][{}] Redelivering message to the new device actor: {}", processor.tenantId, processor.deviceId, msg);
+            systemContext.tell(msg);
+        }
+    }
+
     @Override
     protected boolean doProcess(TbActorMsg msg) {
+        if (msg.getMsgType() != MsgType.SESSION_TIMEOUT_MSG) {
+            processor.updateLastActivityTime();
+        }
         switch (msg.getMsgType()) {
             case TRANSPORT_TO_DEVICE_ACTOR_MSG:
                 processor.process(ctx, (TransportToDeviceActorMsgWrapper) msg);
@@ -75,6 +102,9 @@ public class DeviceActor extends ContextAwareActor {
                 break;
             case SESSION_TIMEOUT_MSG:
                 processor.checkSessionsTimeout();
+                if (systemContext.isDeviceActorPassivationEnabled() && processor.isIdle()) {
+                    passivate();
+                }
                 break;
             default:
                 return false;
@@ -82,4 +112,11 @@ public class DeviceActor extends ContextAwareActor {
         return true;
     }
 
+    private void passivate() {
+        log.debug("[{}][{}] Stopping idle device actor.", processor.tenantId, processor.deviceId);
+        passivated = true;
+        systemContext.getPassivatedDeviceActorsCount().incrementAndGet();
+        ctx.stop(ctx.getSelf());
+    }
+
 }
@@ -76,6 +76,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ScheduledFuture;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
@@ -99,6 +100,8 @@ class DeviceActorMessageProcessor extends AbstractContextAwareMsgProcessor {
     private String deviceName;
     private String deviceType;
     private TbMsgMetaData defaultMetaData;
+    private ScheduledFuture<?> sessionTimeoutCheckFuture;
+    private long lastActivityTime;
 
     DeviceActorMessageProcessor(ActorSystemContext systemContext, TenantId tenantId, DeviceId deviceId) {
         super(systemContext);
@@ -108,6 +111,7 @@ class DeviceActorMessageProcessor extends AbstractContextAwareMsgProcessor {
         this.attributeSubscriptions = new HashMap<>();
         this.rpcSubscriptions = new HashMap<>();
         this.toDeviceRpcPendingMap = new HashMap<>();
+        this.lastActivityTime = System.currentTimeMillis();
         if (initAttributes()) {
             restoreSessions();
         }
@@ -613,7 +617,31 @@ class DeviceActorMessageProcessor extends AbstractContextAwareMsgProcessor {
     }
 
     void initSessionTimeout(TbActorCtx ctx) {
-        schedulePeriodicMsgWithDelay(ctx, SessionTimeoutCheckMsg.instance(), systemContext.getSessionInactivityTimeout(), systemContext.getSessionInactivityTimeout());
+        long checkPeriod = systemContext.getSessionInactivityTimeout();
+        if (systemContext.isDeviceActorPassivationEnabled()) {
+            checkPeriod = Math.min(checkPeriod, systemContext.getDeviceActorIdleTimeout());
+        }
+        sessionTimeoutCheckFuture = schedulePeriodicMsgWithDelay(ctx, SessionTimeoutCheckMsg.instance(), checkPeriod, checkPeriod);
+    }
+
+    void stopSessionTimeout() {
+        if (sessionTimeoutCheckFuture != null) {
+            sessionTimeoutCheckFuture.cancel(false);
+            sessionTimeoutCheckFuture = null;
+        }
+    }
+
+    void updateLastActivityTime() {
+        lastActivityTime = System.currentTimeMillis();
+    }
+
+    /**
+     * Device actor is idle if it has no sessions, subscriptions and pending RPC requests
+     * and did not receive any message during the configured idle timeout.
+     */
+    boolean isIdle() {
+        return sessions.isEmpty() && attributeSubscriptions.isEmpty() && rpcSubscriptions.isEmpty() && toDeviceRpcPendingMap.isEmpty()
+                && System.currentTimeMillis() - lastActivityTime > systemContext.getDeviceActorIdleTimeout();
     }
 
     void checkSessionsTimeout() {
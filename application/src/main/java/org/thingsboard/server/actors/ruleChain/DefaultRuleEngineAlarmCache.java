@@ -0,0 +1,233 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.actors.ruleChain;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.thingsboard.common.util.DonAsynchron;
+import org.thingsboard.rule.engine.api.RuleEngineAlarmCache;
+import org.thingsboard.server.common.data.alarm.Alarm;
+import org.thingsboard.server.common.data.id.AlarmId;
+import org.thingsboard.server.common.data.id.EntityId;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.data.plugin.ComponentLifecycleEvent;
+import org.thingsboard.server.common.msg.queue.ServiceType;
+import org.thingsboard.server.dao.alarm.AlarmChangedEvent;
+import org.thingsboard.server.dao.alarm.AlarmService;
+import org.thingsboard.server.queue.discovery.PartitionChangeEvent;
+import org.thingsboard.server.queue.discovery.PartitionService;
+import org.thingsboard.server.service.queue.TbClusterService;
+
+import javax.annotation.PostConstruct;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+@Slf4j
+@Component
+public class DefaultRuleEngineAlarmCache implements RuleEngineAlarmCache {
+
+    @Value("${actors.rule.alarm_cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${actors.rule.alarm_cache.max_size:100000}")
+    private long maxSize;
+
+    @Value("${actors.rule.alarm_cache.ttl_ms:3600000}")
+    private long ttlMs;
+
+    private final AlarmService alarmService;
+    private final PartitionService partitionService;
+    private final TbClusterService clusterService;
+
+    private final ConcurrentMap<AlarmKey, SettableFuture<Optional<Alarm>>> pendingLoads = new ConcurrentHashMap<>();
+    private final ConcurrentMap<AlarmId, AlarmKey> alarmKeys = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    private Cache<AlarmKey, Optional<Alarm>> alarms;
+
+    public DefaultRuleEngineAlarmCache(AlarmService alarmService, PartitionService partitionService, TbClusterService clusterService) {
+        this.alarmService = alarmService;
+        this.partitionService = partitionService;
+        this.clusterService = clusterService;
+    }
+
+    @PostConstruct
+    public void init() {
+        alarms = CacheBuilder.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttlMs, TimeUnit.MILLISECONDS)
+                .removalListener(this::onRemoval)
+                .build();
+    }
+
+    @Override
+    public ListenableFuture<Alarm> findLatestByOriginatorAndType(TenantId tenantId, EntityId originator, String type) {
+        if (!enabled || !isLocal(tenantId, originator)) {
+            misses.increment();
+            return alarmService.findLatestByOriginatorAndType(tenantId, originator, type);
+        }
+        AlarmKey key = new AlarmKey(tenantId, originator, type);
+        Optional<Alarm> cached = alarms.getIfPresent(key);
+        if (cached != null) {
+            hits.increment();
+            return Futures.immediateFuture(copy(cached));
+        }
+        SettableFuture<Optional<Alarm>> load = SettableFuture.create();
+        SettableFuture<Optional<Alarm>> pending = pendingLoads.putIfAbsent(key, load);
+        if (pending != null) {
+            hits.increment();
+            return Futures.transform(pending, this::copy, MoreExecutors.directExecutor());
+        }
+        misses.increment();
+        load.setFuture(Futures.transform(alarmService.findLatestByOriginatorAndType(tenantId, originator, type),
+                Optional::ofNullable, MoreExecutors.directExecutor()));
+        load.addListener(() -> onLoaded(key, load), MoreExecutors.directExecutor());
+        return Futures.transform(load, this::copy, MoreExecutors.directExecutor());
+    }
+
+    @Override
+    public void onAlarmSaved(TenantId tenantId, Alarm alarm) {
+        if (!enabled) {
+            return;
+        }
+        // Alarms of originators that are not local are evicted by the notification sent from onAlarmChanged.
+        if (isLocal(tenantId, alarm.getOriginator())) {
+            AlarmKey key = new AlarmKey(tenantId, alarm.getOriginator(), alarm.getType());
+            pendingLoads.remove(key);
+            put(key, Optional.of(new Alarm(alarm)));
+        }
+    }
+
+    /**
+     * Evicts the alarm changed on this server. Other servers are notified if the originator belongs to their partitions.
+     */
+    @EventListener(AlarmChangedEvent.class)
+    public void onAlarmChanged(AlarmChangedEvent event) {
+        if (!enabled) {
+            return;
+        }
+        Alarm alarm = event.getAlarm();
+        if (isLocal(event.getTenantId(), alarm.getOriginator())) {
+            alarmKeys.remove(alarm.getId());
+            evict(new AlarmKey(event.getTenantId(), alarm.getOriginator(), alarm.getType()));
+        } else {
+            clusterService.onEntityStateChange(event.getTenantId(), alarm.getId(),
+                    event.isDeleted() ? ComponentLifecycleEvent.DELETED : ComponentLifecycleEvent.UPDATED);
+        }
+    }
+
+    /**
+     * Evicts the cached alarm on notification that it was changed by another service or server.
+     */
+    public void onAlarmStateChange(TenantId tenantId, AlarmId alarmId, ComponentLifecycleEvent event) {
+        if (!enabled) {
+            return;
+        }
+        AlarmKey key = alarmKeys.remove(alarmId);
+        if (key != null) {
+            evict(key);
+        } else if (event != ComponentLifecycleEvent.DELETED && alarms.size() > 0) {
+            // The alarm is not cached, but it may be newer than the cached alarm of the same originator and type.
+            DonAsynchron.withCallback(alarmService.findAlarmByIdAsync(tenantId, alarmId), alarm -> {
+                if (alarm != null) {
+                    evict(new AlarmKey(tenantId, alarm.getOriginator(), alarm.getType()));
+                }
+            }, t -> log.warn("[{}][{}] Failed to find changed alarm", tenantId, alarmId, t));
+        }
+    }
+
+    @EventListener(PartitionChangeEvent.class)
+    public void onPartitionChangeEvent(PartitionChangeEvent event) {
+        if (enabled && ServiceType.TB_RULE_ENGINE.equals(event.getServiceType())) {
+            pendingLoads.keySet().removeIf(key -> !isLocal(key.getTenantId(), key.getOriginator()));
+            alarms.asMap().keySet().removeIf(key -> !isLocal(key.getTenantId(), key.getOriginator()));
+        }
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    private void onLoaded(AlarmKey key, SettableFuture<Optional<Alarm>> load) {
+        // The load is no longer pending if the alarm was saved or evicted meanwhile. Its result may be outdated then.
+        if (pendingLoads.remove(key, load)) {
+            try {
+                put(key, Futures.getDone(load));
+            } catch (ExecutionException e) {
+                log.debug("[{}] Failed to load latest alarm", key, e);
+            }
+        }
+    }
+
+    private void put(AlarmKey key, Optional<Alarm> alarm) {
+        Optional<Alarm> previous = alarms.asMap().put(key, alarm);
+        if (previous != null && previous.isPresent()) {
+            alarmKeys.remove(previous.get().getId(), key);
+        }
+        alarm.ifPresent(a -> alarmKeys.put(a.getId(), key));
+    }
+
+    private void evict(AlarmKey key) {
+        pendingLoads.remove(key);
+        alarms.invalidate(key);
+    }
+
+    private void onRemoval(RemovalNotification<AlarmKey, Optional<Alarm>> notification) {
+        // Replaced alarms are unlinked by put, which also links the new one.
+        if (notification.getCause() != RemovalCause.REPLACED) {
+            Optional<Alarm> alarm = notification.getValue();
+            if (alarm != null && alarm.isPresent()) {
+                alarmKeys.remove(alarm.get().getId(), notification.getKey());
+            }
+        }
+    }
+
+    private boolean isLocal(TenantId tenantId, EntityId originator) {
+        return partitionService.resolve(ServiceType.TB_RULE_ENGINE, tenantId, originator).isMyPartition();
+    }
+
+    private Alarm copy(Optional<Alarm> alarm) {
+        return alarm.map(Alarm::new).orElse(null);
+    }
+
+    @Data
+    private static class AlarmKey {
+        private final TenantId tenantId;
+        private final EntityId originator;
+        private final String type;
+    }
+
+}
@@ -0,0 +1,145 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.actors.ruleChain;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import org.thingsboard.rule.engine.api.RuleNodeReadCache;
+import org.thingsboard.server.common.data.id.EntityId;
+
+import javax.annotation.Nullable;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Keeps one entry per entity and lookup key. An entry is published before its loader is called, so concurrent
+ * lookups join the load in flight. Loaded entries stay until their TTL expires or until data of the entity is updated.
+ */
+class DefaultRuleNodeReadCache<V> implements RuleNodeReadCache<V> {
+
+    private final RuleNodeReadCacheManager manager;
+    private final long ttlMs;
+    private final int maxEntities;
+    private final ConcurrentMap<EntityId, ConcurrentMap<Object, Entry<V>>> entries = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    DefaultRuleNodeReadCache(RuleNodeReadCacheManager manager, long ttlMs, int maxEntities) {
+        this.manager = manager;
+        this.ttlMs = ttlMs;
+        this.maxEntities = maxEntities;
+    }
+
+    @Override
+    public ListenableFuture<V> get(EntityId entityId, Object key, Supplier<ListenableFuture<V>> loader) {
+        return get(entityId, key, loader, System.currentTimeMillis());
+    }
+
+    ListenableFuture<V> get(EntityId entityId, Object key, Supplier<ListenableFuture<V>> loader, long now) {
+        ConcurrentMap<Object, Entry<V>> entityEntries = entries.computeIfAbsent(entityId, id -> new ConcurrentHashMap<>());
+        Entry<V> entry = new Entry<>();
+        while (true) {
+            Entry<V> existing = entityEntries.putIfAbsent(key, entry);
+            if (existing == null) {
+                break;
+            }
+            if (!existing.isExpired(now)) {
+                hits.increment();
+                manager.onHit();
+                return existing.result;
+            }
+            if (entityEntries.replace(key, existing, entry)) {
+                break;
+            }
+        }
+        misses.increment();
+        manager.onMiss();
+        ListenableFuture<V> future;
+        try {
+            future = loader.get();
+        } catch (Throwable t) {
+            future = Futures.immediateFailedFuture(t);
+        }
+        entry.result.setFuture(future);
+        Futures.addCallback(entry.result, new FutureCallback<V>() {
+            @Override
+            public void onSuccess(@Nullable V result) {
+                if (ttlMs > 0 && entries.size() <= maxEntities) {
+                    entry.expirationTime = System.currentTimeMillis() + ttlMs;
+                } else {
+                    entityEntries.remove(key, entry);
+                }
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                entityEntries.remove(key, entry);
+            }
+        }, MoreExecutors.directExecutor());
+        return entry.result;
+    }
+
+    void invalidate(EntityId entityId) {
+        entries.remove(entityId);
+    }
+
+    void cleanUp(long now) {
+        Iterator<Map.Entry<EntityId, ConcurrentMap<Object, Entry<V>>>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            ConcurrentMap<Object, Entry<V>> entityEntries = it.next().getValue();
+            entityEntries.values().removeIf(entry -> entry.isExpired(now));
+            if (entityEntries.isEmpty()) {
+                it.remove();
+            }
+        }
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    @Override
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    @Override
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    @Override
+    public void destroy() {
+        manager.onDestroy(this);
+        entries.clear();
+    }
+
+    private static class Entry<V> {
+        private final SettableFuture<V> result = SettableFuture.create();
+        private volatile long expirationTime = Long.MAX_VALUE;
+
+        private boolean isExpired(long now) {
+            return now >= expirationTime;
+        }
+    }
+}
@@ -0,0 +1,308 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.actors.ruleChain;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.AsyncFunction;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import lombok.extern.slf4j.Slf4j;
+import org.thingsboard.rule.engine.api.RuleNodeStateCodec;
+import org.thingsboard.rule.engine.api.RuleNodeStateStore;
+import org.thingsboard.server.actors.ActorSystemContext;
+import org.thingsboard.server.common.data.DataConstants;
+import org.thingsboard.server.common.data.id.EntityId;
+import org.thingsboard.server.common.data.id.EntityIdFactory;
+import org.thingsboard.server.common.data.id.RuleNodeId;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.data.kv.AttributeKvEntry;
+import org.thingsboard.server.common.data.kv.BaseAttributeKvEntry;
+import org.thingsboard.server.common.data.kv.KvEntry;
+import org.thingsboard.server.common.data.kv.StringDataEntry;
+import org.thingsboard.server.common.msg.queue.ServiceType;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps the states as server side attributes of the rule node itself, one attribute per entity.
+ * Unlike attributes of the originators, these are visible to whichever server the entity partition moves to,
+ * are preloaded with a single query when the partitions are assigned, and are removed together with the rule node.
+ */
+@Slf4j
+class DefaultRuleNodeStateStore<S> implements RuleNodeStateStore<S> {
+
+    private final ActorSystemContext mainCtx;
+    private final RuleNodeCtx nodeCtx;
+    private final RuleNodeStateCodec<S> codec;
+    private final TenantId tenantId;
+    private final RuleNodeId ruleNodeId;
+    private final int maxEntities;
+    private final int batchSize;
+
+    private final Cache<EntityId, S> states;
+    private final ConcurrentMap<EntityId, S> dirtyStates = new ConcurrentHashMap<>();
+    private final ConcurrentMap<EntityId, ListenableFuture<S>> pendingLoads = new ConcurrentHashMap<>();
+    private final ConcurrentMap<EntityId, ListenableFuture<Void>> pendingProcessing = new ConcurrentHashMap<>();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final ScheduledFuture<?> flushTask;
+
+    DefaultRuleNodeStateStore(ActorSystemContext mainCtx, RuleNodeCtx nodeCtx, RuleNodeStateCodec<S> codec) {
+        this.mainCtx = mainCtx;
+        this.nodeCtx = nodeCtx;
+        this.codec = codec;
+        this.tenantId = nodeCtx.getTenantId();
+        this.ruleNodeId = nodeCtx.getSelf().getId();
+        this.maxEntities = mainCtx.getRuleNodeStateMaxEntities();
+        this.batchSize = mainCtx.getRuleNodeStateFlushBatchSize();
+        this.states = CacheBuilder.newBuilder().maximumSize(maxEntities).build();
+        long flushInterval = mainCtx.getRuleNodeStateFlushInterval();
+        this.flushTask = mainCtx.getScheduler().scheduleWithFixedDelay(this::flush, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+        preload();
+    }
+
+    @Override
+    public ListenableFuture<S> get(EntityId entityId) {
+        S state = states.getIfPresent(entityId);
+        if (state == null) {
+            state = dirtyStates.get(entityId);
+            if (state != null) {
+                states.put(entityId, state);
+            }
+        }
+        if (state != null) {
+            return Futures.immediateFuture(state);
+        }
+        ListenableFuture<S> pending = pendingLoads.get(entityId);
+        if (pending != null) {
+            return pending;
+        }
+        ListenableFuture<S> future = load(entityId);
+        pending = pendingLoads.putIfAbsent(entityId, future);
+        if (pending != null) {
+            return pending;
+        }
+        future.addListener(() -> pendingLoads.remove(entityId, future), MoreExecutors.directExecutor());
+        return future;
+    }
+
+    @Override
+    public ListenableFuture<Void> process(EntityId entityId, AsyncFunction<S, Void> processor, Executor executor) {
+        ListenableFuture<Void> previous = pendingProcessing.get(entityId);
+        ListenableFuture<Void> result;
+        if (previous == null) {
+            ListenableFuture<S> state = get(entityId);
+            result = Futures.transformAsync(state, processor, state.isDone() ? MoreExecutors.directExecutor() : executor);
+        } else {
+            // The state is requested only when the previous message is processed, so it reflects all the changes made by it.
+            ListenableFuture<S> state = Futures.transformAsync(Futures.catching(previous, Throwable.class, t -> null, MoreExecutors.directExecutor()),
+                    ignored -> get(entityId), MoreExecutors.directExecutor());
+            result = Futures.transformAsync(state, processor, executor);
+        }
+        if (!result.isDone()) {
+            pendingProcessing.put(entityId, result);
+            result.addListener(() -> pendingProcessing.remove(entityId, result), MoreExecutors.directExecutor());
+        }
+        return result;
+    }
+
+    @Override
+    public S putIfAbsent(EntityId entityId, S state) {
+        S existing = states.asMap().putIfAbsent(entityId, state);
+        if (existing != null) {
+            return existing;
+        }
+        put(entityId, state);
+        return state;
+    }
+
+    @Override
+    public void put(EntityId entityId, S state) {
+        states.put(entityId, state);
+        dirtyStates.put(entityId, state);
+        if (dirtyStates.size() >= batchSize && flushScheduled.compareAndSet(false, true)) {
+            mainCtx.getScheduler().execute(() -> {
+                flushScheduled.set(false);
+                flush();
+            });
+        }
+    }
+
+    @Override
+    public void onPartitionChange() {
+        flush();
+        states.asMap().keySet().removeIf(entityId -> !isOwned(entityId));
+        preload();
+    }
+
+    @Override
+    public void destroy() {
+        flushTask.cancel(false);
+        if (nodeCtx.isDeleted()) {
+            dirtyStates.clear();
+            removeAll();
+        } else {
+            flush();
+        }
+        states.invalidateAll();
+    }
+
+    private ListenableFuture<S> load(EntityId entityId) {
+        return Futures.transform(
+                mainCtx.getAttributesService().find(tenantId, ruleNodeId, DataConstants.SERVER_SCOPE, toKey(entityId)),
+                entry -> {
+                    if (entry == null || !entry.isPresent()) {
+                        return null;
+                    }
+                    S state = codec.decode(entry.get().getValueAsString());
+                    S existing = states.asMap().putIfAbsent(entityId, state);
+                    return existing != null ? existing : state;
+                }, MoreExecutors.directExecutor());
+    }
+
+    /**
+     * Loads the states of the entities that are processed by this rule node instance and are not cached yet,
+     * so that the first message of an entity after the partitions are assigned does not wait for a read.
+     */
+    private void preload() {
+        ListenableFuture<List<AttributeKvEntry>> future = mainCtx.getAttributesService().findAll(tenantId, ruleNodeId, DataConstants.SERVER_SCOPE);
+        Futures.addCallback(future, new FutureCallback<List<AttributeKvEntry>>() {
+            @Override
+            public void onSuccess(@Nullable List<AttributeKvEntry> entries) {
+                if (entries == null) {
+                    return;
+                }
+                int loaded = 0;
+                for (AttributeKvEntry entry : entries) {
+                    if (states.size() >= maxEntities) {
+                        break;
+                    }
+                    EntityId entityId = fromKey(entry.getKey());
+                    if (entityId != null && !dirtyStates.containsKey(entityId) && isOwned(entityId)) {
+                        if (states.asMap().putIfAbsent(entityId, codec.decode(entry.getValueAsString())) == null) {
+                            loaded++;
+                        }
+                    }
+                }
+                log.debug("[{}][{}] Preloaded {} states", tenantId, ruleNodeId, loaded);
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                log.warn("[{}][{}] Failed to preload states", tenantId, ruleNodeId, t);
+            }
+        }, mainCtx.getDbCallbackExecutor());
+    }
+
+    private void removeAll() {
+        // Removes the states that were flushed after the rule node had been deleted.
+        ListenableFuture<List<Void>> future = Futures.transformAsync(mainCtx.getAttributesService().findAll(tenantId, ruleNodeId, DataConstants.SERVER_SCOPE), entries -> {
+            List<String> keys = entries.stream().map(KvEntry::getKey).collect(Collectors.toList());
+            if (keys.isEmpty()) {
+                return Futures.immediateFuture(Collections.emptyList());
+            }
+            return mainCtx.getAttributesService().removeAll(tenantId, ruleNodeId, DataConstants.SERVER_SCOPE, keys);
+        }, MoreExecutors.directExecutor());
+        Futures.addCallback(future, new FutureCallback<List<Void>>() {
+            @Override
+            public void onSuccess(@Nullable List<Void> result) {
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                log.warn("[{}][{}] Failed to remove states of the deleted rule node", tenantId, ruleNodeId, t);
+            }
+        }, MoreExecutors.directExecutor());
+    }
+
+    private void flush() {
+        try {
+            if (dirtyStates.isEmpty()) {
+                return;
+            }
+            long ts = System.currentTimeMillis();
+            List<AttributeKvEntry> batch = new ArrayList<>();
+            Map<EntityId, S> batchStates = new HashMap<>();
+            Iterator<Map.Entry<EntityId, S>> it = dirtyStates.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<EntityId, S> entry = it.next();
+                // The entry is removed before encoding, so a change that is made concurrently marks it as dirty again.
+                it.remove();
+                batch.add(new BaseAttributeKvEntry(new StringDataEntry(toKey(entry.getKey()), codec.encode(entry.getValue())), ts));
+                batchStates.put(entry.getKey(), entry.getValue());
+                if (batch.size() >= batchSize) {
+                    save(batch, batchStates);
+                    batch = new ArrayList<>();
+                    batchStates = new HashMap<>();
+                }
+            }
+            if (!batch.isEmpty()) {
+                save(batch, batchStates);
+            }
+        } catch (Throwable t) {
+            log.warn("[{}][{}] Failed to flush states", tenantId, ruleNodeId, t);
+        }
+    }
+
+    private void save(List<AttributeKvEntry> batch, Map<EntityId, S> batchStates) {
+        Futures.addCallback(mainCtx.getAttributesService().save(tenantId, ruleNodeId, DataConstants.SERVER_SCOPE, batch), new FutureCallback<List<Void>>() {
+            @Override
+            public void onSuccess(@Nullable List<Void> result) {
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                log.warn("[{}][{}] Failed to persist {} states, will retry", tenantId, ruleNodeId, batchStates.size(), t);
+                batchStates.forEach(dirtyStates::putIfAbsent);
+            }
+        }, MoreExecutors.directExecutor());
+    }
+
+    private boolean isOwned(EntityId entityId) {
+        return nodeCtx.isOwnShard(entityId) && mainCtx.resolve(ServiceType.TB_RULE_ENGINE, tenantId, entityId).isMyPartition();
+    }
+
+    private static String toKey(EntityId entityId) {
+        return entityId.getEntityType().name() + "_" + entityId.getId();
+    }
+
+    private static EntityId fromKey(String key) {
+        int separator = key.lastIndexOf('_');
+        if (separator <= 0) {
+            return null;
+        }
+        try {
+            return EntityIdFactory.getByTypeAndId(key.substring(0, separator), key.substring(separator + 1));
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+}
@@ -22,8 +22,12 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.thingsboard.common.util.ListeningExecutor;
 import org.thingsboard.rule.engine.api.MailService;
+import org.thingsboard.rule.engine.api.RuleEngineAlarmCache;
 import org.thingsboard.rule.engine.api.RuleEngineRpcService;
 import org.thingsboard.rule.engine.api.RuleEngineTelemetryService;
+import org.thingsboard.rule.engine.api.RuleNodeStateCodec;
+import org.thingsboard.rule.engine.api.RuleNodeReadCache;
+import org.thingsboard.rule.engine.api.RuleNodeStateStore;
 import org.thingsboard.rule.engine.api.ScriptEngine;
 import org.thingsboard.rule.engine.api.TbContext;
 import org.thingsboard.rule.engine.api.TbRelationTypes;
@@ -220,6 +224,10 @@ class DefaultTbContext implements TbContext {
         nodeCtx.setSelf(self);
     }
 
+    public void onRuleNodeDeleted() {
+        nodeCtx.markDeleted();
+    }
+
     @Override
     public TbMsg newMsg(String queueName, String type, EntityId originator, TbMsgMetaData metaData, String data) {
         return TbMsg.newMsg(queueName, type, originator, metaData, data, nodeCtx.getSelf().getRuleChainId(), nodeCtx.getSelf().getId());
@@ -355,6 +363,11 @@ class DefaultTbContext implements TbContext {
         return mainCtx.getAlarmService();
     }
 
+    @Override
+    public RuleEngineAlarmCache getAlarmCache() {
+        return mainCtx.getAlarmCache();
+    }
+
     @Override
     public RuleChainService getRuleChainService() {
         return mainCtx.getRuleChainService();
@@ -414,6 +427,16 @@ class DefaultTbContext implements TbContext {
         return mainCtx.getRedisTemplate();
     }
 
+    @Override
+    public <S> RuleNodeStateStore<S> createStateStore(RuleNodeStateCodec<S> codec) {
+        return new DefaultRuleNodeStateStore<>(mainCtx, nodeCtx, codec);
+    }
+
+    @Override
+    public <V> RuleNodeReadCache<V> createReadCache(long ttlMs) {
+        return mainCtx.getRuleNodeReadCacheManager().create(ttlMs);
+    }
+
 
     private TbMsgMetaData getActionMetaData(RuleNodeId ruleNodeId) {
         TbMsgMetaData metaData = new TbMsgMetaData();
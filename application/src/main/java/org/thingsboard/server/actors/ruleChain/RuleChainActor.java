@@ -45,6 +45,12 @@ public class RuleChainActor extends ComponentActor<RuleChainId, RuleChainActorMe
                 ctx.getParentRef(), ctx);
     }
 
+    @Override
+    public void destroy() {
+        systemContext.onActorStopped(ctx);
+        super.destroy();
+    }
+
     @Override
     protected boolean doProcess(TbActorMsg msg) {
         switch (msg.getMsgType()) {
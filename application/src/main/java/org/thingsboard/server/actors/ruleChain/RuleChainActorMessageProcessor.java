@@ -19,6 +19,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.thingsboard.rule.engine.api.TbRelationTypes;
 import org.thingsboard.server.actors.ActorSystemContext;
 import org.thingsboard.server.actors.TbActorCtx;
+import org.thingsboard.server.actors.TbActorId;
 import org.thingsboard.server.actors.TbActorRef;
 import org.thingsboard.server.actors.TbEntityActorId;
 import org.thingsboard.server.actors.service.DefaultActorService;
@@ -33,6 +34,7 @@ import org.thingsboard.server.common.data.plugin.ComponentLifecycleState;
 import org.thingsboard.server.common.data.relation.EntityRelation;
 import org.thingsboard.server.common.data.rule.RuleChain;
 import org.thingsboard.server.common.data.rule.RuleNode;
+import org.thingsboard.server.common.msg.TbActorMsg;
 import org.thingsboard.server.common.msg.TbMsg;
 import org.thingsboard.server.common.msg.plugin.ComponentLifecycleMsg;
 import org.thingsboard.server.common.msg.queue.PartitionChangeMsg;
@@ -54,6 +56,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
 
 /**
@@ -101,8 +104,7 @@ public class RuleChainActorMessageProcessor extends ComponentMsgProcessor<RuleCh
                 // Creating and starting the actors;
                 for (RuleNode ruleNode : ruleNodeList) {
                     log.trace("[{}][{}] Creating rule node [{}]: {}", entityId, ruleNode.getId(), ruleNode.getName(), ruleNode);
-                    TbActorRef ruleNodeActor = createRuleNodeActor(context, ruleNode);
-                    nodeActors.put(ruleNode.getId(), new RuleNodeCtx(tenantId, self, ruleNodeActor, ruleNode));
+                    nodeActors.put(ruleNode.getId(), createRuleNodeCtx(context, ruleNode));
                 }
                 initRoutes(ruleChain, ruleNodeList);
                 started = true;
@@ -123,12 +125,11 @@ public class RuleChainActorMessageProcessor extends ComponentMsgProcessor<RuleCh
                 RuleNodeCtx existing = nodeActors.get(ruleNode.getId());
                 if (existing == null) {
                     log.trace("[{}][{}] Creating rule node [{}]: {}", entityId, ruleNode.getId(), ruleNode.getName(), ruleNode);
-                    TbActorRef ruleNodeActor = createRuleNodeActor(context, ruleNode);
-                    nodeActors.put(ruleNode.getId(), new RuleNodeCtx(tenantId, self, ruleNodeActor, ruleNode));
+                    nodeActors.put(ruleNode.getId(), createRuleNodeCtx(context, ruleNode));
                 } else {
                     log.trace("[{}][{}] Updating rule node [{}]: {}", entityId, ruleNode.getId(), ruleNode.getName(), ruleNode);
                     existing.setSelf(ruleNode);
-                    existing.getSelfActor().tellWithHighPriority(new ComponentLifecycleMsg(tenantId, existing.getSelf().getId(), ComponentLifecycleEvent.UPDATED));
+                    tellToAllShards(existing, new ComponentLifecycleMsg(tenantId, existing.getSelf().getId(), ComponentLifecycleEvent.UPDATED));
                 }
             }
 
@@ -137,17 +138,25 @@ public class RuleChainActorMessageProcessor extends ComponentMsgProcessor<RuleCh
             removedRules.forEach(ruleNodeId -> {
                 log.trace("[{}][{}] Removing rule node [{}]", tenantId, entityId, ruleNodeId);
                 RuleNodeCtx removed = nodeActors.remove(ruleNodeId);
-                removed.getSelfActor().tellWithHighPriority(new ComponentLifecycleMsg(tenantId, removed.getSelf().getId(), ComponentLifecycleEvent.DELETED));
+                removed.markDeleted();
+                tellToAllShards(removed, new ComponentLifecycleMsg(tenantId, removed.getSelf().getId(), ComponentLifecycleEvent.DELETED));
             });
 
             initRoutes(ruleChain, ruleNodeList);
         }
     }
 
+    @Override
+    public void onStop(TbActorCtx ctx) {
+        // The rule chain is deleted, so are its rule nodes.
+        nodeActors.values().forEach(RuleNodeCtx::markDeleted);
+        stop(ctx);
+    }
+
     @Override
     public void stop(TbActorCtx ctx) {
         log.trace("[{}][{}] Stopping rule chain with {} nodes", tenantId, entityId, nodeActors.size());
-        nodeActors.values().stream().map(RuleNodeCtx::getSelfActor).map(TbActorRef::getActorId).forEach(ctx::stop);
+        nodeActors.values().stream().flatMap(nodeCtx -> nodeCtx.getShardActors().stream()).map(TbActorRef::getActorId).forEach(ctx::stop);
         nodeActors.clear();
         nodeRoutes.clear();
         started = false;
@@ -155,13 +164,28 @@ public class RuleChainActorMessageProcessor extends ComponentMsgProcessor<RuleCh
 
     @Override
     public void onPartitionChangeMsg(PartitionChangeMsg msg) {
-        nodeActors.values().stream().map(RuleNodeCtx::getSelfActor).forEach(actorRef -> actorRef.tellWithHighPriority(msg));
+        nodeActors.values().forEach(nodeCtx -> tellToAllShards(nodeCtx, msg));
+    }
+
+    private void tellToAllShards(RuleNodeCtx nodeCtx, TbActorMsg msg) {
+        nodeCtx.getShardActors().forEach(actorRef -> actorRef.tellWithHighPriority(msg));
+    }
+
+    private RuleNodeCtx createRuleNodeCtx(TbActorCtx ctx, RuleNode ruleNode) {
+        int parallelism = systemContext.getRuleNodeParallelism(ruleNode.getType());
+        List<TbActorRef> shardActors = new ArrayList<>(parallelism);
+        AtomicBoolean deleted = new AtomicBoolean();
+        for (int shard = 0; shard < parallelism; shard++) {
+            shardActors.add(createRuleNodeActor(ctx, ruleNode, shard, parallelism, deleted));
+        }
+        return new RuleNodeCtx(tenantId, self, shardActors.get(0), shardActors, 0, parallelism, deleted, ruleNode);
     }
 
-    private TbActorRef createRuleNodeActor(TbActorCtx ctx, RuleNode ruleNode) {
-        return ctx.getOrCreateChildActor(new TbEntityActorId(ruleNode.getId()),
+    private TbActorRef createRuleNodeActor(TbActorCtx ctx, RuleNode ruleNode, int shard, int shardCount, AtomicBoolean deleted) {
+        TbActorId actorId = shard == 0 ? new TbEntityActorId(ruleNode.getId()) : new RuleNodeShardActorId(ruleNode.getId(), shard);
+        return ctx.getOrCreateChildActor(actorId,
                 () -> DefaultActorService.RULE_DISPATCHER_NAME,
-                () -> new RuleNodeActor.ActorCreator(systemContext, tenantId, entityId, ruleNode.getName(), ruleNode.getId()));
+                () -> new RuleNodeActor.ActorCreator(systemContext, tenantId, entityId, ruleNode.getName(), ruleNode.getId(), shard, shardCount, deleted));
     }
 
     private void initRoutes(RuleChain ruleChain, List<RuleNode> ruleNodeList) {
@@ -331,7 +355,8 @@ public class RuleChainActorMessageProcessor extends ComponentMsgProcessor<RuleCh
 
     private void pushMsgToNode(RuleNodeCtx nodeCtx, TbMsg msg, String fromRelationType) {
         if (nodeCtx != null) {
-            nodeCtx.getSelfActor().tell(new RuleChainToRuleNodeMsg(new DefaultTbContext(systemContext, nodeCtx), msg, fromRelationType));
+            RuleNodeCtx targetCtx = nodeCtx.forOriginator(msg.getOriginator());
+            targetCtx.getSelfActor().tell(new RuleChainToRuleNodeMsg(new DefaultTbContext(systemContext, targetCtx), msg, fromRelationType));
         } else {
             log.error("[{}][{}] RuleNodeCtx is empty", entityId, ruleChainName);
             msg.getCallback().onFailure(new RuleEngineException("Rule Node CTX is empty"));
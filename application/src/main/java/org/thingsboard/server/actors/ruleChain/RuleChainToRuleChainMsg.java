@@ -21,6 +21,7 @@ import org.thingsboard.server.common.msg.MsgType;
 import org.thingsboard.server.common.msg.TbActorMsg;
 import org.thingsboard.server.common.msg.TbMsg;
 import org.thingsboard.server.common.msg.aware.RuleChainAwareMsg;
+import org.thingsboard.server.common.msg.queue.RuleEngineException;
 
 /**
  * Created by ashvayka on 19.03.18.
@@ -42,4 +43,9 @@ public final class RuleChainToRuleChainMsg implements TbActorMsg, RuleChainAware
     public MsgType getMsgType() {
         return MsgType.RULE_CHAIN_TO_RULE_CHAIN_MSG;
     }
+
+    @Override
+    public void onRejected() {
+        msg.getCallback().onFailure(new RuleEngineException("Message is rejected by the full actor mailbox!"));
+    }
 }
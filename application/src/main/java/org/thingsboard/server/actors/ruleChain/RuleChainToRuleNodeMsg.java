@@ -20,6 +20,7 @@ import org.thingsboard.rule.engine.api.TbContext;
 import org.thingsboard.server.common.msg.MsgType;
 import org.thingsboard.server.common.msg.TbActorMsg;
 import org.thingsboard.server.common.msg.TbMsg;
+import org.thingsboard.server.common.msg.queue.RuleEngineException;
 
 /**
  * Created by ashvayka on 19.03.18.
@@ -35,4 +36,9 @@ final class RuleChainToRuleNodeMsg implements TbActorMsg {
     public MsgType getMsgType() {
         return MsgType.RULE_CHAIN_TO_RULE_MSG;
     }
+
+    @Override
+    public void onRejected() {
+        msg.getCallback().onFailure(new RuleEngineException("Message is rejected by the full actor mailbox!"));
+    }
 }
@@ -31,23 +31,33 @@ import org.thingsboard.server.common.msg.TbActorMsg;
 import org.thingsboard.server.common.msg.plugin.ComponentLifecycleMsg;
 import org.thingsboard.server.common.msg.queue.PartitionChangeMsg;
 
+import java.util.concurrent.atomic.AtomicBoolean;
+
 @Slf4j
 public class RuleNodeActor extends ComponentActor<RuleNodeId, RuleNodeActorMessageProcessor> {
 
     private final String ruleChainName;
     private final RuleChainId ruleChainId;
     private final RuleNodeId ruleNodeId;
+    private final int shard;
+    private final int shardCount;
+    private final AtomicBoolean deleted;
 
-    private RuleNodeActor(ActorSystemContext systemContext, TenantId tenantId, RuleChainId ruleChainId, String ruleChainName, RuleNodeId ruleNodeId) {
+    private RuleNodeActor(ActorSystemContext systemContext, TenantId tenantId, RuleChainId ruleChainId, String ruleChainName, RuleNodeId ruleNodeId,
+                          int shard, int shardCount, AtomicBoolean deleted) {
         super(systemContext, tenantId, ruleNodeId);
         this.ruleChainName = ruleChainName;
         this.ruleChainId = ruleChainId;
         this.ruleNodeId = ruleNodeId;
+        this.shard = shard;
+        this.shardCount = shardCount;
+        this.deleted = deleted;
     }
 
     @Override
     protected RuleNodeActorMessageProcessor createProcessor(TbActorCtx ctx) {
-        return new RuleNodeActorMessageProcessor(tenantId, this.ruleChainName, ruleNodeId, systemContext, ctx.getParentRef(), ctx);
+        return new RuleNodeActorMessageProcessor(tenantId, this.ruleChainName, ruleNodeId, systemContext, ctx.getParentRef(), ctx,
+                shard, shardCount, deleted);
     }
 
     @Override
@@ -111,24 +121,34 @@ public class RuleNodeActor extends ComponentActor<RuleNodeId, RuleNodeActorMessa
         private final RuleChainId ruleChainId;
         private final String ruleChainName;
         private final RuleNodeId ruleNodeId;
+        private final int shard;
+        private final int shardCount;
+        private final AtomicBoolean deleted;
 
         public ActorCreator(ActorSystemContext context, TenantId tenantId, RuleChainId ruleChainId, String ruleChainName, RuleNodeId ruleNodeId) {
+            this(context, tenantId, ruleChainId, ruleChainName, ruleNodeId, 0, 1, new AtomicBoolean());
+        }
+
+        public ActorCreator(ActorSystemContext context, TenantId tenantId, RuleChainId ruleChainId, String ruleChainName, RuleNodeId ruleNodeId,
+                            int shard, int shardCount, AtomicBoolean deleted) {
             super(context);
             this.tenantId = tenantId;
             this.ruleChainId = ruleChainId;
             this.ruleChainName = ruleChainName;
             this.ruleNodeId = ruleNodeId;
-
+            this.shard = shard;
+            this.shardCount = shardCount;
+            this.deleted = deleted;
         }
 
         @Override
         public TbActorId createActorId() {
-            return new TbEntityActorId(ruleNodeId);
+            return shard == 0 ? new TbEntityActorId(ruleNodeId) : new RuleNodeShardActorId(ruleNodeId, shard);
         }
 
         @Override
         public TbActor createActor() {
-            return new RuleNodeActor(context, tenantId, ruleChainId, ruleChainName, ruleNodeId);
+            return new RuleNodeActor(context, tenantId, ruleChainId, ruleChainName, ruleNodeId, shard, shardCount, deleted);
         }
     }
 
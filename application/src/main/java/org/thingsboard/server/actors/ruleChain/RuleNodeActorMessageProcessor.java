@@ -28,6 +28,8 @@ import org.thingsboard.server.common.data.rule.RuleNode;
 import org.thingsboard.server.common.msg.queue.PartitionChangeMsg;
 import org.thingsboard.server.common.msg.queue.RuleNodeException;
 
+import java.util.concurrent.atomic.AtomicBoolean;
+
 /**
  * @author Andrew Shvayka
  */
@@ -40,12 +42,12 @@ public class RuleNodeActorMessageProcessor extends ComponentMsgProcessor<RuleNod
     private DefaultTbContext defaultCtx;
 
     RuleNodeActorMessageProcessor(TenantId tenantId, String ruleChainName, RuleNodeId ruleNodeId, ActorSystemContext systemContext
-            , TbActorRef parent, TbActorRef self) {
+            , TbActorRef parent, TbActorRef self, int shard, int shardCount, AtomicBoolean deleted) {
         super(systemContext, tenantId, ruleNodeId);
         this.ruleChainName = ruleChainName;
         this.self = self;
         this.ruleNode = systemContext.getRuleChainService().findRuleNodeById(tenantId, entityId);
-        this.defaultCtx = new DefaultTbContext(systemContext, new RuleNodeCtx(tenantId, parent, self, ruleNode));
+        this.defaultCtx = new DefaultTbContext(systemContext, new RuleNodeCtx(tenantId, parent, self, shard, shardCount, deleted, ruleNode));
     }
 
     @Override
@@ -71,6 +73,12 @@ public class RuleNodeActorMessageProcessor extends ComponentMsgProcessor<RuleNod
         }
     }
 
+    @Override
+    public void onStop(TbActorCtx context) {
+        defaultCtx.onRuleNodeDeleted();
+        stop(context);
+    }
+
     @Override
     public void stop(TbActorCtx context) {
         if (tbNode != null) {
@@ -15,20 +15,93 @@
  */
 package org.thingsboard.server.actors.ruleChain;
 
-import lombok.AllArgsConstructor;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.Getter;
 import org.thingsboard.server.actors.TbActorRef;
+import org.thingsboard.server.common.data.id.EntityId;
 import org.thingsboard.server.common.data.id.TenantId;
 import org.thingsboard.server.common.data.rule.RuleNode;
 
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 /**
  * Created by ashvayka on 19.03.18.
  */
 @Data
-@AllArgsConstructor
 final class RuleNodeCtx {
     private final TenantId tenantId;
     private final TbActorRef chainActor;
     private final TbActorRef selfActor;
+    private final List<TbActorRef> shardActors;
+    private final int shard;
+    private final int shardCount;
+    @Getter(AccessLevel.NONE)
+    private final AtomicBoolean deleted;
     private RuleNode self;
+
+    RuleNodeCtx(TenantId tenantId, TbActorRef chainActor, TbActorRef selfActor, RuleNode self) {
+        this(tenantId, chainActor, selfActor, Collections.singletonList(selfActor), self);
+    }
+
+    RuleNodeCtx(TenantId tenantId, TbActorRef chainActor, TbActorRef selfActor, List<TbActorRef> shardActors, RuleNode self) {
+        this(tenantId, chainActor, selfActor, shardActors, shardActors.indexOf(selfActor), shardActors.size(), new AtomicBoolean(), self);
+    }
+
+    /**
+     * Creates the context of a single rule node instance, that does not know the actors of the other instances.
+     */
+    RuleNodeCtx(TenantId tenantId, TbActorRef chainActor, TbActorRef selfActor, int shard, int shardCount, AtomicBoolean deleted, RuleNode self) {
+        this(tenantId, chainActor, selfActor, Collections.singletonList(selfActor), shard, shardCount, deleted, self);
+    }
+
+    RuleNodeCtx(TenantId tenantId, TbActorRef chainActor, TbActorRef selfActor, List<TbActorRef> shardActors,
+                int shard, int shardCount, AtomicBoolean deleted, RuleNode self) {
+        this.tenantId = tenantId;
+        this.chainActor = chainActor;
+        this.selfActor = selfActor;
+        this.shardActors = shardActors;
+        this.shard = shard;
+        this.shardCount = shardCount;
+        this.deleted = deleted;
+        this.self = self;
+    }
+
+    /**
+     * Returns the context bound to the rule node instance that owns the originator.
+     * Messages of the same originator are always processed by the same instance.
+     */
+    RuleNodeCtx forOriginator(EntityId originator) {
+        if (shardActors.size() == 1) {
+            return this;
+        }
+        int originatorShard = getShard(originator);
+        TbActorRef shardActor = shardActors.get(originatorShard);
+        return shardActor == selfActor ? this : new RuleNodeCtx(tenantId, chainActor, shardActor, shardActors, originatorShard, shardCount, deleted, self);
+    }
+
+    /**
+     * @return whether the messages of the originator are processed by this rule node instance.
+     */
+    boolean isOwnShard(EntityId originator) {
+        return shardCount <= 1 || getShard(originator) == shard;
+    }
+
+    /**
+     * Marks the rule node as deleted, so that its instances remove their state instead of persisting it when they stop.
+     * Shared by all instances of the rule node.
+     */
+    void markDeleted() {
+        deleted.set(true);
+    }
+
+    boolean isDeleted() {
+        return deleted.get();
+    }
+
+    private int getShard(EntityId originator) {
+        return Math.floorMod(originator.getId().hashCode(), shardCount);
+    }
 }
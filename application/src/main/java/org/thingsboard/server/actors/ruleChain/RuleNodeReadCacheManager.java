@@ -0,0 +1,141 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.actors.ruleChain;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.Metrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.thingsboard.common.util.ThingsBoardThreadFactory;
+import org.thingsboard.rule.engine.api.RuleNodeReadCache;
+import org.thingsboard.server.common.data.id.EntityId;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Tracks the read caches of all rule node instances on this server, so that local writes of telemetry and attributes
+ * can invalidate them, and exports the total number of hits and misses.
+ */
+@Slf4j
+@Component
+public class RuleNodeReadCacheManager {
+
+    @Value("${actors.rule.node.read_cache.max_entities:10000}")
+    private int maxEntities;
+
+    @Value("${actors.rule.node.read_cache.cleanup_interval_ms:1000}")
+    private long cleanupInterval;
+
+    @Value("${actors.rule.node.read_cache.stats_print_interval_ms:60000}")
+    private long statsPrintInterval;
+
+    private final Set<DefaultRuleNodeReadCache<?>> caches = ConcurrentHashMap.newKeySet();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    private ScheduledExecutorService scheduler;
+    private List<Meter> meters;
+    private long reportedHits;
+    private long reportedMisses;
+
+    @PostConstruct
+    public void init() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(ThingsBoardThreadFactory.forName("rule-node-read-cache"));
+        scheduler.scheduleWithFixedDelay(this::cleanUp, cleanupInterval, cleanupInterval, TimeUnit.MILLISECONDS);
+        scheduler.scheduleAtFixedRate(this::printStats, statsPrintInterval, statsPrintInterval, TimeUnit.MILLISECONDS);
+        FunctionCounter hitsCounter = FunctionCounter.builder("rule.node.read.cache", hits, LongAdder::doubleValue)
+                .tag("result", "hit")
+                .description("Rule node lookups served from the cache or joined to a lookup in flight")
+                .register(Metrics.globalRegistry);
+        FunctionCounter missesCounter = FunctionCounter.builder("rule.node.read.cache", misses, LongAdder::doubleValue)
+                .tag("result", "miss")
+                .description("Rule node lookups passed to the database")
+                .register(Metrics.globalRegistry);
+        meters = Arrays.asList(hitsCounter, missesCounter);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        if (meters != null) {
+            meters.forEach(Metrics.globalRegistry::remove);
+        }
+        caches.clear();
+    }
+
+    public <V> RuleNodeReadCache<V> create(long ttlMs) {
+        DefaultRuleNodeReadCache<V> cache = new DefaultRuleNodeReadCache<>(this, ttlMs, maxEntities);
+        caches.add(cache);
+        return cache;
+    }
+
+    /**
+     * Drops the cached lookups of the entity. Has to be called when telemetry or attributes of the entity are saved.
+     */
+    public void onEntityDataUpdated(EntityId entityId) {
+        for (DefaultRuleNodeReadCache<?> cache : caches) {
+            cache.invalidate(entityId);
+        }
+    }
+
+    void onHit() {
+        hits.increment();
+    }
+
+    void onMiss() {
+        misses.increment();
+    }
+
+    void onDestroy(DefaultRuleNodeReadCache<?> cache) {
+        caches.remove(cache);
+    }
+
+    private void cleanUp() {
+        try {
+            long now = System.currentTimeMillis();
+            for (DefaultRuleNodeReadCache<?> cache : caches) {
+                cache.cleanUp(now);
+            }
+        } catch (Throwable e) {
+            log.warn("Failed to clean up rule node read caches", e);
+        }
+    }
+
+    private void printStats() {
+        long totalHits = hits.sum();
+        long totalMisses = misses.sum();
+        long newHits = totalHits - reportedHits;
+        long newMisses = totalMisses - reportedMisses;
+        reportedHits = totalHits;
+        reportedMisses = totalMisses;
+        if (newHits > 0 || newMisses > 0) {
+            log.info("Rule node read caches [{}] hits [{}] misses [{}]", caches.size(), newHits, newMisses);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.actors.ruleChain;
+
+import lombok.Getter;
+import org.thingsboard.server.actors.TbActorId;
+import org.thingsboard.server.common.data.id.RuleNodeId;
+
+import java.util.Objects;
+
+/**
+ * Identifies additional instances of the parallelizable rule node.
+ * The first instance keeps using {@link org.thingsboard.server.actors.TbEntityActorId}.
+ */
+public class RuleNodeShardActorId implements TbActorId {
+
+    @Getter
+    private final RuleNodeId ruleNodeId;
+    @Getter
+    private final int shard;
+
+    public RuleNodeShardActorId(RuleNodeId ruleNodeId, int shard) {
+        this.ruleNodeId = ruleNodeId;
+        this.shard = shard;
+    }
+
+    @Override
+    public String toString() {
+        return ruleNodeId.getEntityType() + "|" + ruleNodeId.getId() + "|" + shard;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        RuleNodeShardActorId that = (RuleNodeShardActorId) o;
+        return shard == that.shard && ruleNodeId.equals(that.ruleNodeId);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(ruleNodeId, shard);
+    }
+}
@@ -20,6 +20,7 @@ import org.thingsboard.server.common.data.id.RuleNodeId;
 import org.thingsboard.server.common.msg.MsgType;
 import org.thingsboard.server.common.msg.TbActorMsg;
 import org.thingsboard.server.common.msg.TbMsg;
+import org.thingsboard.server.common.msg.queue.RuleEngineException;
 
 import java.io.Serializable;
 import java.util.Set;
@@ -41,4 +42,9 @@ class RuleNodeToRuleChainTellNextMsg implements TbActorMsg, Serializable {
         return MsgType.RULE_TO_RULE_CHAIN_TELL_NEXT_MSG;
     }
 
+    @Override
+    public void onRejected() {
+        msg.getCallback().onFailure(new RuleEngineException("Message is rejected by the full actor mailbox!"));
+    }
+
 }
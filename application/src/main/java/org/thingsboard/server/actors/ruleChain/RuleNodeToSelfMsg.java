@@ -19,6 +19,7 @@ import lombok.Data;
 import org.thingsboard.server.common.msg.MsgType;
 import org.thingsboard.server.common.msg.TbActorMsg;
 import org.thingsboard.server.common.msg.TbMsg;
+import org.thingsboard.server.common.msg.queue.RuleEngineException;
 
 /**
  * Created by ashvayka on 19.03.18.
@@ -33,4 +34,9 @@ final class RuleNodeToSelfMsg implements TbActorMsg {
         return MsgType.RULE_TO_SELF_MSG;
     }
 
+    @Override
+    public void onRejected() {
+        msg.getCallback().onFailure(new RuleEngineException("Message is rejected by the full actor mailbox!"));
+    }
+
 }
@@ -25,6 +25,8 @@ import org.thingsboard.common.util.ThingsBoardThreadFactory;
 import org.thingsboard.server.actors.ActorSystemContext;
 import org.thingsboard.server.actors.DefaultTbActorSystem;
 import org.thingsboard.server.actors.TbActorId;
+import org.thingsboard.server.actors.TbActorMailboxOverflowPolicy;
+import org.thingsboard.server.actors.TbActorMailboxType;
 import org.thingsboard.server.actors.TbActorRef;
 import org.thingsboard.server.actors.TbActorSystem;
 import org.thingsboard.server.actors.TbActorSystemSettings;
@@ -52,6 +54,9 @@ public class DefaultActorService implements ActorService {
     @Autowired
     private ActorSystemContext actorContext;
 
+    @Autowired(required = false)
+    private TbActorSystemMetrics actorSystemMetrics;
+
     private TbActorSystem system;
 
     private TbActorRef appActor;
@@ -65,6 +70,15 @@ public class DefaultActorService implements ActorService {
     @Value("${actors.system.scheduler_pool_size:1}")
     private int schedulerPoolSize;
 
+    @Value("${actors.system.mailbox.type:LINKED}")
+    private TbActorMailboxType mailboxType;
+
+    @Value("${actors.system.mailbox.capacity:256}")
+    private int mailboxCapacity;
+
+    @Value("${actors.system.mailbox.overflow_policy:SPILL}")
+    private TbActorMailboxOverflowPolicy mailboxOverflowPolicy;
+
     @Value("${actors.system.app_dispatcher_pool_size:1}")
     private int appDispatcherSize;
 
@@ -81,8 +95,9 @@ public class DefaultActorService implements ActorService {
     public void initActorSystem() {
         log.info("Initializing actor system.");
         actorContext.setActorService(this);
-        TbActorSystemSettings settings = new TbActorSystemSettings(actorThroughput, schedulerPoolSize, maxActorInitAttempts);
-        system = new DefaultTbActorSystem(settings);
+        TbActorSystemSettings settings = new TbActorSystemSettings(actorThroughput, schedulerPoolSize, maxActorInitAttempts,
+                mailboxType, mailboxCapacity, mailboxOverflowPolicy);
+        system = new DefaultTbActorSystem(settings, actorSystemMetrics);
 
         system.createDispatcher(APP_DISPATCHER_NAME, initDispatcherExecutor(APP_DISPATCHER_NAME, appDispatcherSize));
         system.createDispatcher(TENANT_DISPATCHER_NAME, initDispatcherExecutor(TENANT_DISPATCHER_NAME, tenantDispatcherSize));
@@ -105,11 +120,16 @@ public class DefaultActorService implements ActorService {
             int cores = Runtime.getRuntime().availableProcessors();
             poolSize = Math.max(1, cores / 2);
         }
+        ExecutorService executor;
         if (poolSize == 1) {
-            return Executors.newSingleThreadExecutor(ThingsBoardThreadFactory.forName(dispatcherName));
+            executor = Executors.newFixedThreadPool(1, ThingsBoardThreadFactory.forName(dispatcherName));
         } else {
-            return Executors.newWorkStealingPool(poolSize);
+            executor = Executors.newWorkStealingPool(poolSize);
+        }
+        if (actorSystemMetrics != null) {
+            actorSystemMetrics.registerDispatcher(dispatcherName, executor);
         }
+        return executor;
     }
 
     @EventListener(ApplicationReadyEvent.class)
@@ -0,0 +1,234 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.actors.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.MultiGauge;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.thingsboard.server.actors.ActorSystemContext;
+import org.thingsboard.server.actors.TbActorId;
+import org.thingsboard.server.actors.TbActorMailboxStats;
+import org.thingsboard.server.actors.TbActorStatsListener;
+import org.thingsboard.server.actors.TbEntityActorId;
+import org.thingsboard.server.actors.ruleChain.RuleNodeShardActorId;
+import org.thingsboard.server.common.data.EntityType;
+import org.thingsboard.server.common.data.id.EntityId;
+import org.thingsboard.server.common.msg.MsgType;
+import org.thingsboard.server.common.msg.TbActorMsg;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "actors.system.metrics", value = "enabled", havingValue = "true")
+public class TbActorSystemMetrics implements TbActorStatsListener {
+
+    private static final String APP_ACTOR_TYPE = "APP";
+    private static final String RULE_NODE_ACTOR_TYPE = EntityType.RULE_NODE.name();
+
+    @Autowired
+    private ActorSystemContext actorSystemContext;
+
+    @Value("${actors.system.metrics.sample_rate:100}")
+    private int sampleRate;
+
+    @Value("${actors.system.metrics.top_actors:10}")
+    private int topActors;
+
+    private final ConcurrentMap<TbActorId, TbActorMailboxStats> mailboxes = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, AtomicInteger> queueSizeByActorType = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Timer> waitTimers = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, ConcurrentMap<MsgType, Timer>> processingTimers = new ConcurrentHashMap<>();
+    private final List<Meter> meters = new CopyOnWriteArrayList<>();
+    private MultiGauge topQueueSizes;
+
+    @PostConstruct
+    public void init() {
+        topQueueSizes = MultiGauge.builder("actors.mailbox.top.size")
+                .description("Mailbox depth of the actors with the largest number of pending messages")
+                .register(Metrics.globalRegistry);
+        meters.add(Gauge.builder("actors.device.active", actorSystemContext.getDeviceActorsCount(), AtomicInteger::get)
+                .description("Number of live device actors")
+                .register(Metrics.globalRegistry));
+        meters.add(FunctionCounter.builder("actors.device.passivated", actorSystemContext.getPassivatedDeviceActorsCount(), AtomicLong::get)
+                .description("Number of device actors stopped after the idle timeout")
+                .register(Metrics.globalRegistry));
+    }
+
+    @PreDestroy
+    public void destroy() {
+        topQueueSizes.register(Collections.emptyList(), true);
+        meters.forEach(Metrics.globalRegistry::remove);
+        meters.clear();
+    }
+
+    @Override
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    @Override
+    public void onActorCreated(TbActorMailboxStats stats) {
+        mailboxes.put(stats.getActorId(), stats);
+    }
+
+    @Override
+    public void onActorDestroyed(TbActorMailboxStats stats) {
+        mailboxes.remove(stats.getActorId(), stats);
+    }
+
+    @Override
+    public void onMsgProcessed(TbActorId actorId, TbActorMsg msg, long waitTimeNanos, long processingTimeNanos) {
+        String actorType = getActorType(actorId);
+        getWaitTimer(actorType).record(waitTimeNanos, TimeUnit.NANOSECONDS);
+        getProcessingTimer(actorType, msg.getMsgType()).record(processingTimeNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void registerDispatcher(String dispatcherName, ExecutorService executor) {
+        Tags tags = Tags.of("dispatcher", dispatcherName);
+        if (executor instanceof ForkJoinPool) {
+            ForkJoinPool pool = (ForkJoinPool) executor;
+            meters.add(Gauge.builder("actors.dispatcher.queue.size", pool, p -> p.getQueuedSubmissionCount() + p.getQueuedTaskCount())
+                    .tags(tags).register(Metrics.globalRegistry));
+            meters.add(Gauge.builder("actors.dispatcher.utilization", pool, p -> (double) p.getActiveThreadCount() / p.getParallelism())
+                    .tags(tags).register(Metrics.globalRegistry));
+        } else if (executor instanceof ThreadPoolExecutor) {
+            ThreadPoolExecutor pool = (ThreadPoolExecutor) executor;
+            meters.add(Gauge.builder("actors.dispatcher.queue.size", pool, p -> p.getQueue().size())
+                    .tags(tags).register(Metrics.globalRegistry));
+            meters.add(Gauge.builder("actors.dispatcher.utilization", pool, p -> (double) p.getActiveCount() / p.getMaximumPoolSize())
+                    .tags(tags).register(Metrics.globalRegistry));
+        } else {
+            log.warn("[{}] Unsupported dispatcher executor: {}", dispatcherName, executor.getClass());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${actors.system.metrics.report_interval:10000}")
+    public void updateQueueSizes() {
+        Map<String, Integer> sizeByType = new HashMap<>();
+        PriorityQueue<TbActorMailboxStats> top = new PriorityQueue<>(topActors + 1, Comparator.comparingInt(TbActorMailboxStats::getQueueSize));
+        for (TbActorMailboxStats stats : mailboxes.values()) {
+            int queueSize = stats.getQueueSize();
+            sizeByType.merge(getActorType(stats.getActorId()), queueSize, Integer::sum);
+            if (queueSize > 0 && topActors > 0) {
+                if (top.size() < topActors) {
+                    top.add(stats);
+                } else if (top.peek().getQueueSize() < queueSize) {
+                    top.poll();
+                    top.add(stats);
+                }
+            }
+        }
+        queueSizeByActorType.forEach((type, gauge) -> gauge.set(sizeByType.getOrDefault(type, 0)));
+        sizeByType.forEach((type, size) -> getQueueSizeGauge(type).set(size));
+
+        List<MultiGauge.Row<?>> rows = new ArrayList<>(top.size());
+        for (TbActorMailboxStats stats : top) {
+            Tags tags = Tags.of("actorType", getActorType(stats.getActorId()), "actorId", stats.getActorId().toString());
+            rows.add(MultiGauge.Row.of(tags, stats.getQueueSize()));
+        }
+        topQueueSizes.register(rows, true);
+        if (log.isDebugEnabled() && !top.isEmpty()) {
+            log.debug("Top actors by mailbox size: {}", top.stream()
+                    .sorted(Comparator.comparingInt(TbActorMailboxStats::getQueueSize).reversed())
+                    .map(stats -> stats.getActorId() + "=" + stats.getQueueSize())
+                    .collect(Collectors.joining(", ")));
+        }
+    }
+
+    private AtomicInteger getQueueSizeGauge(String actorType) {
+        return queueSizeByActorType.computeIfAbsent(actorType, type -> {
+            AtomicInteger queueSize = new AtomicInteger();
+            meters.add(Gauge.builder("actors.mailbox.size", queueSize, AtomicInteger::get)
+                    .tag("actorType", type)
+                    .register(Metrics.globalRegistry));
+            return queueSize;
+        });
+    }
+
+    private Timer getWaitTimer(String actorType) {
+        Timer timer = waitTimers.get(actorType);
+        if (timer == null) {
+            timer = waitTimers.computeIfAbsent(actorType, type -> Timer.builder("actors.msg.wait")
+                    .description("Time between enqueue and start of processing of the sampled messages")
+                    .tag("actorType", type)
+                    .publishPercentileHistogram()
+                    .register(Metrics.globalRegistry));
+            meters.add(timer);
+        }
+        return timer;
+    }
+
+    private Timer getProcessingTimer(String actorType, MsgType msgType) {
+        ConcurrentMap<MsgType, Timer> timers = processingTimers.get(actorType);
+        if (timers == null) {
+            timers = processingTimers.computeIfAbsent(actorType, type -> new ConcurrentHashMap<>());
+        }
+        Timer timer = timers.get(msgType);
+        if (timer == null) {
+            timer = timers.computeIfAbsent(msgType, type -> Timer.builder("actors.msg.processing")
+                    .description("Processing time of the sampled messages")
+                    .tags("actorType", actorType, "msgType", type.name())
+                    .publishPercentileHistogram()
+                    .register(Metrics.globalRegistry));
+            meters.add(timer);
+        }
+        return timer;
+    }
+
+    private static String getActorType(TbActorId actorId) {
+        if (actorId instanceof TbEntityActorId) {
+            EntityId entityId = ((TbEntityActorId) actorId).getEntityId();
+            if (entityId.getEntityType() == EntityType.TENANT && EntityId.NULL_UUID.equals(entityId.getId())) {
+                return APP_ACTOR_TYPE;
+            }
+            return entityId.getEntityType().name();
+        } else if (actorId instanceof RuleNodeShardActorId) {
+            return RULE_NODE_ACTOR_TYPE;
+        } else {
+            return actorId.toString();
+        }
+    }
+
+}
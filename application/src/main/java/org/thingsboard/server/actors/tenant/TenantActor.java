@@ -104,10 +104,21 @@ public class TenantActor extends RuleChainManagerActor {
         log.info("[{}] Stopping tenant actor.", tenantId);
     }
 
+    @Override
+    public void onUndeliveredMsg(TbActorMsg msg) {
+        systemContext.onForwardedMsgDropped(msg);
+    }
+
+    @Override
+    public void onRejectedMsg(TbActorMsg msg) {
+        systemContext.onForwardedMsgDropped(msg);
+    }
+
     @Override
     protected boolean doProcess(TbActorMsg msg) {
         if (cantFindTenant) {
             log.info("[{}] Processing missing Tenant msg: {}", tenantId, msg);
+            systemContext.onForwardedMsgDropped(msg);
             if (msg.getMsgType().equals(MsgType.QUEUE_TO_RULE_ENGINE_MSG)) {
                 QueueToRuleEngineMsg queueMsg = (QueueToRuleEngineMsg) msg;
                 queueMsg.getTbMsg().getCallback().onSuccess();
@@ -161,9 +172,21 @@ public class TenantActor extends RuleChainManagerActor {
     }
 
     private void onQueueToRuleEngineMsg(QueueToRuleEngineMsg msg) {
+        TbActorRef directTarget = null;
+        try {
+            directTarget = routeQueueToRuleEngineMsg(msg);
+        } finally {
+            systemContext.onRoutedByTenant(msg, directTarget);
+        }
+    }
+
+    /**
+     * @return the rule chain actor the message was told to, or {@code null} if it was not told to a rule chain actor.
+     */
+    private TbActorRef routeQueueToRuleEngineMsg(QueueToRuleEngineMsg msg) {
         if (!isRuleEngineForCurrentTenant) {
             log.warn("RECEIVED INVALID MESSAGE: {}", msg);
-            return;
+            return null;
         }
         TbMsg tbMsg = msg.getTbMsg();
         if (tbMsg.getRuleChainId() == null) {
@@ -174,14 +197,17 @@ public class TenantActor extends RuleChainManagerActor {
                 log.info("[{}] No Root Chain: {}", tenantId, msg);
             }
         } else {
+            TbEntityActorId ruleChainActorId = new TbEntityActorId(tbMsg.getRuleChainId());
             try {
-                ctx.tell(new TbEntityActorId(tbMsg.getRuleChainId()), msg);
+                ctx.tell(ruleChainActorId, msg);
+                return systemContext.getActorSystem().getActor(ruleChainActorId);
             } catch (TbActorNotRegisteredException ex) {
                 log.trace("Received message for non-existing rule chain: [{}]", tbMsg.getRuleChainId());
                 //TODO: 3.1 Log it to dead letters queue;
                 tbMsg.getCallback().onSuccess();
             }
         }
+        return null;
     }
 
     private void onRuleChainMsg(RuleChainAwareMsg msg) {
@@ -189,14 +215,22 @@ public class TenantActor extends RuleChainManagerActor {
     }
 
     private void onToDeviceActorMsg(DeviceAwareMsg msg, boolean priority) {
-        if (!isCore) {
-            log.warn("RECEIVED INVALID MESSAGE: {}", msg);
-        }
-        TbActorRef deviceActor = getOrCreateDeviceActor(msg.getDeviceId());
-        if (priority) {
-            deviceActor.tellWithHighPriority(msg);
-        } else {
-            deviceActor.tell(msg);
+        TbActorRef directTarget = null;
+        try {
+            if (!isCore) {
+                log.warn("RECEIVED INVALID MESSAGE: {}", msg);
+            }
+            TbActorRef deviceActor = getOrCreateDeviceActor(msg.getDeviceId());
+            if (priority) {
+                deviceActor.tellWithHighPriority(msg);
+            } else {
+                deviceActor.tell(msg);
+            }
+            if (isCore) {
+                directTarget = deviceActor;
+            }
+        } finally {
+            systemContext.onRoutedByTenant(msg, directTarget);
         }
     }
 
@@ -76,6 +76,9 @@ import org.thingsboard.server.service.security.AccessValidator;
 import org.thingsboard.server.service.security.model.SecurityUser;
 import org.thingsboard.server.service.security.permission.Operation;
 import org.thingsboard.server.service.telemetry.AttributeData;
+import org.thingsboard.server.service.telemetry.EntitiesLatestDataQuery;
+import org.thingsboard.server.service.telemetry.EntitiesLatestDataService;
+import org.thingsboard.server.service.telemetry.EntityLatestData;
 import org.thingsboard.server.service.telemetry.TsData;
 import org.thingsboard.server.service.telemetry.exception.InvalidParametersException;
 import org.thingsboard.server.service.telemetry.exception.UncheckedApiException;
@@ -110,6 +113,9 @@ public class TelemetryController extends BaseController {
     @Autowired
     private AccessValidator accessValidator;
 
+    @Autowired
+    private EntitiesLatestDataService entitiesLatestDataService;
+
     @Value("${transport.json.max_string_value_length:0}")
     private int maxStringValueLength;
 
@@ -193,6 +199,27 @@ public class TelemetryController extends BaseController {
     }
 
 
+    @PreAuthorize("hasAnyAuthority('SYS_ADMIN', 'TENANT_ADMIN', 'CUSTOMER_USER')")
+    @RequestMapping(value = "/values/latest", method = RequestMethod.POST)
+    @ResponseBody
+    public DeferredResult<ResponseEntity> getEntitiesLatestData(@RequestBody EntitiesLatestDataQuery query) throws ThingsboardException {
+        try {
+            entitiesLatestDataService.validate(query);
+        } catch (InvalidParametersException e) {
+            return getImmediateDeferredResult(e.getMessage(), HttpStatus.BAD_REQUEST);
+        }
+        SecurityUser user = getCurrentUser();
+        List<Operation> operations = new ArrayList<>();
+        if (query.getTimeseriesKeys() != null) {
+            operations.add(Operation.READ_TELEMETRY);
+        }
+        if (query.getAttributeKeys() != null) {
+            operations.add(Operation.READ_ATTRIBUTES);
+        }
+        return accessValidator.validateEntitiesAndCallback(user, operations, query.getEntityIds(),
+                (result, tenantId, entityIds) -> getEntitiesLatestDataCallback(result, user, query));
+    }
+
     @PreAuthorize("hasAnyAuthority('SYS_ADMIN', 'TENANT_ADMIN', 'CUSTOMER_USER')")
     @RequestMapping(value = "/{entityType}/{entityId}/values/timeseries", method = RequestMethod.GET, params = {"keys", "startTs", "endTs"})
     @ResponseBody
@@ -460,6 +487,24 @@ public class TelemetryController extends BaseController {
         Futures.addCallback(future, getTsKvListCallback(result, useStrictDataTypes), MoreExecutors.directExecutor());
     }
 
+    private void getEntitiesLatestDataCallback(@Nullable DeferredResult<ResponseEntity> result, SecurityUser user, EntitiesLatestDataQuery query) {
+        Futures.addCallback(entitiesLatestDataService.findLatestData(user.getTenantId(), query), new FutureCallback<List<EntityLatestData>>() {
+            @Override
+            public void onSuccess(List<EntityLatestData> data) {
+                if (query.getAttributeKeys() != null) {
+                    data.forEach(entityData -> logAttributesRead(user, entityData.getEntityId(), query.getScope(), query.getAttributeKeys(), null));
+                }
+                result.setResult(new ResponseEntity<>(data, HttpStatus.OK));
+            }
+
+            @Override
+            public void onFailure(Throwable e) {
+                log.error("Failed to fetch latest data", e);
+                AccessValidator.handleError(e, result, HttpStatus.INTERNAL_SERVER_ERROR);
+            }
+        }, MoreExecutors.directExecutor());
+    }
+
     private void getAttributeValuesCallback(@Nullable DeferredResult<ResponseEntity> result, SecurityUser user, EntityId entityId, String scope, String keys) {
         List<String> keyList = toKeysList(keys);
         FutureCallback<List<AttributeKvEntry>> callback = getAttributeValuesToResponseCallback(result, user, scope, entityId, keyList);
@@ -0,0 +1,196 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.encoding;
+
+import org.thingsboard.rule.engine.api.msg.DeviceAttributesEventNotificationMsg;
+import org.thingsboard.rule.engine.api.msg.DeviceCredentialsUpdateNotificationMsg;
+import org.thingsboard.rule.engine.api.msg.DeviceNameOrTypeUpdateMsg;
+import org.thingsboard.rule.engine.api.msg.ToDeviceActorNotificationMsg;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.id.EntityId;
+import org.thingsboard.server.common.data.id.EntityIdFactory;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.data.kv.AttributeKey;
+import org.thingsboard.server.common.data.plugin.ComponentLifecycleEvent;
+import org.thingsboard.server.common.data.rpc.ToDeviceRpcRequestBody;
+import org.thingsboard.server.common.msg.TbActorMsg;
+import org.thingsboard.server.common.msg.plugin.ComponentLifecycleMsg;
+import org.thingsboard.server.common.msg.rpc.ToDeviceRpcRequest;
+import org.thingsboard.server.gen.transport.TransportProtos.AttributeKeyProto;
+import org.thingsboard.server.gen.transport.TransportProtos.ComponentLifecycleMsgProto;
+import org.thingsboard.server.gen.transport.TransportProtos.DeviceAttributesEventNotificationMsgProto;
+import org.thingsboard.server.gen.transport.TransportProtos.DeviceCredentialsUpdateNotificationMsgProto;
+import org.thingsboard.server.gen.transport.TransportProtos.DeviceNameOrTypeUpdateMsgProto;
+import org.thingsboard.server.gen.transport.TransportProtos.ToDeviceActorNotificationMsgProto;
+import org.thingsboard.server.gen.transport.TransportProtos.ToDeviceRpcRequestActorMsgProto;
+import org.thingsboard.server.service.rpc.ToDeviceRpcRequestActorMsg;
+import org.thingsboard.server.service.subscription.TbSubscriptionUtils;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Converts actor notifications that are pushed through the queues to and from their protobuf representation.
+ */
+public class ActorNotificationProtoUtils {
+
+    public static ToDeviceActorNotificationMsgProto toProto(ToDeviceActorNotificationMsg msg) {
+        ToDeviceActorNotificationMsgProto.Builder builder = ToDeviceActorNotificationMsgProto.newBuilder();
+        switch (msg.getMsgType()) {
+            case DEVICE_ATTRIBUTES_UPDATE_TO_DEVICE_ACTOR_MSG:
+                return builder.setDeviceAttributesEventMsg(toProto((DeviceAttributesEventNotificationMsg) msg)).build();
+            case DEVICE_CREDENTIALS_UPDATE_TO_DEVICE_ACTOR_MSG:
+                return builder.setDeviceCredentialsUpdateMsg(toProto((DeviceCredentialsUpdateNotificationMsg) msg)).build();
+            case DEVICE_NAME_OR_TYPE_UPDATE_TO_DEVICE_ACTOR_MSG:
+                return builder.setDeviceNameOrTypeMsg(toProto((DeviceNameOrTypeUpdateMsg) msg)).build();
+            case DEVICE_RPC_REQUEST_TO_DEVICE_ACTOR_MSG:
+                return builder.setToDeviceRpcRequestMsg(toProto((ToDeviceRpcRequestActorMsg) msg)).build();
+            default:
+                throw new IllegalArgumentException("Unsupported device actor notification: " + msg.getMsgType());
+        }
+    }
+
+    public static TbActorMsg fromProto(ToDeviceActorNotificationMsgProto proto) {
+        if (proto.hasDeviceAttributesEventMsg()) {
+            return fromProto(proto.getDeviceAttributesEventMsg());
+        } else if (proto.hasDeviceCredentialsUpdateMsg()) {
+            return fromProto(proto.getDeviceCredentialsUpdateMsg());
+        } else if (proto.hasDeviceNameOrTypeMsg()) {
+            return fromProto(proto.getDeviceNameOrTypeMsg());
+        } else if (proto.hasToDeviceRpcRequestMsg()) {
+            return fromProto(proto.getToDeviceRpcRequestMsg());
+        } else {
+            throw new IllegalArgumentException("Empty device actor notification!");
+        }
+    }
+
+    public static DeviceAttributesEventNotificationMsgProto toProto(DeviceAttributesEventNotificationMsg msg) {
+        DeviceAttributesEventNotificationMsgProto.Builder builder = DeviceAttributesEventNotificationMsgProto.newBuilder()
+                .setTenantIdMSB(msg.getTenantId().getId().getMostSignificantBits())
+                .setTenantIdLSB(msg.getTenantId().getId().getLeastSignificantBits())
+                .setDeviceIdMSB(msg.getDeviceId().getId().getMostSignificantBits())
+                .setDeviceIdLSB(msg.getDeviceId().getId().getLeastSignificantBits())
+                .setDeleted(msg.isDeleted());
+        if (msg.getScope() != null) {
+            builder.setScope(msg.getScope());
+        }
+        if (msg.getDeletedKeys() != null) {
+            msg.getDeletedKeys().forEach(key -> builder.addDeletedKeys(AttributeKeyProto.newBuilder()
+                    .setScope(key.getScope())
+                    .setKey(key.getAttributeKey())));
+        }
+        if (msg.getValues() != null) {
+            msg.getValues().forEach(v -> builder.addValues(TbSubscriptionUtils.toKeyValueProto(v.getLastUpdateTs(), v)));
+        }
+        return builder.build();
+    }
+
+    public static DeviceAttributesEventNotificationMsg fromProto(DeviceAttributesEventNotificationMsgProto proto) {
+        TenantId tenantId = new TenantId(new UUID(proto.getTenantIdMSB(), proto.getTenantIdLSB()));
+        DeviceId deviceId = new DeviceId(new UUID(proto.getDeviceIdMSB(), proto.getDeviceIdLSB()));
+        if (proto.getDeleted()) {
+            Set<AttributeKey> keys = new HashSet<>(proto.getDeletedKeysCount());
+            proto.getDeletedKeysList().forEach(key -> keys.add(new AttributeKey(key.getScope(), key.getKey())));
+            return DeviceAttributesEventNotificationMsg.onDelete(tenantId, deviceId, keys);
+        } else {
+            return DeviceAttributesEventNotificationMsg.onUpdate(tenantId, deviceId, proto.getScope(),
+                    TbSubscriptionUtils.toAttributeKvList(proto.getValuesList()));
+        }
+    }
+
+    public static DeviceCredentialsUpdateNotificationMsgProto toProto(DeviceCredentialsUpdateNotificationMsg msg) {
+        return DeviceCredentialsUpdateNotificationMsgProto.newBuilder()
+                .setTenantIdMSB(msg.getTenantId().getId().getMostSignificantBits())
+                .setTenantIdLSB(msg.getTenantId().getId().getLeastSignificantBits())
+                .setDeviceIdMSB(msg.getDeviceId().getId().getMostSignificantBits())
+                .setDeviceIdLSB(msg.getDeviceId().getId().getLeastSignificantBits())
+                .build();
+    }
+
+    public static DeviceCredentialsUpdateNotificationMsg fromProto(DeviceCredentialsUpdateNotificationMsgProto proto) {
+        return new DeviceCredentialsUpdateNotificationMsg(
+                new TenantId(new UUID(proto.getTenantIdMSB(), proto.getTenantIdLSB())),
+                new DeviceId(new UUID(proto.getDeviceIdMSB(), proto.getDeviceIdLSB())));
+    }
+
+    public static DeviceNameOrTypeUpdateMsgProto toProto(DeviceNameOrTypeUpdateMsg msg) {
+        return DeviceNameOrTypeUpdateMsgProto.newBuilder()
+                .setTenantIdMSB(msg.getTenantId().getId().getMostSignificantBits())
+                .setTenantIdLSB(msg.getTenantId().getId().getLeastSignificantBits())
+                .setDeviceIdMSB(msg.getDeviceId().getId().getMostSignificantBits())
+                .setDeviceIdLSB(msg.getDeviceId().getId().getLeastSignificantBits())
+                .setDeviceName(msg.getDeviceName())
+                .setDeviceType(msg.getDeviceType())
+                .build();
+    }
+
+    public static DeviceNameOrTypeUpdateMsg fromProto(DeviceNameOrTypeUpdateMsgProto proto) {
+        return new DeviceNameOrTypeUpdateMsg(
+                new TenantId(new UUID(proto.getTenantIdMSB(), proto.getTenantIdLSB())),
+                new DeviceId(new UUID(proto.getDeviceIdMSB(), proto.getDeviceIdLSB())),
+                proto.getDeviceName(), proto.getDeviceType());
+    }
+
+    public static ToDeviceRpcRequestActorMsgProto toProto(ToDeviceRpcRequestActorMsg msg) {
+        ToDeviceRpcRequest request = msg.getMsg();
+        ToDeviceRpcRequestActorMsgProto.Builder builder = ToDeviceRpcRequestActorMsgProto.newBuilder()
+                .setServiceId(msg.getServiceId())
+                .setRequestIdMSB(request.getId().getMostSignificantBits())
+                .setRequestIdLSB(request.getId().getLeastSignificantBits())
+                .setTenantIdMSB(request.getTenantId().getId().getMostSignificantBits())
+                .setTenantIdLSB(request.getTenantId().getId().getLeastSignificantBits())
+                .setDeviceIdMSB(request.getDeviceId().getId().getMostSignificantBits())
+                .setDeviceIdLSB(request.getDeviceId().getId().getLeastSignificantBits())
+                .setOneway(request.isOneway())
+                .setExpirationTime(request.getExpirationTime())
+                .setMethod(request.getBody().getMethod());
+        if (request.getBody().getParams() != null) {
+            builder.setParams(request.getBody().getParams());
+        }
+        return builder.build();
+    }
+
+    public static ToDeviceRpcRequestActorMsg fromProto(ToDeviceRpcRequestActorMsgProto proto) {
+        ToDeviceRpcRequest request = new ToDeviceRpcRequest(
+                new UUID(proto.getRequestIdMSB(), proto.getRequestIdLSB()),
+                new TenantId(new UUID(proto.getTenantIdMSB(), proto.getTenantIdLSB())),
+                new DeviceId(new UUID(proto.getDeviceIdMSB(), proto.getDeviceIdLSB())),
+                proto.getOneway(),
+                proto.getExpirationTime(),
+                new ToDeviceRpcRequestBody(proto.getMethod(), proto.getParams()));
+        return new ToDeviceRpcRequestActorMsg(proto.getServiceId(), request);
+    }
+
+    public static ComponentLifecycleMsgProto toProto(ComponentLifecycleMsg msg) {
+        return ComponentLifecycleMsgProto.newBuilder()
+                .setTenantIdMSB(msg.getTenantId().getId().getMostSignificantBits())
+                .setTenantIdLSB(msg.getTenantId().getId().getLeastSignificantBits())
+                .setEntityType(msg.getEntityId().getEntityType().name())
+                .setEntityIdMSB(msg.getEntityId().getId().getMostSignificantBits())
+                .setEntityIdLSB(msg.getEntityId().getId().getLeastSignificantBits())
+                .setEvent(msg.getEvent().name())
+                .build();
+    }
+
+    public static ComponentLifecycleMsg fromProto(ComponentLifecycleMsgProto proto) {
+        EntityId entityId = EntityIdFactory.getByTypeAndUuid(proto.getEntityType(), new UUID(proto.getEntityIdMSB(), proto.getEntityIdLSB()));
+        return new ComponentLifecycleMsg(
+                new TenantId(new UUID(proto.getTenantIdMSB(), proto.getTenantIdLSB())),
+                entityId,
+                ComponentLifecycleEvent.valueOf(proto.getEvent()));
+    }
+}
@@ -18,6 +18,7 @@ package org.thingsboard.server.service.queue;
 import com.google.protobuf.ByteString;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.thingsboard.rule.engine.api.msg.ToDeviceActorNotificationMsg;
@@ -29,7 +30,10 @@ import org.thingsboard.server.common.msg.TbMsg;
 import org.thingsboard.server.common.msg.plugin.ComponentLifecycleMsg;
 import org.thingsboard.server.common.msg.queue.ServiceType;
 import org.thingsboard.server.common.msg.queue.TopicPartitionInfo;
+import org.thingsboard.server.gen.transport.TransportProtos.ComponentLifecycleMsgProto;
+import org.thingsboard.server.dao.relation.RelationIndexInvalidationEvent;
 import org.thingsboard.server.gen.transport.TransportProtos.FromDeviceRPCResponseProto;
+import org.thingsboard.server.gen.transport.TransportProtos.RelationIndexInvalidationMsgProto;
 import org.thingsboard.server.gen.transport.TransportProtos.ToCoreMsg;
 import org.thingsboard.server.gen.transport.TransportProtos.ToCoreNotificationMsg;
 import org.thingsboard.server.gen.transport.TransportProtos.ToRuleEngineMsg;
@@ -39,7 +43,9 @@ import org.thingsboard.server.queue.TbQueueCallback;
 import org.thingsboard.server.queue.TbQueueProducer;
 import org.thingsboard.server.queue.common.TbProtoQueueMsg;
 import org.thingsboard.server.queue.discovery.PartitionService;
+import org.thingsboard.server.queue.discovery.TbServiceInfoProvider;
 import org.thingsboard.server.queue.provider.TbQueueProducerProvider;
+import org.thingsboard.server.service.encoding.ActorNotificationProtoUtils;
 import org.thingsboard.server.service.encoding.DataDecodingEncodingService;
 import org.thingsboard.server.service.rpc.FromDeviceRpcResponse;
 
@@ -55,6 +61,9 @@ public class DefaultTbClusterService implements TbClusterService {
     @Value("${cluster.stats.enabled:false}")
     private boolean statsEnabled;
 
+    @Value("${cluster.fst_encoding_enabled:false}")
+    private boolean fstEncodingEnabled;
+
     private final AtomicInteger toCoreMsgs = new AtomicInteger(0);
     private final AtomicInteger toCoreNfs = new AtomicInteger(0);
     private final AtomicInteger toRuleEngineMsgs = new AtomicInteger(0);
@@ -64,11 +73,14 @@ public class DefaultTbClusterService implements TbClusterService {
     private final TbQueueProducerProvider producerProvider;
     private final PartitionService partitionService;
     private final DataDecodingEncodingService encodingService;
+    private final TbServiceInfoProvider serviceInfoProvider;
 
-    public DefaultTbClusterService(TbQueueProducerProvider producerProvider, PartitionService partitionService, DataDecodingEncodingService encodingService) {
+    public DefaultTbClusterService(TbQueueProducerProvider producerProvider, PartitionService partitionService,
+                                   DataDecodingEncodingService encodingService, TbServiceInfoProvider serviceInfoProvider) {
         this.producerProvider = producerProvider;
         this.partitionService = partitionService;
         this.encodingService = encodingService;
+        this.serviceInfoProvider = serviceInfoProvider;
     }
 
     @Override
@@ -88,8 +100,13 @@ public class DefaultTbClusterService implements TbClusterService {
     public void pushMsgToCore(ToDeviceActorNotificationMsg msg, TbQueueCallback callback) {
         TopicPartitionInfo tpi = partitionService.resolve(ServiceType.TB_CORE, msg.getTenantId(), msg.getDeviceId());
         log.trace("PUSHING msg: {} to:{}", msg, tpi);
-        byte[] msgBytes = encodingService.encode(msg);
-        ToCoreMsg toCoreMsg = ToCoreMsg.newBuilder().setToDeviceActorNotificationMsg(ByteString.copyFrom(msgBytes)).build();
+        ToCoreMsg toCoreMsg;
+        if (fstEncodingEnabled) {
+            byte[] msgBytes = encodingService.encode(msg);
+            toCoreMsg = ToCoreMsg.newBuilder().setToDeviceActorNotificationMsg(ByteString.copyFrom(msgBytes)).build();
+        } else {
+            toCoreMsg = ToCoreMsg.newBuilder().setToDeviceActorNotification(ActorNotificationProtoUtils.toProto(msg)).build();
+        }
         producerProvider.getTbCoreMsgProducer().send(tpi, new TbProtoQueueMsg<>(msg.getDeviceId().getId(), toCoreMsg), callback);
         toCoreMsgs.incrementAndGet();
     }
@@ -164,7 +181,8 @@ public class DefaultTbClusterService implements TbClusterService {
     }
 
     private void broadcast(ComponentLifecycleMsg msg) {
-        byte[] msgBytes = encodingService.encode(msg);
+        ByteString msgBytes = fstEncodingEnabled ? ByteString.copyFrom(encodingService.encode(msg)) : null;
+        ComponentLifecycleMsgProto msgProto = fstEncodingEnabled ? null : ActorNotificationProtoUtils.toProto(msg);
         TbQueueProducer<TbProtoQueueMsg<ToRuleEngineNotificationMsg>> toRuleEngineProducer = producerProvider.getRuleEngineNotificationsMsgProducer();
         Set<String> tbRuleEngineServices = new HashSet<>(partitionService.getAllServiceIds(ServiceType.TB_RULE_ENGINE));
         if (msg.getEntityId().getEntityType().equals(EntityType.TENANT)) {
@@ -172,8 +190,13 @@ public class DefaultTbClusterService implements TbClusterService {
             Set<String> tbCoreServices = partitionService.getAllServiceIds(ServiceType.TB_CORE);
             for (String serviceId : tbCoreServices) {
                 TopicPartitionInfo tpi = partitionService.getNotificationsTopic(ServiceType.TB_CORE, serviceId);
-                ToCoreNotificationMsg toCoreMsg = ToCoreNotificationMsg.newBuilder().setComponentLifecycleMsg(ByteString.copyFrom(msgBytes)).build();
-                toCoreNfProducer.send(tpi, new TbProtoQueueMsg<>(msg.getEntityId().getId(), toCoreMsg), null);
+                ToCoreNotificationMsg.Builder toCoreMsg = ToCoreNotificationMsg.newBuilder();
+                if (msgBytes != null) {
+                    toCoreMsg.setComponentLifecycleMsg(msgBytes);
+                } else {
+                    toCoreMsg.setComponentLifecycle(msgProto);
+                }
+                toCoreNfProducer.send(tpi, new TbProtoQueueMsg<>(msg.getEntityId().getId(), toCoreMsg.build()), null);
                 toCoreNfs.incrementAndGet();
             }
             // No need to push notifications twice
@@ -181,8 +204,47 @@ public class DefaultTbClusterService implements TbClusterService {
         }
         for (String serviceId : tbRuleEngineServices) {
             TopicPartitionInfo tpi = partitionService.getNotificationsTopic(ServiceType.TB_RULE_ENGINE, serviceId);
-            ToRuleEngineNotificationMsg toRuleEngineMsg = ToRuleEngineNotificationMsg.newBuilder().setComponentLifecycleMsg(ByteString.copyFrom(msgBytes)).build();
-            toRuleEngineProducer.send(tpi, new TbProtoQueueMsg<>(msg.getEntityId().getId(), toRuleEngineMsg), null);
+            ToRuleEngineNotificationMsg.Builder toRuleEngineMsg = ToRuleEngineNotificationMsg.newBuilder();
+            if (msgBytes != null) {
+                toRuleEngineMsg.setComponentLifecycleMsg(msgBytes);
+            } else {
+                toRuleEngineMsg.setComponentLifecycle(msgProto);
+            }
+            toRuleEngineProducer.send(tpi, new TbProtoQueueMsg<>(msg.getEntityId().getId(), toRuleEngineMsg.build()), null);
+            toRuleEngineNfs.incrementAndGet();
+        }
+    }
+
+    /**
+     * Notifies all other core and rule engine services that relations of the entities were changed by this service.
+     * Services that do not know the notification yet (during a rolling upgrade) ignore it.
+     */
+    @EventListener(RelationIndexInvalidationEvent.class)
+    public void onRelationIndexInvalidation(RelationIndexInvalidationEvent event) {
+        RelationIndexInvalidationMsgProto.Builder proto = RelationIndexInvalidationMsgProto.newBuilder();
+        for (EntityId entityId : event.getEntityIds()) {
+            proto.addEntityType(entityId.getEntityType().name());
+            proto.addEntityIdMSB(entityId.getId().getMostSignificantBits());
+            proto.addEntityIdLSB(entityId.getId().getLeastSignificantBits());
+        }
+        RelationIndexInvalidationMsgProto msgProto = proto.build();
+        UUID msgId = event.getEntityIds().get(0).getId();
+        Set<String> tbCoreServices = new HashSet<>(partitionService.getAllServiceIds(ServiceType.TB_CORE));
+        tbCoreServices.remove(serviceInfoProvider.getServiceId());
+        for (String serviceId : tbCoreServices) {
+            TopicPartitionInfo tpi = partitionService.getNotificationsTopic(ServiceType.TB_CORE, serviceId);
+            ToCoreNotificationMsg toCoreMsg = ToCoreNotificationMsg.newBuilder().setRelationIndexInvalidation(msgProto).build();
+            producerProvider.getTbCoreNotificationsMsgProducer().send(tpi, new TbProtoQueueMsg<>(msgId, toCoreMsg), null);
+            toCoreNfs.incrementAndGet();
+        }
+        Set<String> tbRuleEngineServices = new HashSet<>(partitionService.getAllServiceIds(ServiceType.TB_RULE_ENGINE));
+        tbRuleEngineServices.remove(serviceInfoProvider.getServiceId());
+        // No need to push notifications twice
+        tbRuleEngineServices.removeAll(tbCoreServices);
+        for (String serviceId : tbRuleEngineServices) {
+            TopicPartitionInfo tpi = partitionService.getNotificationsTopic(ServiceType.TB_RULE_ENGINE, serviceId);
+            ToRuleEngineNotificationMsg toRuleEngineMsg = ToRuleEngineNotificationMsg.newBuilder().setRelationIndexInvalidation(msgProto).build();
+            producerProvider.getRuleEngineNotificationsMsgProducer().send(tpi, new TbProtoQueueMsg<>(msgId, toRuleEngineMsg), null);
             toRuleEngineNfs.incrementAndGet();
         }
     }
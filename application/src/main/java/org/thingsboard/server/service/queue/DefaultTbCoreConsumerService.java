@@ -26,12 +26,14 @@ import org.thingsboard.server.common.msg.MsgType;
 import org.thingsboard.server.common.msg.TbActorMsg;
 import org.thingsboard.server.common.msg.queue.ServiceType;
 import org.thingsboard.server.common.msg.queue.TbCallback;
+import org.thingsboard.server.dao.relation.RelationIndex;
 import org.thingsboard.server.gen.transport.TransportProtos.DeviceStateServiceMsgProto;
 import org.thingsboard.server.gen.transport.TransportProtos.FromDeviceRPCResponseProto;
 import org.thingsboard.server.gen.transport.TransportProtos.LocalSubscriptionServiceMsgProto;
 import org.thingsboard.server.gen.transport.TransportProtos.SubscriptionMgrMsgProto;
 import org.thingsboard.server.gen.transport.TransportProtos.TbAttributeUpdateProto;
 import org.thingsboard.server.gen.transport.TransportProtos.TbSubscriptionCloseProto;
+import org.thingsboard.server.gen.transport.TransportProtos.TbSubscriptionUpdateProto;
 import org.thingsboard.server.gen.transport.TransportProtos.TbTimeSeriesUpdateProto;
 import org.thingsboard.server.gen.transport.TransportProtos.ToCoreMsg;
 import org.thingsboard.server.gen.transport.TransportProtos.ToCoreNotificationMsg;
@@ -41,6 +43,7 @@ import org.thingsboard.server.queue.common.TbProtoQueueMsg;
 import org.thingsboard.server.queue.discovery.PartitionChangeEvent;
 import org.thingsboard.server.queue.provider.TbCoreQueueFactory;
 import org.thingsboard.server.queue.util.TbCoreComponent;
+import org.thingsboard.server.service.encoding.ActorNotificationProtoUtils;
 import org.thingsboard.server.service.encoding.DataDecodingEncodingService;
 import org.thingsboard.server.service.queue.processing.AbstractConsumerService;
 import org.thingsboard.server.service.rpc.FromDeviceRpcResponse;
@@ -86,8 +89,8 @@ public class DefaultTbCoreConsumerService extends AbstractConsumerService<ToCore
     public DefaultTbCoreConsumerService(TbCoreQueueFactory tbCoreQueueFactory, ActorSystemContext actorContext,
                                         DeviceStateService stateService, TbLocalSubscriptionService localSubscriptionService,
                                         SubscriptionManagerService subscriptionManagerService, DataDecodingEncodingService encodingService,
-                                        TbCoreDeviceRpcService tbCoreDeviceRpcService) {
-        super(actorContext, encodingService, tbCoreQueueFactory.createToCoreNotificationsMsgConsumer());
+                                        TbCoreDeviceRpcService tbCoreDeviceRpcService, RelationIndex relationIndex) {
+        super(actorContext, encodingService, relationIndex, tbCoreQueueFactory.createToCoreNotificationsMsgConsumer());
         this.mainConsumer = tbCoreQueueFactory.createToCoreMsgConsumer();
         this.stateService = stateService;
         this.localSubscriptionService = localSubscriptionService;
@@ -141,17 +144,12 @@ public class DefaultTbCoreConsumerService extends AbstractConsumerService<ToCore
                             } else if (toCoreMsg.hasDeviceStateServiceMsg()) {
                                 log.trace("[{}] Forwarding message to state service {}", id, toCoreMsg.getDeviceStateServiceMsg());
                                 forwardToStateService(toCoreMsg.getDeviceStateServiceMsg(), callback);
+                            } else if (toCoreMsg.hasToDeviceActorNotification()) {
+                                forwardDeviceActorNotification(id, ActorNotificationProtoUtils.fromProto(toCoreMsg.getToDeviceActorNotification()));
+                                callback.onSuccess();
                             } else if (toCoreMsg.getToDeviceActorNotificationMsg() != null && !toCoreMsg.getToDeviceActorNotificationMsg().isEmpty()) {
                                 Optional<TbActorMsg> actorMsg = encodingService.decode(toCoreMsg.getToDeviceActorNotificationMsg().toByteArray());
-                                if (actorMsg.isPresent()) {
-                                    TbActorMsg tbActorMsg = actorMsg.get();
-                                    if (tbActorMsg.getMsgType().equals(MsgType.DEVICE_RPC_REQUEST_TO_DEVICE_ACTOR_MSG)) {
-                                        tbCoreDeviceRpcService.forwardRpcRequestToDeviceActor((ToDeviceRpcRequestActorMsg) tbActorMsg);
-                                    } else {
-                                        log.trace("[{}] Forwarding message to App Actor {}", id, actorMsg.get());
-                                        actorContext.tell(actorMsg.get());
-                                    }
-                                }
+                                actorMsg.ifPresent(tbActorMsg -> forwardDeviceActorNotification(id, tbActorMsg));
                                 callback.onSuccess();
                             }
                         } catch (Throwable e) {
@@ -179,6 +177,15 @@ public class DefaultTbCoreConsumerService extends AbstractConsumerService<ToCore
         });
     }
 
+    private void forwardDeviceActorNotification(UUID id, TbActorMsg tbActorMsg) {
+        if (tbActorMsg.getMsgType().equals(MsgType.DEVICE_RPC_REQUEST_TO_DEVICE_ACTOR_MSG)) {
+            tbCoreDeviceRpcService.forwardRpcRequestToDeviceActor((ToDeviceRpcRequestActorMsg) tbActorMsg);
+        } else {
+            log.trace("[{}] Forwarding message to App Actor {}", id, tbActorMsg);
+            actorContext.tell(tbActorMsg);
+        }
+    }
+
     @Override
     protected ServiceType getServiceType() {
         return ServiceType.TB_CORE;
@@ -203,6 +210,11 @@ public class DefaultTbCoreConsumerService extends AbstractConsumerService<ToCore
         } else if (toCoreNotification.hasFromDeviceRpcResponse()) {
             log.trace("[{}] Forwarding message to RPC service {}", id, toCoreNotification.getFromDeviceRpcResponse());
             forwardToCoreRpcService(toCoreNotification.getFromDeviceRpcResponse(), callback);
+        } else if (toCoreNotification.hasComponentLifecycle()) {
+            TbActorMsg actorMsg = ActorNotificationProtoUtils.fromProto(toCoreNotification.getComponentLifecycle());
+            log.trace("[{}] Forwarding message to App Actor {}", id, actorMsg);
+            actorContext.tellWithHighPriority(actorMsg);
+            callback.onSuccess();
         } else if (toCoreNotification.getComponentLifecycleMsg() != null && !toCoreNotification.getComponentLifecycleMsg().isEmpty()) {
             Optional<TbActorMsg> actorMsg = encodingService.decode(toCoreNotification.getComponentLifecycleMsg().toByteArray());
             if (actorMsg.isPresent()) {
@@ -210,6 +222,8 @@ public class DefaultTbCoreConsumerService extends AbstractConsumerService<ToCore
                 actorContext.tellWithHighPriority(actorMsg.get());
             }
             callback.onSuccess();
+        } else if (toCoreNotification.hasRelationIndexInvalidation()) {
+            handleRelationIndexInvalidation(toCoreNotification.getRelationIndexInvalidation(), callback);
         }
         if (statsEnabled) {
             stats.log(toCoreNotification);
@@ -234,6 +248,11 @@ public class DefaultTbCoreConsumerService extends AbstractConsumerService<ToCore
     private void forwardToLocalSubMgrService(LocalSubscriptionServiceMsgProto msg, TbCallback callback) {
         if (msg.hasSubUpdate()) {
             localSubscriptionService.onSubscriptionUpdate(msg.getSubUpdate().getSessionId(), TbSubscriptionUtils.fromProto(msg.getSubUpdate()), callback);
+        } else if (msg.getSubUpdatesCount() > 0) {
+            for (TbSubscriptionUpdateProto subUpdate : msg.getSubUpdatesList()) {
+                localSubscriptionService.onSubscriptionUpdate(subUpdate.getSessionId(), TbSubscriptionUtils.fromProto(subUpdate), TbCallback.EMPTY);
+            }
+            callback.onSuccess();
         } else {
             throwNotHandled(msg, callback);
         }
@@ -21,8 +21,11 @@ import org.springframework.context.ApplicationListener;
 import org.springframework.context.event.EventListener;
 import org.thingsboard.common.util.ThingsBoardThreadFactory;
 import org.thingsboard.server.actors.ActorSystemContext;
+import org.thingsboard.server.common.data.id.EntityIdFactory;
 import org.thingsboard.server.common.msg.queue.ServiceType;
 import org.thingsboard.server.common.msg.queue.TbCallback;
+import org.thingsboard.server.dao.relation.RelationIndex;
+import org.thingsboard.server.gen.transport.TransportProtos.RelationIndexInvalidationMsgProto;
 import org.thingsboard.server.queue.TbQueueConsumer;
 import org.thingsboard.server.queue.common.TbProtoQueueMsg;
 import org.thingsboard.server.queue.discovery.PartitionChangeEvent;
@@ -51,12 +54,15 @@ public abstract class AbstractConsumerService<N extends com.google.protobuf.Gene
 
     protected final ActorSystemContext actorContext;
     protected final DataDecodingEncodingService encodingService;
+    protected final RelationIndex relationIndex;
 
     protected final TbQueueConsumer<TbProtoQueueMsg<N>> nfConsumer;
 
-    public AbstractConsumerService(ActorSystemContext actorContext, DataDecodingEncodingService encodingService, TbQueueConsumer<TbProtoQueueMsg<N>> nfConsumer) {
+    public AbstractConsumerService(ActorSystemContext actorContext, DataDecodingEncodingService encodingService,
+                                   RelationIndex relationIndex, TbQueueConsumer<TbProtoQueueMsg<N>> nfConsumer) {
         this.actorContext = actorContext;
         this.encodingService = encodingService;
+        this.relationIndex = relationIndex;
         this.nfConsumer = nfConsumer;
     }
 
@@ -145,4 +151,12 @@ public abstract class AbstractConsumerService<N extends com.google.protobuf.Gene
             notificationsConsumerExecutor.shutdownNow();
         }
     }
+
+    protected void handleRelationIndexInvalidation(RelationIndexInvalidationMsgProto proto, TbCallback callback) {
+        for (int i = 0; i < proto.getEntityTypeCount(); i++) {
+            relationIndex.invalidate(EntityIdFactory.getByTypeAndUuid(proto.getEntityType(i),
+                    new UUID(proto.getEntityIdMSB(i), proto.getEntityIdLSB(i))));
+        }
+        callback.onSuccess();
+    }
 }
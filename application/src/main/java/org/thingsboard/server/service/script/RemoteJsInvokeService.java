@@ -19,6 +19,7 @@ import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -26,6 +27,7 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.thingsboard.common.util.ThingsBoardThreadFactory;
 import org.thingsboard.server.gen.js.JsInvokeProtos;
 import org.thingsboard.server.queue.TbQueueRequestTemplate;
 import org.thingsboard.server.queue.common.TbProtoJsQueueMsg;
@@ -34,9 +36,16 @@ import org.thingsboard.server.queue.common.TbProtoQueueMsg;
 import javax.annotation.Nullable;
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -62,6 +71,12 @@ public class RemoteJsInvokeService extends AbstractJsInvokeService {
     @Value("${js.remote.stats.enabled:false}")
     private boolean statsEnabled;
 
+    @Value("${js.remote.batch.max_size:1}")
+    private int maxBatchSize;
+
+    @Value("${js.remote.batch.linger_ms:5}")
+    private long batchLingerMs;
+
     private final AtomicInteger queuePushedMsgs = new AtomicInteger(0);
     private final AtomicInteger queueInvokeMsgs = new AtomicInteger(0);
     private final AtomicInteger queueEvalMsgs = new AtomicInteger(0);
@@ -86,16 +101,29 @@ public class RemoteJsInvokeService extends AbstractJsInvokeService {
     @Autowired
     private TbQueueRequestTemplate<TbProtoJsQueueMsg<JsInvokeProtos.RemoteJsRequest>, TbProtoQueueMsg<JsInvokeProtos.RemoteJsResponse>> requestTemplate;
 
-    private Map<UUID, String> scriptIdToBodysMap = new ConcurrentHashMap<>();
+    private final Map<UUID, String> scriptIdToBodysMap = new ConcurrentHashMap<>();
+    private final Map<UUID, String> scriptIdToHashMap = new ConcurrentHashMap<>();
+
+    private final Map<String, InvokeBatch> batches = new ConcurrentHashMap<>();
+    private boolean batchingEnabled;
+    private ScheduledExecutorService batchExecutorService;
 
     @PostConstruct
     public void init() {
         super.init(maxRequestsTimeout);
         requestTemplate.init();
+        batchingEnabled = maxBatchSize > 1;
+        if (batchingEnabled) {
+            batchExecutorService = Executors.newSingleThreadScheduledExecutor(ThingsBoardThreadFactory.forName("remote-js-batch"));
+            batchExecutorService.scheduleWithFixedDelay(this::flushBatches, batchLingerMs, batchLingerMs, TimeUnit.MILLISECONDS);
+        }
     }
 
     @PreDestroy
     public void destroy() {
+        if (batchExecutorService != null) {
+            batchExecutorService.shutdownNow();
+        }
         super.stop();
         if (requestTemplate != null) {
             requestTemplate.stop();
@@ -104,18 +132,8 @@ public class RemoteJsInvokeService extends AbstractJsInvokeService {
 
     @Override
     protected ListenableFuture<UUID> doEval(UUID scriptId, String functionName, String scriptBody) {
-        JsInvokeProtos.JsCompileRequest jsRequest = JsInvokeProtos.JsCompileRequest.newBuilder()
-                .setScriptIdMSB(scriptId.getMostSignificantBits())
-                .setScriptIdLSB(scriptId.getLeastSignificantBits())
-                .setFunctionName(functionName)
-                .setScriptBody(scriptBody).build();
-
-        JsInvokeProtos.RemoteJsRequest jsRequestWrapper = JsInvokeProtos.RemoteJsRequest.newBuilder()
-                .setCompileRequest(jsRequest)
-                .build();
-
-        log.trace("Post compile request for scriptId [{}]", scriptId);
-        ListenableFuture<TbProtoQueueMsg<JsInvokeProtos.RemoteJsResponse>> future = requestTemplate.send(new TbProtoJsQueueMsg<>(UUID.randomUUID(), jsRequestWrapper));
+        String scriptHash = hash(scriptBody);
+        ListenableFuture<TbProtoQueueMsg<JsInvokeProtos.RemoteJsResponse>> future = sendCompileRequest(scriptId, functionName, scriptBody, scriptHash);
         if (maxEvalRequestsTimeout > 0) {
             future = Futures.withTimeout(future, maxEvalRequestsTimeout, TimeUnit.MILLISECONDS, timeoutExecutorService);
         }
@@ -140,6 +158,7 @@ public class RemoteJsInvokeService extends AbstractJsInvokeService {
             if (compilationResult.getSuccess()) {
                 scriptIdToNameMap.put(scriptId, functionName);
                 scriptIdToBodysMap.put(scriptId, scriptBody);
+                scriptIdToHashMap.put(scriptId, scriptHash);
                 return compiledScriptId;
             } else {
                 log.debug("[{}] Failed to compile script due to [{}]: {}", compiledScriptId, compilationResult.getErrorCode().name(), compilationResult.getErrorDetails());
@@ -150,8 +169,8 @@ public class RemoteJsInvokeService extends AbstractJsInvokeService {
 
     @Override
     protected ListenableFuture<Object> doInvokeFunction(UUID scriptId, String functionName, Object[] args) {
-        String scriptBody = scriptIdToBodysMap.get(scriptId);
-        if (scriptBody == null) {
+        String scriptHash = scriptIdToHashMap.get(scriptId);
+        if (scriptHash == null) {
             return Futures.immediateFailedFuture(new RuntimeException("No script body found for scriptId: [" + scriptId + "]!"));
         }
         JsInvokeProtos.JsInvokeRequest.Builder jsRequestBuilder = JsInvokeProtos.JsInvokeRequest.newBuilder()
@@ -159,24 +178,30 @@ public class RemoteJsInvokeService extends AbstractJsInvokeService {
                 .setScriptIdLSB(scriptId.getLeastSignificantBits())
                 .setFunctionName(functionName)
                 .setTimeout((int) maxRequestsTimeout)
-                .setScriptBody(scriptIdToBodysMap.get(scriptId));
+                .setScriptHash(scriptHash);
+        if (!batchingEnabled) {
+            // js-executors of previous versions don't know the script hash and compile the script from the body on a miss.
+            String scriptBody = scriptIdToBodysMap.get(scriptId);
+            if (scriptBody != null) {
+                jsRequestBuilder.setScriptBody(scriptBody);
+            }
+        }
 
         for (Object arg : args) {
             jsRequestBuilder.addArgs(arg.toString());
         }
+        JsInvokeProtos.JsInvokeRequest jsRequest = jsRequestBuilder.build();
 
-        JsInvokeProtos.RemoteJsRequest jsRequestWrapper = JsInvokeProtos.RemoteJsRequest.newBuilder()
-                .setInvokeRequest(jsRequestBuilder.build())
-                .build();
-
-        ListenableFuture<TbProtoQueueMsg<JsInvokeProtos.RemoteJsResponse>> future = requestTemplate.send(new TbProtoJsQueueMsg<>(UUID.randomUUID(), jsRequestWrapper));
-        if (maxRequestsTimeout > 0) {
-            future = Futures.withTimeout(future, maxRequestsTimeout, TimeUnit.MILLISECONDS, timeoutExecutorService);
-        }
-        queuePushedMsgs.incrementAndGet();
-        Futures.addCallback(future, new FutureCallback<TbProtoQueueMsg<JsInvokeProtos.RemoteJsResponse>>() {
+        ListenableFuture<JsInvokeProtos.JsInvokeResponse> future = Futures.transformAsync(sendInvokeRequest(jsRequest), invokeResult -> {
+            if (!invokeResult.getSuccess() && invokeResult.getErrorCode() == JsInvokeProtos.JsInvokeErrorCode.NOT_FOUND_ERROR) {
+                return recompileAndInvoke(scriptId, functionName, jsRequest);
+            } else {
+                return Futures.immediateFuture(invokeResult);
+            }
+        }, MoreExecutors.directExecutor());
+        Futures.addCallback(future, new FutureCallback<JsInvokeProtos.JsInvokeResponse>() {
             @Override
-            public void onSuccess(@Nullable TbProtoQueueMsg<JsInvokeProtos.RemoteJsResponse> result) {
+            public void onSuccess(@Nullable JsInvokeProtos.JsInvokeResponse result) {
                 queueInvokeMsgs.incrementAndGet();
             }
 
@@ -189,8 +214,7 @@ public class RemoteJsInvokeService extends AbstractJsInvokeService {
                 queueFailedMsgs.incrementAndGet();
             }
         }, MoreExecutors.directExecutor());
-        return Futures.transform(future, response -> {
-            JsInvokeProtos.JsInvokeResponse invokeResult = response.getValue().getInvokeResponse();
+        return Futures.transform(future, invokeResult -> {
             if (invokeResult.getSuccess()) {
                 return invokeResult.getResult();
             } else {
@@ -201,27 +225,134 @@ public class RemoteJsInvokeService extends AbstractJsInvokeService {
         }, MoreExecutors.directExecutor());
     }
 
+    private ListenableFuture<JsInvokeProtos.JsInvokeResponse> recompileAndInvoke(UUID scriptId, String functionName, JsInvokeProtos.JsInvokeRequest jsRequest) {
+        String scriptBody = scriptIdToBodysMap.get(scriptId);
+        if (scriptBody == null) {
+            return Futures.immediateFailedFuture(new RuntimeException("No script body found for scriptId: [" + scriptId + "]!"));
+        }
+        log.debug("[{}] Script [{}] is missing on the executor side, sending compile request", scriptId, jsRequest.getScriptHash());
+        ListenableFuture<TbProtoQueueMsg<JsInvokeProtos.RemoteJsResponse>> compileFuture = sendCompileRequest(scriptId, functionName, scriptBody, jsRequest.getScriptHash());
+        if (maxEvalRequestsTimeout > 0) {
+            compileFuture = Futures.withTimeout(compileFuture, maxEvalRequestsTimeout, TimeUnit.MILLISECONDS, timeoutExecutorService);
+        }
+        return Futures.transformAsync(compileFuture, response -> {
+            JsInvokeProtos.JsCompileResponse compilationResult = response.getValue().getCompileResponse();
+            if (compilationResult.getSuccess()) {
+                return sendInvokeRequest(jsRequest);
+            } else {
+                return Futures.immediateFailedFuture(new RuntimeException(compilationResult.getErrorDetails()));
+            }
+        }, MoreExecutors.directExecutor());
+    }
+
+    private ListenableFuture<TbProtoQueueMsg<JsInvokeProtos.RemoteJsResponse>> sendCompileRequest(UUID scriptId, String functionName, String scriptBody, String scriptHash) {
+        JsInvokeProtos.JsCompileRequest jsRequest = JsInvokeProtos.JsCompileRequest.newBuilder()
+                .setScriptIdMSB(scriptId.getMostSignificantBits())
+                .setScriptIdLSB(scriptId.getLeastSignificantBits())
+                .setFunctionName(functionName)
+                .setScriptBody(scriptBody)
+                .setScriptHash(scriptHash).build();
+
+        JsInvokeProtos.RemoteJsRequest jsRequestWrapper = JsInvokeProtos.RemoteJsRequest.newBuilder()
+                .setCompileRequest(jsRequest)
+                .build();
+
+        log.trace("Post compile request for scriptId [{}]", scriptId);
+        return requestTemplate.send(new TbProtoJsQueueMsg<>(getRequestKey(scriptHash), jsRequestWrapper));
+    }
+
+    private ListenableFuture<JsInvokeProtos.JsInvokeResponse> sendInvokeRequest(JsInvokeProtos.JsInvokeRequest jsRequest) {
+        queuePushedMsgs.incrementAndGet();
+        if (batchingEnabled) {
+            return batches.computeIfAbsent(jsRequest.getScriptHash(), hash -> new InvokeBatch(getRequestKey(hash))).add(jsRequest);
+        }
+        JsInvokeProtos.RemoteJsRequest jsRequestWrapper = JsInvokeProtos.RemoteJsRequest.newBuilder()
+                .setInvokeRequest(jsRequest)
+                .build();
+        return Futures.transform(sendWithTimeout(getRequestKey(jsRequest.getScriptHash()), jsRequestWrapper),
+                response -> response.getValue().getInvokeResponse(), MoreExecutors.directExecutor());
+    }
+
+    private ListenableFuture<TbProtoQueueMsg<JsInvokeProtos.RemoteJsResponse>> sendWithTimeout(UUID key, JsInvokeProtos.RemoteJsRequest jsRequestWrapper) {
+        ListenableFuture<TbProtoQueueMsg<JsInvokeProtos.RemoteJsResponse>> future = requestTemplate.send(new TbProtoJsQueueMsg<>(key, jsRequestWrapper));
+        if (maxRequestsTimeout > 0) {
+            future = Futures.withTimeout(future, maxRequestsTimeout, TimeUnit.MILLISECONDS, timeoutExecutorService);
+        }
+        return future;
+    }
+
+    /**
+     * The js-executor runs the invocations of a batch one after another and limits each of them by the invocation timeout,
+     * so the whole batch gets the max request timeout for every invocation it carries.
+     */
+    private ListenableFuture<TbProtoQueueMsg<JsInvokeProtos.RemoteJsResponse>> sendBatchWithTimeout(UUID key, JsInvokeProtos.RemoteJsRequest jsRequestWrapper, int batchSize) {
+        if (maxRequestsTimeout <= 0) {
+            return requestTemplate.send(new TbProtoJsQueueMsg<>(key, jsRequestWrapper));
+        }
+        long batchTimeout = maxRequestsTimeout * batchSize;
+        ListenableFuture<TbProtoQueueMsg<JsInvokeProtos.RemoteJsResponse>> future = requestTemplate.send(new TbProtoJsQueueMsg<>(key, jsRequestWrapper), batchTimeout);
+        return Futures.withTimeout(future, batchTimeout, TimeUnit.MILLISECONDS, timeoutExecutorService);
+    }
+
+    /**
+     * Requests that reference the same script share the same queue key, so compile requests and the invocations
+     * that follow them are routed to the same js-executor partition and hit its compiled script cache.
+     * The key is built from the full script hash, so different scripts are spread over all partitions.
+     */
+    private static UUID getRequestKey(String scriptHash) {
+        return new UUID(Long.parseUnsignedLong(scriptHash.substring(0, 16), 16), Long.parseUnsignedLong(scriptHash.substring(16, 32), 16));
+    }
+
+    private void flushBatches() {
+        for (InvokeBatch batch : batches.values()) {
+            try {
+                batch.flush();
+            } catch (Throwable t) {
+                log.warn("Failed to flush js invoke batch", t);
+            }
+        }
+    }
+
+    private static String hash(String scriptBody) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(scriptBody.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                sb.append(String.format("%02x", b));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     @Override
     protected void doRelease(UUID scriptId, String functionName) throws Exception {
         JsInvokeProtos.JsReleaseRequest jsRequest = JsInvokeProtos.JsReleaseRequest.newBuilder()
                 .setScriptIdMSB(scriptId.getMostSignificantBits())
                 .setScriptIdLSB(scriptId.getLeastSignificantBits())
-                .setFunctionName(functionName).build();
+                .setFunctionName(functionName)
+                .setScriptHash(scriptIdToHashMap.getOrDefault(scriptId, "")).build();
 
         JsInvokeProtos.RemoteJsRequest jsRequestWrapper = JsInvokeProtos.RemoteJsRequest.newBuilder()
                 .setReleaseRequest(jsRequest)
                 .build();
 
-        ListenableFuture<TbProtoQueueMsg<JsInvokeProtos.RemoteJsResponse>> future = requestTemplate.send(new TbProtoJsQueueMsg<>(UUID.randomUUID(), jsRequestWrapper));
-        if (maxRequestsTimeout > 0) {
-            future = Futures.withTimeout(future, maxRequestsTimeout, TimeUnit.MILLISECONDS, timeoutExecutorService);
-        }
-        JsInvokeProtos.RemoteJsResponse response = future.get().getValue();
+        String scriptHash = jsRequest.getScriptHash();
+        UUID key = scriptHash.isEmpty() ? UUID.randomUUID() : getRequestKey(scriptHash);
+        JsInvokeProtos.RemoteJsResponse response = sendWithTimeout(key, jsRequestWrapper).get().getValue();
 
         JsInvokeProtos.JsReleaseResponse compilationResult = response.getReleaseResponse();
         UUID compiledScriptId = new UUID(compilationResult.getScriptIdMSB(), compilationResult.getScriptIdLSB());
         if (compilationResult.getSuccess()) {
             scriptIdToBodysMap.remove(scriptId);
+            scriptIdToHashMap.remove(scriptId);
+            if (!scriptHash.isEmpty() && !scriptIdToHashMap.containsValue(scriptHash)) {
+                InvokeBatch batch = batches.remove(scriptHash);
+                if (batch != null) {
+                    batch.close();
+                }
+            }
         } else {
             log.debug("[{}] Failed to release script due", compiledScriptId);
         }
@@ -232,4 +363,74 @@ public class RemoteJsInvokeService extends AbstractJsInvokeService {
         return TimeUnit.SECONDS.toMillis(maxBlackListDurationSec);
     }
 
+    private class InvokeBatch {
+        private final UUID key;
+        private List<JsInvokeProtos.JsInvokeRequest> requests = new ArrayList<>();
+        private List<SettableFuture<JsInvokeProtos.JsInvokeResponse>> futures = new ArrayList<>();
+        private boolean closed;
+
+        private InvokeBatch(UUID key) {
+            this.key = key;
+        }
+
+        ListenableFuture<JsInvokeProtos.JsInvokeResponse> add(JsInvokeProtos.JsInvokeRequest request) {
+            SettableFuture<JsInvokeProtos.JsInvokeResponse> future = SettableFuture.create();
+            boolean full;
+            synchronized (this) {
+                requests.add(request);
+                futures.add(future);
+                full = closed || requests.size() >= maxBatchSize;
+            }
+            if (full) {
+                flush();
+            }
+            return future;
+        }
+
+        /**
+         * Sends the pending invocations. The batch is no longer flushed by the timer, so late invocations are sent right away.
+         */
+        void close() {
+            synchronized (this) {
+                closed = true;
+            }
+            flush();
+        }
+
+        void flush() {
+            List<JsInvokeProtos.JsInvokeRequest> batchRequests;
+            List<SettableFuture<JsInvokeProtos.JsInvokeResponse>> batchFutures;
+            synchronized (this) {
+                if (requests.isEmpty()) {
+                    return;
+                }
+                batchRequests = requests;
+                batchFutures = futures;
+                requests = new ArrayList<>();
+                futures = new ArrayList<>();
+            }
+            JsInvokeProtos.RemoteJsRequest jsRequestWrapper = JsInvokeProtos.RemoteJsRequest.newBuilder()
+                    .setInvokeBatchRequest(JsInvokeProtos.JsInvokeBatchRequest.newBuilder().addAllInvokeRequests(batchRequests))
+                    .build();
+            Futures.addCallback(sendBatchWithTimeout(key, jsRequestWrapper, batchRequests.size()), new FutureCallback<TbProtoQueueMsg<JsInvokeProtos.RemoteJsResponse>>() {
+                @Override
+                public void onSuccess(@Nullable TbProtoQueueMsg<JsInvokeProtos.RemoteJsResponse> result) {
+                    List<JsInvokeProtos.JsInvokeResponse> responses = result.getValue().getInvokeBatchResponse().getInvokeResponsesList();
+                    for (int i = 0; i < batchFutures.size(); i++) {
+                        if (i < responses.size()) {
+                            batchFutures.get(i).set(responses.get(i));
+                        } else {
+                            batchFutures.get(i).setException(new RuntimeException("No response for batched js invoke request!"));
+                        }
+                    }
+                }
+
+                @Override
+                public void onFailure(Throwable t) {
+                    batchFutures.forEach(f -> f.setException(t));
+                }
+            }, MoreExecutors.directExecutor());
+        }
+    }
+
 }
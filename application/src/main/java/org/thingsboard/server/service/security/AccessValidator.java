@@ -19,6 +19,7 @@ import com.google.common.base.Function;
 import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -60,6 +61,10 @@ import org.thingsboard.server.service.telemetry.exception.ToErrorResponseEntity;
 import javax.annotation.Nullable;
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.function.BiConsumer;
@@ -155,6 +160,76 @@ public class AccessValidator {
         return response;
     }
 
+    public DeferredResult<ResponseEntity> validateEntitiesAndCallback(SecurityUser currentUser, List<Operation> operations, List<EntityId> entityIds,
+                                                                      ThreeConsumer<DeferredResult<ResponseEntity>, TenantId, List<EntityId>> onSuccess) {
+        final DeferredResult<ResponseEntity> response = new DeferredResult<>();
+
+        validate(currentUser, operations, entityIds, new HttpValidationCallback(response,
+                new FutureCallback<DeferredResult<ResponseEntity>>() {
+                    @Override
+                    public void onSuccess(@Nullable DeferredResult<ResponseEntity> result) {
+                        onSuccess.accept(response, currentUser.getTenantId(), entityIds);
+                    }
+
+                    @Override
+                    public void onFailure(Throwable t) {
+                        handleError(t, response, HttpStatus.INTERNAL_SERVER_ERROR);
+                    }
+                }));
+
+        return response;
+    }
+
+    /**
+     * Validates all operations for all entities at once. Devices and assets are fetched with a single query per entity type,
+     * other entities are validated one by one. The first failed validation result is reported to the callback.
+     */
+    public void validate(SecurityUser currentUser, List<Operation> operations, List<EntityId> entityIds, FutureCallback<ValidationResult> callback) {
+        Set<DeviceId> deviceIds = new LinkedHashSet<>();
+        Set<AssetId> assetIds = new LinkedHashSet<>();
+        List<ListenableFuture<ValidationResult>> futures = new ArrayList<>();
+        for (EntityId entityId : new LinkedHashSet<>(entityIds)) {
+            switch (entityId.getEntityType()) {
+                case DEVICE:
+                    deviceIds.add(new DeviceId(entityId.getId()));
+                    break;
+                case ASSET:
+                    assetIds.add(new AssetId(entityId.getId()));
+                    break;
+                default:
+                    for (Operation operation : operations) {
+                        SettableFuture<ValidationResult> future = SettableFuture.create();
+                        validate(currentUser, operation, entityId, new FutureCallback<ValidationResult>() {
+                            @Override
+                            public void onSuccess(@Nullable ValidationResult result) {
+                                future.set(result);
+                            }
+
+                            @Override
+                            public void onFailure(Throwable t) {
+                                future.setException(t);
+                            }
+                        });
+                        futures.add(future);
+                    }
+            }
+        }
+        if (!deviceIds.isEmpty()) {
+            futures.add(validateDevices(currentUser, operations, new ArrayList<>(deviceIds)));
+        }
+        if (!assetIds.isEmpty()) {
+            futures.add(validateAssets(currentUser, operations, new ArrayList<>(assetIds)));
+        }
+        Futures.addCallback(Futures.allAsList(futures), getCallback(callback, results -> {
+            for (ValidationResult result : results) {
+                if (result.getResultCode() != ValidationResultCode.OK) {
+                    return result;
+                }
+            }
+            return ValidationResult.ok(null);
+        }), executor);
+    }
+
     public void validate(SecurityUser currentUser, Operation operation, EntityId entityId, FutureCallback<ValidationResult> callback) {
         switch (entityId.getEntityType()) {
             case DEVICE:
@@ -201,6 +276,28 @@ public class AccessValidator {
         }
     }
 
+    private ListenableFuture<ValidationResult> validateDevices(final SecurityUser currentUser, List<Operation> operations, List<DeviceId> deviceIds) {
+        if (currentUser.isSystemAdmin()) {
+            return Futures.immediateFuture(ValidationResult.accessDenied(SYSTEM_ADMINISTRATOR_IS_NOT_ALLOWED_TO_PERFORM_THIS_OPERATION));
+        }
+        ListenableFuture<List<Device>> devicesFuture = deviceService.findDevicesByTenantIdAndIdsAsync(currentUser.getTenantId(), deviceIds);
+        return Futures.transform(devicesFuture, devices -> {
+            if (devices == null || devices.size() != deviceIds.size()) {
+                return ValidationResult.entityNotFound(DEVICE_WITH_REQUESTED_ID_NOT_FOUND);
+            }
+            try {
+                for (Device device : devices) {
+                    for (Operation operation : operations) {
+                        accessControlService.checkPermission(currentUser, Resource.DEVICE, operation, device.getId(), device);
+                    }
+                }
+            } catch (ThingsboardException e) {
+                return ValidationResult.accessDenied(e.getMessage());
+            }
+            return ValidationResult.ok(devices);
+        }, executor);
+    }
+
     private void validateAsset(final SecurityUser currentUser, Operation operation, EntityId entityId, FutureCallback<ValidationResult> callback) {
         if (currentUser.isSystemAdmin()) {
             callback.onSuccess(ValidationResult.accessDenied(SYSTEM_ADMINISTRATOR_IS_NOT_ALLOWED_TO_PERFORM_THIS_OPERATION));
@@ -221,6 +318,28 @@ public class AccessValidator {
         }
     }
 
+    private ListenableFuture<ValidationResult> validateAssets(final SecurityUser currentUser, List<Operation> operations, List<AssetId> assetIds) {
+        if (currentUser.isSystemAdmin()) {
+            return Futures.immediateFuture(ValidationResult.accessDenied(SYSTEM_ADMINISTRATOR_IS_NOT_ALLOWED_TO_PERFORM_THIS_OPERATION));
+        }
+        ListenableFuture<List<Asset>> assetsFuture = assetService.findAssetsByTenantIdAndIdsAsync(currentUser.getTenantId(), assetIds);
+        return Futures.transform(assetsFuture, assets -> {
+            if (assets == null || assets.size() != assetIds.size()) {
+                return ValidationResult.entityNotFound("Asset with requested id wasn't found!");
+            }
+            try {
+                for (Asset asset : assets) {
+                    for (Operation operation : operations) {
+                        accessControlService.checkPermission(currentUser, Resource.ASSET, operation, asset.getId(), asset);
+                    }
+                }
+            } catch (ThingsboardException e) {
+                return ValidationResult.accessDenied(e.getMessage());
+            }
+            return ValidationResult.ok(assets);
+        }, executor);
+    }
+
     private void validateRuleChain(final SecurityUser currentUser, Operation operation, EntityId entityId, FutureCallback<ValidationResult> callback) {
         if (currentUser.isCustomerUser()) {
             callback.onSuccess(ValidationResult.accessDenied(CUSTOMER_USER_IS_NOT_ALLOWED_TO_PERFORM_THIS_OPERATION));
@@ -15,8 +15,10 @@
  */
 package org.thingsboard.server.service.subscription;
 
+import com.google.common.collect.Lists;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 import org.thingsboard.common.util.DonAsynchron;
@@ -53,20 +55,24 @@ import org.thingsboard.server.service.queue.TbClusterService;
 import org.thingsboard.server.service.state.DefaultDeviceStateService;
 import org.thingsboard.server.service.state.DeviceStateService;
 import org.thingsboard.server.service.telemetry.sub.SubscriptionUpdate;
+import org.thingsboard.server.service.telemetry.sub.SubscriptionUpdateData;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.function.Function;
 import java.util.function.Predicate;
 
@@ -99,6 +105,15 @@ public class DefaultSubscriptionManagerService implements SubscriptionManagerSer
     @Autowired
     private TbClusterService clusterService;
 
+    @Value("${queue.core.subscription-updates.linger-ms:0}")
+    private long subUpdatesLingerMs;
+
+    @Value("${queue.core.subscription-updates.single-update-per-msg:false}")
+    private boolean subUpdatesSingleUpdatePerMsg;
+
+    @Value("${queue.core.subscription-updates.max-batch-size:1000}")
+    private int subUpdatesMaxBatchSize;
+
     private final Map<EntityId, Set<TbSubscription>> subscriptionsByEntityId = new ConcurrentHashMap<>();
     private final Map<String, Map<Integer, TbSubscription>> subscriptionsByWsSessionId = new ConcurrentHashMap<>();
     private final ConcurrentMap<TopicPartitionInfo, Set<TbSubscription>> partitionedSubscriptions = new ConcurrentHashMap<>();
@@ -107,12 +122,19 @@ public class DefaultSubscriptionManagerService implements SubscriptionManagerSer
     private ExecutorService tsCallBackExecutor;
     private String serviceId;
     private TbQueueProducer<TbProtoQueueMsg<ToCoreNotificationMsg>> toCoreNotificationsProducer;
+    private ScheduledExecutorService subUpdatesScheduler;
+    private TbSubscriptionUpdatesBatcher subUpdatesBatcher;
 
     @PostConstruct
     public void initExecutor() {
         tsCallBackExecutor = Executors.newSingleThreadExecutor(ThingsBoardThreadFactory.forName("ts-sub-callback"));
         serviceId = serviceInfoProvider.getServiceId();
         toCoreNotificationsProducer = producerProvider.getTbCoreNotificationsMsgProducer();
+        if (subUpdatesLingerMs > 0 && !subUpdatesSingleUpdatePerMsg) {
+            subUpdatesScheduler = Executors.newSingleThreadScheduledExecutor(ThingsBoardThreadFactory.forName("sub-updates-scheduler"));
+            subUpdatesBatcher = new TbSubscriptionUpdatesBatcher(subUpdatesLingerMs, subUpdatesMaxBatchSize, subUpdatesScheduler,
+                    (targetServiceId, msg) -> toCoreNotificationsProducer.send(getNotificationsTopic(targetServiceId), msg, null));
+        }
     }
 
     @PreDestroy
@@ -120,6 +142,12 @@ public class DefaultSubscriptionManagerService implements SubscriptionManagerSer
         if (tsCallBackExecutor != null) {
             tsCallBackExecutor.shutdownNow();
         }
+        if (subUpdatesBatcher != null) {
+            subUpdatesBatcher.stop();
+        }
+        if (subUpdatesScheduler != null) {
+            subUpdatesScheduler.shutdownNow();
+        }
     }
 
     @Override
@@ -259,23 +287,60 @@ public class DefaultSubscriptionManagerService implements SubscriptionManagerSer
                                                              Function<T, List<TsKvEntry>> processFunction) {
         Set<TbSubscription> entitySubscriptions = subscriptionsByEntityId.get(entityId);
         if (entitySubscriptions != null) {
-            entitySubscriptions.stream().map(castFunction).filter(Objects::nonNull).filter(filterFunction).forEach(s -> {
+            Map<String, List<TbSubscriptionUpdateProto>> remoteUpdates = null;
+            Map<List<TsKvEntry>, SubscriptionUpdateData> sharedData = null;
+            for (TbSubscription subscription : entitySubscriptions) {
+                T s = castFunction.apply(subscription);
+                if (s == null || !filterFunction.test(s)) {
+                    continue;
+                }
                 List<TsKvEntry> subscriptionUpdate = processFunction.apply(s);
                 if (subscriptionUpdate != null && !subscriptionUpdate.isEmpty()) {
                     if (serviceId.equals(s.getServiceId())) {
-                        SubscriptionUpdate update = new SubscriptionUpdate(s.getSubscriptionId(), subscriptionUpdate);
+                        // local sessions that watch the same keys share the data, so it is serialized only once
+                        if (sharedData == null) {
+                            sharedData = new HashMap<>();
+                        }
+                        SubscriptionUpdateData data = sharedData.computeIfAbsent(subscriptionUpdate, SubscriptionUpdateData::fromTsKvEntries);
+                        SubscriptionUpdate update = new SubscriptionUpdate(s.getSubscriptionId(), data);
                         localSubscriptionService.onSubscriptionUpdate(s.getSessionId(), update, TbCallback.EMPTY);
                     } else {
-                        TopicPartitionInfo tpi = partitionService.getNotificationsTopic(ServiceType.TB_CORE, s.getServiceId());
-                        toCoreNotificationsProducer.send(tpi, toProto(s, subscriptionUpdate), null);
+                        if (remoteUpdates == null) {
+                            remoteUpdates = new HashMap<>();
+                        }
+                        remoteUpdates.computeIfAbsent(s.getServiceId(), id -> new ArrayList<>()).add(toSubUpdateProto(s, subscriptionUpdate));
                     }
                 }
-            });
+            }
+            if (remoteUpdates != null) {
+                remoteUpdates.forEach((targetServiceId, updates) -> sendSubUpdates(targetServiceId, entityId.getId(), updates));
+            }
         } else {
             log.debug("[{}] No device subscriptions to process!", entityId);
         }
     }
 
+    private void sendSubUpdates(String targetServiceId, UUID key, List<TbSubscriptionUpdateProto> updates) {
+        if (subUpdatesSingleUpdatePerMsg) {
+            // Sends one update per notification, as the core nodes of previous versions expect.
+            for (TbSubscriptionUpdateProto update : updates) {
+                toCoreNotificationsProducer.send(getNotificationsTopic(targetServiceId),
+                        TbSubscriptionUpdatesBatcher.toProto(key, Collections.singletonList(update)), null);
+            }
+        } else if (subUpdatesBatcher != null) {
+            subUpdatesBatcher.add(targetServiceId, key, updates);
+        } else {
+            // The updates caused by a single entity update are always sent together.
+            for (List<TbSubscriptionUpdateProto> batch : Lists.partition(updates, subUpdatesMaxBatchSize)) {
+                toCoreNotificationsProducer.send(getNotificationsTopic(targetServiceId), TbSubscriptionUpdatesBatcher.toProto(key, batch), null);
+            }
+        }
+    }
+
+    private TopicPartitionInfo getNotificationsTopic(String targetServiceId) {
+        return partitionService.getNotificationsTopic(ServiceType.TB_CORE, targetServiceId);
+    }
+
     private boolean isInTimeRange(TbTimeseriesSubscription subscription, long kvTime) {
         return (subscription.getStartTime() == 0 || subscription.getStartTime() <= kvTime)
                 && (subscription.getEndTime() == 0 || subscription.getEndTime() >= kvTime);
@@ -346,6 +411,13 @@ public class DefaultSubscriptionManagerService implements SubscriptionManagerSer
     }
 
     private TbProtoQueueMsg<ToCoreNotificationMsg> toProto(TbSubscription subscription, List<TsKvEntry> updates) {
+        ToCoreNotificationMsg toCoreMsg = ToCoreNotificationMsg.newBuilder().setToLocalSubscriptionServiceMsg(
+                LocalSubscriptionServiceMsgProto.newBuilder().setSubUpdate(toSubUpdateProto(subscription, updates)).build())
+                .build();
+        return new TbProtoQueueMsg<>(subscription.getEntityId().getId(), toCoreMsg);
+    }
+
+    private TbSubscriptionUpdateProto toSubUpdateProto(TbSubscription subscription, List<TsKvEntry> updates) {
         TbSubscriptionUpdateProto.Builder builder = TbSubscriptionUpdateProto.newBuilder();
 
         builder.setSessionId(subscription.getSessionId());
@@ -370,11 +442,7 @@ public class DefaultSubscriptionManagerService implements SubscriptionManagerSer
             });
             builder.addData(dataBuilder.build());
         });
-
-        ToCoreNotificationMsg toCoreMsg = ToCoreNotificationMsg.newBuilder().setToLocalSubscriptionServiceMsg(
-                LocalSubscriptionServiceMsgProto.newBuilder().setSubUpdate(builder.build()).build())
-                .build();
-        return new TbProtoQueueMsg<>(subscription.getEntityId().getId(), toCoreMsg);
+        return builder.build();
     }
 
 }
@@ -0,0 +1,120 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.subscription;
+
+import org.thingsboard.server.gen.transport.TransportProtos.LocalSubscriptionServiceMsgProto;
+import org.thingsboard.server.gen.transport.TransportProtos.TbSubscriptionUpdateProto;
+import org.thingsboard.server.gen.transport.TransportProtos.ToCoreNotificationMsg;
+import org.thingsboard.server.queue.common.TbProtoQueueMsg;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * Gathers the subscription updates for each remote core node into one notification.
+ * The notification is sent once it reaches the max batch size or once the linger time after its first update is over.
+ * Once stopped, the pending notifications are sent and new updates are sent at once.
+ */
+class TbSubscriptionUpdatesBatcher {
+
+    private final long lingerMs;
+    private final int maxBatchSize;
+    private final ScheduledExecutorService scheduler;
+    private final BiConsumer<String, TbProtoQueueMsg<ToCoreNotificationMsg>> sender;
+    private final ConcurrentMap<String, PendingSubUpdates> pendingSubUpdates = new ConcurrentHashMap<>();
+    private volatile boolean stopped;
+
+    TbSubscriptionUpdatesBatcher(long lingerMs, int maxBatchSize, ScheduledExecutorService scheduler,
+                                 BiConsumer<String, TbProtoQueueMsg<ToCoreNotificationMsg>> sender) {
+        this.lingerMs = lingerMs;
+        this.maxBatchSize = maxBatchSize;
+        this.scheduler = scheduler;
+        this.sender = sender;
+    }
+
+    void add(String targetServiceId, UUID key, List<TbSubscriptionUpdateProto> updates) {
+        PendingSubUpdates pending = pendingSubUpdates.computeIfAbsent(targetServiceId, PendingSubUpdates::new);
+        synchronized (pending) {
+            if (stopped) {
+                sender.accept(targetServiceId, toProto(key, updates));
+                return;
+            }
+            if (pending.updates.isEmpty()) {
+                pending.key = key;
+                long batchId = pending.batchId;
+                pending.lingerTask = scheduler.schedule(() -> flush(pending, batchId), lingerMs, TimeUnit.MILLISECONDS);
+            }
+            pending.updates.addAll(updates);
+            if (pending.updates.size() >= maxBatchSize) {
+                flush(pending, pending.batchId);
+            }
+        }
+    }
+
+    /**
+     * Sends the pending notifications. Has to be called before the scheduler is shut down, since it drops the linger tasks.
+     */
+    void stop() {
+        stopped = true;
+        pendingSubUpdates.values().forEach(pending -> flush(pending, pending.batchId));
+    }
+
+    private void flush(PendingSubUpdates pending, long batchId) {
+        synchronized (pending) {
+            // The linger task of a batch that was already flushed by size must not flush the next batch early.
+            if (pending.batchId != batchId || pending.updates.isEmpty()) {
+                return;
+            }
+            sender.accept(pending.targetServiceId, toProto(pending.key, pending.updates));
+            pending.updates = new ArrayList<>();
+            pending.batchId++;
+            if (pending.lingerTask != null) {
+                pending.lingerTask.cancel(false);
+                pending.lingerTask = null;
+            }
+        }
+    }
+
+    static TbProtoQueueMsg<ToCoreNotificationMsg> toProto(UUID key, List<TbSubscriptionUpdateProto> updates) {
+        LocalSubscriptionServiceMsgProto.Builder builder = LocalSubscriptionServiceMsgProto.newBuilder();
+        if (updates.size() == 1) {
+            builder.setSubUpdate(updates.get(0));
+        } else {
+            builder.addAllSubUpdates(updates);
+        }
+        ToCoreNotificationMsg toCoreMsg = ToCoreNotificationMsg.newBuilder().setToLocalSubscriptionServiceMsg(builder.build()).build();
+        return new TbProtoQueueMsg<>(key, toCoreMsg);
+    }
+
+    private static class PendingSubUpdates {
+        private final String targetServiceId;
+        private UUID key;
+        private List<TbSubscriptionUpdateProto> updates = new ArrayList<>();
+        private long batchId;
+        private ScheduledFuture<?> lingerTask;
+
+        PendingSubUpdates(String targetServiceId) {
+            this.targetServiceId = targetServiceId;
+        }
+    }
+}
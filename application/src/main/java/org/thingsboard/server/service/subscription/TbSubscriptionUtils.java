@@ -44,12 +44,12 @@ import org.thingsboard.server.gen.transport.TransportProtos.ToCoreMsg;
 import org.thingsboard.server.gen.transport.TransportProtos.TsKvProto;
 import org.thingsboard.server.service.telemetry.sub.SubscriptionErrorCode;
 import org.thingsboard.server.service.telemetry.sub.SubscriptionUpdate;
+import org.thingsboard.server.service.telemetry.sub.SubscriptionUpdateData;
 
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.TreeMap;
 import java.util.UUID;
 
 public class TbSubscriptionUtils {
@@ -140,7 +140,7 @@ public class TbSubscriptionUtils {
         if (proto.getErrorCode() > 0) {
             return new SubscriptionUpdate(proto.getSubscriptionId(), SubscriptionErrorCode.forCode(proto.getErrorCode()), proto.getErrorMsg());
         } else {
-            Map<String, List<Object>> data = new TreeMap<>();
+            SubscriptionUpdateData data = new SubscriptionUpdateData();
             proto.getDataList().forEach(v -> {
                 List<Object> values = data.computeIfAbsent(v.getKey(), k -> new ArrayList<>());
                 for (int i = 0; i < v.getTsCount(); i++) {
@@ -182,7 +182,7 @@ public class TbSubscriptionUtils {
         return ToCoreMsg.newBuilder().setToSubscriptionMgrMsg(msgBuilder.build()).build();
     }
 
-    private static TsKvProto.Builder toKeyValueProto(long ts, KvEntry attr) {
+    public static TsKvProto.Builder toKeyValueProto(long ts, KvEntry attr) {
         KeyValueProto.Builder dataBuilder = KeyValueProto.newBuilder();
         dataBuilder.setKey(attr.getKey());
         dataBuilder.setType(KeyValueType.forNumber(attr.getDataType().ordinal()));
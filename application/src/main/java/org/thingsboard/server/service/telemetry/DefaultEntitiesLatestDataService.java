@@ -0,0 +1,142 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.telemetry;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+import org.thingsboard.server.common.data.DataConstants;
+import org.thingsboard.server.common.data.id.EntityId;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.data.kv.AttributeKvEntry;
+import org.thingsboard.server.common.data.kv.DataType;
+import org.thingsboard.server.common.data.kv.KvEntry;
+import org.thingsboard.server.common.data.kv.TsKvEntry;
+import org.thingsboard.server.dao.attributes.AttributesService;
+import org.thingsboard.server.dao.timeseries.TimeseriesService;
+import org.thingsboard.server.queue.util.TbCoreComponent;
+import org.thingsboard.server.service.telemetry.exception.InvalidParametersException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+@Service
+@TbCoreComponent
+@Slf4j
+public class DefaultEntitiesLatestDataService implements EntitiesLatestDataService {
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    @Autowired
+    private TimeseriesService tsService;
+
+    @Autowired
+    private AttributesService attributesService;
+
+    @Value("${server.rest.limits.max_entities_per_bulk_request:1000}")
+    private int maxEntitiesPerRequest;
+
+    @Override
+    public void validate(EntitiesLatestDataQuery query) throws InvalidParametersException {
+        if (query == null || query.getEntityIds() == null || query.getEntityIds().isEmpty()) {
+            throw new InvalidParametersException("Entity ids are empty!");
+        }
+        if (maxEntitiesPerRequest > 0 && query.getEntityIds().size() > maxEntitiesPerRequest) {
+            throw new InvalidParametersException(String.format("Amount of entities [%d] is greater than maximum allowed [%d]",
+                    query.getEntityIds().size(), maxEntitiesPerRequest));
+        }
+        if (query.getTimeseriesKeys() == null && query.getAttributeKeys() == null) {
+            throw new InvalidParametersException("Timeseries and attribute keys are empty!");
+        }
+        if (!StringUtils.isEmpty(query.getScope()) && !Arrays.asList(DataConstants.allScopes()).contains(query.getScope())) {
+            throw new InvalidParametersException("Invalid scope: " + query.getScope());
+        }
+    }
+
+    @Override
+    public ListenableFuture<List<EntityLatestData>> findLatestData(TenantId tenantId, EntitiesLatestDataQuery query) {
+        List<EntityId> entityIds = new ArrayList<>(new LinkedHashSet<>(query.getEntityIds()));
+
+        ListenableFuture<Map<EntityId, List<TsKvEntry>>> tsFuture;
+        if (query.getTimeseriesKeys() != null) {
+            tsFuture = tsService.findLatest(tenantId, entityIds, query.getTimeseriesKeys());
+        } else {
+            tsFuture = Futures.immediateFuture(Collections.emptyMap());
+        }
+
+        List<ListenableFuture<Map<EntityId, List<AttributeKvEntry>>>> attributeFutures = new ArrayList<>();
+        if (query.getAttributeKeys() != null) {
+            if (StringUtils.isEmpty(query.getScope())) {
+                for (String scope : DataConstants.allScopes()) {
+                    attributeFutures.add(attributesService.find(tenantId, entityIds, scope, query.getAttributeKeys()));
+                }
+            } else {
+                attributeFutures.add(attributesService.find(tenantId, entityIds, query.getScope(), query.getAttributeKeys()));
+            }
+        }
+        ListenableFuture<List<Map<EntityId, List<AttributeKvEntry>>>> attributesFuture = Futures.allAsList(attributeFutures);
+
+        return Futures.whenAllSucceed(tsFuture, attributesFuture).call(() -> {
+            Map<EntityId, List<TsKvEntry>> tsData = Futures.getDone(tsFuture);
+            List<Map<EntityId, List<AttributeKvEntry>>> attributesData = Futures.getDone(attributesFuture);
+            List<EntityLatestData> result = new ArrayList<>(entityIds.size());
+            for (EntityId entityId : entityIds) {
+                Map<String, List<TsData>> timeseries = null;
+                if (query.getTimeseriesKeys() != null) {
+                    timeseries = new LinkedHashMap<>();
+                    for (TsKvEntry entry : tsData.getOrDefault(entityId, Collections.emptyList())) {
+                        Object value = query.isUseStrictDataTypes() ? getKvValue(entry) : entry.getValueAsString();
+                        timeseries.computeIfAbsent(entry.getKey(), k -> new ArrayList<>()).add(new TsData(entry.getTs(), value));
+                    }
+                }
+                List<AttributeData> attributes = null;
+                if (query.getAttributeKeys() != null) {
+                    attributes = new ArrayList<>();
+                    for (Map<EntityId, List<AttributeKvEntry>> scopeData : attributesData) {
+                        for (AttributeKvEntry attribute : scopeData.getOrDefault(entityId, Collections.emptyList())) {
+                            attributes.add(new AttributeData(attribute.getLastUpdateTs(), attribute.getKey(), getKvValue(attribute)));
+                        }
+                    }
+                }
+                result.add(new EntityLatestData(entityId, timeseries, attributes));
+            }
+            return result;
+        }, MoreExecutors.directExecutor());
+    }
+
+    private static Object getKvValue(KvEntry entry) {
+        if (entry.getDataType() == DataType.JSON) {
+            try {
+                return mapper.readTree(entry.getJsonValue().get());
+            } catch (IOException e) {
+                log.warn("Can't parse json value of the key [{}]", entry.getKey(), e);
+            }
+        }
+        return entry.getValue();
+    }
+}
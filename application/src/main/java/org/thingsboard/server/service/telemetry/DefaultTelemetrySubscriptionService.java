@@ -23,6 +23,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 import org.thingsboard.common.util.ThingsBoardThreadFactory;
+import org.thingsboard.server.actors.ruleChain.RuleNodeReadCacheManager;
 import org.thingsboard.server.common.data.id.EntityId;
 import org.thingsboard.server.common.data.id.TenantId;
 import org.thingsboard.server.common.data.kv.AttributeKvEntry;
@@ -69,6 +70,7 @@ public class DefaultTelemetrySubscriptionService implements TelemetrySubscriptio
     private final TimeseriesService tsService;
     private final TbClusterService clusterService;
     private final PartitionService partitionService;
+    private final RuleNodeReadCacheManager ruleNodeReadCacheManager;
     private Optional<SubscriptionManagerService> subscriptionManagerService;
 
     private ExecutorService tsCallBackExecutor;
@@ -77,11 +79,13 @@ public class DefaultTelemetrySubscriptionService implements TelemetrySubscriptio
     public DefaultTelemetrySubscriptionService(AttributesService attrService,
                                                TimeseriesService tsService,
                                                TbClusterService clusterService,
-                                               PartitionService partitionService) {
+                                               PartitionService partitionService,
+                                               RuleNodeReadCacheManager ruleNodeReadCacheManager) {
         this.attrService = attrService;
         this.tsService = tsService;
         this.clusterService = clusterService;
         this.partitionService = partitionService;
+        this.ruleNodeReadCacheManager = ruleNodeReadCacheManager;
     }
 
     @Autowired(required = false)
@@ -121,15 +125,17 @@ public class DefaultTelemetrySubscriptionService implements TelemetrySubscriptio
 
     @Override
     public void saveAndNotify(TenantId tenantId, EntityId entityId, List<TsKvEntry> ts, long ttl, FutureCallback<Void> callback) {
+        ruleNodeReadCacheManager.onEntityDataUpdated(entityId);
         ListenableFuture<List<Void>> saveFuture = tsService.save(tenantId, entityId, ts, ttl);
-        addMainCallback(saveFuture, callback);
+        addMainCallback(entityId, saveFuture, callback);
         addWsCallback(saveFuture, success -> onTimeSeriesUpdate(tenantId, entityId, ts));
     }
 
     @Override
     public void saveAndNotify(TenantId tenantId, EntityId entityId, String scope, List<AttributeKvEntry> attributes, FutureCallback<Void> callback) {
+        ruleNodeReadCacheManager.onEntityDataUpdated(entityId);
         ListenableFuture<List<Void>> saveFuture = attrService.save(tenantId, entityId, scope, attributes);
-        addMainCallback(saveFuture, callback);
+        addMainCallback(entityId, saveFuture, callback);
         addWsCallback(saveFuture, success -> onAttributesUpdate(tenantId, entityId, scope, attributes));
     }
 
@@ -185,15 +191,18 @@ public class DefaultTelemetrySubscriptionService implements TelemetrySubscriptio
         }
     }
 
-    private void addMainCallback(ListenableFuture<List<Void>> saveFuture, final FutureCallback<Void> callback) {
+    private void addMainCallback(EntityId entityId, ListenableFuture<List<Void>> saveFuture, final FutureCallback<Void> callback) {
         Futures.addCallback(saveFuture, new FutureCallback<List<Void>>() {
             @Override
             public void onSuccess(@Nullable List<Void> result) {
+                // Lookups that ran while the data was being saved could have cached the previous values
+                ruleNodeReadCacheManager.onEntityDataUpdated(entityId);
                 callback.onSuccess(null);
             }
 
             @Override
             public void onFailure(Throwable t) {
+                ruleNodeReadCacheManager.onEntityDataUpdated(entityId);
                 callback.onFailure(t);
             }
         }, tsCallBackExecutor);
@@ -28,6 +28,7 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 import org.springframework.web.socket.CloseStatus;
+import org.thingsboard.common.util.ThingsBoardThreadFactory;
 import org.thingsboard.server.common.data.DataConstants;
 import org.thingsboard.server.common.data.id.CustomerId;
 import org.thingsboard.server.common.data.id.EntityId;
@@ -56,14 +57,18 @@ import org.thingsboard.server.service.subscription.TbAttributeSubscriptionScope;
 import org.thingsboard.server.service.subscription.TbAttributeSubscription;
 import org.thingsboard.server.service.subscription.TbTimeseriesSubscription;
 import org.thingsboard.server.service.telemetry.cmd.AttributesSubscriptionCmd;
+import org.thingsboard.server.service.telemetry.cmd.EntitiesLatestDataCmd;
 import org.thingsboard.server.service.telemetry.cmd.GetHistoryCmd;
 import org.thingsboard.server.service.telemetry.cmd.SubscriptionCmd;
 import org.thingsboard.server.service.telemetry.cmd.TelemetryPluginCmd;
 import org.thingsboard.server.service.telemetry.cmd.TelemetryPluginCmdsWrapper;
 import org.thingsboard.server.service.telemetry.cmd.TimeseriesSubscriptionCmd;
+import org.thingsboard.server.service.telemetry.exception.InvalidParametersException;
 import org.thingsboard.server.service.telemetry.exception.UnauthorizedException;
+import org.thingsboard.server.service.telemetry.sub.EntitiesLatestDataUpdate;
 import org.thingsboard.server.service.telemetry.sub.SubscriptionErrorCode;
 import org.thingsboard.server.service.telemetry.sub.SubscriptionUpdate;
+import org.thingsboard.server.service.telemetry.sub.SubscriptionUpdateData;
 
 import javax.annotation.Nullable;
 import javax.annotation.PostConstruct;
@@ -81,6 +86,8 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
@@ -121,6 +128,9 @@ public class DefaultTelemetryWebSocketService implements TelemetryWebSocketServi
     @Autowired
     private TbServiceInfoProvider serviceInfoProvider;
 
+    @Autowired
+    private EntitiesLatestDataService entitiesLatestDataService;
+
     @Value("${server.ws.limits.max_subscriptions_per_tenant:0}")
     private int maxSubscriptionsPerTenant;
     @Value("${server.ws.limits.max_subscriptions_per_customer:0}")
@@ -129,23 +139,36 @@ public class DefaultTelemetryWebSocketService implements TelemetryWebSocketServi
     private int maxSubscriptionsPerRegularUser;
     @Value("${server.ws.limits.max_subscriptions_per_public_user:0}")
     private int maxSubscriptionsPerPublicUser;
+    @Value("${server.ws.conflation.max_frame_rate:10}")
+    private int maxConflatedFrameRate;
 
     private ConcurrentMap<TenantId, Set<String>> tenantSubscriptionsMap = new ConcurrentHashMap<>();
     private ConcurrentMap<CustomerId, Set<String>> customerSubscriptionsMap = new ConcurrentHashMap<>();
     private ConcurrentMap<UserId, Set<String>> regularUserSubscriptionsMap = new ConcurrentHashMap<>();
     private ConcurrentMap<UserId, Set<String>> publicUserSubscriptionsMap = new ConcurrentHashMap<>();
 
+    private final WsSubscriptionUpdatesConflator conflator = new WsSubscriptionUpdatesConflator();
+
     private ExecutorService executor;
+    private ScheduledExecutorService conflationScheduler;
     private String serviceId;
 
     @PostConstruct
     public void initExecutor() {
         serviceId = serviceInfoProvider.getServiceId();
         executor = Executors.newWorkStealingPool(50);
+        if (maxConflatedFrameRate > 0) {
+            long flushInterval = Math.max(1, 1000 / maxConflatedFrameRate);
+            conflationScheduler = Executors.newSingleThreadScheduledExecutor(ThingsBoardThreadFactory.forName("ws-conflation"));
+            conflationScheduler.scheduleWithFixedDelay(() -> conflator.flush(this::doSendWsMsg), flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+        }
     }
 
     @PreDestroy
     public void shutdownExecutor() {
+        if (conflationScheduler != null) {
+            conflationScheduler.shutdownNow();
+        }
         if (executor != null) {
             executor.shutdownNow();
         }
@@ -164,6 +187,7 @@ public class DefaultTelemetryWebSocketService implements TelemetryWebSocketServi
                 break;
             case CLOSED:
                 wsSessionsMap.remove(sessionId);
+                conflator.removeSession(sessionId);
                 subService.cancelAllSessionSubscriptions(sessionId);
                 processSessionClose(sessionRef);
                 break;
@@ -196,6 +220,9 @@ public class DefaultTelemetryWebSocketService implements TelemetryWebSocketServi
                 if (cmdsWrapper.getHistoryCmds() != null) {
                     cmdsWrapper.getHistoryCmds().forEach(cmd -> handleWsHistoryCmd(sessionRef, cmd));
                 }
+                if (cmdsWrapper.getLatestDataCmds() != null) {
+                    cmdsWrapper.getLatestDataCmds().forEach(cmd -> handleWsLatestDataCmd(sessionRef, cmd));
+                }
             }
         } catch (IOException e) {
             log.warn("Failed to decode subscription cmd: {}", e.getMessage(), e);
@@ -356,6 +383,7 @@ public class DefaultTelemetryWebSocketService implements TelemetryWebSocketServi
                         .allKeys(false)
                         .keyStates(subState)
                         .scope(scope).build();
+                addConflation(sessionRef, cmd);
                 subService.addSubscription(sub);
             }
 
@@ -431,6 +459,61 @@ public class DefaultTelemetryWebSocketService implements TelemetryWebSocketServi
                 on(r -> Futures.addCallback(tsService.findAll(sessionRef.getSecurityCtx().getTenantId(), entityId, queries), callback, executor), callback::onFailure));
     }
 
+    private void handleWsLatestDataCmd(TelemetryWebSocketSessionRef sessionRef, EntitiesLatestDataCmd cmd) {
+        String sessionId = sessionRef.getSessionId();
+        log.debug(PROCESSING_MSG, sessionId, cmd);
+        if (!wsSessionsMap.containsKey(sessionId)) {
+            log.warn("[{}] Session meta data not found. ", sessionId);
+            sendWsMsg(sessionRef, new SubscriptionUpdate(cmd.getCmdId(), SubscriptionErrorCode.INTERNAL_ERROR,
+                    SESSION_META_DATA_NOT_FOUND));
+            return;
+        }
+        try {
+            entitiesLatestDataService.validate(cmd);
+        } catch (InvalidParametersException e) {
+            sendWsMsg(sessionRef, new SubscriptionUpdate(cmd.getCmdId(), SubscriptionErrorCode.BAD_REQUEST, e.getMessage()));
+            return;
+        }
+        List<Operation> operations = new ArrayList<>();
+        if (cmd.getTimeseriesKeys() != null) {
+            operations.add(Operation.READ_TELEMETRY);
+        }
+        if (cmd.getAttributeKeys() != null) {
+            operations.add(Operation.READ_ATTRIBUTES);
+        }
+
+        FutureCallback<List<EntityLatestData>> callback = new FutureCallback<List<EntityLatestData>>() {
+            @Override
+            public void onSuccess(List<EntityLatestData> data) {
+                EntitiesLatestDataUpdate update = new EntitiesLatestDataUpdate(cmd.getCmdId(), data);
+                executor.submit(() -> {
+                    try {
+                        msgEndpoint.send(sessionRef, cmd.getCmdId(), jsonMapper.writeValueAsString(update));
+                    } catch (JsonProcessingException e) {
+                        log.warn("[{}] Failed to encode reply: {}", sessionId, cmd.getCmdId(), e);
+                    } catch (IOException e) {
+                        log.warn("[{}] Failed to send reply: {}", sessionId, cmd.getCmdId(), e);
+                    }
+                });
+            }
+
+            @Override
+            public void onFailure(Throwable e) {
+                SubscriptionUpdate update;
+                if (UnauthorizedException.class.isInstance(e)) {
+                    update = new SubscriptionUpdate(cmd.getCmdId(), SubscriptionErrorCode.UNAUTHORIZED,
+                            SubscriptionErrorCode.UNAUTHORIZED.getDefaultMsg());
+                } else {
+                    update = new SubscriptionUpdate(cmd.getCmdId(), SubscriptionErrorCode.INTERNAL_ERROR,
+                            FAILED_TO_FETCH_DATA);
+                }
+                sendWsMsg(sessionRef, update);
+            }
+        };
+        accessValidator.validate(sessionRef.getSecurityCtx(), operations, cmd.getEntityIds(),
+                on(r -> Futures.addCallback(entitiesLatestDataService.findLatestData(sessionRef.getSecurityCtx().getTenantId(), cmd), callback, executor), callback::onFailure));
+    }
+
     private void handleWsAttributesSubscription(TelemetryWebSocketSessionRef sessionRef,
                                                 AttributesSubscriptionCmd cmd, String sessionId, EntityId entityId) {
         FutureCallback<List<AttributeKvEntry>> callback = new FutureCallback<List<AttributeKvEntry>>() {
@@ -453,6 +536,7 @@ public class DefaultTelemetryWebSocketService implements TelemetryWebSocketServi
                         .allKeys(true)
                         .keyStates(subState)
                         .scope(scope).build();
+                addConflation(sessionRef, cmd);
                 subService.addSubscription(sub);
             }
 
@@ -534,6 +618,7 @@ public class DefaultTelemetryWebSocketService implements TelemetryWebSocketServi
                         .entityId(entityId)
                         .allKeys(true)
                         .keyStates(subState).build();
+                addConflation(sessionRef, cmd);
                 subService.addSubscription(sub);
             }
 
@@ -571,6 +656,7 @@ public class DefaultTelemetryWebSocketService implements TelemetryWebSocketServi
                         .entityId(entityId)
                         .allKeys(false)
                         .keyStates(subState).build();
+                addConflation(sessionRef, cmd);
                 subService.addSubscription(sub);
             }
 
@@ -591,8 +677,19 @@ public class DefaultTelemetryWebSocketService implements TelemetryWebSocketServi
     private void unsubscribe(TelemetryWebSocketSessionRef sessionRef, SubscriptionCmd cmd, String sessionId) {
         if (cmd.getEntityId() == null || cmd.getEntityId().isEmpty()) {
             subService.cancelAllSessionSubscriptions(sessionId);
+            conflator.removeSession(sessionId);
         } else {
             subService.cancelSubscription(sessionId, cmd.getCmdId());
+            conflator.removeSubscription(sessionId, cmd.getCmdId());
+        }
+    }
+
+    /**
+     * Called after the initial data is sent, so only the subsequent updates are conflated.
+     */
+    private void addConflation(TelemetryWebSocketSessionRef sessionRef, SubscriptionCmd cmd) {
+        if (conflationScheduler != null && cmd.getConflationLimit() > 0) {
+            conflator.addSubscription(sessionRef, cmd.getCmdId(), cmd.getConflationLimit());
         }
     }
 
@@ -620,9 +717,13 @@ public class DefaultTelemetryWebSocketService implements TelemetryWebSocketServi
     }
 
     private void sendWsMsg(TelemetryWebSocketSessionRef sessionRef, SubscriptionUpdate update) {
+        conflator.send(sessionRef, update, this::doSendWsMsg);
+    }
+
+    private void doSendWsMsg(TelemetryWebSocketSessionRef sessionRef, SubscriptionUpdate update) {
         executor.submit(() -> {
             try {
-                msgEndpoint.send(sessionRef, update.getSubscriptionId(), jsonMapper.writeValueAsString(update));
+                msgEndpoint.send(sessionRef, update.getSubscriptionId(), toJson(update));
             } catch (JsonProcessingException e) {
                 log.warn("[{}] Failed to encode reply: {}", sessionRef.getSessionId(), update, e);
             } catch (IOException e) {
@@ -631,6 +732,15 @@ public class DefaultTelemetryWebSocketService implements TelemetryWebSocketServi
         });
     }
 
+    private static String toJson(SubscriptionUpdate update) throws JsonProcessingException {
+        if (update.getErrorCode() == 0 && update.getData() instanceof SubscriptionUpdateData) {
+            return "{\"subscriptionId\":" + update.getSubscriptionId() + ",\"errorCode\":0,\"errorMsg\":null,"
+                    + ((SubscriptionUpdateData) update.getData()).toJsonFields(jsonMapper) + "}";
+        } else {
+            return jsonMapper.writeValueAsString(update);
+        }
+    }
+
     private static Optional<Set<String>> getKeys(TelemetryPluginCmd cmd) {
         if (!StringUtils.isEmpty(cmd.getKeys())) {
             Set<String> keys = new HashSet<>();
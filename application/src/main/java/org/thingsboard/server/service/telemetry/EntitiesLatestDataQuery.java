@@ -0,0 +1,36 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.telemetry;
+
+import lombok.Data;
+import org.thingsboard.server.common.data.id.EntityId;
+
+import java.util.List;
+
+/**
+ * Latest telemetry and attributes of several entities, fetched with a single request.
+ * Timeseries or attributes are not fetched if the corresponding keys are null, and all keys are fetched if the keys are empty.
+ */
+@Data
+public class EntitiesLatestDataQuery {
+
+    private List<EntityId> entityIds;
+    private List<String> timeseriesKeys;
+    private List<String> attributeKeys;
+    private String scope;
+    private boolean useStrictDataTypes;
+
+}
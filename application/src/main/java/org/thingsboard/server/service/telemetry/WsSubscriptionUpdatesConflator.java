@@ -0,0 +1,141 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.telemetry;
+
+import org.thingsboard.server.service.telemetry.sub.SubscriptionUpdate;
+import org.thingsboard.server.service.telemetry.sub.SubscriptionUpdateData;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.BiConsumer;
+
+/**
+ * Merges pending updates of the conflated subscriptions by key until the next flush.
+ * Each key keeps up to the configured number of the latest values.
+ */
+class WsSubscriptionUpdatesConflator {
+
+    private final ConcurrentMap<String, SessionUpdates> sessions = new ConcurrentHashMap<>();
+
+    void addSubscription(TelemetryWebSocketSessionRef sessionRef, int subscriptionId, int maxValuesPerKey) {
+        SessionUpdates sessionUpdates = sessions.computeIfAbsent(sessionRef.getSessionId(), id -> new SessionUpdates(sessionRef));
+        synchronized (sessionUpdates) {
+            sessionUpdates.limits.put(subscriptionId, maxValuesPerKey);
+        }
+    }
+
+    void removeSubscription(String sessionId, int subscriptionId) {
+        SessionUpdates sessionUpdates = sessions.get(sessionId);
+        if (sessionUpdates != null) {
+            synchronized (sessionUpdates) {
+                sessionUpdates.limits.remove(subscriptionId);
+                sessionUpdates.pending.remove(subscriptionId);
+                sessionUpdates.merged.remove(subscriptionId);
+            }
+        }
+    }
+
+    void removeSession(String sessionId) {
+        sessions.remove(sessionId);
+    }
+
+    /**
+     * Sends the update at once if the subscription is not conflated, otherwise keeps it until the next flush.
+     * Errors are never conflated: the pending data of the subscription is sent before the error.
+     */
+    void send(TelemetryWebSocketSessionRef sessionRef, SubscriptionUpdate update, BiConsumer<TelemetryWebSocketSessionRef, SubscriptionUpdate> sender) {
+        SessionUpdates sessionUpdates = sessions.get(sessionRef.getSessionId());
+        if (sessionUpdates == null) {
+            sender.accept(sessionRef, update);
+        } else if (update.getErrorCode() != 0 || update.getData() == null) {
+            SubscriptionUpdate pending;
+            synchronized (sessionUpdates) {
+                pending = sessionUpdates.poll(update.getSubscriptionId());
+            }
+            if (pending != null) {
+                sender.accept(sessionRef, pending);
+            }
+            sender.accept(sessionRef, update);
+        } else if (!add(sessionUpdates, update)) {
+            sender.accept(sessionRef, update);
+        }
+    }
+
+    private boolean add(SessionUpdates sessionUpdates, SubscriptionUpdate update) {
+        synchronized (sessionUpdates) {
+            Integer limit = sessionUpdates.limits.get(update.getSubscriptionId());
+            if (limit == null) {
+                return false;
+            }
+            int subscriptionId = update.getSubscriptionId();
+            SubscriptionUpdate pending = sessionUpdates.pending.putIfAbsent(subscriptionId, update);
+            if (pending != null) {
+                // the first pending update may share its data with other sessions, so it is copied on the second update
+                SubscriptionUpdateData merged = sessionUpdates.merged.computeIfAbsent(subscriptionId, id -> new SubscriptionUpdateData(pending.getData()));
+                update.getData().forEach((key, values) -> {
+                    List<Object> mergedValues = merged.computeIfAbsent(key, k -> new ArrayList<>());
+                    mergedValues.addAll(values);
+                    if (mergedValues.size() > limit) {
+                        mergedValues.subList(0, mergedValues.size() - limit).clear();
+                    }
+                });
+            }
+        }
+        return true;
+    }
+
+    void flush(BiConsumer<TelemetryWebSocketSessionRef, SubscriptionUpdate> sender) {
+        for (SessionUpdates sessionUpdates : sessions.values()) {
+            List<SubscriptionUpdate> updates;
+            synchronized (sessionUpdates) {
+                if (sessionUpdates.pending.isEmpty()) {
+                    continue;
+                }
+                updates = new ArrayList<>(sessionUpdates.pending.size());
+                sessionUpdates.pending.forEach((subscriptionId, update) -> {
+                    SubscriptionUpdateData merged = sessionUpdates.merged.get(subscriptionId);
+                    updates.add(merged != null ? new SubscriptionUpdate(subscriptionId, merged) : update);
+                });
+                sessionUpdates.pending.clear();
+                sessionUpdates.merged.clear();
+            }
+            updates.forEach(update -> sender.accept(sessionUpdates.sessionRef, update));
+        }
+    }
+
+    private static class SessionUpdates {
+        private final TelemetryWebSocketSessionRef sessionRef;
+        private final Map<Integer, Integer> limits = new HashMap<>();
+        private final Map<Integer, SubscriptionUpdate> pending = new LinkedHashMap<>();
+        private final Map<Integer, SubscriptionUpdateData> merged = new HashMap<>();
+
+        SessionUpdates(TelemetryWebSocketSessionRef sessionRef) {
+            this.sessionRef = sessionRef;
+        }
+
+        SubscriptionUpdate poll(int subscriptionId) {
+            SubscriptionUpdate update = pending.remove(subscriptionId);
+            SubscriptionUpdateData merged = this.merged.remove(subscriptionId);
+            return merged != null ? new SubscriptionUpdate(subscriptionId, merged) : update;
+        }
+    }
+
+}
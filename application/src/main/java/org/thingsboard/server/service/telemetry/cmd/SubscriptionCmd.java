@@ -31,6 +31,10 @@ public abstract class SubscriptionCmd implements TelemetryPluginCmd {
     private String keys;
     private String scope;
     private boolean unsubscribe;
+    /**
+     * Max number of the latest values per key that are merged between the frames of the subscription. 0 disables conflation.
+     */
+    private int conflationLimit;
 
     public abstract TelemetryFeature getType();
 
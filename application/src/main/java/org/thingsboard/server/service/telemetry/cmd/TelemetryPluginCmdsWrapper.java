@@ -28,6 +28,8 @@ public class TelemetryPluginCmdsWrapper {
 
     private List<GetHistoryCmd> historyCmds;
 
+    private List<EntitiesLatestDataCmd> latestDataCmds;
+
     public TelemetryPluginCmdsWrapper() {
         super();
     }
@@ -55,4 +57,12 @@ public class TelemetryPluginCmdsWrapper {
     public void setHistoryCmds(List<GetHistoryCmd> historyCmds) {
         this.historyCmds = historyCmds;
     }
+
+    public List<EntitiesLatestDataCmd> getLatestDataCmds() {
+        return latestDataCmds;
+    }
+
+    public void setLatestDataCmds(List<EntitiesLatestDataCmd> latestDataCmds) {
+        this.latestDataCmds = latestDataCmds;
+    }
 }
@@ -17,11 +17,9 @@ package org.thingsboard.server.service.telemetry.sub;
 
 import org.thingsboard.server.common.data.kv.TsKvEntry;
 
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-import java.util.TreeMap;
 import java.util.stream.Collectors;
 
 public class SubscriptionUpdate {
@@ -32,18 +30,7 @@ public class SubscriptionUpdate {
     private Map<String, List<Object>> data;
 
     public SubscriptionUpdate(int subscriptionId, List<TsKvEntry> data) {
-        super();
-        this.subscriptionId = subscriptionId;
-        this.data = new TreeMap<>();
-        if (data != null) {
-            for (TsKvEntry tsEntry : data) {
-                List<Object> values = this.data.computeIfAbsent(tsEntry.getKey(), k -> new ArrayList<>());
-                Object[] value = new Object[2];
-                value[0] = tsEntry.getTs();
-                value[1] = tsEntry.getValueAsString();
-                values.add(value);
-            }
-        }
+        this(subscriptionId, SubscriptionUpdateData.fromTsKvEntries(data));
     }
 
     public SubscriptionUpdate(int subscriptionId, Map<String, List<Object>> data) {
@@ -74,6 +61,8 @@ public class SubscriptionUpdate {
     public Map<String, Long> getLatestValues() {
         if (data == null) {
             return Collections.emptyMap();
+        } else if (data instanceof SubscriptionUpdateData) {
+            return ((SubscriptionUpdateData) data).getLatestValues();
         } else {
             return data.entrySet().stream().collect(Collectors.toMap(Map.Entry::getKey, e -> {
                 List<Object> data = e.getValue();
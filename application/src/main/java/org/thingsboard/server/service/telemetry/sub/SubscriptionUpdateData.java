@@ -0,0 +1,79 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.telemetry.sub;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.thingsboard.server.common.data.kv.TsKvEntry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Values of the subscription update by key. The same instance may be shared by the updates of several subscriptions,
+ * so it is serialized to JSON only once and must not be modified after the update is created.
+ */
+public class SubscriptionUpdateData extends TreeMap<String, List<Object>> {
+
+    private transient volatile String jsonFields;
+
+    public SubscriptionUpdateData() {
+        super();
+    }
+
+    public SubscriptionUpdateData(Map<String, List<Object>> data) {
+        super();
+        data.forEach((key, values) -> put(key, new ArrayList<>(values)));
+    }
+
+    public static SubscriptionUpdateData fromTsKvEntries(List<TsKvEntry> data) {
+        SubscriptionUpdateData result = new SubscriptionUpdateData();
+        if (data != null) {
+            for (TsKvEntry tsEntry : data) {
+                List<Object> values = result.computeIfAbsent(tsEntry.getKey(), k -> new ArrayList<>());
+                Object[] value = new Object[2];
+                value[0] = tsEntry.getTs();
+                value[1] = tsEntry.getValueAsString();
+                values.add(value);
+            }
+        }
+        return result;
+    }
+
+    public Map<String, Long> getLatestValues() {
+        Map<String, Long> latestValues = new TreeMap<>();
+        forEach((key, values) -> {
+            Object[] latest = (Object[]) values.get(values.size() - 1);
+            latestValues.put(key, (long) latest[0]);
+        });
+        return latestValues;
+    }
+
+    /**
+     * @return the "data" and "latestValues" fields of the serialized {@link SubscriptionUpdate}
+     */
+    public String toJsonFields(ObjectMapper mapper) throws JsonProcessingException {
+        String result = jsonFields;
+        if (result == null) {
+            result = "\"data\":" + mapper.writeValueAsString(this) + ",\"latestValues\":" + mapper.writeValueAsString(getLatestValues());
+            jsonFields = result;
+        }
+        return result;
+    }
+
+}
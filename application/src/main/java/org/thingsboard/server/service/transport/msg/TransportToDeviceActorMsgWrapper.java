@@ -50,4 +50,9 @@ public class TransportToDeviceActorMsgWrapper implements TbActorMsg, DeviceAware
     public MsgType getMsgType() {
         return MsgType.TRANSPORT_TO_DEVICE_ACTOR_MSG;
     }
+
+    @Override
+    public void onRejected() {
+        callback.onFailure(new RuntimeException("Message is rejected by the full actor mailbox!"));
+    }
 }
@@ -0,0 +1,62 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.actors;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.thingsboard.rule.engine.action.TbCreateAlarmNode;
+import org.thingsboard.rule.engine.metadata.TbGetTelemetryNode;
+import org.thingsboard.rule.engine.rest.TbRestApiCallNode;
+
+public class ActorSystemContextTest {
+
+    @Test
+    public void testOnlyParallelizableNodesAreProcessedByMultipleActors() {
+        ActorSystemContext ctx = createContext(4, "");
+
+        Assert.assertEquals(4, ctx.getRuleNodeParallelism(TbRestApiCallNode.class.getName()));
+        Assert.assertEquals(1, ctx.getRuleNodeParallelism(TbCreateAlarmNode.class.getName()));
+        Assert.assertEquals(1, ctx.getRuleNodeParallelism("org.thingsboard.rule.engine.UnknownNode"));
+    }
+
+    @Test
+    public void testParallelismIsOverriddenPerType() {
+        ActorSystemContext ctx = createContext(2, "TbRestApiCallNode:8, " + TbCreateAlarmNode.class.getName() + ":8");
+
+        Assert.assertEquals(8, ctx.getRuleNodeParallelism(TbRestApiCallNode.class.getName()));
+        Assert.assertEquals(2, ctx.getRuleNodeParallelism(TbGetTelemetryNode.class.getName()));
+        Assert.assertEquals(1, ctx.getRuleNodeParallelism(TbCreateAlarmNode.class.getName()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidPerTypeEntryIsRejected() {
+        createContext(1, "TbRestApiCallNode:eight");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNonPositivePerTypeEntryIsRejected() {
+        createContext(1, "TbRestApiCallNode:0");
+    }
+
+    private ActorSystemContext createContext(int defaultParallelism, String perType) {
+        ActorSystemContext ctx = new ActorSystemContext();
+        ReflectionTestUtils.setField(ctx, "ruleNodeDefaultParallelism", defaultParallelism);
+        ReflectionTestUtils.setField(ctx, "ruleNodeParallelismPerType", perType);
+        ctx.initRuleNodeParallelism();
+        return ctx;
+    }
+}
@@ -0,0 +1,260 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.actors.ruleChain;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.thingsboard.server.common.data.alarm.Alarm;
+import org.thingsboard.server.common.data.alarm.AlarmSeverity;
+import org.thingsboard.server.common.data.alarm.AlarmStatus;
+import org.thingsboard.server.common.data.id.AlarmId;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.id.EntityId;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.data.plugin.ComponentLifecycleEvent;
+import org.thingsboard.server.common.msg.queue.ServiceQueue;
+import org.thingsboard.server.common.msg.queue.ServiceQueueKey;
+import org.thingsboard.server.common.msg.queue.ServiceType;
+import org.thingsboard.server.common.msg.queue.TopicPartitionInfo;
+import org.thingsboard.server.dao.alarm.AlarmChangedEvent;
+import org.thingsboard.server.dao.alarm.AlarmService;
+import org.thingsboard.server.queue.discovery.PartitionChangeEvent;
+import org.thingsboard.server.queue.discovery.PartitionService;
+import org.thingsboard.server.service.queue.TbClusterService;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@Slf4j
+public class DefaultRuleEngineAlarmCacheTest {
+
+    private static final String TYPE = "High Temperature";
+
+    private final TenantId tenantId = new TenantId(UUID.randomUUID());
+    private final DeviceId deviceId = new DeviceId(UUID.randomUUID());
+
+    private AlarmService alarmService;
+    private PartitionService partitionService;
+    private TbClusterService clusterService;
+    private DefaultRuleEngineAlarmCache cache;
+
+    @Before
+    public void before() {
+        alarmService = Mockito.mock(AlarmService.class);
+        partitionService = Mockito.mock(PartitionService.class);
+        clusterService = Mockito.mock(TbClusterService.class);
+        mockPartition(true);
+        cache = createCache(true);
+    }
+
+    @Test
+    public void testRepeatedAlarmsAreServedFromCache() {
+        int devices = 100;
+        int messagesPerDevice = 50;
+
+        long uncachedLookups = runRepeatedAlarmWorkload(createCache(false), devices, messagesPerDevice);
+        long cachedLookups = runRepeatedAlarmWorkload(createCache(true), devices, messagesPerDevice);
+
+        log.info("Repeated alarm workload of [{}] messages: [{}] database lookups without cache, [{}] with cache",
+                devices * messagesPerDevice, uncachedLookups, cachedLookups);
+        Assert.assertEquals(devices * messagesPerDevice, uncachedLookups);
+        Assert.assertEquals(devices, cachedLookups);
+    }
+
+    @Test
+    public void testConcurrentLookupsAreCoalesced() throws Exception {
+        Alarm alarm = alarm(deviceId, AlarmStatus.ACTIVE_UNACK);
+        SettableFuture<Alarm> dbResult = SettableFuture.create();
+        when(alarmService.findLatestByOriginatorAndType(tenantId, deviceId, TYPE)).thenReturn(dbResult);
+
+        ListenableFuture<Alarm> first = cache.findLatestByOriginatorAndType(tenantId, deviceId, TYPE);
+        ListenableFuture<Alarm> second = cache.findLatestByOriginatorAndType(tenantId, deviceId, TYPE);
+        dbResult.set(alarm);
+
+        Assert.assertEquals(alarm, first.get());
+        Assert.assertEquals(alarm, second.get());
+        Assert.assertNotSame(first.get(), second.get());
+        Assert.assertEquals(alarm, cache.findLatestByOriginatorAndType(tenantId, deviceId, TYPE).get());
+        verify(alarmService, times(1)).findLatestByOriginatorAndType(tenantId, deviceId, TYPE);
+        Assert.assertEquals(2, cache.getHitCount());
+        Assert.assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void testSavedAlarmReplacesCachedAlarm() throws Exception {
+        when(alarmService.findLatestByOriginatorAndType(tenantId, deviceId, TYPE)).thenReturn(Futures.immediateFuture(null));
+        Assert.assertNull(cache.findLatestByOriginatorAndType(tenantId, deviceId, TYPE).get());
+
+        Alarm alarm = alarm(deviceId, AlarmStatus.ACTIVE_UNACK);
+        cache.onAlarmSaved(tenantId, alarm);
+        alarm.setSeverity(AlarmSeverity.WARNING);
+
+        Alarm cached = cache.findLatestByOriginatorAndType(tenantId, deviceId, TYPE).get();
+        Assert.assertEquals(alarm.getId(), cached.getId());
+        Assert.assertEquals(AlarmSeverity.CRITICAL, cached.getSeverity());
+        verify(alarmService, times(1)).findLatestByOriginatorAndType(tenantId, deviceId, TYPE);
+    }
+
+    @Test
+    public void testNotificationEvictsCachedAlarm() throws Exception {
+        Alarm alarm = alarm(deviceId, AlarmStatus.ACTIVE_UNACK);
+        when(alarmService.findLatestByOriginatorAndType(tenantId, deviceId, TYPE)).thenReturn(Futures.immediateFuture(alarm));
+        cache.findLatestByOriginatorAndType(tenantId, deviceId, TYPE).get();
+
+        cache.onAlarmStateChange(tenantId, alarm.getId(), ComponentLifecycleEvent.UPDATED);
+        cache.findLatestByOriginatorAndType(tenantId, deviceId, TYPE).get();
+
+        verify(alarmService, times(2)).findLatestByOriginatorAndType(tenantId, deviceId, TYPE);
+        verify(alarmService, never()).findAlarmByIdAsync(any(TenantId.class), any(AlarmId.class));
+    }
+
+    @Test
+    public void testNotificationOfUnknownAlarmEvictsItsOriginator() throws Exception {
+        when(alarmService.findLatestByOriginatorAndType(tenantId, deviceId, TYPE)).thenReturn(Futures.immediateFuture(null));
+        cache.findLatestByOriginatorAndType(tenantId, deviceId, TYPE).get();
+
+        Alarm created = alarm(deviceId, AlarmStatus.ACTIVE_UNACK);
+        when(alarmService.findAlarmByIdAsync(tenantId, created.getId())).thenReturn(Futures.immediateFuture(created));
+        cache.onAlarmStateChange(tenantId, created.getId(), ComponentLifecycleEvent.CREATED);
+        cache.findLatestByOriginatorAndType(tenantId, deviceId, TYPE).get();
+
+        verify(alarmService, times(2)).findLatestByOriginatorAndType(tenantId, deviceId, TYPE);
+    }
+
+    @Test
+    public void testRemoteOriginatorsAreNotCached() throws Exception {
+        mockPartition(false);
+        Alarm alarm = alarm(deviceId, AlarmStatus.ACTIVE_UNACK);
+        when(alarmService.findLatestByOriginatorAndType(tenantId, deviceId, TYPE)).thenReturn(Futures.immediateFuture(alarm));
+
+        cache.findLatestByOriginatorAndType(tenantId, deviceId, TYPE).get();
+        cache.onAlarmSaved(tenantId, alarm);
+        cache.findLatestByOriginatorAndType(tenantId, deviceId, TYPE).get();
+
+        verify(alarmService, times(2)).findLatestByOriginatorAndType(tenantId, deviceId, TYPE);
+    }
+
+    @Test
+    public void testAlarmChangeEvictsLocalOriginator() throws Exception {
+        Alarm alarm = alarm(deviceId, AlarmStatus.ACTIVE_UNACK);
+        when(alarmService.findLatestByOriginatorAndType(tenantId, deviceId, TYPE)).thenReturn(Futures.immediateFuture(alarm));
+        cache.findLatestByOriginatorAndType(tenantId, deviceId, TYPE).get();
+
+        cache.onAlarmChanged(new AlarmChangedEvent(this, tenantId, alarm, true));
+        cache.findLatestByOriginatorAndType(tenantId, deviceId, TYPE).get();
+
+        verify(alarmService, times(2)).findLatestByOriginatorAndType(tenantId, deviceId, TYPE);
+        verify(clusterService, never()).onEntityStateChange(any(TenantId.class), any(EntityId.class), any(ComponentLifecycleEvent.class));
+    }
+
+    @Test
+    public void testAlarmChangeOfRemoteOriginatorIsBroadcast() {
+        mockPartition(false);
+        Alarm alarm = alarm(deviceId, AlarmStatus.CLEARED_UNACK);
+
+        cache.onAlarmChanged(new AlarmChangedEvent(this, tenantId, alarm, false));
+        cache.onAlarmChanged(new AlarmChangedEvent(this, tenantId, alarm, true));
+
+        verify(clusterService).onEntityStateChange(tenantId, alarm.getId(), ComponentLifecycleEvent.UPDATED);
+        verify(clusterService).onEntityStateChange(tenantId, alarm.getId(), ComponentLifecycleEvent.DELETED);
+    }
+
+    @Test
+    public void testPartitionChangeEvictsRemoteOriginators() throws Exception {
+        Alarm alarm = alarm(deviceId, AlarmStatus.ACTIVE_UNACK);
+        when(alarmService.findLatestByOriginatorAndType(tenantId, deviceId, TYPE)).thenReturn(Futures.immediateFuture(alarm));
+        cache.findLatestByOriginatorAndType(tenantId, deviceId, TYPE).get();
+
+        mockPartition(false);
+        cache.onPartitionChangeEvent(new PartitionChangeEvent(this, new ServiceQueueKey(new ServiceQueue(ServiceType.TB_RULE_ENGINE), tenantId), Collections.emptySet()));
+        mockPartition(true);
+        cache.findLatestByOriginatorAndType(tenantId, deviceId, TYPE).get();
+
+        verify(alarmService, times(2)).findLatestByOriginatorAndType(tenantId, deviceId, TYPE);
+    }
+
+    /**
+     * Emulates the create alarm rule node that receives the same alarm condition from each device over and over.
+     *
+     * @return number of the latest alarm lookups passed to the database.
+     */
+    private long runRepeatedAlarmWorkload(DefaultRuleEngineAlarmCache cache, int devices, int messagesPerDevice) {
+        AlarmService alarmService = Mockito.mock(AlarmService.class);
+        ReflectionTestUtils.setField(cache, "alarmService", alarmService);
+        Map<EntityId, Alarm> db = new HashMap<>();
+        AtomicInteger lookups = new AtomicInteger();
+        when(alarmService.findLatestByOriginatorAndType(eq(tenantId), any(EntityId.class), anyString()))
+                .thenAnswer(invocation -> {
+                    lookups.incrementAndGet();
+                    return Futures.immediateFuture(db.get((EntityId) invocation.getArguments()[1]));
+                });
+
+        for (int i = 0; i < messagesPerDevice; i++) {
+            for (int d = 0; d < devices; d++) {
+                EntityId originator = new DeviceId(new UUID(0, d));
+                Alarm existing = Futures.getUnchecked(cache.findLatestByOriginatorAndType(tenantId, originator, TYPE));
+                Alarm saved = existing == null || existing.getStatus().isCleared() ? alarm(originator, AlarmStatus.ACTIVE_UNACK) : existing;
+                saved.setEndTs(System.currentTimeMillis());
+                db.put(originator, new Alarm(saved));
+                cache.onAlarmSaved(tenantId, saved);
+            }
+        }
+        return lookups.get();
+    }
+
+    private DefaultRuleEngineAlarmCache createCache(boolean enabled) {
+        DefaultRuleEngineAlarmCache cache = new DefaultRuleEngineAlarmCache(alarmService, partitionService, clusterService);
+        ReflectionTestUtils.setField(cache, "enabled", enabled);
+        ReflectionTestUtils.setField(cache, "maxSize", 1000L);
+        ReflectionTestUtils.setField(cache, "ttlMs", 60000L);
+        cache.init();
+        return cache;
+    }
+
+    private void mockPartition(boolean myPartition) {
+        when(partitionService.resolve(eq(ServiceType.TB_RULE_ENGINE), any(TenantId.class), any(EntityId.class)))
+                .thenReturn(new TopicPartitionInfo("tb_rule_engine", null, 0, myPartition));
+    }
+
+    private Alarm alarm(EntityId originator, AlarmStatus status) {
+        Alarm alarm = new Alarm(new AlarmId(UUID.randomUUID()));
+        alarm.setTenantId(tenantId);
+        alarm.setOriginator(originator);
+        alarm.setType(TYPE);
+        alarm.setSeverity(AlarmSeverity.CRITICAL);
+        alarm.setStatus(status);
+        return alarm;
+    }
+
+}
@@ -0,0 +1,194 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.actors.ruleChain;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.thingsboard.rule.engine.api.RuleNodeReadCache;
+import org.thingsboard.server.common.data.id.DeviceId;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class DefaultRuleNodeReadCacheTest {
+
+    private static final long TTL = 1000;
+
+    private final DeviceId deviceId = new DeviceId(UUID.randomUUID());
+    private final AtomicInteger loads = new AtomicInteger();
+
+    private RuleNodeReadCacheManager manager;
+
+    @Before
+    public void before() {
+        manager = new RuleNodeReadCacheManager();
+        ReflectionTestUtils.setField(manager, "maxEntities", 100);
+    }
+
+    @Test
+    public void testHitsAndMissesAreExportedToGlobalRegistry() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        Metrics.addRegistry(registry);
+        ReflectionTestUtils.setField(manager, "cleanupInterval", 1000L);
+        ReflectionTestUtils.setField(manager, "statsPrintInterval", 60000L);
+        manager.init();
+        try {
+            RuleNodeReadCache<String> cache = manager.create(TTL);
+            Assert.assertEquals("value", cache.get(deviceId, "key", () -> load(Futures.immediateFuture("value"))).get());
+            Assert.assertEquals("value", cache.get(deviceId, "key", () -> load(Futures.immediateFuture("value"))).get());
+
+            Assert.assertEquals(1.0, registry.get("rule.node.read.cache").tag("result", "hit").functionCounter().count(), 0.0);
+            Assert.assertEquals(1.0, registry.get("rule.node.read.cache").tag("result", "miss").functionCounter().count(), 0.0);
+        } finally {
+            manager.stop();
+            Metrics.removeRegistry(registry);
+        }
+        Assert.assertNull(Metrics.globalRegistry.find("rule.node.read.cache").functionCounter());
+    }
+
+    @Test
+    public void testConcurrentLookupsAreCoalesced() throws Exception {
+        RuleNodeReadCache<String> cache = manager.create(0);
+        SettableFuture<String> dbResult = SettableFuture.create();
+        int threads = 16;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<ListenableFuture<String>>> lookups = new ArrayList<>();
+        for (int i = 0; i < threads * 10; i++) {
+            lookups.add(executor.submit(() -> {
+                start.await();
+                return cache.get(deviceId, "key", () -> load(dbResult));
+            }));
+        }
+        start.countDown();
+        List<ListenableFuture<String>> results = new ArrayList<>();
+        for (Future<ListenableFuture<String>> lookup : lookups) {
+            results.add(lookup.get(10, TimeUnit.SECONDS));
+        }
+        executor.shutdownNow();
+
+        dbResult.set("value");
+        for (ListenableFuture<String> result : results) {
+            Assert.assertEquals("value", result.get());
+        }
+        Assert.assertEquals(1, loads.get());
+        Assert.assertEquals(1, cache.getMissCount());
+        Assert.assertEquals(threads * 10 - 1, cache.getHitCount());
+
+        cache.get(deviceId, "key", () -> load(Futures.immediateFuture("value"))).get();
+        Assert.assertEquals("Zero TTL does not keep loaded values", 2, loads.get());
+    }
+
+    @Test
+    public void testLoadedValuesExpire() throws Exception {
+        DefaultRuleNodeReadCache<String> cache = (DefaultRuleNodeReadCache<String>) manager.<String>create(TTL);
+        long now = System.currentTimeMillis();
+        Assert.assertEquals("v1", cache.get(deviceId, "key", () -> load(Futures.immediateFuture("v1")), now).get());
+        Assert.assertEquals("v1", cache.get(deviceId, "key", () -> load(Futures.immediateFuture("v2")), now).get());
+        Assert.assertEquals("v1", cache.get(deviceId, "other", () -> load(Futures.immediateFuture("v1")), now).get());
+        Assert.assertEquals(2, loads.get());
+
+        long expired = System.currentTimeMillis() + TTL;
+        Assert.assertEquals("v2", cache.get(deviceId, "key", () -> load(Futures.immediateFuture("v2")), expired).get());
+        Assert.assertEquals(3, loads.get());
+
+        cache.cleanUp(expired + TTL + 1);
+        Assert.assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testEntityUpdateInvalidatesCachedValues() throws Exception {
+        RuleNodeReadCache<String> cache = manager.create(TTL);
+        DeviceId otherDeviceId = new DeviceId(UUID.randomUUID());
+        cache.get(deviceId, "key", () -> load(Futures.immediateFuture("v1"))).get();
+        cache.get(otherDeviceId, "key", () -> load(Futures.immediateFuture("v1"))).get();
+
+        manager.onEntityDataUpdated(deviceId);
+
+        Assert.assertEquals("v2", cache.get(deviceId, "key", () -> load(Futures.immediateFuture("v2"))).get());
+        Assert.assertEquals("v1", cache.get(otherDeviceId, "key", () -> load(Futures.immediateFuture("v2"))).get());
+        Assert.assertEquals(3, loads.get());
+    }
+
+    @Test
+    public void testUpdateDuringLoadIsNotCached() throws Exception {
+        RuleNodeReadCache<String> cache = manager.create(TTL);
+        SettableFuture<String> staleResult = SettableFuture.create();
+        ListenableFuture<String> stale = cache.get(deviceId, "key", () -> load(staleResult));
+
+        manager.onEntityDataUpdated(deviceId);
+        staleResult.set("v1");
+
+        Assert.assertEquals("v1", stale.get());
+        Assert.assertEquals("v2", cache.get(deviceId, "key", () -> load(Futures.immediateFuture("v2"))).get());
+    }
+
+    @Test
+    public void testFailuresAreNotCached() throws Exception {
+        RuleNodeReadCache<String> cache = manager.create(TTL);
+        ListenableFuture<String> failed = cache.get(deviceId, "key", () -> load(Futures.immediateFailedFuture(new RuntimeException("DB is down"))));
+        try {
+            failed.get();
+            Assert.fail("Lookup should fail");
+        } catch (ExecutionException e) {
+            Assert.assertEquals("DB is down", e.getCause().getMessage());
+        }
+        ListenableFuture<String> thrown = cache.get(deviceId, "key", () -> {
+            throw new IllegalStateException("Invalid query");
+        });
+        try {
+            thrown.get();
+            Assert.fail("Lookup should fail");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        Assert.assertEquals("v1", cache.get(deviceId, "key", () -> load(Futures.immediateFuture("v1"))).get());
+    }
+
+    @Test
+    public void testDestroyedCacheIsReleased() throws Exception {
+        DefaultRuleNodeReadCache<String> cache = (DefaultRuleNodeReadCache<String>) manager.<String>create(TTL);
+        cache.get(deviceId, "key", () -> load(Futures.immediateFuture("v1"))).get();
+        Assert.assertEquals(1, cache.size());
+
+        cache.destroy();
+        Assert.assertEquals(0, cache.size());
+
+        cache.get(deviceId, "key", () -> load(Futures.immediateFuture("v1"))).get();
+        manager.onEntityDataUpdated(deviceId);
+        Assert.assertEquals("Destroyed cache is no longer invalidated", 1, cache.size());
+    }
+
+    private <V> ListenableFuture<V> load(ListenableFuture<V> result) {
+        loads.incrementAndGet();
+        return result;
+    }
+}
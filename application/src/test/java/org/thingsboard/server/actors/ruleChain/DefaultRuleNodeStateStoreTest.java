@@ -0,0 +1,262 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.actors.ruleChain;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.thingsboard.rule.engine.api.RuleNodeStateCodec;
+import org.thingsboard.server.actors.ActorSystemContext;
+import org.thingsboard.server.actors.TbActorRef;
+import org.thingsboard.server.common.data.DataConstants;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.id.EntityId;
+import org.thingsboard.server.common.data.id.RuleNodeId;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.data.kv.AttributeKvEntry;
+import org.thingsboard.server.common.data.kv.BaseAttributeKvEntry;
+import org.thingsboard.server.common.data.kv.StringDataEntry;
+import org.thingsboard.server.common.data.rule.RuleNode;
+import org.thingsboard.server.common.msg.queue.ServiceType;
+import org.thingsboard.server.common.msg.queue.TopicPartitionInfo;
+import org.thingsboard.server.dao.attributes.AttributesService;
+import org.thingsboard.server.service.executors.DbCallbackExecutorService;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class DefaultRuleNodeStateStoreTest {
+
+    private static final RuleNodeStateCodec<StringBuilder> CODEC = new RuleNodeStateCodec<StringBuilder>() {
+        @Override
+        public String encode(StringBuilder state) {
+            return state.toString();
+        }
+
+        @Override
+        public StringBuilder decode(String value) {
+            return new StringBuilder(value);
+        }
+    };
+
+    private final TenantId tenantId = new TenantId(UUID.randomUUID());
+    private final RuleNodeId ruleNodeId = new RuleNodeId(UUID.randomUUID());
+
+    private ScheduledExecutorService scheduler;
+    private ActorSystemContext mainCtx;
+    private AttributesService attributesService;
+    private RuleNodeCtx nodeCtx;
+
+    @Before
+    public void before() {
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        mainCtx = mock(ActorSystemContext.class);
+        attributesService = mock(AttributesService.class);
+        DbCallbackExecutorService dbCallbackExecutor = mock(DbCallbackExecutorService.class);
+        doAnswer(invocation -> {
+            ((Runnable) invocation.getArguments()[0]).run();
+            return null;
+        }).when(dbCallbackExecutor).execute(any(Runnable.class));
+
+        when(mainCtx.getScheduler()).thenReturn(scheduler);
+        when(mainCtx.getDbCallbackExecutor()).thenReturn(dbCallbackExecutor);
+        when(mainCtx.getAttributesService()).thenReturn(attributesService);
+        when(mainCtx.getRuleNodeStateMaxEntities()).thenReturn(100);
+        when(mainCtx.getRuleNodeStateFlushInterval()).thenReturn(TimeUnit.HOURS.toMillis(1));
+        when(mainCtx.getRuleNodeStateFlushBatchSize()).thenReturn(10);
+        when(mainCtx.resolve(eq(ServiceType.TB_RULE_ENGINE), any(TenantId.class), any(EntityId.class)))
+                .thenReturn(new TopicPartitionInfo("tb_rule_engine", tenantId, 0, true));
+
+        when(attributesService.find(eq(tenantId), eq(ruleNodeId), eq(DataConstants.SERVER_SCOPE), anyString()))
+                .thenReturn(Futures.immediateFuture(Optional.empty()));
+        when(attributesService.findAll(tenantId, ruleNodeId, DataConstants.SERVER_SCOPE))
+                .thenReturn(Futures.immediateFuture(Collections.emptyList()));
+        when(attributesService.save(eq(tenantId), eq(ruleNodeId), eq(DataConstants.SERVER_SCOPE), anyListOf(AttributeKvEntry.class)))
+                .thenReturn(Futures.immediateFuture(Collections.emptyList()));
+
+        RuleNode ruleNode = new RuleNode(ruleNodeId);
+        nodeCtx = new RuleNodeCtx(tenantId, mock(TbActorRef.class), mock(TbActorRef.class), ruleNode);
+    }
+
+    @After
+    public void after() {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    public void testStatesAreWrittenInBatches() throws Exception {
+        DefaultRuleNodeStateStore<StringBuilder> store = new DefaultRuleNodeStateStore<>(mainCtx, nodeCtx, CODEC);
+        List<EntityId> devices = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            DeviceId deviceId = new DeviceId(UUID.randomUUID());
+            devices.add(deviceId);
+            Assert.assertNull(store.get(deviceId).get());
+            StringBuilder state = store.putIfAbsent(deviceId, new StringBuilder("initial"));
+            Assert.assertSame(state, store.putIfAbsent(deviceId, new StringBuilder("other")));
+            state.append("-changed");
+            store.put(deviceId, state);
+        }
+        verify(attributesService, never()).save(any(TenantId.class), any(EntityId.class), anyString(), anyListOf(AttributeKvEntry.class));
+
+        store.destroy();
+        ArgumentCaptor<List> captor = ArgumentCaptor.forClass(List.class);
+        verify(attributesService).save(eq(tenantId), eq(ruleNodeId), eq(DataConstants.SERVER_SCOPE), captor.capture());
+        List<AttributeKvEntry> saved = captor.getValue();
+        Assert.assertEquals(devices.size(), saved.size());
+        for (AttributeKvEntry entry : saved) {
+            Assert.assertEquals("initial-changed", entry.getValueAsString());
+        }
+    }
+
+    @Test
+    public void testBatchSizeTriggersFlush() {
+        DefaultRuleNodeStateStore<StringBuilder> store = new DefaultRuleNodeStateStore<>(mainCtx, nodeCtx, CODEC);
+        for (int i = 0; i < 10; i++) {
+            store.put(new DeviceId(UUID.randomUUID()), new StringBuilder("state"));
+        }
+        verify(attributesService, timeout(5000)).save(eq(tenantId), eq(ruleNodeId), eq(DataConstants.SERVER_SCOPE), anyListOf(AttributeKvEntry.class));
+        store.destroy();
+    }
+
+    @Test
+    public void testStatesArePreloaded() throws Exception {
+        DeviceId deviceId = new DeviceId(UUID.randomUUID());
+        AttributeKvEntry entry = new BaseAttributeKvEntry(new StringDataEntry("DEVICE_" + deviceId.getId(), "preloaded"), System.currentTimeMillis());
+        when(attributesService.findAll(tenantId, ruleNodeId, DataConstants.SERVER_SCOPE))
+                .thenReturn(Futures.immediateFuture(Collections.singletonList(entry)));
+
+        DefaultRuleNodeStateStore<StringBuilder> store = new DefaultRuleNodeStateStore<>(mainCtx, nodeCtx, CODEC);
+        ListenableFuture<StringBuilder> state = store.get(deviceId);
+        Assert.assertTrue(state.isDone());
+        Assert.assertEquals("preloaded", state.get().toString());
+        verify(attributesService, never()).find(any(TenantId.class), any(EntityId.class), anyString(), anyString());
+        store.destroy();
+    }
+
+    @Test
+    public void testStatesOfOtherPartitionsAndShardsAreNotPreloaded() throws Exception {
+        List<AttributeKvEntry> entries = new ArrayList<>();
+        List<DeviceId> devices = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            DeviceId deviceId = new DeviceId(UUID.randomUUID());
+            devices.add(deviceId);
+            entries.add(new BaseAttributeKvEntry(new StringDataEntry("DEVICE_" + deviceId.getId(), "preloaded"), System.currentTimeMillis()));
+        }
+        when(attributesService.findAll(tenantId, ruleNodeId, DataConstants.SERVER_SCOPE)).thenReturn(Futures.immediateFuture(entries));
+        // the states that are not preloaded are never loaded, so they are not cached
+        when(attributesService.find(eq(tenantId), eq(ruleNodeId), eq(DataConstants.SERVER_SCOPE), anyString())).thenReturn(SettableFuture.create());
+        RuleNodeCtx shardCtx = new RuleNodeCtx(tenantId, mock(TbActorRef.class), mock(TbActorRef.class), 1, 2, new AtomicBoolean(), new RuleNode(ruleNodeId));
+
+        DefaultRuleNodeStateStore<StringBuilder> store = new DefaultRuleNodeStateStore<>(mainCtx, shardCtx, CODEC);
+        for (DeviceId deviceId : devices) {
+            Assert.assertEquals(shardCtx.isOwnShard(deviceId), store.get(deviceId).isDone());
+        }
+        store.destroy();
+
+        when(mainCtx.resolve(eq(ServiceType.TB_RULE_ENGINE), any(TenantId.class), any(EntityId.class)))
+                .thenReturn(new TopicPartitionInfo("tb_rule_engine", tenantId, 1, false));
+        store = new DefaultRuleNodeStateStore<>(mainCtx, nodeCtx, CODEC);
+        for (DeviceId deviceId : devices) {
+            Assert.assertFalse(store.get(deviceId).isDone());
+        }
+        store.destroy();
+    }
+
+    @Test
+    public void testStatesAreLoadedOnMiss() throws Exception {
+        DeviceId deviceId = new DeviceId(UUID.randomUUID());
+        when(attributesService.find(tenantId, ruleNodeId, DataConstants.SERVER_SCOPE, "DEVICE_" + deviceId.getId()))
+                .thenReturn(Futures.immediateFuture(Optional.of(new BaseAttributeKvEntry(new StringDataEntry("DEVICE_" + deviceId.getId(), "stored"), System.currentTimeMillis()))));
+
+        DefaultRuleNodeStateStore<StringBuilder> store = new DefaultRuleNodeStateStore<>(mainCtx, nodeCtx, CODEC);
+        Assert.assertEquals("stored", store.get(deviceId).get().toString());
+        Assert.assertEquals("stored", store.get(deviceId).get().toString());
+        verify(attributesService).find(tenantId, ruleNodeId, DataConstants.SERVER_SCOPE, "DEVICE_" + deviceId.getId());
+        store.destroy();
+    }
+
+    @Test
+    public void testProcessingIsOrderedPerEntity() throws Exception {
+        DeviceId deviceId = new DeviceId(UUID.randomUUID());
+        SettableFuture<Optional<AttributeKvEntry>> load = SettableFuture.create();
+        when(attributesService.find(tenantId, ruleNodeId, DataConstants.SERVER_SCOPE, "DEVICE_" + deviceId.getId())).thenReturn(load);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            DefaultRuleNodeStateStore<StringBuilder> store = new DefaultRuleNodeStateStore<>(mainCtx, nodeCtx, CODEC);
+            List<String> processed = new CopyOnWriteArrayList<>();
+            ListenableFuture<Void> first = store.process(deviceId, state -> {
+                processed.add("first:" + state);
+                return Futures.immediateFuture(null);
+            }, executor);
+            // The state is cached by now, but the second message has to wait for the first one.
+            load.set(Optional.of(new BaseAttributeKvEntry(new StringDataEntry("DEVICE_" + deviceId.getId(), "stored"), System.currentTimeMillis())));
+            ListenableFuture<Void> second = store.process(deviceId, state -> {
+                processed.add("second:" + state);
+                return Futures.immediateFuture(null);
+            }, executor);
+            Futures.allAsList(first, second).get(5, TimeUnit.SECONDS);
+            Assert.assertEquals(2, processed.size());
+            Assert.assertEquals("first:stored", processed.get(0));
+            Assert.assertEquals("second:stored", processed.get(1));
+            store.destroy();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testStatesOfDeletedRuleNodeAreRemoved() {
+        DeviceId deviceId = new DeviceId(UUID.randomUUID());
+        AttributeKvEntry entry = new BaseAttributeKvEntry(new StringDataEntry("DEVICE_" + deviceId.getId(), "stored"), System.currentTimeMillis());
+        when(attributesService.findAll(tenantId, ruleNodeId, DataConstants.SERVER_SCOPE))
+                .thenReturn(Futures.immediateFuture(Collections.singletonList(entry)));
+        when(attributesService.removeAll(eq(tenantId), eq(ruleNodeId), eq(DataConstants.SERVER_SCOPE), anyListOf(String.class)))
+                .thenReturn(Futures.immediateFuture(Collections.emptyList()));
+
+        DefaultRuleNodeStateStore<StringBuilder> store = new DefaultRuleNodeStateStore<>(mainCtx, nodeCtx, CODEC);
+        store.put(deviceId, new StringBuilder("changed"));
+        nodeCtx.markDeleted();
+        store.destroy();
+
+        verify(attributesService, never()).save(any(TenantId.class), any(EntityId.class), anyString(), anyListOf(AttributeKvEntry.class));
+        verify(attributesService).removeAll(tenantId, ruleNodeId, DataConstants.SERVER_SCOPE, Collections.singletonList("DEVICE_" + deviceId.getId()));
+    }
+}
@@ -0,0 +1,85 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.actors.ruleChain;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.thingsboard.server.actors.TbActorRef;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.data.rule.RuleNode;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class RuleNodeCtxTest {
+
+    private final TenantId tenantId = new TenantId(UUID.randomUUID());
+    private final TbActorRef chainActor = Mockito.mock(TbActorRef.class);
+
+    @Test
+    public void testSameOriginatorIsRoutedToSameShard() {
+        List<TbActorRef> shards = createShards(4);
+        RuleNodeCtx nodeCtx = new RuleNodeCtx(tenantId, chainActor, shards.get(0), shards, new RuleNode());
+
+        Set<TbActorRef> used = new HashSet<>();
+        for (int i = 0; i < 100; i++) {
+            DeviceId originator = new DeviceId(UUID.randomUUID());
+            TbActorRef shard = nodeCtx.forOriginator(originator).getSelfActor();
+            Assert.assertSame(shard, nodeCtx.forOriginator(originator).getSelfActor());
+            Assert.assertSame(shard, nodeCtx.forOriginator(new DeviceId(originator.getId())).getSelfActor());
+            Assert.assertSame(shard, nodeCtx.forOriginator(originator).forOriginator(originator).getSelfActor());
+            used.add(shard);
+        }
+        Assert.assertEquals(4, used.size());
+    }
+
+    @Test
+    public void testSingleActorNodeIsNotSharded() {
+        TbActorRef selfActor = Mockito.mock(TbActorRef.class);
+        RuleNodeCtx nodeCtx = new RuleNodeCtx(tenantId, chainActor, selfActor, new RuleNode());
+
+        Assert.assertSame(nodeCtx, nodeCtx.forOriginator(new DeviceId(UUID.randomUUID())));
+    }
+
+    @Test
+    public void testInstanceOwnsOriginatorsRoutedToIt() {
+        List<TbActorRef> shards = createShards(4);
+        RuleNodeCtx nodeCtx = new RuleNodeCtx(tenantId, chainActor, shards.get(0), shards, new RuleNode());
+
+        for (int i = 0; i < 100; i++) {
+            DeviceId originator = new DeviceId(UUID.randomUUID());
+            int shard = shards.indexOf(nodeCtx.forOriginator(originator).getSelfActor());
+            for (int instance = 0; instance < shards.size(); instance++) {
+                RuleNodeCtx instanceCtx = new RuleNodeCtx(tenantId, chainActor, shards.get(instance), instance, shards.size(), new AtomicBoolean(), new RuleNode());
+                Assert.assertEquals(instance == shard, instanceCtx.isOwnShard(originator));
+            }
+        }
+    }
+
+    private List<TbActorRef> createShards(int count) {
+        List<TbActorRef> shards = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            shards.add(Mockito.mock(TbActorRef.class));
+        }
+        return shards;
+    }
+}
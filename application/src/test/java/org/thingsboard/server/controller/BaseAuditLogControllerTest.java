@@ -31,6 +31,7 @@ import org.thingsboard.server.dao.model.ModelConstants;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -75,48 +76,9 @@ public abstract class BaseAuditLogControllerTest extends AbstractControllerTest
             doPost("/api/device", device, Device.class);
         }
 
-        List<AuditLog> loadedAuditLogs = new ArrayList<>();
-        TimePageLink pageLink = new TimePageLink(23);
-        PageData<AuditLog> pageData;
-        do {
-            pageData = doGetTypedWithTimePageLink("/api/audit/logs?",
-                    new TypeReference<PageData<AuditLog>>() {
-                    }, pageLink);
-            loadedAuditLogs.addAll(pageData.getData());
-            if (pageData.hasNext()) {
-                pageLink = pageLink.nextPageLink();
-            }
-        } while (pageData.hasNext());
-
-        Assert.assertEquals(178, loadedAuditLogs.size());
-
-        loadedAuditLogs = new ArrayList<>();
-        pageLink = new TimePageLink(23);
-        do {
-            pageData = doGetTypedWithTimePageLink("/api/audit/logs/customer/" + ModelConstants.NULL_UUID + "?",
-                    new TypeReference<PageData<AuditLog>>() {
-                    }, pageLink);
-            loadedAuditLogs.addAll(pageData.getData());
-            if (pageData.hasNext()) {
-                pageLink = pageLink.nextPageLink();
-            }
-        } while (pageData.hasNext());
-
-        Assert.assertEquals(178, loadedAuditLogs.size());
-
-        loadedAuditLogs = new ArrayList<>();
-        pageLink = new TimePageLink(23);
-        do {
-            pageData = doGetTypedWithTimePageLink("/api/audit/logs/user/" + tenantAdmin.getId().getId().toString() + "?",
-                    new TypeReference<PageData<AuditLog>>() {
-                    }, pageLink);
-            loadedAuditLogs.addAll(pageData.getData());
-            if (pageData.hasNext()) {
-                pageLink = pageLink.nextPageLink();
-            }
-        } while (pageData.hasNext());
-
-        Assert.assertEquals(178, loadedAuditLogs.size());
+        Assert.assertEquals(178, awaitAuditLogs("/api/audit/logs?", 178).size());
+        Assert.assertEquals(178, awaitAuditLogs("/api/audit/logs/customer/" + ModelConstants.NULL_UUID + "?", 178).size());
+        Assert.assertEquals(178, awaitAuditLogs("/api/audit/logs/user/" + tenantAdmin.getId().getId().toString() + "?", 178).size());
     }
 
     @Test
@@ -130,11 +92,26 @@ public abstract class BaseAuditLogControllerTest extends AbstractControllerTest
             doPost("/api/device", savedDevice, Device.class);
         }
 
+        Assert.assertEquals(179, awaitAuditLogs("/api/audit/logs/entity/DEVICE/" + savedDevice.getId().getId() + "?", 179).size());
+    }
+
+    // Audit logs are persisted asynchronously in batches, so they are polled until the expected count appears
+    private List<AuditLog> awaitAuditLogs(String urlTemplate, int expectedCount) throws Exception {
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+        List<AuditLog> loadedAuditLogs = loadAuditLogs(urlTemplate);
+        while (loadedAuditLogs.size() < expectedCount && System.currentTimeMillis() < deadline) {
+            Thread.sleep(100);
+            loadedAuditLogs = loadAuditLogs(urlTemplate);
+        }
+        return loadedAuditLogs;
+    }
+
+    private List<AuditLog> loadAuditLogs(String urlTemplate) throws Exception {
         List<AuditLog> loadedAuditLogs = new ArrayList<>();
         TimePageLink pageLink = new TimePageLink(23);
         PageData<AuditLog> pageData;
         do {
-            pageData = doGetTypedWithTimePageLink("/api/audit/logs/entity/DEVICE/" + savedDevice.getId().getId() + "?",
+            pageData = doGetTypedWithTimePageLink(urlTemplate,
                     new TypeReference<PageData<AuditLog>>() {
                     }, pageLink);
             loadedAuditLogs.addAll(pageData.getData());
@@ -142,7 +119,6 @@ public abstract class BaseAuditLogControllerTest extends AbstractControllerTest
                 pageLink = pageLink.nextPageLink();
             }
         } while (pageData.hasNext());
-
-        Assert.assertEquals(179, loadedAuditLogs.size());
+        return loadedAuditLogs;
     }
 }
@@ -0,0 +1,149 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.encoding;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Test;
+import org.thingsboard.rule.engine.api.msg.DeviceAttributesEventNotificationMsg;
+import org.thingsboard.rule.engine.api.msg.DeviceNameOrTypeUpdateMsg;
+import org.thingsboard.rule.engine.api.msg.ToDeviceActorNotificationMsg;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.id.RuleChainId;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.data.kv.AttributeKey;
+import org.thingsboard.server.common.data.kv.AttributeKvEntry;
+import org.thingsboard.server.common.data.kv.BaseAttributeKvEntry;
+import org.thingsboard.server.common.data.kv.DoubleDataEntry;
+import org.thingsboard.server.common.data.kv.JsonDataEntry;
+import org.thingsboard.server.common.data.kv.LongDataEntry;
+import org.thingsboard.server.common.data.kv.StringDataEntry;
+import org.thingsboard.server.common.data.plugin.ComponentLifecycleEvent;
+import org.thingsboard.server.common.data.rpc.ToDeviceRpcRequestBody;
+import org.thingsboard.server.common.msg.plugin.ComponentLifecycleMsg;
+import org.thingsboard.server.common.msg.rpc.ToDeviceRpcRequest;
+import org.thingsboard.server.gen.transport.TransportProtos.ToDeviceActorNotificationMsgProto;
+import org.thingsboard.server.service.rpc.ToDeviceRpcRequestActorMsg;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@Slf4j
+public class ActorNotificationProtoUtilsTest {
+
+    private final TenantId tenantId = new TenantId(UUID.randomUUID());
+    private final DeviceId deviceId = new DeviceId(UUID.randomUUID());
+
+    @Test
+    public void attributesUpdateMsgRoundTrip() throws Exception {
+        long ts = System.currentTimeMillis();
+        List<AttributeKvEntry> values = Arrays.asList(
+                new BaseAttributeKvEntry(new StringDataEntry("firmware", "1.0.1"), ts),
+                new BaseAttributeKvEntry(new LongDataEntry("interval", 60L), ts),
+                new BaseAttributeKvEntry(new DoubleDataEntry("threshold", 42.5), ts),
+                new BaseAttributeKvEntry(new JsonDataEntry("config", "{\"mode\":\"eco\"}"), ts));
+        DeviceAttributesEventNotificationMsg msg = DeviceAttributesEventNotificationMsg.onUpdate(tenantId, deviceId, "SHARED_SCOPE", values);
+
+        DeviceAttributesEventNotificationMsg result = (DeviceAttributesEventNotificationMsg) roundTrip(msg);
+        assertEquals(tenantId, result.getTenantId());
+        assertEquals(deviceId, result.getDeviceId());
+        assertEquals("SHARED_SCOPE", result.getScope());
+        assertEquals(values, result.getValues());
+        assertEquals(false, result.isDeleted());
+    }
+
+    @Test
+    public void attributesDeleteMsgRoundTrip() throws Exception {
+        DeviceAttributesEventNotificationMsg msg = DeviceAttributesEventNotificationMsg.onDelete(tenantId, deviceId,
+                Collections.singleton(new AttributeKey("SHARED_SCOPE", "firmware")));
+
+        DeviceAttributesEventNotificationMsg result = (DeviceAttributesEventNotificationMsg) roundTrip(msg);
+        assertTrue(result.isDeleted());
+        assertEquals(msg.getDeletedKeys(), result.getDeletedKeys());
+    }
+
+    @Test
+    public void nameOrTypeUpdateMsgRoundTrip() throws Exception {
+        DeviceNameOrTypeUpdateMsg msg = new DeviceNameOrTypeUpdateMsg(tenantId, deviceId, "Thermostat A", "thermostat");
+        assertEquals(msg, roundTrip(msg));
+    }
+
+    @Test
+    public void rpcRequestMsgRoundTrip() throws Exception {
+        ToDeviceRpcRequestActorMsg msg = createRpcMsg();
+
+        ToDeviceRpcRequestActorMsg result = (ToDeviceRpcRequestActorMsg) roundTrip(msg);
+        assertEquals(msg.getServiceId(), result.getServiceId());
+        assertEquals(msg.getMsg(), result.getMsg());
+    }
+
+    @Test
+    public void componentLifecycleMsgRoundTrip() throws Exception {
+        ComponentLifecycleMsg msg = new ComponentLifecycleMsg(tenantId, new RuleChainId(UUID.randomUUID()), ComponentLifecycleEvent.UPDATED);
+
+        ComponentLifecycleMsg result = ActorNotificationProtoUtils.fromProto(ActorNotificationProtoUtils.toProto(msg));
+        assertEquals(msg.getTenantId(), result.getTenantId());
+        assertEquals(msg.getEntityId(), result.getEntityId());
+        assertEquals(msg.getEvent(), result.getEvent());
+    }
+
+    /**
+     * Only the size is asserted. Encoding time depends on the JIT warm-up and the build machine, so it is just logged.
+     */
+    @Test
+    public void protoEncodingIsSmallerThanFst() throws Exception {
+        ProtoWithFSTService fstService = new ProtoWithFSTService();
+        ToDeviceRpcRequestActorMsg msg = createRpcMsg();
+        int iterations = 100000;
+
+        long fstSize = 0;
+        long startTs = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            byte[] bytes = fstService.encode(msg);
+            fstSize += bytes.length;
+            fstService.decode(bytes);
+        }
+        long fstTime = System.nanoTime() - startTs;
+
+        long protoSize = 0;
+        startTs = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            byte[] bytes = ActorNotificationProtoUtils.toProto(msg).toByteArray();
+            protoSize += bytes.length;
+            ActorNotificationProtoUtils.fromProto(ToDeviceActorNotificationMsgProto.parseFrom(bytes));
+        }
+        long protoTime = System.nanoTime() - startTs;
+
+        log.info("Encoded and decoded [{}] rpc requests: FST [{}] ms [{}] bytes/msg, protobuf [{}] ms [{}] bytes/msg", iterations,
+                fstTime / 1000000, fstSize / iterations, protoTime / 1000000, protoSize / iterations);
+        assertTrue(protoSize < fstSize);
+    }
+
+    private ToDeviceRpcRequestActorMsg createRpcMsg() {
+        ToDeviceRpcRequest request = new ToDeviceRpcRequest(UUID.randomUUID(), tenantId, deviceId, false,
+                System.currentTimeMillis() + 10000, new ToDeviceRpcRequestBody("setGpio", "{\"pin\":7,\"value\":1}"));
+        return new ToDeviceRpcRequestActorMsg("tb-core-0", request);
+    }
+
+    private Object roundTrip(ToDeviceActorNotificationMsg msg) throws Exception {
+        byte[] bytes = ActorNotificationProtoUtils.toProto(msg).toByteArray();
+        return ActorNotificationProtoUtils.fromProto(ToDeviceActorNotificationMsgProto.parseFrom(bytes));
+    }
+}
@@ -0,0 +1,164 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.script;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RemoteJsInvokeServiceTest {
+
+    private static final String SCRIPT = "return {msg: {temperature: msg.temperature * 2}, metadata: metadata, msgType: msgType};";
+
+    private RemoteJsInvokeService jsInvokeService;
+    private TestRemoteJsExecutor jsExecutor;
+
+    @Before
+    public void beforeTest() {
+        createService(100);
+    }
+
+    private void createService(int maxBatchSize) {
+        jsExecutor = new TestRemoteJsExecutor();
+        jsInvokeService = new RemoteJsInvokeService();
+        ReflectionTestUtils.setField(jsInvokeService, "requestTemplate", jsExecutor);
+        ReflectionTestUtils.setField(jsInvokeService, "maxEvalRequestsTimeout", 10000L);
+        ReflectionTestUtils.setField(jsInvokeService, "maxRequestsTimeout", 10000L);
+        ReflectionTestUtils.setField(jsInvokeService, "maxErrors", 3);
+        ReflectionTestUtils.setField(jsInvokeService, "maxBlackListDurationSec", 60);
+        ReflectionTestUtils.setField(jsInvokeService, "maxBatchSize", maxBatchSize);
+        ReflectionTestUtils.setField(jsInvokeService, "batchLingerMs", 5L);
+        jsInvokeService.init();
+    }
+
+    @After
+    public void afterTest() {
+        jsInvokeService.destroy();
+    }
+
+    @Test
+    public void invocationsAreBatched() throws Exception {
+        UUID scriptId = eval();
+        int count = 500;
+        List<ListenableFuture<Object>> futures = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            futures.add(jsInvokeService.invokeFunction(scriptId, "{\"temperature\":" + i + "}", "{}", "POST_TELEMETRY_REQUEST"));
+        }
+        List<Object> results = Futures.allAsList(futures).get(30, TimeUnit.SECONDS);
+        for (int i = 0; i < count; i++) {
+            assertTrue(results.get(i).toString().contains("\"temperature\":" + (i * 2)));
+        }
+        assertEquals(1, jsExecutor.getCompileRequestsCount());
+        assertTrue(jsExecutor.getInvokeRequestsCount() < count);
+        assertTrue(jsExecutor.getMaxInvokeRequestSize() > 1);
+    }
+
+    @Test
+    public void batchTimeoutIsScaledByItsSize() throws Exception {
+        UUID scriptId = eval();
+        List<ListenableFuture<Object>> futures = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            futures.add(jsInvokeService.invokeFunction(scriptId, "{\"temperature\":" + i + "}", "{}", "POST_TELEMETRY_REQUEST"));
+        }
+        Futures.allAsList(futures).get(30, TimeUnit.SECONDS);
+        assertEquals(jsExecutor.getMaxInvokeRequestSize() * 10000L, jsExecutor.getMaxRequestTimeout());
+    }
+
+    @Test
+    public void invocationsCarryScriptBodyWhenBatchingIsDisabled() throws Exception {
+        jsInvokeService.destroy();
+        createService(1);
+        UUID scriptId = eval();
+        jsExecutor.evictAll();
+        List<ListenableFuture<Object>> futures = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            futures.add(jsInvokeService.invokeFunction(scriptId, "{\"temperature\":" + i + "}", "{}", "POST_TELEMETRY_REQUEST"));
+        }
+        List<Object> results = Futures.allAsList(futures).get(30, TimeUnit.SECONDS);
+        for (int i = 0; i < 10; i++) {
+            assertTrue(results.get(i).toString().contains("\"temperature\":" + (i * 2)));
+        }
+        assertEquals(1, jsExecutor.getCompileRequestsCount());
+        assertEquals(10, jsExecutor.getInvokeRequestsWithBodyCount());
+        assertEquals(1, jsExecutor.getMaxInvokeRequestSize());
+    }
+
+    @Test
+    public void scriptIsRecompiledWhenExecutorReportsMiss() throws Exception {
+        UUID scriptId = eval();
+        assertEquals(1, jsExecutor.getCompileRequestsCount());
+        jsExecutor.evictAll();
+        Object result = jsInvokeService.invokeFunction(scriptId, "{\"temperature\":21}", "{}", "POST_TELEMETRY_REQUEST").get(30, TimeUnit.SECONDS);
+        assertTrue(result.toString().contains("\"temperature\":42"));
+        assertEquals(2, jsExecutor.getCompileRequestsCount());
+    }
+
+    @Test
+    public void requestsOfSameScriptShareKey() throws Exception {
+        UUID firstScriptId = eval(SCRIPT);
+        UUID secondScriptId = eval("return {msg: msg, metadata: metadata, msgType: 'SECOND'};");
+        List<ListenableFuture<Object>> futures = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            futures.add(jsInvokeService.invokeFunction(firstScriptId, "{\"temperature\":" + i + "}", "{}", "POST_TELEMETRY_REQUEST"));
+            futures.add(jsInvokeService.invokeFunction(secondScriptId, "{\"temperature\":" + i + "}", "{}", "POST_TELEMETRY_REQUEST"));
+        }
+        Futures.allAsList(futures).get(30, TimeUnit.SECONDS);
+
+        Map<String, Set<UUID>> requestKeys = jsExecutor.getRequestKeys();
+        assertEquals(2, requestKeys.size());
+        Set<UUID> usedKeys = new HashSet<>();
+        requestKeys.values().forEach(keys -> {
+            assertEquals(1, keys.size());
+            usedKeys.addAll(keys);
+        });
+        assertEquals(2, usedKeys.size());
+    }
+
+    @Test
+    public void burstOfInvocationsIsSentInFullBatches() throws Exception {
+        UUID scriptId = eval();
+        int count = 20000;
+        List<ListenableFuture<Object>> futures = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            futures.add(jsInvokeService.invokeFunction(scriptId, "{\"temperature\":" + i + "}", "{}", "POST_TELEMETRY_REQUEST"));
+        }
+        Futures.allAsList(futures).get(60, TimeUnit.SECONDS);
+        assertEquals(100, jsExecutor.getMaxInvokeRequestSize());
+        assertTrue(jsExecutor.getInvokeRequestsCount() <= count / 10);
+    }
+
+    private UUID eval() throws Exception {
+        return eval(SCRIPT);
+    }
+
+    private UUID eval(String script) throws Exception {
+        return jsInvokeService.eval(JsScriptType.RULE_NODE_SCRIPT, script).get(30, TimeUnit.SECONDS);
+    }
+}
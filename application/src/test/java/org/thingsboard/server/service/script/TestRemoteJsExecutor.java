@@ -0,0 +1,211 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.script;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import org.thingsboard.common.util.ThingsBoardThreadFactory;
+import org.thingsboard.server.gen.js.JsInvokeProtos;
+import org.thingsboard.server.queue.TbQueueRequestTemplate;
+import org.thingsboard.server.queue.common.TbProtoJsQueueMsg;
+import org.thingsboard.server.queue.common.TbProtoQueueMsg;
+
+import javax.script.Invocable;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineManager;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-JVM stand-in for the js-executor microservice. Speaks the same request/response protocol as the remote
+ * executor, but evaluates scripts with the built-in JVM JavaScript engine, so the remote js invoke path can be
+ * tested and benchmarked without a queue.
+ */
+public class TestRemoteJsExecutor implements TbQueueRequestTemplate<TbProtoJsQueueMsg<JsInvokeProtos.RemoteJsRequest>, TbProtoQueueMsg<JsInvokeProtos.RemoteJsResponse>> {
+
+    private final Map<String, String> compiledScripts = new ConcurrentHashMap<>();
+    private final Map<String, Set<UUID>> requestKeys = new ConcurrentHashMap<>();
+    private final AtomicInteger requestsCount = new AtomicInteger();
+    private final AtomicInteger compileRequestsCount = new AtomicInteger();
+    private final AtomicInteger invokeRequestsCount = new AtomicInteger();
+    private final AtomicInteger maxInvokeRequestSize = new AtomicInteger();
+    private final AtomicInteger invokeRequestsWithBodyCount = new AtomicInteger();
+    private final AtomicLong maxRequestTimeout = new AtomicLong();
+    private ListeningExecutorService executor;
+    private ScriptEngine engine;
+
+    @Override
+    public void init() {
+        engine = new ScriptEngineManager().getEngineByName("nashorn");
+        executor = MoreExecutors.listeningDecorator(Executors.newSingleThreadExecutor(ThingsBoardThreadFactory.forName("test-remote-js-executor")));
+    }
+
+    @Override
+    public ListenableFuture<TbProtoQueueMsg<JsInvokeProtos.RemoteJsResponse>> send(TbProtoJsQueueMsg<JsInvokeProtos.RemoteJsRequest> request, long requestTimeoutMs) {
+        maxRequestTimeout.accumulateAndGet(requestTimeoutMs, Math::max);
+        return send(request);
+    }
+
+    @Override
+    public ListenableFuture<TbProtoQueueMsg<JsInvokeProtos.RemoteJsResponse>> send(TbProtoJsQueueMsg<JsInvokeProtos.RemoteJsRequest> request) {
+        requestsCount.incrementAndGet();
+        JsInvokeProtos.RemoteJsRequest value = request.getValue();
+        if (value.hasCompileRequest()) {
+            onRequestKey(value.getCompileRequest().getScriptHash(), request.getKey());
+        } else if (value.hasInvokeRequest()) {
+            onRequestKey(value.getInvokeRequest().getScriptHash(), request.getKey());
+        } else if (value.hasInvokeBatchRequest()) {
+            value.getInvokeBatchRequest().getInvokeRequestsList().forEach(invokeRequest -> onRequestKey(invokeRequest.getScriptHash(), request.getKey()));
+        }
+        return executor.submit(() -> new TbProtoQueueMsg<>(request.getKey(), process(request.getValue())));
+    }
+
+    @Override
+    public void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Drops all compiled scripts, the same way the js-executor does when it is restarted or evicts scripts.
+     */
+    public void evictAll() {
+        compiledScripts.clear();
+    }
+
+    /**
+     * Returns the queue keys used by the compile and invoke requests of each script hash.
+     */
+    public Map<String, Set<UUID>> getRequestKeys() {
+        return requestKeys;
+    }
+
+    public int getRequestsCount() {
+        return requestsCount.get();
+    }
+
+    public int getCompileRequestsCount() {
+        return compileRequestsCount.get();
+    }
+
+    public int getInvokeRequestsCount() {
+        return invokeRequestsCount.get();
+    }
+
+    public int getMaxInvokeRequestSize() {
+        return maxInvokeRequestSize.get();
+    }
+
+    public int getInvokeRequestsWithBodyCount() {
+        return invokeRequestsWithBodyCount.get();
+    }
+
+    /**
+     * Returns the largest timeout of the requests that were sent with an explicit timeout.
+     */
+    public long getMaxRequestTimeout() {
+        return maxRequestTimeout.get();
+    }
+
+    private JsInvokeProtos.RemoteJsResponse process(JsInvokeProtos.RemoteJsRequest request) {
+        JsInvokeProtos.RemoteJsResponse.Builder response = JsInvokeProtos.RemoteJsResponse.newBuilder();
+        if (request.hasCompileRequest()) {
+            response.setCompileResponse(compile(request.getCompileRequest()));
+        } else if (request.hasInvokeRequest()) {
+            onInvokeRequest(1);
+            response.setInvokeResponse(invoke(request.getInvokeRequest()));
+        } else if (request.hasInvokeBatchRequest()) {
+            JsInvokeProtos.JsInvokeBatchRequest batchRequest = request.getInvokeBatchRequest();
+            onInvokeRequest(batchRequest.getInvokeRequestsCount());
+            JsInvokeProtos.JsInvokeBatchResponse.Builder batchResponse = JsInvokeProtos.JsInvokeBatchResponse.newBuilder();
+            batchRequest.getInvokeRequestsList().forEach(invokeRequest -> batchResponse.addInvokeResponses(invoke(invokeRequest)));
+            response.setInvokeBatchResponse(batchResponse);
+        } else if (request.hasReleaseRequest()) {
+            JsInvokeProtos.JsReleaseRequest releaseRequest = request.getReleaseRequest();
+            compiledScripts.remove(releaseRequest.getScriptHash());
+            response.setReleaseResponse(JsInvokeProtos.JsReleaseResponse.newBuilder()
+                    .setSuccess(true)
+                    .setScriptIdMSB(releaseRequest.getScriptIdMSB())
+                    .setScriptIdLSB(releaseRequest.getScriptIdLSB()));
+        }
+        return response.build();
+    }
+
+    private JsInvokeProtos.JsCompileResponse compile(JsInvokeProtos.JsCompileRequest request) {
+        compileRequestsCount.incrementAndGet();
+        JsInvokeProtos.JsCompileResponse.Builder response = JsInvokeProtos.JsCompileResponse.newBuilder()
+                .setScriptIdMSB(request.getScriptIdMSB())
+                .setScriptIdLSB(request.getScriptIdLSB())
+                .setScriptHash(request.getScriptHash());
+        try {
+            engine.eval(request.getScriptBody());
+            compiledScripts.put(request.getScriptHash(), request.getFunctionName());
+            response.setSuccess(true);
+        } catch (Exception e) {
+            response.setSuccess(false)
+                    .setErrorCode(JsInvokeProtos.JsInvokeErrorCode.COMPILATION_ERROR)
+                    .setErrorDetails(e.getMessage());
+        }
+        return response.build();
+    }
+
+    private JsInvokeProtos.JsInvokeResponse invoke(JsInvokeProtos.JsInvokeRequest request) {
+        JsInvokeProtos.JsInvokeResponse.Builder response = JsInvokeProtos.JsInvokeResponse.newBuilder();
+        if (!request.getScriptBody().isEmpty()) {
+            invokeRequestsWithBodyCount.incrementAndGet();
+        }
+        String functionName = compiledScripts.get(request.getScriptHash());
+        if (functionName == null && !request.getScriptBody().isEmpty()) {
+            // Same as the js-executor, that compiles the script from the body of the invocation on a miss.
+            try {
+                engine.eval(request.getScriptBody());
+                functionName = request.getFunctionName();
+                compiledScripts.put(request.getScriptHash(), functionName);
+            } catch (Exception e) {
+                return response.setSuccess(false)
+                        .setErrorCode(JsInvokeProtos.JsInvokeErrorCode.COMPILATION_ERROR)
+                        .setErrorDetails(String.valueOf(e.getMessage())).build();
+            }
+        }
+        if (functionName == null) {
+            return response.setSuccess(false).setErrorCode(JsInvokeProtos.JsInvokeErrorCode.NOT_FOUND_ERROR).build();
+        }
+        try {
+            Object result = ((Invocable) engine).invokeFunction(functionName, request.getArgsList().toArray());
+            return response.setSuccess(true).setResult(String.valueOf(result)).build();
+        } catch (Exception e) {
+            return response.setSuccess(false)
+                    .setErrorCode(JsInvokeProtos.JsInvokeErrorCode.RUNTIME_ERROR)
+                    .setErrorDetails(String.valueOf(e.getMessage())).build();
+        }
+    }
+
+    private void onRequestKey(String scriptHash, UUID key) {
+        requestKeys.computeIfAbsent(scriptHash, hash -> ConcurrentHashMap.newKeySet()).add(key);
+    }
+
+    private void onInvokeRequest(int size) {
+        invokeRequestsCount.incrementAndGet();
+        maxInvokeRequestSize.accumulateAndGet(size, Math::max);
+    }
+}
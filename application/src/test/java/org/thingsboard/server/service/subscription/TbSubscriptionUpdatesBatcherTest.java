@@ -0,0 +1,140 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.subscription;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.thingsboard.server.gen.transport.TransportProtos.LocalSubscriptionServiceMsgProto;
+import org.thingsboard.server.gen.transport.TransportProtos.TbSubscriptionUpdateProto;
+import org.thingsboard.server.gen.transport.TransportProtos.ToCoreNotificationMsg;
+import org.thingsboard.server.queue.common.TbProtoQueueMsg;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class TbSubscriptionUpdatesBatcherTest {
+
+    private static final long LINGER_MS = 100;
+
+    private final List<Runnable> lingerTasks = new ArrayList<>();
+    private final List<ScheduledFuture<?>> lingerFutures = new ArrayList<>();
+    private final List<String> targets = new ArrayList<>();
+    private final List<LocalSubscriptionServiceMsgProto> sent = new ArrayList<>();
+    private ScheduledExecutorService scheduler;
+
+    @Before
+    public void before() {
+        scheduler = mock(ScheduledExecutorService.class);
+        doAnswer(invocation -> {
+            lingerTasks.add((Runnable) invocation.getArguments()[0]);
+            ScheduledFuture<?> future = mock(ScheduledFuture.class);
+            lingerFutures.add(future);
+            return future;
+        }).when(scheduler).schedule(any(Runnable.class), anyLong(), any(TimeUnit.class));
+    }
+
+    @Test
+    public void testUpdatesAreGroupedPerTargetNode() {
+        TbSubscriptionUpdatesBatcher batcher = createBatcher(100);
+        batcher.add("core-1", UUID.randomUUID(), Arrays.asList(update(1), update(2)));
+        batcher.add("core-2", UUID.randomUUID(), Collections.singletonList(update(3)));
+        batcher.add("core-1", UUID.randomUUID(), Collections.singletonList(update(4)));
+        Assert.assertTrue(sent.isEmpty());
+        Assert.assertEquals(2, lingerTasks.size());
+        verify(scheduler, times(2)).schedule(any(Runnable.class), eq(LINGER_MS), eq(TimeUnit.MILLISECONDS));
+
+        lingerTasks.forEach(Runnable::run);
+
+        Assert.assertEquals(Arrays.asList("core-1", "core-2"), targets);
+        Assert.assertEquals(3, sent.get(0).getSubUpdatesCount());
+        Assert.assertEquals(4, sent.get(0).getSubUpdates(2).getSubscriptionId());
+        Assert.assertEquals(0, sent.get(1).getSubUpdatesCount());
+        Assert.assertEquals(3, sent.get(1).getSubUpdate().getSubscriptionId());
+    }
+
+    @Test
+    public void testBatchIsFlushedOnMaxSize() {
+        TbSubscriptionUpdatesBatcher batcher = createBatcher(3);
+        batcher.add("core-1", UUID.randomUUID(), Arrays.asList(update(1), update(2)));
+        Assert.assertTrue(sent.isEmpty());
+        batcher.add("core-1", UUID.randomUUID(), Arrays.asList(update(3), update(4)));
+
+        Assert.assertEquals(1, sent.size());
+        Assert.assertEquals(4, sent.get(0).getSubUpdatesCount());
+        verify(lingerFutures.get(0)).cancel(false);
+    }
+
+    @Test
+    public void testLingerTaskOfFlushedBatchIsIgnored() {
+        TbSubscriptionUpdatesBatcher batcher = createBatcher(2);
+        batcher.add("core-1", UUID.randomUUID(), Arrays.asList(update(1), update(2)));
+        Assert.assertEquals(1, sent.size());
+        batcher.add("core-1", UUID.randomUUID(), Collections.singletonList(update(3)));
+
+        // The linger task of the first batch fires late and must not flush the second batch early.
+        lingerTasks.get(0).run();
+        Assert.assertEquals(1, sent.size());
+
+        lingerTasks.get(1).run();
+        Assert.assertEquals(2, sent.size());
+        Assert.assertEquals(3, sent.get(1).getSubUpdate().getSubscriptionId());
+    }
+
+    @Test
+    public void testPendingBatchesAreSentOnStop() {
+        TbSubscriptionUpdatesBatcher batcher = createBatcher(100);
+        batcher.add("core-1", UUID.randomUUID(), Arrays.asList(update(1), update(2)));
+        batcher.add("core-2", UUID.randomUUID(), Collections.singletonList(update(3)));
+
+        batcher.stop();
+        Assert.assertEquals(2, sent.size());
+        lingerFutures.forEach(future -> verify(future).cancel(false));
+
+        // Updates added after the stop are not delayed, since the linger tasks won't run anymore.
+        batcher.add("core-1", UUID.randomUUID(), Collections.singletonList(update(4)));
+        Assert.assertEquals(3, sent.size());
+        Assert.assertEquals(4, sent.get(2).getSubUpdate().getSubscriptionId());
+        Assert.assertEquals(2, lingerTasks.size());
+    }
+
+    private TbSubscriptionUpdatesBatcher createBatcher(int maxBatchSize) {
+        return new TbSubscriptionUpdatesBatcher(LINGER_MS, maxBatchSize, scheduler, this::onSend);
+    }
+
+    private void onSend(String targetServiceId, TbProtoQueueMsg<ToCoreNotificationMsg> msg) {
+        targets.add(targetServiceId);
+        sent.add(msg.getValue().getToLocalSubscriptionServiceMsg());
+    }
+
+    private static TbSubscriptionUpdateProto update(int subscriptionId) {
+        return TbSubscriptionUpdateProto.newBuilder().setSessionId("session").setSubscriptionId(subscriptionId).build();
+    }
+}
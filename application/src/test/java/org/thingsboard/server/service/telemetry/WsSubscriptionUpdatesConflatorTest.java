@@ -0,0 +1,169 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.telemetry;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.thingsboard.server.service.telemetry.sub.SubscriptionErrorCode;
+import org.thingsboard.server.service.telemetry.sub.SubscriptionUpdate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+
+public class WsSubscriptionUpdatesConflatorTest {
+
+    private final TelemetryWebSocketSessionRef sessionRef = new TelemetryWebSocketSessionRef(UUID.randomUUID().toString(), null, null, null);
+
+    private WsSubscriptionUpdatesConflator conflator;
+    private List<SubscriptionUpdate> sent;
+    private BiConsumer<TelemetryWebSocketSessionRef, SubscriptionUpdate> sender;
+
+    @Before
+    public void before() {
+        conflator = new WsSubscriptionUpdatesConflator();
+        sent = new ArrayList<>();
+        sender = (ref, update) -> {
+            Assert.assertEquals(sessionRef, ref);
+            sent.add(update);
+        };
+    }
+
+    @Test
+    public void testNotConflatedUpdatesAreSentAtOnce() {
+        conflator.addSubscription(sessionRef, 1, 10);
+
+        conflator.send(sessionRef, update(2, "temperature", 1), sender);
+
+        Assert.assertEquals(1, sent.size());
+        conflator.flush(sender);
+        Assert.assertEquals(1, sent.size());
+    }
+
+    @Test
+    public void testUpdatesAreCoalescedPerKey() {
+        conflator.addSubscription(sessionRef, 1, 10);
+
+        conflator.send(sessionRef, update(1, "temperature", 1), sender);
+        conflator.send(sessionRef, update(1, "humidity", 2), sender);
+        conflator.send(sessionRef, update(1, "temperature", 3), sender);
+        Assert.assertTrue(sent.isEmpty());
+
+        conflator.flush(sender);
+        Assert.assertEquals(1, sent.size());
+        Map<String, List<Object>> data = sent.get(0).getData();
+        Assert.assertEquals(Arrays.asList(value(1), value(3)), data.get("temperature"));
+        Assert.assertEquals(Collections.singletonList(value(2)), data.get("humidity"));
+
+        conflator.flush(sender);
+        Assert.assertEquals(1, sent.size());
+    }
+
+    @Test
+    public void testOnlyLatestValuesAreKeptInArrivalOrder() {
+        conflator.addSubscription(sessionRef, 1, 2);
+
+        for (int i = 0; i < 5; i++) {
+            conflator.send(sessionRef, update(1, "temperature", i), sender);
+        }
+        conflator.flush(sender);
+
+        Assert.assertEquals(Arrays.asList(value(3), value(4)), sent.get(0).getData().get("temperature"));
+    }
+
+    @Test
+    public void testSubscriptionsAreFlushedInArrivalOrder() {
+        conflator.addSubscription(sessionRef, 1, 10);
+        conflator.addSubscription(sessionRef, 2, 10);
+        conflator.addSubscription(sessionRef, 3, 10);
+
+        conflator.send(sessionRef, update(3, "temperature", 1), sender);
+        conflator.send(sessionRef, update(1, "temperature", 2), sender);
+        conflator.send(sessionRef, update(2, "temperature", 3), sender);
+        conflator.send(sessionRef, update(3, "temperature", 4), sender);
+        conflator.flush(sender);
+
+        Assert.assertEquals(3, sent.size());
+        Assert.assertEquals(3, sent.get(0).getSubscriptionId());
+        Assert.assertEquals(1, sent.get(1).getSubscriptionId());
+        Assert.assertEquals(2, sent.get(2).getSubscriptionId());
+    }
+
+    @Test
+    public void testPendingUpdateIsFlushedBeforeError() {
+        conflator.addSubscription(sessionRef, 1, 10);
+        conflator.send(sessionRef, update(1, "temperature", 1), sender);
+        conflator.send(sessionRef, update(1, "temperature", 2), sender);
+
+        SubscriptionUpdate error = new SubscriptionUpdate(1, SubscriptionErrorCode.INTERNAL_ERROR, "Failed");
+        conflator.send(sessionRef, error, sender);
+
+        Assert.assertEquals(2, sent.size());
+        Assert.assertEquals(Arrays.asList(value(1), value(2)), sent.get(0).getData().get("temperature"));
+        Assert.assertSame(error, sent.get(1));
+        conflator.flush(sender);
+        Assert.assertEquals(2, sent.size());
+    }
+
+    @Test
+    public void testPendingUpdatesAreDroppedOnClose() {
+        conflator.addSubscription(sessionRef, 1, 10);
+        conflator.addSubscription(sessionRef, 2, 10);
+        conflator.send(sessionRef, update(1, "temperature", 1), sender);
+        conflator.send(sessionRef, update(2, "temperature", 2), sender);
+
+        conflator.removeSubscription(sessionRef.getSessionId(), 1);
+        conflator.flush(sender);
+        Assert.assertEquals(1, sent.size());
+        Assert.assertEquals(2, sent.get(0).getSubscriptionId());
+
+        conflator.send(sessionRef, update(2, "temperature", 3), sender);
+        conflator.removeSession(sessionRef.getSessionId());
+        conflator.flush(sender);
+        Assert.assertEquals(1, sent.size());
+
+        conflator.send(sessionRef, update(2, "temperature", 4), sender);
+        Assert.assertEquals("Updates of a closed session are not conflated", 2, sent.size());
+    }
+
+    @Test
+    public void testSharedUpdateDataIsNotModified() {
+        conflator.addSubscription(sessionRef, 1, 10);
+        SubscriptionUpdate first = update(1, "temperature", 1);
+
+        conflator.send(sessionRef, first, sender);
+        conflator.send(sessionRef, update(1, "temperature", 2), sender);
+        conflator.flush(sender);
+
+        Assert.assertEquals(Collections.singletonList(value(1)), first.getData().get("temperature"));
+    }
+
+    private SubscriptionUpdate update(int subscriptionId, String key, long ts) {
+        Map<String, List<Object>> data = new HashMap<>();
+        data.put(key, new ArrayList<>(Collections.singletonList(value(ts))));
+        return new SubscriptionUpdate(subscriptionId, data);
+    }
+
+    private Object value(long ts) {
+        return Arrays.asList(ts, Long.toString(ts));
+    }
+}
@@ -48,9 +48,15 @@ public class DefaultTbActorSystem implements TbActorSystem {
     private final TbActorSystemSettings settings;
     @Getter
     private final ScheduledExecutorService scheduler;
+    private final TbActorStatsListener statsListener;
 
     public DefaultTbActorSystem(TbActorSystemSettings settings) {
+        this(settings, null);
+    }
+
+    public DefaultTbActorSystem(TbActorSystemSettings settings, TbActorStatsListener statsListener) {
         this.settings = settings;
+        this.statsListener = statsListener;
         this.scheduler = Executors.newScheduledThreadPool(settings.getSchedulerPoolSize(), ThingsBoardThreadFactory.forName("actor-system-scheduler"));
     }
 
@@ -113,7 +119,11 @@ public class DefaultTbActorSystem implements TbActorSystem {
                             throw new TbActorNotRegisteredException(parent, "Parent Actor with id [" + parent + "] is not registered!");
                         }
                     }
-                    TbActorMailbox mailbox = new TbActorMailbox(this, settings, actorId, parentRef, actor, dispatcher);
+                    TbActorMailboxStats stats = statsListener != null ? new TbActorMailboxStats(actorId, statsListener) : null;
+                    TbActorMailbox mailbox = new TbActorMailbox(this, settings, actorId, parentRef, actor, dispatcher, createMsgQueue(), stats);
+                    if (stats != null) {
+                        statsListener.onActorCreated(stats);
+                    }
                     actors.put(actorId, mailbox);
                     mailbox.initActor();
                     actorMailbox = mailbox;
@@ -131,6 +141,14 @@ public class DefaultTbActorSystem implements TbActorSystem {
         return actorMailbox;
     }
 
+    private TbActorMsgQueue createMsgQueue() {
+        if (settings.getMailboxType() == TbActorMailboxType.RING_BUFFER) {
+            return new RingBufferTbActorMsgQueue(settings.getMailboxCapacity(), settings.getMailboxOverflowPolicy());
+        } else {
+            return new LinkedTbActorMsgQueue();
+        }
+    }
+
     @Override
     public void tellWithHighPriority(TbActorId target, TbActorMsg actorMsg) {
         tell(target, actorMsg, true);
@@ -192,7 +210,16 @@ public class DefaultTbActorSystem implements TbActorSystem {
         }
         TbActorMailbox mailbox = actors.remove(actorId);
         if (mailbox != null) {
+            if (mailbox.getParentRef() != null) {
+                Set<TbActorId> siblings = parentChildMap.get(mailbox.getParentRef().getActorId());
+                if (siblings != null) {
+                    siblings.remove(actorId);
+                }
+            }
             mailbox.destroy();
+            if (mailbox.getStats() != null) {
+                statsListener.onActorDestroyed(mailbox.getStats());
+            }
         }
     }
 
@@ -0,0 +1,114 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.actors;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded lock-free multi-producer single-consumer queue backed by the array.
+ * {@link #poll()} and {@link #drain(Object[], int, int)} must not be called concurrently.
+ */
+final class MpscRingBuffer<E> {
+
+    private final AtomicReferenceArray<E> buffer;
+    private final int capacity;
+    private final int mask;
+    private final AtomicLong producerIndex = new AtomicLong();
+    private final AtomicLong consumerIndex = new AtomicLong();
+
+    MpscRingBuffer(int requestedCapacity) {
+        this.capacity = roundToPowerOfTwo(requestedCapacity);
+        this.mask = capacity - 1;
+        this.buffer = new AtomicReferenceArray<>(capacity);
+    }
+
+    boolean offer(E e) {
+        long pIdx;
+        do {
+            pIdx = producerIndex.get();
+            if (pIdx - consumerIndex.get() >= capacity) {
+                return false;
+            }
+        } while (!producerIndex.compareAndSet(pIdx, pIdx + 1));
+        buffer.lazySet((int) pIdx & mask, e);
+        return true;
+    }
+
+    E poll() {
+        long cIdx = consumerIndex.get();
+        int offset = (int) cIdx & mask;
+        E e = buffer.get(offset);
+        if (e == null) {
+            if (cIdx == producerIndex.get()) {
+                return null;
+            }
+            // The slot is claimed by the producer, but the element is not visible yet.
+            do {
+                Thread.yield();
+                e = buffer.get(offset);
+            } while (e == null);
+        }
+        buffer.lazySet(offset, null);
+        consumerIndex.lazySet(cIdx + 1);
+        return e;
+    }
+
+    /**
+     * Moves up to {@code limit} elements into {@code dst} starting at {@code offset}.
+     * The consumer index is published once per call, so slots are released to the producers in one step.
+     *
+     * @return number of moved elements.
+     */
+    int drain(E[] dst, int offset, int limit) {
+        long cIdx = consumerIndex.get();
+        int count = 0;
+        while (count < limit) {
+            int slot = (int) (cIdx + count) & mask;
+            E e = buffer.get(slot);
+            if (e == null) {
+                if (cIdx + count == producerIndex.get()) {
+                    break;
+                }
+                do {
+                    Thread.yield();
+                    e = buffer.get(slot);
+                } while (e == null);
+            }
+            buffer.lazySet(slot, null);
+            dst[offset + count++] = e;
+        }
+        if (count > 0) {
+            consumerIndex.lazySet(cIdx + count);
+        }
+        return count;
+    }
+
+    boolean isEmpty() {
+        return consumerIndex.get() == producerIndex.get();
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    private static int roundToPowerOfTwo(int value) {
+        if (value <= 1) {
+            return 1;
+        }
+        return Integer.highestOneBit(value - 1) << 1;
+    }
+}
@@ -0,0 +1,100 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.actors;
+
+import org.thingsboard.server.common.msg.TbActorMsg;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Keeps messages in the preallocated ring buffers. Messages that do not fit are either kept in the overflow queue
+ * or rejected, depending on {@link TbActorMailboxOverflowPolicy}. Once the overflow queue is used, new messages
+ * go to the overflow queue until it is empty, so the order of messages from the same producer is preserved.
+ */
+class RingBufferTbActorMsgQueue implements TbActorMsgQueue {
+
+    private static final int MIN_HIGH_PRIORITY_CAPACITY = 8;
+
+    private final MpscRingBuffer<TbActorMsg> highPriorityMsgs;
+    private final MpscRingBuffer<TbActorMsg> normalPriorityMsgs;
+    private final ConcurrentLinkedQueue<TbActorMsg> highPriorityOverflow = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<TbActorMsg> normalPriorityOverflow = new ConcurrentLinkedQueue<>();
+    private final boolean dropOnOverflow;
+
+    RingBufferTbActorMsgQueue(int capacity, TbActorMailboxOverflowPolicy overflowPolicy) {
+        this.highPriorityMsgs = new MpscRingBuffer<>(Math.max(MIN_HIGH_PRIORITY_CAPACITY, capacity / 8));
+        this.normalPriorityMsgs = new MpscRingBuffer<>(capacity);
+        this.dropOnOverflow = TbActorMailboxOverflowPolicy.DROP.equals(overflowPolicy);
+    }
+
+    @Override
+    public boolean add(TbActorMsg msg, boolean highPriority) {
+        if (highPriority) {
+            return add(msg, highPriorityMsgs, highPriorityOverflow, false);
+        } else {
+            return add(msg, normalPriorityMsgs, normalPriorityOverflow, dropOnOverflow);
+        }
+    }
+
+    private static boolean add(TbActorMsg msg, MpscRingBuffer<TbActorMsg> ringBuffer,
+                               ConcurrentLinkedQueue<TbActorMsg> overflow, boolean dropOnOverflow) {
+        if (overflow.isEmpty() && ringBuffer.offer(msg)) {
+            return true;
+        } else if (dropOnOverflow) {
+            return false;
+        } else {
+            overflow.add(msg);
+            return true;
+        }
+    }
+
+    @Override
+    public TbActorMsg poll() {
+        TbActorMsg msg = highPriorityMsgs.poll();
+        if (msg == null) {
+            msg = highPriorityOverflow.poll();
+        }
+        if (msg == null) {
+            msg = normalPriorityMsgs.poll();
+        }
+        if (msg == null) {
+            msg = normalPriorityOverflow.poll();
+        }
+        return msg;
+    }
+
+    @Override
+    public int drainTo(TbActorMsg[] batch) {
+        int size = highPriorityMsgs.drain(batch, 0, batch.length);
+        size = drainOverflow(highPriorityOverflow, batch, size);
+        size += normalPriorityMsgs.drain(batch, size, batch.length - size);
+        return drainOverflow(normalPriorityOverflow, batch, size);
+    }
+
+    private static int drainOverflow(ConcurrentLinkedQueue<TbActorMsg> overflow, TbActorMsg[] batch, int size) {
+        TbActorMsg msg;
+        while (size < batch.length && (msg = overflow.poll()) != null) {
+            batch[size++] = msg;
+        }
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return highPriorityMsgs.isEmpty() && highPriorityOverflow.isEmpty()
+                && normalPriorityMsgs.isEmpty() && normalPriorityOverflow.isEmpty();
+    }
+}
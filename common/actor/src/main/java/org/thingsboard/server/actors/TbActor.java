@@ -29,6 +29,20 @@ public interface TbActor {
     default void destroy() throws TbActorException {
     }
 
+    /**
+     * Called for each message that was left in the mailbox of the stopped actor.
+     * May be invoked concurrently with {@link #destroy()}.
+     */
+    default void onUndeliveredMsg(TbActorMsg msg) {
+    }
+
+    /**
+     * Called for each message that was rejected by the full mailbox of the actor, after {@link TbActorMsg#onRejected()}.
+     * Invoked by the sender thread, so may run concurrently with {@link #process(TbActorMsg)}.
+     */
+    default void onRejectedMsg(TbActorMsg msg) {
+    }
+
     default InitFailureStrategy onInitFailure(int attempt, Throwable t) {
         return InitFailureStrategy.retryWithDelay(5000 * attempt);
     }
@@ -0,0 +1,82 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.actors;
+
+import org.thingsboard.server.common.msg.TbActorMsg;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Lets the senders tell child actors directly, bypassing the parent actors that create them and check their messages.
+ * <p>
+ * A route is added by the parent only after it has accepted a message and told it to the child.
+ * The route is used only while no other message for the child is on its way through the parent,
+ * so messages of a single sender keep their order. The parents have to report every message that was sent through them
+ * with {@link #onForwarded}, including the ones they drop, otherwise the direct route of its target stays disabled.
+ */
+public class TbActorDirectRoutes {
+
+    private final TbActorSystem system;
+    private final ConcurrentMap<TbActorId, TbActorRef> routes = new ConcurrentHashMap<>();
+    private final ConcurrentMap<TbActorId, Integer> forwarded = new ConcurrentHashMap<>();
+
+    public TbActorDirectRoutes(TbActorSystem system) {
+        this.system = system;
+    }
+
+    /**
+     * Tells the message to the target if the route to it exists and nothing is forwarded to it through the parent.
+     *
+     * @return {@code false} if the message has to be sent through the parent, that has to call {@link #onForwarded}.
+     */
+    public boolean tell(TbActorId targetId, TbActorMsg msg, boolean highPriority) {
+        if (!forwarded.containsKey(targetId)) {
+            TbActorRef target = routes.get(targetId);
+            if (target != null) {
+                if (system.getActor(targetId) == target) {
+                    if (highPriority) {
+                        target.tellWithHighPriority(msg);
+                    } else {
+                        target.tell(msg);
+                    }
+                    return true;
+                }
+                routes.remove(targetId, target);
+            }
+        }
+        forwarded.merge(targetId, 1, Integer::sum);
+        return false;
+    }
+
+    /**
+     * Called by the parent once the message that was not told directly is handled or dropped.
+     *
+     * @param target the actor the message was told to, or {@code null} if the message was dropped.
+     */
+    public void onForwarded(TbActorId targetId, TbActorRef target) {
+        if (target != null) {
+            routes.put(targetId, target);
+        } else {
+            routes.remove(targetId);
+        }
+        forwarded.computeIfPresent(targetId, (id, count) -> count > 1 ? count - 1 : null);
+    }
+
+    public void remove(TbActorId targetId, TbActorRef target) {
+        routes.remove(targetId, target);
+    }
+}
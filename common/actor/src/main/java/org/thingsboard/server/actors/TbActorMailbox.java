@@ -15,12 +15,16 @@
  */
 package org.thingsboard.server.actors;
 
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
 import lombok.extern.slf4j.Slf4j;
 import org.thingsboard.server.common.msg.TbActorMsg;
 
 import java.util.List;
-import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Predicate;
@@ -28,6 +32,8 @@ import java.util.function.Supplier;
 
 @Slf4j
 @Data
+@EqualsAndHashCode(exclude = "drainBuffer")
+@ToString(exclude = "drainBuffer")
 public final class TbActorMailbox implements TbActorCtx {
     private static final boolean HIGH_PRIORITY = true;
     private static final boolean NORMAL_PRIORITY = false;
@@ -44,11 +50,15 @@ public final class TbActorMailbox implements TbActorCtx {
     private final TbActorRef parentRef;
     private final TbActor actor;
     private final Dispatcher dispatcher;
-    private final ConcurrentLinkedQueue<TbActorMsg> highPriorityMsgs = new ConcurrentLinkedQueue<>();
-    private final ConcurrentLinkedQueue<TbActorMsg> normalPriorityMsgs = new ConcurrentLinkedQueue<>();
+    private final TbActorMsgQueue msgQueue;
+    private final TbActorMailboxStats stats;
     private final AtomicBoolean busy = new AtomicBoolean(FREE);
     private final AtomicBoolean ready = new AtomicBoolean(NOT_READY);
     private final AtomicBoolean destroyInProgress = new AtomicBoolean();
+    // Used only by the thread that owns the busy flag. Slots are cleared before the flag is released.
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private TbActorMsg[] drainBuffer;
 
     public void initActor() {
         dispatcher.getExecutor().execute(() -> tryInit(1));
@@ -84,17 +94,30 @@ public final class TbActorMailbox implements TbActorCtx {
     }
 
     private void enqueue(TbActorMsg msg, boolean highPriority) {
-        if (highPriority) {
-            highPriorityMsgs.add(msg);
+        TbActorMsg queuedMsg = stats != null ? stats.onEnqueue(msg) : msg;
+        if (!msgQueue.add(queuedMsg, highPriority)) {
+            log.trace("[{}] MessageBox is full, msg rejected: {}", selfId, msg);
+            if (stats != null) {
+                stats.onRejected();
+            }
+            try {
+                msg.onRejected();
+                actor.onRejectedMsg(msg);
+            } catch (Throwable t) {
+                log.debug("[{}] Failed to handle rejected message: {}", selfId, msg, t);
+            }
+            return;
+        }
+        if (destroyInProgress.get()) {
+            drainUndeliveredMsgs();
         } else {
-            normalPriorityMsgs.add(msg);
+            tryProcessQueue(true);
         }
-        tryProcessQueue(true);
     }
 
     private void tryProcessQueue(boolean newMsg) {
         if (ready.get() == READY) {
-            if (newMsg || !highPriorityMsgs.isEmpty() || !normalPriorityMsgs.isEmpty()) {
+            if (newMsg || !msgQueue.isEmpty()) {
                 if (busy.compareAndSet(FREE, BUSY)) {
                     dispatcher.getExecutor().execute(this::processMailbox);
                 } else {
@@ -109,36 +132,84 @@ public final class TbActorMailbox implements TbActorCtx {
     }
 
     private void processMailbox() {
-        boolean noMoreElements = false;
-        for (int i = 0; i < settings.getActorThroughput(); i++) {
-            TbActorMsg msg = highPriorityMsgs.poll();
-            if (msg == null) {
-                msg = normalPriorityMsgs.poll();
+        if (drainBuffer == null) {
+            drainBuffer = new TbActorMsg[settings.getActorThroughput()];
+        }
+        TbActorMsg[] batch = drainBuffer;
+        int size = msgQueue.drainTo(batch);
+        for (int i = 0; i < size; i++) {
+            TbActorMsg msg = batch[i];
+            batch[i] = null;
+            if (destroyInProgress.get()) {
+                onUndeliveredMsg(msg);
+                for (int j = i + 1; j < size; j++) {
+                    onUndeliveredMsg(batch[j]);
+                    batch[j] = null;
+                }
+                busy.set(FREE);
+                drainUndeliveredMsgs();
+                return;
             }
-            if (msg != null) {
-                try {
-                    log.debug("[{}] Going to process message: {}", selfId, msg);
-                    actor.process(msg);
-                } catch (Throwable t) {
-                    log.debug("[{}] Failed to process message: {}", selfId, msg, t);
-                    ProcessFailureStrategy strategy = actor.onProcessFailure(t);
-                    if (strategy.isStop()) {
-                        system.stop(selfId);
+            try {
+                if (stats != null) {
+                    stats.onDequeue();
+                    if (msg instanceof TimedTbActorMsg) {
+                        processTimedMsg((TimedTbActorMsg) msg);
+                        continue;
                     }
                 }
-            } else {
-                noMoreElements = true;
-                break;
+                log.debug("[{}] Going to process message: {}", selfId, msg);
+                actor.process(msg);
+            } catch (Throwable t) {
+                log.debug("[{}] Failed to process message: {}", selfId, msg, t);
+                ProcessFailureStrategy strategy = actor.onProcessFailure(t);
+                if (strategy.isStop()) {
+                    system.stop(selfId);
+                }
             }
         }
-        if (noMoreElements) {
+        if (size < batch.length) {
             busy.set(FREE);
-            dispatcher.getExecutor().execute(() -> tryProcessQueue(false));
+            if (destroyInProgress.get()) {
+                drainUndeliveredMsgs();
+            } else if (!msgQueue.isEmpty()) {
+                tryProcessQueue(false);
+            }
         } else {
             dispatcher.getExecutor().execute(this::processMailbox);
         }
     }
 
+    private void processTimedMsg(TimedTbActorMsg timedMsg) {
+        log.debug("[{}] Going to process message: {}", selfId, timedMsg.getMsg());
+        long processingStartTs = System.nanoTime();
+        actor.process(timedMsg.getMsg());
+        stats.onProcessed(timedMsg, processingStartTs);
+    }
+
+    private void drainUndeliveredMsgs() {
+        // Messages are polled only by the thread that owns the busy flag, since the queue may have a single consumer.
+        while (!msgQueue.isEmpty() && busy.compareAndSet(FREE, BUSY)) {
+            TbActorMsg msg;
+            while ((msg = msgQueue.poll()) != null) {
+                onUndeliveredMsg(msg);
+            }
+            busy.set(FREE);
+        }
+    }
+
+    private void onUndeliveredMsg(TbActorMsg msg) {
+        if (stats != null) {
+            stats.onDequeue();
+            msg = TimedTbActorMsg.unwrap(msg);
+        }
+        try {
+            actor.onUndeliveredMsg(msg);
+        } catch (Throwable t) {
+            log.debug("[{}] Failed to handle undelivered message: {}", selfId, msg, t);
+        }
+    }
+
     @Override
     public TbActorId getSelf() {
         return selfId;
@@ -188,6 +259,7 @@ public final class TbActorMailbox implements TbActorCtx {
             } catch (Throwable t) {
                 log.warn("[{}] Failed to destroy actor: {}", selfId, t);
             }
+            drainUndeliveredMsgs();
         });
     }
 
@@ -0,0 +1,64 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.actors;
+
+import lombok.Getter;
+import org.thingsboard.server.common.msg.TbActorMsg;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public final class TbActorMailboxStats {
+
+    @Getter
+    private final TbActorId actorId;
+    private final TbActorStatsListener listener;
+    private final int sampleRate;
+    private final AtomicInteger queueSize = new AtomicInteger();
+
+    TbActorMailboxStats(TbActorId actorId, TbActorStatsListener listener) {
+        this.actorId = actorId;
+        this.listener = listener;
+        this.sampleRate = Math.max(1, listener.getSampleRate());
+    }
+
+    public int getQueueSize() {
+        return Math.max(0, queueSize.get());
+    }
+
+    TbActorMsg onEnqueue(TbActorMsg msg) {
+        queueSize.incrementAndGet();
+        if (sampleRate == 1 || ThreadLocalRandom.current().nextInt(sampleRate) == 0) {
+            return new TimedTbActorMsg(msg, System.nanoTime());
+        } else {
+            return msg;
+        }
+    }
+
+    void onRejected() {
+        queueSize.decrementAndGet();
+    }
+
+    void onDequeue() {
+        queueSize.decrementAndGet();
+    }
+
+    void onProcessed(TimedTbActorMsg timedMsg, long processingStartTs) {
+        long now = System.nanoTime();
+        listener.onMsgProcessed(actorId, timedMsg.getMsg(), processingStartTs - timedMsg.getEnqueueTs(), now - processingStartTs);
+    }
+
+}
@@ -0,0 +1,39 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.actors;
+
+import org.thingsboard.server.common.msg.TbActorMsg;
+
+/**
+ * Queue of the actor mailbox. Producers may add messages concurrently,
+ * while messages are polled by a single consumer at a time.
+ */
+interface TbActorMsgQueue {
+
+    boolean add(TbActorMsg msg, boolean highPriority);
+
+    TbActorMsg poll();
+
+    /**
+     * Moves up to {@code batch.length} messages into the batch, high priority messages first.
+     *
+     * @return number of moved messages.
+     */
+    int drainTo(TbActorMsg[] batch);
+
+    boolean isEmpty();
+
+}
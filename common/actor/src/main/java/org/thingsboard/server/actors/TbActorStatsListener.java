@@ -0,0 +1,41 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.actors;
+
+import org.thingsboard.server.common.msg.TbActorMsg;
+
+/**
+ * Receives actor system statistics. The actor system does not collect any statistics unless a listener is provided.
+ */
+public interface TbActorStatsListener {
+
+    /**
+     * Every N-th message (on average) is timed, so 1 means every message.
+     */
+    int getSampleRate();
+
+    default void onActorCreated(TbActorMailboxStats stats) {
+    }
+
+    default void onActorDestroyed(TbActorMailboxStats stats) {
+    }
+
+    /**
+     * Called for sampled messages only, from the dispatcher thread that processed the message.
+     */
+    void onMsgProcessed(TbActorId actorId, TbActorMsg msg, long waitTimeNanos, long processingTimeNanos);
+
+}
@@ -23,5 +23,22 @@ public class TbActorSystemSettings {
     private final int actorThroughput;
     private final int schedulerPoolSize;
     private final int maxActorInitAttempts;
+    private final TbActorMailboxType mailboxType;
+    private final int mailboxCapacity;
+    private final TbActorMailboxOverflowPolicy mailboxOverflowPolicy;
+
+    public TbActorSystemSettings(int actorThroughput, int schedulerPoolSize, int maxActorInitAttempts) {
+        this(actorThroughput, schedulerPoolSize, maxActorInitAttempts, TbActorMailboxType.LINKED, 0, TbActorMailboxOverflowPolicy.SPILL);
+    }
+
+    public TbActorSystemSettings(int actorThroughput, int schedulerPoolSize, int maxActorInitAttempts,
+                                 TbActorMailboxType mailboxType, int mailboxCapacity, TbActorMailboxOverflowPolicy mailboxOverflowPolicy) {
+        this.actorThroughput = actorThroughput;
+        this.schedulerPoolSize = schedulerPoolSize;
+        this.maxActorInitAttempts = maxActorInitAttempts;
+        this.mailboxType = mailboxType;
+        this.mailboxCapacity = mailboxCapacity;
+        this.mailboxOverflowPolicy = mailboxOverflowPolicy;
+    }
 
 }
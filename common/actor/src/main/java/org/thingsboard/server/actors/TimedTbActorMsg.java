@@ -0,0 +1,50 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.actors;
+
+import lombok.Getter;
+import org.thingsboard.server.common.msg.MsgType;
+import org.thingsboard.server.common.msg.TbActorMsg;
+
+/**
+ * Wraps sampled messages to keep the enqueue time until the message is processed.
+ */
+@Getter
+final class TimedTbActorMsg implements TbActorMsg {
+
+    private final TbActorMsg msg;
+    private final long enqueueTs;
+
+    TimedTbActorMsg(TbActorMsg msg, long enqueueTs) {
+        this.msg = msg;
+        this.enqueueTs = enqueueTs;
+    }
+
+    @Override
+    public MsgType getMsgType() {
+        return msg.getMsgType();
+    }
+
+    @Override
+    public String toString() {
+        return msg.toString();
+    }
+
+    static TbActorMsg unwrap(TbActorMsg msg) {
+        return msg instanceof TimedTbActorMsg ? ((TimedTbActorMsg) msg).getMsg() : msg;
+    }
+
+}
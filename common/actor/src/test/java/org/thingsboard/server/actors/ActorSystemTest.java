@@ -23,17 +23,23 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.runners.MockitoJUnitRunner;
 import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.msg.TbActorMsg;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
 
 @Slf4j
 @RunWith(MockitoJUnitRunner.class)
@@ -116,6 +122,22 @@ public class ActorSystemTest {
         Assert.assertFalse(testCtx1.getLatch().await(1, TimeUnit.SECONDS));
     }
 
+    @Test
+    public void testUndeliveredMessagesAfterDestroy() throws InterruptedException {
+        actorSystem.createDispatcher(ROOT_DISPATCHER, Executors.newWorkStealingPool(parallelism));
+        ActorTestCtx testCtx = getActorTestCtx(1);
+
+        TbActorRef actorRef = actorSystem.createRootActor(ROOT_DISPATCHER, new SlowInitActor.SlowInitActorCreator(
+                new TbEntityActorId(new DeviceId(UUID.randomUUID())), testCtx));
+
+        actorRef.tell(new IntTbActorMsg(42));
+        actorSystem.stop(actorRef);
+        actorRef.tell(new IntTbActorMsg(42));
+
+        Assert.assertFalse(testCtx.getLatch().await(1, TimeUnit.SECONDS));
+        Assert.assertEquals(2, testCtx.getUndeliveredCount().get());
+    }
+
     @Test
     public void testOneActorCreated() throws InterruptedException {
         actorSystem.createDispatcher(ROOT_DISPATCHER, Executors.newWorkStealingPool(parallelism));
@@ -167,6 +189,216 @@ public class ActorSystemTest {
         Assert.assertTrue(testCtx1.getLatch().await(3, TimeUnit.SECONDS));
     }
 
+    @Test
+    public void testDirectRoutingKeepsMessageOrder() throws InterruptedException {
+        actorSystem.createDispatcher(ROOT_DISPATCHER, Executors.newWorkStealingPool(parallelism));
+        int actorsCount = 100;
+        int msgNumber = 1000;
+        TbActorDirectRoutes routes = new TbActorDirectRoutes(actorSystem);
+        Map<TbActorId, List<Integer>> received = new ConcurrentHashMap<>();
+        CountDownLatch latch = new CountDownLatch(actorsCount);
+        TbActorRef forwarder = actorSystem.createRootActor(ROOT_DISPATCHER, new ForwardingActor.ForwardingActorCreator(
+                new TbEntityActorId(new DeviceId(UUID.randomUUID())), routes,
+                targetId -> new SequenceActor.SequenceActorCreator(targetId, received.get(targetId), msgNumber, latch)));
+
+        for (int actorIdx = 0; actorIdx < actorsCount; actorIdx++) {
+            TbActorId targetId = new TbEntityActorId(new DeviceId(UUID.randomUUID()));
+            received.put(targetId, new CopyOnWriteArrayList<>());
+            submitPool.execute(() -> {
+                for (int i = 0; i < msgNumber; i++) {
+                    RoutedIntTbActorMsg msg = new RoutedIntTbActorMsg(targetId, i);
+                    if (!routes.tell(targetId, msg, false)) {
+                        forwarder.tell(msg);
+                    }
+                }
+            });
+        }
+
+        Assert.assertTrue(latch.await(1, TimeUnit.MINUTES));
+        for (List<Integer> values : received.values()) {
+            for (int i = 0; i < msgNumber; i++) {
+                Assert.assertEquals(i, values.get(i).intValue());
+            }
+        }
+    }
+
+    @Test
+    public void test1KActorsAnd100MessagesDirectVsForwarded() throws InterruptedException {
+        actorSystem.createDispatcher(ROOT_DISPATCHER, Executors.newWorkStealingPool(parallelism));
+        int actorsCount = 1000;
+        int msgNumber = 100;
+        TbActorDirectRoutes routes = new TbActorDirectRoutes(actorSystem);
+        Map<TbActorId, ActorTestCtx> testCtxes = new LinkedHashMap<>();
+        for (int actorIdx = 0; actorIdx < actorsCount; actorIdx++) {
+            testCtxes.put(new TbEntityActorId(new DeviceId(UUID.randomUUID())), getActorTestCtx(msgNumber));
+        }
+        TbActorRef forwarder = actorSystem.createRootActor(ROOT_DISPATCHER, new ForwardingActor.ForwardingActorCreator(
+                new TbEntityActorId(new DeviceId(UUID.randomUUID())), routes,
+                targetId -> new TestRootActor.TestRootActorCreator(targetId, testCtxes.get(targetId))));
+
+        for (int t = 0; t < 5; t++) {
+            long forwarded = routeMessages(testCtxes, msgNumber, (targetId, msg) -> forwarder.tell(msg));
+            long direct = routeMessages(testCtxes, msgNumber, (targetId, msg) -> {
+                if (!routes.tell(targetId, msg, false)) {
+                    forwarder.tell(msg);
+                }
+            });
+            log.info("Routing of {} messages: forwarded {} ms, direct {} ms", actorsCount * msgNumber,
+                    TimeUnit.NANOSECONDS.toMillis(forwarded), TimeUnit.NANOSECONDS.toMillis(direct));
+        }
+    }
+
+    private long routeMessages(Map<TbActorId, ActorTestCtx> testCtxes, int msgNumber,
+                               BiConsumer<TbActorId, TbActorMsg> router) throws InterruptedException {
+        long start = System.nanoTime();
+        // a single producer per target, so that the direct route is not disabled by the concurrent forwarded messages
+        for (TbActorId targetId : testCtxes.keySet()) {
+            submitPool.execute(() -> {
+                for (int i = 0; i < msgNumber; i++) {
+                    router.accept(targetId, new RoutedIntTbActorMsg(targetId, 1));
+                }
+            });
+        }
+        for (ActorTestCtx ctx : testCtxes.values()) {
+            Assert.assertTrue(ctx.getLatch().await(1, TimeUnit.MINUTES));
+            Assert.assertEquals(msgNumber, ctx.getActual().get());
+            ctx.clear();
+        }
+        return System.nanoTime() - start;
+    }
+
+    @Test
+    public void testDroppedForwardedMsgEnablesDirectRouteAgain() throws InterruptedException {
+        actorSystem.createDispatcher(ROOT_DISPATCHER, Executors.newWorkStealingPool(parallelism));
+        TbActorDirectRoutes routes = new TbActorDirectRoutes(actorSystem);
+        ActorTestCtx testCtx = getActorTestCtx(1);
+        TbActorId targetId = new TbEntityActorId(new DeviceId(UUID.randomUUID()));
+        TbActorRef target = actorSystem.createRootActor(ROOT_DISPATCHER, new TestRootActor.TestRootActorCreator(targetId, testCtx));
+
+        // the parent drops the first message, the second one is told to the target
+        Assert.assertFalse(routes.tell(targetId, new IntTbActorMsg(1), false));
+        routes.onForwarded(targetId, null);
+        Assert.assertFalse(routes.tell(targetId, new IntTbActorMsg(1), false));
+        routes.onForwarded(targetId, target);
+        Assert.assertTrue(routes.tell(targetId, new IntTbActorMsg(1), false));
+
+        routes.remove(targetId, target);
+        Assert.assertFalse(routes.tell(targetId, new IntTbActorMsg(1), false));
+    }
+
+    @Test
+    public void testMailboxThroughputWith1And4And32Producers() throws InterruptedException {
+        for (int producers : new int[]{1, 4, 32}) {
+            for (TbActorMailboxType mailboxType : TbActorMailboxType.values()) {
+                long duration = testMailboxThroughput(mailboxType, producers, 4 * _100K);
+                log.info("[{}] Processed {} messages from {} producers in {} ms", mailboxType, 4 * _100K, producers,
+                        TimeUnit.NANOSECONDS.toMillis(duration));
+            }
+        }
+    }
+
+    @Test
+    public void testRingBufferMailboxDropOnOverflow() throws InterruptedException {
+        TbActorSystem ringBufferSystem = new DefaultTbActorSystem(new TbActorSystemSettings(5, 1, 42,
+                TbActorMailboxType.RING_BUFFER, 16, TbActorMailboxOverflowPolicy.DROP));
+        try {
+            ringBufferSystem.createDispatcher(ROOT_DISPATCHER, Executors.newSingleThreadExecutor());
+            ActorTestCtx testCtx = getActorTestCtx(1);
+            TbActorRef actorRef = ringBufferSystem.createRootActor(ROOT_DISPATCHER, new SlowInitActor.SlowInitActorCreator(
+                    new TbEntityActorId(new DeviceId(UUID.randomUUID())), testCtx));
+            AtomicInteger rejected = new AtomicInteger();
+            for (int i = 0; i < 20; i++) {
+                actorRef.tell(new IntTbActorMsg(1) {
+                    @Override
+                    public void onRejected() {
+                        rejected.incrementAndGet();
+                    }
+                });
+            }
+            Assert.assertEquals(4, rejected.get());
+            Assert.assertEquals(0, testCtx.getUndeliveredCount().get());
+        } finally {
+            ringBufferSystem.stop();
+        }
+    }
+
+    @Test
+    public void testStatsListenerReceivesSampledMessages() throws InterruptedException {
+        AtomicInteger createdCount = new AtomicInteger();
+        AtomicInteger processedCount = new AtomicInteger();
+        List<TbActorMailboxStats> mailboxStats = new ArrayList<>();
+        TbActorStatsListener statsListener = new TbActorStatsListener() {
+            @Override
+            public int getSampleRate() {
+                return 1;
+            }
+
+            @Override
+            public void onActorCreated(TbActorMailboxStats stats) {
+                createdCount.incrementAndGet();
+                mailboxStats.add(stats);
+            }
+
+            @Override
+            public void onMsgProcessed(TbActorId actorId, TbActorMsg msg, long waitTimeNanos, long processingTimeNanos) {
+                Assert.assertTrue(msg instanceof IntTbActorMsg);
+                Assert.assertTrue(waitTimeNanos >= 0);
+                Assert.assertTrue(processingTimeNanos >= 0);
+                processedCount.incrementAndGet();
+            }
+        };
+        TbActorSystem statsSystem = new DefaultTbActorSystem(new TbActorSystemSettings(5, 1, 42), statsListener);
+        try {
+            statsSystem.createDispatcher(ROOT_DISPATCHER, Executors.newSingleThreadExecutor());
+            int msgNumber = 1000;
+            ActorTestCtx testCtx = getActorTestCtx(msgNumber);
+            TbActorRef actorRef = statsSystem.createRootActor(ROOT_DISPATCHER, new SlowInitActor.SlowInitActorCreator(
+                    new TbEntityActorId(new DeviceId(UUID.randomUUID())), testCtx));
+            for (int i = 0; i < msgNumber; i++) {
+                actorRef.tell(new IntTbActorMsg(1));
+            }
+            Assert.assertEquals(1, createdCount.get());
+            Assert.assertEquals(msgNumber, mailboxStats.get(0).getQueueSize());
+            Assert.assertTrue(testCtx.getLatch().await(1, TimeUnit.MINUTES));
+            // the last message is reported right after the actor has processed it
+            for (int i = 0; i < 100 && processedCount.get() < msgNumber; i++) {
+                Thread.sleep(10);
+            }
+            Assert.assertEquals(msgNumber, processedCount.get());
+            Assert.assertEquals(0, mailboxStats.get(0).getQueueSize());
+        } finally {
+            statsSystem.stop();
+        }
+    }
+
+    private long testMailboxThroughput(TbActorMailboxType mailboxType, int producers, int msgNumber) throws InterruptedException {
+        TbActorSystem mailboxSystem = new DefaultTbActorSystem(new TbActorSystemSettings(5, 1, 42,
+                mailboxType, 1024, TbActorMailboxOverflowPolicy.SPILL));
+        ExecutorService producerPool = Executors.newFixedThreadPool(producers);
+        try {
+            mailboxSystem.createDispatcher(ROOT_DISPATCHER, Executors.newWorkStealingPool(parallelism));
+            ActorTestCtx testCtx = getActorTestCtx(msgNumber);
+            TbActorRef actorRef = mailboxSystem.createRootActor(ROOT_DISPATCHER, new TestRootActor.TestRootActorCreator(
+                    new TbEntityActorId(new DeviceId(UUID.randomUUID())), testCtx));
+            int msgPerProducer = msgNumber / producers;
+            long start = System.nanoTime();
+            for (int p = 0; p < producers; p++) {
+                int count = p == 0 ? msgNumber - msgPerProducer * (producers - 1) : msgPerProducer;
+                producerPool.execute(() -> {
+                    for (int i = 0; i < count; i++) {
+                        actorRef.tell(new IntTbActorMsg(1));
+                    }
+                });
+            }
+            Assert.assertTrue(testCtx.getLatch().await(1, TimeUnit.MINUTES));
+            long duration = System.nanoTime() - start;
+            Assert.assertEquals(msgNumber, testCtx.getActual().get());
+            return duration;
+        } finally {
+            producerPool.shutdownNow();
+            mailboxSystem.stop();
+        }
+    }
 
     public void testActorsAndMessages(int actorsCount, int msgNumber, int times) throws InterruptedException {
         Random random = new Random();
@@ -219,6 +451,6 @@ public class ActorSystemTest {
         CountDownLatch countDownLatch = new CountDownLatch(1);
         AtomicLong actual = new AtomicLong();
         AtomicInteger invocations = new AtomicInteger();
-        return new ActorTestCtx(countDownLatch, invocations, i, actual);
+        return new ActorTestCtx(countDownLatch, invocations, i, actual, new AtomicInteger());
     }
 }
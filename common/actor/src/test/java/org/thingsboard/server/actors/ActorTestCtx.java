@@ -30,10 +30,12 @@ public class ActorTestCtx {
     private final AtomicInteger invocationCount;
     private final int expectedInvocationCount;
     private final AtomicLong actual;
+    private final AtomicInteger undeliveredCount;
 
     public void clear() {
         latch = new CountDownLatch(1);
         invocationCount.set(0);
         actual.set(0L);
+        undeliveredCount.set(0);
     }
 }
@@ -0,0 +1,63 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.actors;
+
+import org.thingsboard.server.common.msg.TbActorMsg;
+
+import java.util.function.Function;
+
+public class ForwardingActor extends AbstractTbActor {
+
+    private final TbActorDirectRoutes routes;
+    private final Function<TbActorId, TbActorCreator> childCreator;
+
+    public ForwardingActor(TbActorDirectRoutes routes, Function<TbActorId, TbActorCreator> childCreator) {
+        this.routes = routes;
+        this.childCreator = childCreator;
+    }
+
+    @Override
+    public boolean process(TbActorMsg msg) {
+        TbActorId targetId = ((RoutedIntTbActorMsg) msg).getTargetId();
+        TbActorRef target = ctx.getOrCreateChildActor(targetId, () -> ActorSystemTest.ROOT_DISPATCHER, () -> childCreator.apply(targetId));
+        target.tell(msg);
+        routes.onForwarded(targetId, target);
+        return true;
+    }
+
+    public static class ForwardingActorCreator implements TbActorCreator {
+
+        private final TbActorId actorId;
+        private final TbActorDirectRoutes routes;
+        private final Function<TbActorId, TbActorCreator> childCreator;
+
+        public ForwardingActorCreator(TbActorId actorId, TbActorDirectRoutes routes, Function<TbActorId, TbActorCreator> childCreator) {
+            this.actorId = actorId;
+            this.routes = routes;
+            this.childCreator = childCreator;
+        }
+
+        @Override
+        public TbActorId createActorId() {
+            return actorId;
+        }
+
+        @Override
+        public TbActor createActor() {
+            return new ForwardingActor(routes, childCreator);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.actors;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+public class MpscRingBufferTest {
+
+    @Test
+    public void testCapacityIsRoundedToPowerOfTwo() {
+        Assert.assertEquals(1, new MpscRingBuffer<Integer>(0).capacity());
+        Assert.assertEquals(16, new MpscRingBuffer<Integer>(16).capacity());
+        Assert.assertEquals(32, new MpscRingBuffer<Integer>(17).capacity());
+    }
+
+    @Test
+    public void testOfferFailsWhenFull() {
+        MpscRingBuffer<Integer> buffer = new MpscRingBuffer<>(4);
+        for (int i = 0; i < 4; i++) {
+            Assert.assertTrue(buffer.offer(i));
+        }
+        Assert.assertFalse(buffer.offer(4));
+        Assert.assertEquals(Integer.valueOf(0), buffer.poll());
+        Assert.assertTrue(buffer.offer(4));
+        for (int i = 1; i <= 4; i++) {
+            Assert.assertEquals(Integer.valueOf(i), buffer.poll());
+        }
+        Assert.assertNull(buffer.poll());
+        Assert.assertTrue(buffer.isEmpty());
+    }
+
+    @Test
+    public void testDrainMovesElementsInOrder() {
+        MpscRingBuffer<Integer> buffer = new MpscRingBuffer<>(8);
+        for (int i = 0; i < 8; i++) {
+            Assert.assertTrue(buffer.offer(i));
+        }
+        Integer[] batch = new Integer[6];
+        Assert.assertEquals(5, buffer.drain(batch, 1, 5));
+        for (int i = 0; i < 5; i++) {
+            Assert.assertEquals(Integer.valueOf(i), batch[i + 1]);
+        }
+        for (int i = 8; i < 13; i++) {
+            Assert.assertTrue(buffer.offer(i));
+        }
+        Assert.assertFalse(buffer.offer(13));
+        Assert.assertEquals(6, buffer.drain(batch, 0, 6));
+        Assert.assertEquals(Integer.valueOf(5), batch[0]);
+        Assert.assertEquals(Integer.valueOf(10), batch[5]);
+        Assert.assertEquals(2, buffer.drain(batch, 0, 6));
+        Assert.assertEquals(0, buffer.drain(batch, 0, 6));
+        Assert.assertTrue(buffer.isEmpty());
+    }
+
+    @Test
+    public void testConcurrentProducersKeepPerProducerOrder() throws InterruptedException {
+        int producers = 4;
+        int msgPerProducer = 10000;
+        MpscRingBuffer<long[]> buffer = new MpscRingBuffer<>(64);
+        ExecutorService pool = Executors.newFixedThreadPool(producers);
+        CountDownLatch latch = new CountDownLatch(producers);
+        try {
+            for (int p = 0; p < producers; p++) {
+                int producer = p;
+                pool.execute(() -> {
+                    for (long i = 0; i < msgPerProducer; i++) {
+                        long[] msg = new long[]{producer, i};
+                        while (!buffer.offer(msg)) {
+                            Thread.yield();
+                        }
+                    }
+                    latch.countDown();
+                });
+            }
+            long[] expected = new long[producers];
+            int received = 0;
+            long deadline = System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(1);
+            while (received < producers * msgPerProducer && System.currentTimeMillis() < deadline) {
+                long[] msg = buffer.poll();
+                if (msg != null) {
+                    Assert.assertEquals(expected[(int) msg[0]]++, msg[1]);
+                    received++;
+                }
+            }
+            Assert.assertEquals(producers * msgPerProducer, received);
+            Assert.assertTrue(latch.await(1, TimeUnit.SECONDS));
+            Assert.assertTrue(buffer.isEmpty());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
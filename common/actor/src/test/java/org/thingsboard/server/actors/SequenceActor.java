@@ -0,0 +1,68 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.actors;
+
+import org.thingsboard.server.common.msg.TbActorMsg;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+public class SequenceActor extends AbstractTbActor {
+
+    private final List<Integer> received;
+    private final int expected;
+    private final CountDownLatch latch;
+
+    public SequenceActor(List<Integer> received, int expected, CountDownLatch latch) {
+        this.received = received;
+        this.expected = expected;
+        this.latch = latch;
+    }
+
+    @Override
+    public boolean process(TbActorMsg msg) {
+        received.add(((IntTbActorMsg) msg).getValue());
+        if (received.size() == expected) {
+            latch.countDown();
+        }
+        return true;
+    }
+
+    public static class SequenceActorCreator implements TbActorCreator {
+
+        private final TbActorId actorId;
+        private final List<Integer> received;
+        private final int expected;
+        private final CountDownLatch latch;
+
+        public SequenceActorCreator(TbActorId actorId, List<Integer> received, int expected, CountDownLatch latch) {
+            this.actorId = actorId;
+            this.received = received;
+            this.expected = expected;
+            this.latch = latch;
+        }
+
+        @Override
+        public TbActorId createActorId() {
+            return actorId;
+        }
+
+        @Override
+        public TbActor createActor() {
+            return new SequenceActor(received, expected, latch);
+        }
+    }
+}
@@ -64,6 +64,11 @@ public class TestRootActor extends AbstractTbActor {
 
     }
 
+    @Override
+    public void onUndeliveredMsg(TbActorMsg msg) {
+        testCtx.getUndeliveredCount().incrementAndGet();
+    }
+
     public static class TestRootActorCreator implements TbActorCreator {
 
         private final TbActorId actorId;
@@ -22,4 +22,12 @@ public interface TbActorMsg {
 
     MsgType getMsgType();
 
+    /**
+     * Executed when the message was rejected by the full mailbox of the target actor and will never be processed.
+     * Messages that carry a callback, for example the callback of a {@link TbMsg}, have to fail it here,
+     * so that the message pack waiting for it does not hang until the processing timeout.
+     */
+    default void onRejected() {
+    }
+
 }
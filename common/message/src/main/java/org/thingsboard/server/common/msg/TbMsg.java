@@ -135,7 +135,7 @@ public final class TbMsg implements Serializable {
         }
 
         if (msg.getMetaData() != null) {
-            builder.setMetaData(MsgProtos.TbMsgMetaDataProto.newBuilder().putAllData(msg.getMetaData().getData()).build());
+            builder.setMetaData(msg.getMetaData().toProto());
         }
 
         builder.setDataType(msg.getDataType().ordinal());
@@ -146,7 +146,7 @@ public final class TbMsg implements Serializable {
     public static TbMsg fromBytes(String queueName, byte[] data, TbMsgCallback callback) {
         try {
             MsgProtos.TbMsgProto proto = MsgProtos.TbMsgProto.parseFrom(data);
-            TbMsgMetaData metaData = new TbMsgMetaData(proto.getMetaData().getDataMap());
+            TbMsgMetaData metaData = TbMsgMetaData.fromProto(proto.getMetaData());
             EntityId entityId = EntityIdFactory.getByTypeAndUuid(proto.getEntityType(), new UUID(proto.getEntityIdMSB(), proto.getEntityIdLSB()));
             RuleChainId ruleChainId = null;
             RuleNodeId ruleNodeId = null;
@@ -15,43 +15,122 @@
  */
 package org.thingsboard.server.common.msg;
 
-import lombok.AllArgsConstructor;
-import lombok.Data;
-import lombok.NoArgsConstructor;
+import org.thingsboard.server.common.msg.gen.MsgProtos;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Created by ashvayka on 13.01.18.
+ * <p>
+ * Metadata is copy-on-write: {@link #copy()} shares the backing map with the copy, and the map is cloned only by the
+ * first instance that actually writes to it. Shared maps are never modified.
  */
-@Data
-@NoArgsConstructor
 public final class TbMsgMetaData implements Serializable {
 
-    private final Map<String, String> data = new ConcurrentHashMap<>();
+    private transient volatile Map<String, String> data;
+    private volatile boolean shared;
+    private transient volatile MsgProtos.TbMsgMetaDataProto proto;
+
+    public TbMsgMetaData() {
+        this.data = new ConcurrentHashMap<>();
+    }
 
     public TbMsgMetaData(Map<String, String> data) {
+        this.data = new ConcurrentHashMap<>();
         data.forEach((key, val) -> putValue(key, val));
     }
 
+    private TbMsgMetaData(Map<String, String> data, MsgProtos.TbMsgMetaDataProto proto) {
+        this.data = data;
+        this.shared = true;
+        this.proto = proto;
+    }
+
+    static TbMsgMetaData fromProto(MsgProtos.TbMsgMetaDataProto proto) {
+        return new TbMsgMetaData(proto.getDataMap(), proto);
+    }
+
     public String getValue(String key) {
         return data.get(key);
     }
 
     public void putValue(String key, String value) {
         if (key != null && value != null) {
-            data.put(key, value);
+            synchronized (this) {
+                if (shared) {
+                    data = new ConcurrentHashMap<>(data);
+                    shared = false;
+                }
+                proto = null;
+                data.put(key, value);
+            }
         }
     }
 
+    public Map<String, String> getData() {
+        return Collections.unmodifiableMap(data);
+    }
+
     public Map<String, String> values() {
         return new HashMap<>(data);
     }
 
-    public TbMsgMetaData copy() {
-        return new TbMsgMetaData(new ConcurrentHashMap<>(data));
+    public synchronized TbMsgMetaData copy() {
+        shared = true;
+        return new TbMsgMetaData(data, proto);
+    }
+
+    /**
+     * Returns the protobuf representation of the metadata. The result is reused until the metadata is modified.
+     */
+    MsgProtos.TbMsgMetaDataProto toProto() {
+        MsgProtos.TbMsgMetaDataProto result = proto;
+        if (result == null) {
+            synchronized (this) {
+                result = proto;
+                if (result == null) {
+                    result = MsgProtos.TbMsgMetaDataProto.newBuilder().putAllData(data).build();
+                    proto = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeObject(new HashMap<>(data));
+    }
+
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        data = new ConcurrentHashMap<>((Map<String, String>) in.readObject());
+        shared = false;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        TbMsgMetaData that = (TbMsgMetaData) o;
+        return data.equals(that.data);
+    }
+
+    @Override
+    public int hashCode() {
+        return data.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "TbMsgMetaData(data=" + data + ")";
     }
 }
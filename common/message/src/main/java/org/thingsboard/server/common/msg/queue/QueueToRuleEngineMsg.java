@@ -40,6 +40,11 @@ public final class QueueToRuleEngineMsg implements TbActorMsg {
         return MsgType.QUEUE_TO_RULE_ENGINE_MSG;
     }
 
+    @Override
+    public void onRejected() {
+        tbMsg.getCallback().onFailure(new RuleEngineException("Message is rejected by the full actor mailbox!"));
+    }
+
     public boolean isTellNext() {
         return relationTypes != null && !relationTypes.isEmpty();
     }
@@ -29,21 +29,15 @@ public class TbRateLimits {
     private final LocalBucket bucket;
 
     public TbRateLimits(String limitsConfiguration) {
+        this(TbRateLimitsConfiguration.parse(limitsConfiguration));
+    }
+
+    public TbRateLimits(TbRateLimitsConfiguration configuration) {
         LocalBucketBuilder builder = Bucket4j.builder();
-        boolean initialized = false;
-        for (String limitSrc : limitsConfiguration.split(",")) {
-            long capacity = Long.parseLong(limitSrc.split(":")[0]);
-            long duration = Long.parseLong(limitSrc.split(":")[1]);
-            builder.addLimit(Bandwidth.simple(capacity, Duration.ofSeconds(duration)));
-            initialized = true;
-        }
-        if (initialized) {
-            bucket = builder.build();
-        } else {
-            throw new IllegalArgumentException("Failed to parse rate limits configuration: " + limitsConfiguration);
+        for (int i = 0; i < configuration.size(); i++) {
+            builder.addLimit(Bandwidth.simple(configuration.getCapacity(i), Duration.ofNanos(configuration.getPeriodNanos(i))));
         }
-
-
+        bucket = builder.build();
     }
 
     public boolean tryConsume() {
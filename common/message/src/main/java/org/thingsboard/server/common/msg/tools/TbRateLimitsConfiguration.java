@@ -0,0 +1,68 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.common.msg.tools;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsed rate limits configuration in the "capacity:seconds,capacity:seconds" format.
+ * Immutable, so a single instance is shared by all buckets created from the same configuration string.
+ */
+public final class TbRateLimitsConfiguration {
+
+    private final long[] capacities;
+    private final long[] periodsNanos;
+
+    private TbRateLimitsConfiguration(long[] capacities, long[] periodsNanos) {
+        this.capacities = capacities;
+        this.periodsNanos = periodsNanos;
+    }
+
+    public static TbRateLimitsConfiguration parse(String limitsConfiguration) {
+        String[] limits = limitsConfiguration.split(",");
+        long[] capacities = new long[limits.length];
+        long[] periodsNanos = new long[limits.length];
+        for (int i = 0; i < limits.length; i++) {
+            String[] limit = limits[i].split(":");
+            capacities[i] = Long.parseLong(limit[0]);
+            periodsNanos[i] = TimeUnit.SECONDS.toNanos(Long.parseLong(limit[1]));
+            if (capacities[i] <= 0 || periodsNanos[i] <= 0) {
+                throw new IllegalArgumentException("Failed to parse rate limits configuration: " + limitsConfiguration);
+            }
+        }
+        return new TbRateLimitsConfiguration(capacities, periodsNanos);
+    }
+
+    public int size() {
+        return capacities.length;
+    }
+
+    public long getCapacity(int idx) {
+        return capacities[idx];
+    }
+
+    public long getPeriodNanos(int idx) {
+        return periodsNanos[idx];
+    }
+
+    public long getMaxPeriodNanos() {
+        long max = 0;
+        for (long period : periodsNanos) {
+            max = Math.max(max, period);
+        }
+        return max;
+    }
+}
@@ -0,0 +1,142 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.common.msg.tools;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Rate limits of many entities that share the same configuration.
+ * <p>
+ * Every entity holds a compact token snapshot (the tokens of each bandwidth and the last refill time) that is refilled
+ * lazily on access. A bucket that was idle long enough to refill completely is equal to a new one, so {@link #cleanUp()}
+ * drops such buckets without changing the limits. Buckets that are still refilling are never dropped, since that would
+ * reset the limits of an active entity. Instead, new entities are rejected while the registry holds maxSize buckets.
+ */
+public class TbRateLimitsRegistry<K> {
+
+    private final TbRateLimitsConfiguration configuration;
+    private final int maxSize;
+    private final ConcurrentMap<K, Bucket> buckets = new ConcurrentHashMap<>();
+
+    public TbRateLimitsRegistry(TbRateLimitsConfiguration configuration, int maxSize) {
+        this.configuration = configuration;
+        this.maxSize = maxSize;
+    }
+
+    public boolean tryConsume(K key) {
+        return tryConsume(key, System.nanoTime());
+    }
+
+    boolean tryConsume(K key, long now) {
+        while (true) {
+            Bucket bucket = buckets.get(key);
+            if (bucket == null) {
+                if (buckets.size() >= maxSize) {
+                    return false;
+                }
+                bucket = new Bucket(configuration, now);
+                Bucket existing = buckets.putIfAbsent(key, bucket);
+                if (existing != null) {
+                    bucket = existing;
+                }
+            }
+            synchronized (bucket) {
+                if (!bucket.removed) {
+                    return bucket.tryConsume(configuration, now);
+                }
+            }
+        }
+    }
+
+    public int cleanUp() {
+        return cleanUp(System.nanoTime());
+    }
+
+    int cleanUp(long now) {
+        int removed = 0;
+        for (Map.Entry<K, Bucket> entry : buckets.entrySet()) {
+            Bucket bucket = entry.getValue();
+            synchronized (bucket) {
+                if (bucket.isFull(configuration, now)) {
+                    bucket.removed = true;
+                    buckets.remove(entry.getKey(), bucket);
+                    removed++;
+                }
+            }
+        }
+        return removed;
+    }
+
+    public int size() {
+        return buckets.size();
+    }
+
+    public void clear() {
+        buckets.clear();
+    }
+
+    private static final class Bucket {
+        private final double[] tokens;
+        private long lastRefillTime;
+        private boolean removed;
+
+        private Bucket(TbRateLimitsConfiguration configuration, long now) {
+            tokens = new double[configuration.size()];
+            for (int i = 0; i < tokens.length; i++) {
+                tokens[i] = configuration.getCapacity(i);
+            }
+            lastRefillTime = now;
+        }
+
+        private boolean tryConsume(TbRateLimitsConfiguration configuration, long now) {
+            refill(configuration, now);
+            for (double available : tokens) {
+                if (available < 1) {
+                    return false;
+                }
+            }
+            for (int i = 0; i < tokens.length; i++) {
+                tokens[i] -= 1;
+            }
+            return true;
+        }
+
+        private void refill(TbRateLimitsConfiguration configuration, long now) {
+            long elapsed = now - lastRefillTime;
+            if (elapsed <= 0) {
+                return;
+            }
+            for (int i = 0; i < tokens.length; i++) {
+                long capacity = configuration.getCapacity(i);
+                tokens[i] = Math.min(capacity, tokens[i] + (double) elapsed * capacity / configuration.getPeriodNanos(i));
+            }
+            lastRefillTime = now;
+        }
+
+        private boolean isFull(TbRateLimitsConfiguration configuration, long now) {
+            long elapsed = Math.max(0, now - lastRefillTime);
+            for (int i = 0; i < tokens.length; i++) {
+                long capacity = configuration.getCapacity(i);
+                if (tokens[i] + (double) elapsed * capacity / configuration.getPeriodNanos(i) < capacity) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.common.msg;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Assert;
+import org.junit.Test;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.msg.queue.TbMsgCallback;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Slf4j
+public class TbMsgMetaDataTest {
+
+    private static final int CHAIN_LENGTH = 8;
+    private static final int ITERATIONS = 100000;
+
+    @Test
+    public void testCopyIsIsolatedFromOriginal() {
+        TbMsgMetaData original = createMetaData();
+        TbMsgMetaData copy = original.copy();
+        copy.putValue("temperature", "42");
+        original.putValue("humidity", "60");
+
+        Assert.assertEquals("42", copy.getValue("temperature"));
+        Assert.assertNull(copy.getValue("humidity"));
+        Assert.assertEquals("60", original.getValue("humidity"));
+        Assert.assertNull(original.getValue("temperature"));
+        Assert.assertEquals("Thermostat A", copy.getValue("deviceName"));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testDataIsReadOnly() {
+        createMetaData().getData().put("deviceName", "Thermostat B");
+    }
+
+    @Test
+    public void testEncodingReusesUnmodifiedMetaData() {
+        TbMsg msg = TbMsg.newMsg("POST_TELEMETRY_REQUEST", new DeviceId(UUID.randomUUID()), createMetaData(), "{\"temperature\":42}");
+        TbMsg decoded = TbMsg.fromBytes("Main", TbMsg.toByteArray(msg), TbMsgCallback.EMPTY);
+        Assert.assertEquals(msg.getMetaData(), decoded.getMetaData());
+        Assert.assertSame(decoded.getMetaData().toProto(), decoded.getMetaData().copy().toProto());
+
+        TbMsgMetaData modified = decoded.getMetaData().copy();
+        modified.putValue("temperature", "42");
+        Assert.assertEquals("42", modified.toProto().getDataMap().get("temperature"));
+        Assert.assertFalse(decoded.getMetaData().toProto().getDataMap().containsKey("temperature"));
+    }
+
+    @Test
+    public void testAllocationsOverRuleChain() {
+        TbMsg msg = TbMsg.newMsg("POST_TELEMETRY_REQUEST", new DeviceId(UUID.randomUUID()), createMetaData(), "{\"temperature\":42}");
+        byte[] encoded = TbMsg.toByteArray(msg);
+
+        // warm up
+        runChain(encoded, ITERATIONS / 10);
+        runEagerCopyChain(encoded, ITERATIONS / 10);
+
+        long copyOnWriteBytes = measureAllocations(() -> runChain(encoded, ITERATIONS));
+        long eagerCopyBytes = measureAllocations(() -> runEagerCopyChain(encoded, ITERATIONS));
+        log.info("Allocated per message over [{}] nodes: copy-on-write metadata [{}] bytes, eager copy [{}] bytes",
+                CHAIN_LENGTH, copyOnWriteBytes / ITERATIONS, eagerCopyBytes / ITERATIONS);
+        Assert.assertTrue(copyOnWriteBytes < eagerCopyBytes);
+    }
+
+    /**
+     * Message is decoded from the queue, passes through the chain where each node creates a new message
+     * and only the last one adds a metadata value, then it is encoded again.
+     */
+    private void runChain(byte[] encoded, int iterations) {
+        for (int i = 0; i < iterations; i++) {
+            TbMsg msg = TbMsg.fromBytes("Main", encoded, TbMsgCallback.EMPTY);
+            for (int node = 0; node < CHAIN_LENGTH; node++) {
+                msg = TbMsg.transformMsg(msg, msg.getType(), msg.getOriginator(), msg.getMetaData(), msg.getData());
+                if (node == CHAIN_LENGTH - 1) {
+                    msg.getMetaData().putValue("processed", "true");
+                }
+            }
+            TbMsg.toByteArray(msg);
+        }
+    }
+
+    private void runEagerCopyChain(byte[] encoded, int iterations) {
+        for (int i = 0; i < iterations; i++) {
+            TbMsg msg = TbMsg.fromBytes("Main", encoded, TbMsgCallback.EMPTY);
+            Map<String, String> data = new ConcurrentHashMap<>(msg.getMetaData().getData());
+            for (int node = 0; node < CHAIN_LENGTH; node++) {
+                data = new ConcurrentHashMap<>(data);
+                if (node == CHAIN_LENGTH - 1) {
+                    data.put("processed", "true");
+                }
+            }
+            TbMsg.toByteArray(TbMsg.transformMsg(msg, msg.getType(), msg.getOriginator(), new TbMsgMetaData(data), msg.getData()));
+        }
+    }
+
+    private long measureAllocations(Runnable task) {
+        com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long before = threadMXBean.getThreadAllocatedBytes(threadId);
+        task.run();
+        return threadMXBean.getThreadAllocatedBytes(threadId) - before;
+    }
+
+    private TbMsgMetaData createMetaData() {
+        TbMsgMetaData metaData = new TbMsgMetaData();
+        metaData.putValue("deviceName", "Thermostat A");
+        metaData.putValue("deviceType", "thermostat");
+        metaData.putValue("ts", Long.toString(System.currentTimeMillis()));
+        return metaData;
+    }
+}
@@ -0,0 +1,145 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.common.msg.tools;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Assert;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.thingsboard.server.common.data.id.DeviceId;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+@Slf4j
+public class TbRateLimitsRegistryTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+    private static final int DEVICES = 1000000;
+    private static final int LEGACY_DEVICES = 100000;
+
+    @Test
+    public void testLimitsAreEnforcedAndRefilled() {
+        TbRateLimitsRegistry<String> registry = new TbRateLimitsRegistry<>(TbRateLimitsConfiguration.parse("10:1,20:60"), 100);
+        long now = 0;
+        for (int i = 0; i < 10; i++) {
+            Assert.assertTrue(registry.tryConsume("a", now));
+        }
+        Assert.assertFalse(registry.tryConsume("a", now));
+        Assert.assertTrue(registry.tryConsume("b", now));
+
+        now += SECOND;
+        for (int i = 0; i < 10; i++) {
+            Assert.assertTrue(registry.tryConsume("a", now));
+        }
+        Assert.assertFalse(registry.tryConsume("a", now));
+
+        now += SECOND;
+        Assert.assertFalse("Per minute limit is exhausted", registry.tryConsume("a", now));
+    }
+
+    @Test
+    public void testCleanUpRemovesOnlyFullyRefilledBuckets() {
+        TbRateLimitsRegistry<String> registry = new TbRateLimitsRegistry<>(TbRateLimitsConfiguration.parse("10:60"), 100);
+        long now = 0;
+        for (int i = 0; i < 10; i++) {
+            Assert.assertTrue(registry.tryConsume("busy", now));
+        }
+        Assert.assertTrue(registry.tryConsume("idle", now));
+
+        now += 6 * SECOND;
+        Assert.assertEquals(1, registry.cleanUp(now));
+        Assert.assertEquals(1, registry.size());
+        Assert.assertTrue(registry.tryConsume("busy", now));
+        Assert.assertFalse("Limit of the retained bucket is kept", registry.tryConsume("busy", now));
+
+        now += 60 * SECOND;
+        Assert.assertEquals(1, registry.cleanUp(now));
+        Assert.assertEquals(0, registry.size());
+        Assert.assertTrue(registry.tryConsume("busy", now));
+    }
+
+    @Test
+    public void testNewKeysAreRejectedWhileRegistryIsFull() {
+        TbRateLimitsRegistry<Integer> registry = new TbRateLimitsRegistry<>(TbRateLimitsConfiguration.parse("2:60"), 3);
+        for (int i = 0; i < 3; i++) {
+            Assert.assertTrue(registry.tryConsume(i, i * SECOND));
+        }
+        Assert.assertFalse("Registry is full", registry.tryConsume(3, 3 * SECOND));
+        Assert.assertEquals(3, registry.size());
+
+        Assert.assertEquals("Active buckets are not evicted", 0, registry.cleanUp(4 * SECOND));
+        Assert.assertTrue(registry.tryConsume(0, 4 * SECOND));
+        Assert.assertFalse("Limit of the active bucket is kept", registry.tryConsume(0, 4 * SECOND));
+
+        Assert.assertEquals(2, registry.cleanUp(32 * SECOND));
+        Assert.assertTrue(registry.tryConsume(3, 32 * SECOND));
+        Assert.assertEquals(2, registry.size());
+    }
+
+    /**
+     * Manual benchmark: heap usage measured around System.gc() is not deterministic enough for every build.
+     * Run it with enough heap for the legacy limits, e.g. -Xmx2g.
+     */
+    @Ignore
+    @Test
+    public void testHeapFootprint() {
+        String config = "10:1,300:60";
+        List<DeviceId> deviceIds = new ArrayList<>(DEVICES);
+        for (int i = 0; i < DEVICES; i++) {
+            deviceIds.add(new DeviceId(UUID.randomUUID()));
+        }
+
+        long before = usedMemory();
+        TbRateLimitsRegistry<DeviceId> registry = new TbRateLimitsRegistry<>(TbRateLimitsConfiguration.parse(config), DEVICES);
+        for (DeviceId deviceId : deviceIds) {
+            registry.tryConsume(deviceId);
+        }
+        long registryBytes = usedMemory() - before;
+        Assert.assertEquals(DEVICES, registry.size());
+
+        before = usedMemory();
+        ConcurrentMap<DeviceId, TbRateLimits> legacy = new ConcurrentHashMap<>();
+        for (int i = 0; i < LEGACY_DEVICES; i++) {
+            legacy.computeIfAbsent(deviceIds.get(i), id -> new TbRateLimits(config)).tryConsume();
+        }
+        long legacyBytes = usedMemory() - before;
+        Assert.assertEquals(LEGACY_DEVICES, legacy.size());
+
+        long registryBytesPerDevice = registryBytes / DEVICES;
+        long legacyBytesPerDevice = legacyBytes / LEGACY_DEVICES;
+        log.info("Rate limits heap footprint: registry [{}] MB for [{}] devices ([{}] bytes per device), legacy [{}] bytes per device",
+                registryBytes / (1024 * 1024), DEVICES, registryBytesPerDevice, legacyBytesPerDevice);
+        long legacyBytesScaled = legacyBytes * (DEVICES / LEGACY_DEVICES);
+        Assert.assertTrue("Registry takes [" + registryBytes + "] bytes, legacy limits would take [" + legacyBytesScaled + "] bytes",
+                registryBytes < legacyBytesScaled);
+
+        registry.clear();
+        Assert.assertEquals(0, registry.size());
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
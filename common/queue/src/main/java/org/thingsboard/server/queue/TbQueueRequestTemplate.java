@@ -23,6 +23,11 @@ public interface TbQueueRequestTemplate<Request extends TbQueueMsg, Response ext
 
     ListenableFuture<Response> send(Request request);
 
+    /**
+     * Sends the request that waits for its response up to the given timeout instead of the configured max request timeout.
+     */
+    ListenableFuture<Response> send(Request request, long requestTimeoutMs);
+
     void stop();
 
 }
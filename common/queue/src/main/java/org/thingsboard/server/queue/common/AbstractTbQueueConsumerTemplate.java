@@ -96,7 +96,7 @@ public abstract class AbstractTbQueueConsumerTemplate<R, T extends TbQueueMsg> i
                     records.forEach(record -> {
                         try {
                             if (record != null) {
-                                result.add(decode(record));
+                                decodeAll(record, result);
                             }
                         } catch (IOException e) {
                             log.error("Failed decode record: [{}]", record);
@@ -148,6 +148,13 @@ public abstract class AbstractTbQueueConsumerTemplate<R, T extends TbQueueMsg> i
 
     abstract protected T decode(R record) throws IOException;
 
+    /**
+     * Decodes the record that may hold several messages, e.g. a packed Kafka record.
+     */
+    protected void decodeAll(R record, List<T> result) throws IOException {
+        result.add(decode(record));
+    }
+
     abstract protected void doSubscribe(List<String> topicNames);
 
     abstract protected void doCommit();
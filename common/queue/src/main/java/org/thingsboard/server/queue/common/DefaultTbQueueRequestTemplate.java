@@ -18,8 +18,17 @@ package org.thingsboard.server.queue.common;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.SettableFuture;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timeout;
 import lombok.Builder;
 import lombok.extern.slf4j.Slf4j;
+import org.thingsboard.common.util.ThingsBoardThreadFactory;
 import org.thingsboard.server.common.msg.queue.TopicPartitionInfo;
 import org.thingsboard.server.queue.TbQueueAdmin;
 import org.thingsboard.server.queue.TbQueueCallback;
@@ -29,31 +38,44 @@ import org.thingsboard.server.queue.TbQueueMsgMetadata;
 import org.thingsboard.server.queue.TbQueueProducer;
 import org.thingsboard.server.queue.TbQueueRequestTemplate;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Slf4j
 public class DefaultTbQueueRequestTemplate<Request extends TbQueueMsg, Response extends TbQueueMsg> extends AbstractTbQueueTemplate
         implements TbQueueRequestTemplate<Request, Response> {
 
+    private static final long TIMEOUT_TICK_MS = 10;
+    private static final int TIMEOUT_TICKS_PER_WHEEL = 1024;
+
     private final TbQueueAdmin queueAdmin;
     private final TbQueueProducer<Request> requestTemplate;
     private final TbQueueConsumer<Response> responseTemplate;
     private final ConcurrentMap<UUID, DefaultTbQueueRequestTemplate.ResponseMetaData<Response>> pendingRequests;
+    private final AtomicInteger pendingRequestsCount = new AtomicInteger();
     private final boolean internalExecutor;
     private final ExecutorService executor;
+    private final boolean internalCallbackExecutor;
+    private final ExecutorService callbackExecutor;
     private final long maxRequestTimeout;
     private final long maxPendingRequests;
     private final long pollInterval;
-    private volatile long tickTs = 0L;
-    private volatile long tickSize = 0L;
     private volatile boolean stopped = false;
 
+    private HashedWheelTimer timeoutTimer;
+    private Timer responseTimer;
+    private Counter timeoutCounter;
+    private List<Meter> meters;
+
     @Builder
     public DefaultTbQueueRequestTemplate(TbQueueAdmin queueAdmin,
                                          TbQueueProducer<Request> requestTemplate,
@@ -61,7 +83,8 @@ public class DefaultTbQueueRequestTemplate<Request extends TbQueueMsg, Response
                                          long maxRequestTimeout,
                                          long maxPendingRequests,
                                          long pollInterval,
-                                         ExecutorService executor) {
+                                         ExecutorService executor,
+                                         ExecutorService callbackExecutor) {
         this.queueAdmin = queueAdmin;
         this.requestTemplate = requestTemplate;
         this.responseTemplate = responseTemplate;
@@ -76,16 +99,24 @@ public class DefaultTbQueueRequestTemplate<Request extends TbQueueMsg, Response
             internalExecutor = true;
             this.executor = Executors.newSingleThreadExecutor();
         }
+        if (callbackExecutor != null) {
+            internalCallbackExecutor = false;
+            this.callbackExecutor = callbackExecutor;
+        } else {
+            internalCallbackExecutor = true;
+            this.callbackExecutor = Executors.newSingleThreadExecutor(ThingsBoardThreadFactory.forName("tb-queue-response-callback"));
+        }
     }
 
     @Override
     public void init() {
         queueAdmin.createTopicIfNotExists(responseTemplate.getTopic());
         this.requestTemplate.init();
-        tickTs = System.currentTimeMillis();
+        initMetrics();
+        timeoutTimer = new HashedWheelTimer(ThingsBoardThreadFactory.forName("tb-queue-request-timeout"),
+                TIMEOUT_TICK_MS, TimeUnit.MILLISECONDS, TIMEOUT_TICKS_PER_WHEEL);
         responseTemplate.subscribe();
         executor.submit(() -> {
-            long nextCleanupMs = 0L;
             while (!stopped) {
                 try {
                     List<Response> responses = responseTemplate.poll(pollInterval);
@@ -94,6 +125,8 @@ public class DefaultTbQueueRequestTemplate<Request extends TbQueueMsg, Response
                     } else {
                         continue;
                     }
+                    List<Response> completedResponses = new ArrayList<>(responses.size());
+                    List<ResponseMetaData<Response>> completedRequests = new ArrayList<>(responses.size());
                     responses.forEach(response -> {
                         byte[] requestIdHeader = response.getHeaders().get(REQUEST_ID_HEADER);
                         UUID requestId;
@@ -102,29 +135,19 @@ public class DefaultTbQueueRequestTemplate<Request extends TbQueueMsg, Response
                         } else {
                             requestId = bytesToUuid(requestIdHeader);
                             log.trace("[{}] Response received: {}", requestId, response);
-                            ResponseMetaData<Response> expectedResponse = pendingRequests.remove(requestId);
+                            ResponseMetaData<Response> expectedResponse = removePendingRequest(requestId);
                             if (expectedResponse == null) {
                                 log.trace("[{}] Invalid or stale request", requestId);
                             } else {
-                                expectedResponse.future.set(response);
+                                expectedResponse.cancelTimeout();
+                                completedResponses.add(response);
+                                completedRequests.add(expectedResponse);
                             }
                         }
                     });
                     responseTemplate.commit();
-                    tickTs = System.currentTimeMillis();
-                    tickSize = pendingRequests.size();
-                    if (nextCleanupMs < tickTs) {
-                        //cleanup;
-                        pendingRequests.forEach((key, value) -> {
-                            if (value.expTime < tickTs) {
-                                ResponseMetaData<Response> staleRequest = pendingRequests.remove(key);
-                                if (staleRequest != null) {
-                                    log.trace("[{}] Request timeout detected, expTime [{}], tickTs [{}]", key, staleRequest.expTime, tickTs);
-                                    staleRequest.future.setException(new TimeoutException());
-                                }
-                            }
-                        });
-                        nextCleanupMs = tickTs + maxRequestTimeout;
+                    if (!completedRequests.isEmpty()) {
+                        callbackExecutor.submit(() -> onResponses(completedRequests, completedResponses));
                     }
                 } catch (Throwable e) {
                     log.warn("Failed to obtain responses from queue.", e);
@@ -150,24 +173,44 @@ public class DefaultTbQueueRequestTemplate<Request extends TbQueueMsg, Response
             requestTemplate.stop();
         }
 
+        if (timeoutTimer != null) {
+            timeoutTimer.stop();
+        }
+
         if (internalExecutor) {
             executor.shutdownNow();
         }
+
+        if (internalCallbackExecutor) {
+            callbackExecutor.shutdownNow();
+        }
+
+        if (meters != null) {
+            meters.forEach(Metrics.globalRegistry::remove);
+        }
     }
 
     @Override
     public ListenableFuture<Response> send(Request request) {
-        if (tickSize > maxPendingRequests) {
+        return send(request, maxRequestTimeout);
+    }
+
+    @Override
+    public ListenableFuture<Response> send(Request request, long requestTimeoutMs) {
+        if (pendingRequestsCount.get() > maxPendingRequests) {
             return Futures.immediateFailedFuture(new RuntimeException("Pending request map is full!"));
         }
         UUID requestId = UUID.randomUUID();
+        long requestTime = System.currentTimeMillis();
         request.getHeaders().put(REQUEST_ID_HEADER, uuidToBytes(requestId));
         request.getHeaders().put(RESPONSE_TOPIC_HEADER, stringToBytes(responseTemplate.getTopic()));
-        request.getHeaders().put(REQUEST_TIME, longToBytes(System.currentTimeMillis()));
+        request.getHeaders().put(REQUEST_TIME, longToBytes(requestTime));
         SettableFuture<Response> future = SettableFuture.create();
-        ResponseMetaData<Response> responseMetaData = new ResponseMetaData<>(tickTs + maxRequestTimeout, future);
-        pendingRequests.putIfAbsent(requestId, responseMetaData);
-        log.trace("[{}] Sending request, key [{}], expTime [{}]", requestId, request.getKey(), responseMetaData.expTime);
+        ResponseMetaData<Response> responseMetaData = new ResponseMetaData<>(System.nanoTime(), future);
+        pendingRequests.put(requestId, responseMetaData);
+        pendingRequestsCount.incrementAndGet();
+        responseMetaData.timeout = timeoutTimer.newTimeout(t -> onTimeout(requestId, requestTimeoutMs), requestTimeoutMs, TimeUnit.MILLISECONDS);
+        log.trace("[{}] Sending request, key [{}], expTime [{}]", requestId, request.getKey(), requestTime + requestTimeoutMs);
         requestTemplate.send(TopicPartitionInfo.builder().topic(requestTemplate.getDefaultTopic()).build(), request, new TbQueueCallback() {
             @Override
             public void onSuccess(TbQueueMsgMetadata metadata) {
@@ -176,21 +219,78 @@ public class DefaultTbQueueRequestTemplate<Request extends TbQueueMsg, Response
 
             @Override
             public void onFailure(Throwable t) {
-                pendingRequests.remove(requestId);
+                ResponseMetaData<Response> failedRequest = removePendingRequest(requestId);
+                if (failedRequest != null) {
+                    failedRequest.cancelTimeout();
+                }
                 future.setException(t);
             }
         });
         return future;
     }
 
+    private ResponseMetaData<Response> removePendingRequest(UUID requestId) {
+        ResponseMetaData<Response> removed = pendingRequests.remove(requestId);
+        if (removed != null) {
+            pendingRequestsCount.decrementAndGet();
+        }
+        return removed;
+    }
+
+    private void onResponses(List<ResponseMetaData<Response>> requests, List<Response> responses) {
+        long now = System.nanoTime();
+        for (int i = 0; i < requests.size(); i++) {
+            ResponseMetaData<Response> request = requests.get(i);
+            responseTimer.record(now - request.startNanos, TimeUnit.NANOSECONDS);
+            request.future.set(responses.get(i));
+        }
+    }
+
+    private void onTimeout(UUID requestId, long requestTimeoutMs) {
+        ResponseMetaData<Response> staleRequest = removePendingRequest(requestId);
+        if (staleRequest != null) {
+            log.trace("[{}] Request timeout detected, timeout [{}]", requestId, requestTimeoutMs);
+            timeoutCounter.increment();
+            callbackExecutor.submit(() -> staleRequest.future.setException(new TimeoutException()));
+        }
+    }
+
+    /**
+     * Several templates may send requests to the same topic, but each of them has its own response topic.
+     * Tagging by both keeps the meters of the templates apart, so stopping one template does not remove the meters of another.
+     */
+    private void initMetrics() {
+        Tags tags = Tags.of("topic", requestTemplate.getDefaultTopic(), "responseTopic", responseTemplate.getTopic());
+        Gauge pendingGauge = Gauge.builder("tb.queue.requests.pending", pendingRequestsCount, AtomicInteger::get)
+                .tags(tags)
+                .register(Metrics.globalRegistry);
+        responseTimer = Timer.builder("tb.queue.requests.latency")
+                .tags(tags)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(Metrics.globalRegistry);
+        timeoutCounter = Counter.builder("tb.queue.requests.timeouts")
+                .tags(tags)
+                .register(Metrics.globalRegistry);
+        meters = Arrays.asList(pendingGauge, responseTimer, timeoutCounter);
+    }
+
     private static class ResponseMetaData<T> {
-        private final long expTime;
+        private final long startNanos;
         private final SettableFuture<T> future;
+        // Assigned right after registration. The response may arrive earlier, in which case the timeout fires as a no-op.
+        private volatile Timeout timeout;
 
-        ResponseMetaData(long ts, SettableFuture<T> future) {
-            this.expTime = ts;
+        ResponseMetaData(long startNanos, SettableFuture<T> future) {
+            this.startNanos = startNanos;
             this.future = future;
         }
+
+        void cancelTimeout() {
+            Timeout timeout = this.timeout;
+            if (timeout != null) {
+                timeout.cancel();
+            }
+        }
     }
 
 }
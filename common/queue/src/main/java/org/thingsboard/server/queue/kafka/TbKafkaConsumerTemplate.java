@@ -21,6 +21,7 @@ import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.apache.kafka.clients.consumer.ConsumerRecords;
 import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.common.header.Header;
 import org.thingsboard.server.queue.TbQueueAdmin;
 import org.thingsboard.server.queue.TbQueueMsg;
 import org.thingsboard.server.queue.common.AbstractTbQueueConsumerTemplate;
@@ -96,6 +97,18 @@ public class TbKafkaConsumerTemplate<T extends TbQueueMsg> extends AbstractTbQue
         return decoder.decode(new KafkaTbQueueMsg(record));
     }
 
+    @Override
+    protected void decodeAll(ConsumerRecord<String, byte[]> record, List<T> result) throws IOException {
+        Header packHeader = record.headers().lastHeader(TbKafkaMsgPack.PACK_HEADER);
+        if (packHeader == null) {
+            result.add(decode(record));
+        } else {
+            for (KafkaTbQueueMsg msg : TbKafkaMsgPack.decode(record.value(), packHeader.value())) {
+                result.add(decoder.decode(msg));
+            }
+        }
+    }
+
     @Override
     protected void doCommit() {
         consumer.commitAsync();
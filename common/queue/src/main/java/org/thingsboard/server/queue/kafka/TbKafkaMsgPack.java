@@ -0,0 +1,119 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.queue.kafka;
+
+import org.thingsboard.server.queue.TbQueueMsg;
+import org.thingsboard.server.queue.TbQueueMsgHeaders;
+import org.thingsboard.server.queue.common.DefaultTbQueueMsgHeaders;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Encodes several queue messages into a single Kafka record value.
+ * Packed records are marked with the {@link #PACK_HEADER} header, which value holds the pack format.
+ */
+public final class TbKafkaMsgPack {
+
+    public static final String PACK_HEADER = "tb-pack";
+
+    private static final byte PLAIN = 0;
+    private static final byte DEFLATE = 1;
+
+    private static final byte[] PLAIN_HEADER_VALUE = {PLAIN};
+    private static final byte[] DEFLATE_HEADER_VALUE = {DEFLATE};
+
+    private TbKafkaMsgPack() {
+    }
+
+    public static int estimateSize(TbQueueMsg msg) {
+        int size = 24 + msg.getData().length;
+        for (Map.Entry<String, byte[]> header : msg.getHeaders().getData().entrySet()) {
+            size += 6 + header.getKey().length() + header.getValue().length;
+        }
+        return size;
+    }
+
+    public static byte[] getHeaderValue(boolean compress) {
+        return (compress ? DEFLATE_HEADER_VALUE : PLAIN_HEADER_VALUE).clone();
+    }
+
+    public static byte[] encode(List<? extends TbQueueMsg> msgs, int estimatedSize, boolean compress) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(compress ? estimatedSize / 2 : estimatedSize);
+        OutputStream target = compress ? new DeflaterOutputStream(bytes) : bytes;
+        try (DataOutputStream out = new DataOutputStream(target)) {
+            out.writeInt(msgs.size());
+            for (TbQueueMsg msg : msgs) {
+                UUID key = msg.getKey();
+                out.writeLong(key.getMostSignificantBits());
+                out.writeLong(key.getLeastSignificantBits());
+                Map<String, byte[]> headers = msg.getHeaders().getData();
+                out.writeInt(headers.size());
+                for (Map.Entry<String, byte[]> header : headers.entrySet()) {
+                    out.writeUTF(header.getKey());
+                    out.writeInt(header.getValue().length);
+                    out.write(header.getValue());
+                }
+                out.writeInt(msg.getData().length);
+                out.write(msg.getData());
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    public static List<KafkaTbQueueMsg> decode(byte[] data, byte[] headerValue) throws IOException {
+        if (headerValue == null || headerValue.length != 1 || (headerValue[0] != PLAIN && headerValue[0] != DEFLATE)) {
+            throw new IOException("Unsupported pack format!");
+        }
+        InputStream source = new ByteArrayInputStream(data);
+        if (headerValue[0] == DEFLATE) {
+            source = new InflaterInputStream(source);
+        }
+        try (DataInputStream in = new DataInputStream(source)) {
+            int count = in.readInt();
+            List<KafkaTbQueueMsg> msgs = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                UUID key = new UUID(in.readLong(), in.readLong());
+                int headersCount = in.readInt();
+                TbQueueMsgHeaders headers = new DefaultTbQueueMsgHeaders();
+                for (int j = 0; j < headersCount; j++) {
+                    String headerKey = in.readUTF();
+                    headers.put(headerKey, readBytes(in));
+                }
+                msgs.add(new KafkaTbQueueMsg(key, headers, readBytes(in)));
+            }
+            return msgs;
+        }
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        byte[] value = new byte[in.readInt()];
+        in.readFully(value);
+        return value;
+    }
+
+}
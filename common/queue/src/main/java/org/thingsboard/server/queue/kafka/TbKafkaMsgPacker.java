@@ -0,0 +1,141 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.queue.kafka;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.internals.RecordHeader;
+import org.thingsboard.common.util.ThingsBoardThreadFactory;
+import org.thingsboard.server.queue.TbQueueCallback;
+import org.thingsboard.server.queue.TbQueueMsg;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gathers messages for the same topic during the linger window and sends them as a single packed record.
+ */
+@Slf4j
+class TbKafkaMsgPacker {
+
+    private final KafkaProducer<String, byte[]> producer;
+    private final long lingerMs;
+    private final int maxSize;
+    private final boolean compress;
+    private final ScheduledExecutorService scheduler;
+    private final ConcurrentMap<String, Pack> packs = new ConcurrentHashMap<>();
+
+    TbKafkaMsgPacker(KafkaProducer<String, byte[]> producer, TbKafkaSettings settings, String clientId) {
+        this.producer = producer;
+        this.lingerMs = settings.getPackLingerMs();
+        this.maxSize = settings.getPackMaxSize();
+        this.compress = settings.isPackCompress();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(ThingsBoardThreadFactory.forName("kafka-packer-" + clientId));
+    }
+
+    void add(String topic, TbQueueMsg msg, TbQueueCallback callback) {
+        Pack pack = packs.computeIfAbsent(topic, Pack::new);
+        synchronized (pack) {
+            pack.add(msg, callback);
+            if (pack.size >= maxSize) {
+                send(pack);
+            } else if (!pack.flushScheduled) {
+                pack.flushScheduled = true;
+                scheduler.schedule(() -> flush(pack), lingerMs, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    void stop() {
+        scheduler.shutdownNow();
+        packs.values().forEach(this::flush);
+    }
+
+    private void flush(Pack pack) {
+        synchronized (pack) {
+            pack.flushScheduled = false;
+            if (!pack.msgs.isEmpty()) {
+                send(pack);
+            }
+        }
+    }
+
+    // Invoked under the pack lock, so the packs of the same topic are passed to the producer in order.
+    private void send(Pack pack) {
+        List<TbQueueMsg> msgs = pack.msgs;
+        List<TbQueueCallback> callbacks = pack.callbacks;
+        int size = pack.size;
+        pack.reset();
+        byte[] data;
+        try {
+            data = TbKafkaMsgPack.encode(msgs, size, compress);
+        } catch (IOException e) {
+            log.warn("[{}] Failed to pack {} messages", pack.topic, msgs.size(), e);
+            callbacks.forEach(callback -> callback.onFailure(e));
+            return;
+        }
+        Iterable<Header> headers = Collections.singletonList(new RecordHeader(TbKafkaMsgPack.PACK_HEADER, TbKafkaMsgPack.getHeaderValue(compress)));
+        ProducerRecord<String, byte[]> record = new ProducerRecord<>(pack.topic, null, msgs.get(0).getKey().toString(), data, headers);
+        producer.send(record, (metadata, exception) -> {
+            if (exception == null) {
+                KafkaTbQueueMsgMetadata msgMetadata = new KafkaTbQueueMsgMetadata(metadata);
+                callbacks.forEach(callback -> callback.onSuccess(msgMetadata));
+            } else {
+                if (callbacks.size() < msgs.size()) {
+                    log.warn("Producer template failure: {}", exception.getMessage(), exception);
+                }
+                callbacks.forEach(callback -> callback.onFailure(exception));
+            }
+        });
+    }
+
+    private static class Pack {
+        private final String topic;
+        private List<TbQueueMsg> msgs;
+        private List<TbQueueCallback> callbacks;
+        private int size;
+        private boolean flushScheduled;
+
+        Pack(String topic) {
+            this.topic = topic;
+            reset();
+        }
+
+        void add(TbQueueMsg msg, TbQueueCallback callback) {
+            msgs.add(msg);
+            if (callback != null) {
+                callbacks.add(callback);
+            }
+            size += TbKafkaMsgPack.estimateSize(msg);
+        }
+
+        void reset() {
+            msgs = new ArrayList<>();
+            callbacks = new ArrayList<>();
+            size = 0;
+        }
+    }
+
+}
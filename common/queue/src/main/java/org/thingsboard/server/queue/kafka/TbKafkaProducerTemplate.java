@@ -30,10 +30,12 @@ import org.thingsboard.server.queue.TbQueueCallback;
 import org.thingsboard.server.queue.TbQueueMsg;
 import org.thingsboard.server.queue.TbQueueProducer;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Collectors;
 
 /**
  * Created by ashvayka on 24.09.18.
@@ -53,8 +55,14 @@ public class TbKafkaProducerTemplate<T extends TbQueueMsg> implements TbQueuePro
 
     private final Set<TopicPartitionInfo> topics;
 
+    private final TbKafkaMsgPacker packer;
+
+    /**
+     * @param pack whether to send the messages as packed records; {@code null} falls back to the settings.
+     *             Should be disabled for the topics consumed by the non-Java services
+     */
     @Builder
-    private TbKafkaProducerTemplate(TbKafkaSettings settings, String defaultTopic, String clientId, TbQueueAdmin admin) {
+    private TbKafkaProducerTemplate(TbKafkaSettings settings, String defaultTopic, String clientId, TbQueueAdmin admin, Boolean pack) {
         Properties props = settings.toProps();
         props.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, "org.apache.kafka.common.serialization.StringSerializer");
         props.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, "org.apache.kafka.common.serialization.ByteArraySerializer");
@@ -66,6 +74,8 @@ public class TbKafkaProducerTemplate<T extends TbQueueMsg> implements TbQueuePro
         this.defaultTopic = defaultTopic;
         this.admin = admin;
         topics = ConcurrentHashMap.newKeySet();
+        boolean packEnabled = pack != null ? pack : settings.isPackEnabled();
+        this.packer = packEnabled ? new TbKafkaMsgPacker(producer, settings, clientId != null ? clientId : defaultTopic) : null;
     }
 
     @Override
@@ -75,10 +85,18 @@ public class TbKafkaProducerTemplate<T extends TbQueueMsg> implements TbQueuePro
     @Override
     public void send(TopicPartitionInfo tpi, T msg, TbQueueCallback callback) {
         createTopicIfNotExist(tpi);
+        if (packer != null) {
+            packer.add(tpi.getFullTopicName(), msg, callback);
+            return;
+        }
         String key = msg.getKey().toString();
         byte[] data = msg.getData();
         ProducerRecord<String, byte[]> record;
-        Iterable<Header> headers = msg.getHeaders().getData().entrySet().stream().map(e -> new RecordHeader(e.getKey(), e.getValue())).collect(Collectors.toList());
+        Map<String, byte[]> msgHeaders = msg.getHeaders().getData();
+        List<Header> headers = new ArrayList<>(msgHeaders.size());
+        for (Map.Entry<String, byte[]> e : msgHeaders.entrySet()) {
+            headers.add(new RecordHeader(e.getKey(), e.getValue()));
+        }
         record = new ProducerRecord<>(tpi.getFullTopicName(), null, key, data, headers);
         producer.send(record, (metadata, exception) -> {
             if (exception == null) {
@@ -105,6 +123,9 @@ public class TbKafkaProducerTemplate<T extends TbQueueMsg> implements TbQueuePro
 
     @Override
     public void stop() {
+        if (packer != null) {
+            packer.stop();
+        }
         if (producer != null) {
             producer.close();
         }
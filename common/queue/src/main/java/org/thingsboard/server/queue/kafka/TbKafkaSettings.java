@@ -67,6 +67,22 @@ public class TbKafkaSettings {
     @Getter
     private  int fetchMaxBytes;
 
+    @Value("${queue.kafka.pack.enabled:false}")
+    @Getter
+    private boolean packEnabled;
+
+    @Value("${queue.kafka.pack.linger_ms:5}")
+    @Getter
+    private long packLingerMs;
+
+    @Value("${queue.kafka.pack.max_size:65536}")
+    @Getter
+    private int packMaxSize;
+
+    @Value("${queue.kafka.pack.compress:true}")
+    @Getter
+    private boolean packCompress;
+
     @Value("${kafka.other:#{null}}")
     private List<TbKafkaProperty> other;
 
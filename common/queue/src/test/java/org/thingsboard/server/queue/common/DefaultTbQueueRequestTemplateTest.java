@@ -0,0 +1,163 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.queue.common;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.Data;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Matchers;
+import org.mockito.Mockito;
+import org.thingsboard.server.common.msg.queue.TopicPartitionInfo;
+import org.thingsboard.server.queue.TbQueueAdmin;
+import org.thingsboard.server.queue.TbQueueCallback;
+import org.thingsboard.server.queue.TbQueueConsumer;
+import org.thingsboard.server.queue.TbQueueMsg;
+import org.thingsboard.server.queue.TbQueueMsgHeaders;
+import org.thingsboard.server.queue.TbQueueProducer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+public class DefaultTbQueueRequestTemplateTest {
+
+    private static final String RESPOND = "respond";
+    private static final String IGNORE = "ignore";
+    private static final long MAX_REQUEST_TIMEOUT = 200;
+    private static final String REQUEST_TOPIC = "tb.test.requests";
+    private static final String RESPONSE_TOPIC = "tb.test.responses";
+
+    private final BlockingQueue<TestMsg> responses = new LinkedBlockingQueue<>();
+    private DefaultTbQueueRequestTemplate<TestMsg, TestMsg> template;
+    private SimpleMeterRegistry meterRegistry;
+
+    @Before
+    public void before() throws Exception {
+        meterRegistry = new SimpleMeterRegistry();
+        Metrics.globalRegistry.add(meterRegistry);
+        template = createTemplate(RESPONSE_TOPIC);
+    }
+
+    @SuppressWarnings("unchecked")
+    private DefaultTbQueueRequestTemplate<TestMsg, TestMsg> createTemplate(String responseTopic) throws Exception {
+        TbQueueAdmin admin = Mockito.mock(TbQueueAdmin.class);
+        TbQueueProducer<TestMsg> producer = Mockito.mock(TbQueueProducer.class);
+        TbQueueConsumer<TestMsg> consumer = Mockito.mock(TbQueueConsumer.class);
+        Mockito.when(producer.getDefaultTopic()).thenReturn(REQUEST_TOPIC);
+        Mockito.when(consumer.getTopic()).thenReturn(responseTopic);
+        Mockito.when(consumer.poll(Matchers.anyLong())).thenAnswer(invocation -> {
+            TestMsg response = responses.poll(10, TimeUnit.MILLISECONDS);
+            return response != null ? Collections.singletonList(response) : Collections.emptyList();
+        });
+        Mockito.doAnswer(invocation -> {
+            TestMsg request = (TestMsg) invocation.getArguments()[1];
+            if (RESPOND.equals(new String(request.getData(), StandardCharsets.UTF_8))) {
+                TestMsg response = new TestMsg(request.getKey(), request.getData());
+                response.getHeaders().put(AbstractTbQueueTemplate.REQUEST_ID_HEADER, request.getHeaders().get(AbstractTbQueueTemplate.REQUEST_ID_HEADER));
+                responses.add(response);
+            }
+            return null;
+        }).when(producer).send(Matchers.any(TopicPartitionInfo.class), Matchers.any(TestMsg.class), Matchers.any(TbQueueCallback.class));
+
+        DefaultTbQueueRequestTemplate<TestMsg, TestMsg> template = DefaultTbQueueRequestTemplate.<TestMsg, TestMsg>builder()
+                .queueAdmin(admin)
+                .requestTemplate(producer)
+                .responseTemplate(consumer)
+                .maxRequestTimeout(MAX_REQUEST_TIMEOUT)
+                .maxPendingRequests(2)
+                .pollInterval(10)
+                .build();
+        template.init();
+        return template;
+    }
+
+    @After
+    public void after() {
+        template.stop();
+        Metrics.globalRegistry.remove(meterRegistry);
+    }
+
+    @Test
+    public void testResponseReceived() throws Exception {
+        ListenableFuture<TestMsg> future = template.send(new TestMsg(UUID.randomUUID(), RESPOND.getBytes(StandardCharsets.UTF_8)));
+        TestMsg response = future.get(MAX_REQUEST_TIMEOUT, TimeUnit.MILLISECONDS);
+        Assert.assertEquals(RESPOND, new String(response.getData(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testRequestExpiresOnItsOwnDeadline() throws Exception {
+        long startTs = System.currentTimeMillis();
+        ListenableFuture<TestMsg> future = template.send(new TestMsg(UUID.randomUUID(), IGNORE.getBytes(StandardCharsets.UTF_8)));
+        try {
+            future.get(MAX_REQUEST_TIMEOUT * 5, TimeUnit.MILLISECONDS);
+            Assert.fail("Request should expire");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof TimeoutException);
+        }
+        long elapsed = System.currentTimeMillis() - startTs;
+        Assert.assertTrue("Expired too early: " + elapsed, elapsed >= MAX_REQUEST_TIMEOUT);
+        Assert.assertTrue("Expired too late: " + elapsed, elapsed < MAX_REQUEST_TIMEOUT * 3);
+    }
+
+    @Test
+    public void testPendingRequestsLimit() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            template.send(new TestMsg(UUID.randomUUID(), IGNORE.getBytes(StandardCharsets.UTF_8)));
+        }
+        ListenableFuture<TestMsg> rejected = template.send(new TestMsg(UUID.randomUUID(), IGNORE.getBytes(StandardCharsets.UTF_8)));
+        Assert.assertTrue(rejected.isDone());
+        try {
+            rejected.get();
+            Assert.fail("Request should be rejected");
+        } catch (ExecutionException e) {
+            Assert.assertEquals("Pending request map is full!", e.getCause().getMessage());
+        }
+    }
+
+    @Test
+    public void testMetersOfTemplatesWithSameRequestTopicAreSeparate() throws Exception {
+        DefaultTbQueueRequestTemplate<TestMsg, TestMsg> other = createTemplate(RESPONSE_TOPIC + ".other");
+        other.send(new TestMsg(UUID.randomUUID(), IGNORE.getBytes(StandardCharsets.UTF_8)));
+        Assert.assertEquals(0, pendingRequests(RESPONSE_TOPIC), 0);
+        Assert.assertEquals(1, pendingRequests(RESPONSE_TOPIC + ".other"), 0);
+
+        other.stop();
+        Assert.assertNull(Metrics.globalRegistry.find("tb.queue.requests.pending").tag("responseTopic", RESPONSE_TOPIC + ".other").gauge());
+        Assert.assertEquals(0, pendingRequests(RESPONSE_TOPIC), 0);
+        Assert.assertNotNull(Metrics.globalRegistry.find("tb.queue.requests.latency").tag("responseTopic", RESPONSE_TOPIC).timer());
+    }
+
+    private double pendingRequests(String responseTopic) {
+        return Metrics.globalRegistry.get("tb.queue.requests.pending").tag("topic", REQUEST_TOPIC).tag("responseTopic", responseTopic).gauge().value();
+    }
+
+    @Data
+    private static class TestMsg implements TbQueueMsg {
+        private final UUID key;
+        private final byte[] data;
+        private final TbQueueMsgHeaders headers = new DefaultTbQueueMsgHeaders();
+    }
+}
@@ -0,0 +1,117 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.queue.kafka;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Assert;
+import org.junit.Test;
+import org.thingsboard.server.queue.TbQueueMsgHeaders;
+import org.thingsboard.server.queue.common.DefaultTbQueueMsgHeaders;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+@Slf4j
+public class TbKafkaMsgPackTest {
+
+    private static final int _100K = 100 * 1024;
+
+    @Test
+    public void testPackAndUnpack() throws IOException {
+        testPackAndUnpack(false);
+        testPackAndUnpack(true);
+    }
+
+    @Test(expected = IOException.class)
+    public void testUnknownPackFormat() throws IOException {
+        TbKafkaMsgPack.decode(new byte[0], new byte[]{42});
+    }
+
+    @Test
+    public void testPackThroughput() throws IOException {
+        List<KafkaTbQueueMsg> msgs = new ArrayList<>(_100K);
+        long rawSize = 0;
+        for (int i = 0; i < _100K; i++) {
+            KafkaTbQueueMsg msg = createMsg(i);
+            msgs.add(msg);
+            rawSize += msg.getData().length;
+        }
+        for (boolean compress : new boolean[]{false, true}) {
+            long packedSize = 0;
+            int packs = 0;
+            int decoded = 0;
+            long start = System.nanoTime();
+            List<KafkaTbQueueMsg> pack = new ArrayList<>();
+            int packSize = 0;
+            for (KafkaTbQueueMsg msg : msgs) {
+                pack.add(msg);
+                packSize += TbKafkaMsgPack.estimateSize(msg);
+                if (packSize >= 65536) {
+                    byte[] data = TbKafkaMsgPack.encode(pack, packSize, compress);
+                    decoded += TbKafkaMsgPack.decode(data, TbKafkaMsgPack.getHeaderValue(compress)).size();
+                    packedSize += data.length;
+                    packs++;
+                    pack.clear();
+                    packSize = 0;
+                }
+            }
+            if (!pack.isEmpty()) {
+                byte[] data = TbKafkaMsgPack.encode(pack, packSize, compress);
+                decoded += TbKafkaMsgPack.decode(data, TbKafkaMsgPack.getHeaderValue(compress)).size();
+                packedSize += data.length;
+                packs++;
+            }
+            long duration = System.nanoTime() - start;
+            Assert.assertEquals(_100K, decoded);
+            log.info("Packed and unpacked {} messages ({} bytes) into {} records ({} bytes, compress: {}) in {} ms",
+                    _100K, rawSize, packs, packedSize, compress, TimeUnit.NANOSECONDS.toMillis(duration));
+        }
+    }
+
+    private void testPackAndUnpack(boolean compress) throws IOException {
+        List<KafkaTbQueueMsg> msgs = new ArrayList<>();
+        int size = 0;
+        for (int i = 0; i < 10; i++) {
+            KafkaTbQueueMsg msg = createMsg(i);
+            msgs.add(msg);
+            size += TbKafkaMsgPack.estimateSize(msg);
+        }
+        byte[] data = TbKafkaMsgPack.encode(msgs, size, compress);
+        List<KafkaTbQueueMsg> result = TbKafkaMsgPack.decode(data, TbKafkaMsgPack.getHeaderValue(compress));
+        Assert.assertEquals(msgs.size(), result.size());
+        for (int i = 0; i < msgs.size(); i++) {
+            KafkaTbQueueMsg expected = msgs.get(i);
+            KafkaTbQueueMsg actual = result.get(i);
+            Assert.assertEquals(expected.getKey(), actual.getKey());
+            Assert.assertArrayEquals(expected.getData(), actual.getData());
+            Assert.assertEquals(expected.getHeaders().getData().keySet(), actual.getHeaders().getData().keySet());
+            Assert.assertArrayEquals(expected.getHeaders().get("type"), actual.getHeaders().get("type"));
+        }
+    }
+
+    private KafkaTbQueueMsg createMsg(int idx) {
+        TbQueueMsgHeaders headers = new DefaultTbQueueMsgHeaders();
+        headers.put("type", "POST_TELEMETRY_REQUEST".getBytes(StandardCharsets.UTF_8));
+        byte[] data = ("{\"temperature\":" + (idx % 100) + ",\"humidity\":" + (idx % 50) + ",\"ts\":" + (1590000000000L + idx) + "}")
+                .getBytes(StandardCharsets.UTF_8);
+        return new KafkaTbQueueMsg(UUID.randomUUID(), headers, data);
+    }
+
+}
@@ -0,0 +1,283 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.common.transport.adaptor;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.JsonSyntaxException;
+import org.thingsboard.server.gen.transport.TransportProtos.KeyValueProto;
+import org.thingsboard.server.gen.transport.TransportProtos.KeyValueType;
+import org.thingsboard.server.gen.transport.TransportProtos.PostAttributeMsg;
+import org.thingsboard.server.gen.transport.TransportProtos.PostTelemetryMsg;
+import org.thingsboard.server.gen.transport.TransportProtos.TsKvListProto;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streaming counterpart of {@link JsonConverter} for telemetry and attribute uploads.
+ * Reads the payload token by token and builds the protobuf messages directly, without the intermediate Gson tree.
+ * Conversion semantics (type casting, string length limits, JSON values) are the ones of {@link JsonConverter}.
+ * <p>
+ * The parser is strict: an {@link IOException} means the payload is not plain JSON (comments, unquoted names,
+ * duplicate keys, trailing content etc.) and the caller is expected to fall back to the lenient Gson based conversion.
+ */
+public class JsonStreamConverter {
+
+    private static final String CAN_T_PARSE_VALUE = "Can't parse value: ";
+    private static final String TS = "ts";
+    private static final String VALUES = "values";
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory()
+            .enable(JsonParser.Feature.STRICT_DUPLICATE_DETECTION);
+
+    public static PostTelemetryMsg convertToTelemetryProto(InputStream in) throws IOException, JsonSyntaxException {
+        long systemTs = System.currentTimeMillis();
+        try (JsonParser parser = JSON_FACTORY.createParser(in)) {
+            PostTelemetryMsg.Builder builder = PostTelemetryMsg.newBuilder();
+            JsonToken token = nextToken(parser);
+            if (token == JsonToken.START_OBJECT) {
+                builder.addTsKvList(parseObject(parser, systemTs));
+            } else if (token == JsonToken.START_ARRAY) {
+                while ((token = nextToken(parser)) != JsonToken.END_ARRAY) {
+                    if (token == JsonToken.START_OBJECT) {
+                        builder.addTsKvList(parseObject(parser, systemTs));
+                    } else {
+                        throw new JsonSyntaxException(CAN_T_PARSE_VALUE + readElement(parser));
+                    }
+                }
+            } else {
+                throw new JsonSyntaxException(CAN_T_PARSE_VALUE + readDocument(parser));
+            }
+            checkEndOfDocument(parser);
+            return builder.build();
+        }
+    }
+
+    public static PostAttributeMsg convertToAttributesProto(InputStream in) throws IOException, JsonSyntaxException {
+        try (JsonParser parser = JSON_FACTORY.createParser(in)) {
+            if (nextToken(parser) != JsonToken.START_OBJECT) {
+                throw new JsonSyntaxException(CAN_T_PARSE_VALUE + readDocument(parser));
+            }
+            List<KeyValueProto> keyValueList = new ArrayList<>();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String key = parser.getCurrentName();
+                parser.nextToken();
+                parseProtoValue(parser, key, keyValueList);
+            }
+            checkEndOfDocument(parser);
+            return PostAttributeMsg.newBuilder().addAllKv(keyValueList).build();
+        }
+    }
+
+    /**
+     * Parses a single telemetry object. Whether it is a {"ts": ..., "values": {...}} object or a flat map of values
+     * is only known once both keys are seen, so the flat interpretation is collected until then and any conversion
+     * error of it is postponed until the object turns out to be a flat one.
+     */
+    private static TsKvListProto parseObject(JsonParser parser, long systemTs) throws IOException {
+        List<KeyValueProto> flatValues = new ArrayList<>();
+        JsonSyntaxException flatError = null;
+        JsonElement tsElement = null;
+        JsonElement valuesElement = null;
+        List<KeyValueProto> values = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String key = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            if (values != null) {
+                parser.skipChildren();
+            } else if (VALUES.equals(key) && tsElement != null && token == JsonToken.START_OBJECT) {
+                values = new ArrayList<>();
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String valueKey = parser.getCurrentName();
+                    parser.nextToken();
+                    parseProtoValue(parser, valueKey, values);
+                }
+            } else {
+                try {
+                    if (TS.equals(key) || VALUES.equals(key)) {
+                        JsonElement element = readElement(parser);
+                        if (TS.equals(key)) {
+                            tsElement = element;
+                        } else {
+                            valuesElement = element;
+                        }
+                        if (flatError == null) {
+                            JsonConverter.parseProtoValue(flatValues, key, element);
+                        }
+                    } else if (flatError == null) {
+                        parseProtoValue(parser, key, flatValues);
+                    } else {
+                        parser.skipChildren();
+                    }
+                } catch (JsonSyntaxException e) {
+                    flatError = e;
+                }
+            }
+        }
+        TsKvListProto.Builder builder = TsKvListProto.newBuilder();
+        if (tsElement != null && (values != null || valuesElement != null)) {
+            builder.setTs(tsElement.getAsLong());
+            builder.addAllKv(values != null ? values : JsonConverter.parseProtoValues(valuesElement.getAsJsonObject()));
+        } else if (flatError != null) {
+            throw flatError;
+        } else {
+            builder.setTs(systemTs);
+            builder.addAllKv(flatValues);
+        }
+        return builder.build();
+    }
+
+    private static void parseProtoValue(JsonParser parser, String key, List<KeyValueProto> result) throws IOException {
+        switch (parser.getCurrentToken()) {
+            case VALUE_STRING:
+                result.add(JsonConverter.buildStringKeyValueProto(key, parser.getText()));
+                break;
+            case VALUE_NUMBER_INT:
+            case VALUE_NUMBER_FLOAT:
+                result.add(JsonConverter.buildNumericKeyValueProto(key, parser.getText()));
+                break;
+            case VALUE_TRUE:
+            case VALUE_FALSE:
+                result.add(KeyValueProto.newBuilder().setKey(key).setType(KeyValueType.BOOLEAN_V)
+                        .setBoolV(parser.getBooleanValue()).build());
+                break;
+            case VALUE_NULL:
+                break;
+            default:
+                JsonConverter.parseProtoValue(result, key, readElement(parser));
+        }
+    }
+
+    /**
+     * Reads the value at the current token into a Gson element. Used for nested JSON values and the rare shapes
+     * that need the tree, so that their textual form and error messages match {@link JsonConverter} exactly.
+     */
+    private static JsonElement readElement(JsonParser parser) throws IOException {
+        JsonToken token = parser.getCurrentToken();
+        switch (token) {
+            case START_OBJECT:
+                JsonObject object = new JsonObject();
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String name = parser.getCurrentName();
+                    parser.nextToken();
+                    object.add(name, readElement(parser));
+                }
+                return object;
+            case START_ARRAY:
+                JsonArray array = new JsonArray();
+                while (parser.nextToken() != JsonToken.END_ARRAY) {
+                    array.add(readElement(parser));
+                }
+                return array;
+            case VALUE_STRING:
+                return new JsonPrimitive(parser.getText());
+            case VALUE_NUMBER_INT:
+            case VALUE_NUMBER_FLOAT:
+                return new JsonPrimitive(new JsonNumber(parser.getText()));
+            case VALUE_TRUE:
+            case VALUE_FALSE:
+                return new JsonPrimitive(parser.getBooleanValue());
+            case VALUE_NULL:
+                return JsonNull.INSTANCE;
+            default:
+                throw new JsonParseException(parser, "Unexpected token: " + token);
+        }
+    }
+
+    private static JsonElement readDocument(JsonParser parser) throws IOException {
+        JsonElement element = readElement(parser);
+        checkEndOfDocument(parser);
+        return element;
+    }
+
+    private static JsonToken nextToken(JsonParser parser) throws IOException {
+        JsonToken token = parser.nextToken();
+        if (token == null) {
+            throw new JsonParseException(parser, "Unexpected end of payload");
+        }
+        return token;
+    }
+
+    private static void checkEndOfDocument(JsonParser parser) throws IOException {
+        if (parser.nextToken() != null) {
+            throw new JsonParseException(parser, "Unexpected content after the end of payload");
+        }
+    }
+
+    /**
+     * Keeps the text of the JSON number, so {@link JsonConverter} tells integer and floating point values apart
+     * the same way as for the values parsed by Gson.
+     */
+    private static final class JsonNumber extends Number {
+
+        private final String value;
+
+        private JsonNumber(String value) {
+            this.value = value;
+        }
+
+        @Override
+        public int intValue() {
+            return (int) longValue();
+        }
+
+        @Override
+        public long longValue() {
+            try {
+                return Long.parseLong(value);
+            } catch (NumberFormatException e) {
+                return new BigDecimal(value).longValue();
+            }
+        }
+
+        @Override
+        public float floatValue() {
+            return Float.parseFloat(value);
+        }
+
+        @Override
+        public double doubleValue() {
+            return Double.parseDouble(value);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return this == o || (o instanceof JsonNumber && value.equals(((JsonNumber) o).value));
+        }
+
+        @Override
+        public int hashCode() {
+            return value.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return value;
+        }
+    }
+
+}
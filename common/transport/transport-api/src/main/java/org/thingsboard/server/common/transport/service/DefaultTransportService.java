@@ -31,8 +31,9 @@ import org.thingsboard.server.common.msg.TbMsgMetaData;
 import org.thingsboard.server.common.msg.queue.ServiceType;
 import org.thingsboard.server.common.msg.queue.TopicPartitionInfo;
 import org.thingsboard.server.common.msg.session.SessionMsgType;
-import org.thingsboard.server.common.msg.tools.TbRateLimits;
+import org.thingsboard.server.common.msg.tools.TbRateLimitsConfiguration;
 import org.thingsboard.server.common.msg.tools.TbRateLimitsException;
+import org.thingsboard.server.common.msg.tools.TbRateLimitsRegistry;
 import org.thingsboard.server.common.transport.SessionMsgListener;
 import org.thingsboard.server.common.transport.TransportService;
 import org.thingsboard.server.common.transport.TransportServiceCallback;
@@ -87,6 +88,10 @@ public class DefaultTransportService implements TransportService {
     private String perTenantLimitsConf;
     @Value("${transport.rate_limits.device}")
     private String perDevicesLimitsConf;
+    @Value("${transport.rate_limits.max_devices:1000000}")
+    private int rateLimitsMaxDevices;
+    @Value("${transport.rate_limits.cleanup_interval_ms:60000}")
+    private long rateLimitsCleanupInterval;
     @Value("${transport.sessions.inactivity_timeout}")
     private long sessionInactivityTimeout;
     @Value("${transport.sessions.report_timeout}")
@@ -112,9 +117,8 @@ public class DefaultTransportService implements TransportService {
 
     private final ConcurrentMap<UUID, SessionMetaData> sessions = new ConcurrentHashMap<>();
     private final Map<String, RpcRequestMetadata> toServerRpcPendingMap = new ConcurrentHashMap<>();
-    //TODO: Implement cleanup of this maps.
-    private final ConcurrentMap<TenantId, TbRateLimits> perTenantLimits = new ConcurrentHashMap<>();
-    private final ConcurrentMap<DeviceId, TbRateLimits> perDeviceLimits = new ConcurrentHashMap<>();
+    private TbRateLimitsRegistry<TenantId> perTenantLimits;
+    private TbRateLimitsRegistry<DeviceId> perDeviceLimits;
 
     private ExecutorService mainConsumerExecutor = Executors.newSingleThreadExecutor(ThingsBoardThreadFactory.forName("transport-consumer"));
     private volatile boolean stopped = false;
@@ -128,12 +132,12 @@ public class DefaultTransportService implements TransportService {
 
     @PostConstruct
     public void init() {
+        this.schedulerExecutor = Executors.newSingleThreadScheduledExecutor(ThingsBoardThreadFactory.forName("transport-scheduler"));
         if (rateLimitEnabled) {
-            //Just checking the configuration parameters
-            new TbRateLimits(perTenantLimitsConf);
-            new TbRateLimits(perDevicesLimitsConf);
+            perTenantLimits = new TbRateLimitsRegistry<>(TbRateLimitsConfiguration.parse(perTenantLimitsConf), Integer.MAX_VALUE);
+            perDeviceLimits = new TbRateLimitsRegistry<>(TbRateLimitsConfiguration.parse(perDevicesLimitsConf), rateLimitsMaxDevices);
+            this.schedulerExecutor.scheduleWithFixedDelay(this::cleanUpRateLimits, rateLimitsCleanupInterval, rateLimitsCleanupInterval, TimeUnit.MILLISECONDS);
         }
-        this.schedulerExecutor = Executors.newSingleThreadScheduledExecutor(ThingsBoardThreadFactory.forName("transport-scheduler"));
         this.transportCallbackExecutor = Executors.newWorkStealingPool(20);
         this.schedulerExecutor.scheduleAtFixedRate(this::checkInactivityAndReportActivity, new Random().nextInt((int) sessionReportTimeout), sessionReportTimeout, TimeUnit.MILLISECONDS);
         transportApiRequestTemplate = queueProvider.createTransportApiRequestTemplate();
@@ -174,7 +178,7 @@ public class DefaultTransportService implements TransportService {
 
     @PreDestroy
     public void destroy() {
-        if (rateLimitEnabled) {
+        if (rateLimitEnabled && perTenantLimits != null) {
             perTenantLimits.clear();
             perDeviceLimits.clear();
         }
@@ -472,8 +476,7 @@ public class DefaultTransportService implements TransportService {
             return true;
         }
         TenantId tenantId = new TenantId(new UUID(sessionInfo.getTenantIdMSB(), sessionInfo.getTenantIdLSB()));
-        TbRateLimits rateLimits = perTenantLimits.computeIfAbsent(tenantId, id -> new TbRateLimits(perTenantLimitsConf));
-        if (!rateLimits.tryConsume()) {
+        if (!perTenantLimits.tryConsume(tenantId)) {
             if (callback != null) {
                 callback.onError(new TbRateLimitsException(EntityType.TENANT));
             }
@@ -483,8 +486,7 @@ public class DefaultTransportService implements TransportService {
             return false;
         }
         DeviceId deviceId = new DeviceId(new UUID(sessionInfo.getDeviceIdMSB(), sessionInfo.getDeviceIdLSB()));
-        rateLimits = perDeviceLimits.computeIfAbsent(deviceId, id -> new TbRateLimits(perDevicesLimitsConf));
-        if (!rateLimits.tryConsume()) {
+        if (!perDeviceLimits.tryConsume(deviceId)) {
             if (callback != null) {
                 callback.onError(new TbRateLimitsException(EntityType.DEVICE));
             }
@@ -497,6 +499,17 @@ public class DefaultTransportService implements TransportService {
         return true;
     }
 
+    private void cleanUpRateLimits() {
+        try {
+            int removedTenants = perTenantLimits.cleanUp();
+            int removedDevices = perDeviceLimits.cleanUp();
+            log.debug("Removed [{}] tenant and [{}] device rate limits, remaining: [{}] tenant and [{}] device rate limits",
+                    removedTenants, removedDevices, perTenantLimits.size(), perDeviceLimits.size());
+        } catch (Throwable e) {
+            log.warn("Failed to clean up rate limits", e);
+        }
+    }
+
     protected void processToTransportMsg(TransportProtos.ToTransportMsg toSessionMsg) {
         UUID sessionId = new UUID(toSessionMsg.getSessionIdMSB(), toSessionMsg.getSessionIdLSB());
         SessionMetaData md = sessions.get(sessionId);
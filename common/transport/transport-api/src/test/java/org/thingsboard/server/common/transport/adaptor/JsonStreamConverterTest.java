@@ -0,0 +1,168 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.common.transport.adaptor;
+
+import com.google.gson.JsonParser;
+import com.google.gson.JsonSyntaxException;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.thingsboard.server.gen.transport.TransportProtos.PostTelemetryMsg;
+import org.thingsboard.server.gen.transport.TransportProtos.TsKvListProto;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+@Slf4j
+public class JsonStreamConverterTest {
+
+    private static final List<String> TELEMETRY = Arrays.asList(
+            "{\"temperature\":42,\"humidity\":73.5,\"active\":true,\"name\":\"dev\",\"empty\":null,\"tiny\":0.00000001}",
+            "{\"ts\":1451649600512,\"values\":{\"key1\":\"value1\",\"key2\":\"42\",\"key3\":\"4.2\",\"key4\":false}}",
+            "{\"values\":{\"key1\":1},\"ts\":\"1451649600512\"}",
+            "{\"ts\":1451649600512,\"other\":\"x\",\"values\":{\"key1\":1},\"tail\":{\"a\":[1,2]}}",
+            "{\"ts\":1451649600512}",
+            "{\"values\":{\"nested\":{\"b\":[1,2.50,-0,\"s\\n\\u2028\"],\"c\":null}}}",
+            "[{\"ts\":1,\"values\":{\"a\":1}},{\"ts\":2,\"values\":{\"a\":\"12345678901234567890\"}},{\"b\":-7,\"c\":1.5E3}]",
+            "{\"json\":[{\"a\":1},{\"b\":\"<&>\"}],\"unicode\":\"тест\"}"
+    );
+
+    private static final List<String> INVALID = Arrays.asList(
+            "42",
+            "[1]",
+            "{\"big\":12345678901234567890}",
+            "{\"exp\":1e5}",
+            "{\"ts\":1,\"values\":1}",
+            "{\"ts\":{},\"values\":{}}"
+    );
+
+    @After
+    public void after() {
+        JsonConverter.setTypeCastEnabled(true);
+        JsonConverter.setMaxStringValueLength(0);
+    }
+
+    @Test
+    public void testTelemetryMatchesTreeConversion() throws IOException {
+        for (String json : TELEMETRY) {
+            assertSameTelemetry(json);
+        }
+        JsonConverter.setTypeCastEnabled(false);
+        for (String json : TELEMETRY) {
+            assertSameTelemetry(json);
+        }
+    }
+
+    @Test
+    public void testAttributesMatchTreeConversion() throws IOException {
+        for (String json : TELEMETRY) {
+            if (json.startsWith("{")) {
+                Assert.assertEquals(json, JsonConverter.convertToAttributesProto(new JsonParser().parse(json)), JsonStreamConverter.convertToAttributesProto(toStream(json)));
+            }
+        }
+    }
+
+    @Test
+    public void testInvalidPayloadsAreRejected() throws IOException {
+        for (String json : INVALID) {
+            Class<? extends Throwable> expected = failure(() -> JsonConverter.convertToTelemetryProto(new JsonParser().parse(json)));
+            Assert.assertNotNull(json, expected);
+            Assert.assertEquals(json, expected, failure(() -> JsonStreamConverter.convertToTelemetryProto(toStream(json))));
+        }
+    }
+
+    @Test
+    public void testMaxStringValueLength() throws IOException {
+        JsonConverter.setMaxStringValueLength(3);
+        String flat = "{\"ts\":1,\"key\":\"long value\"}";
+        Assert.assertEquals(JsonSyntaxException.class, failure(() -> JsonStreamConverter.convertToTelemetryProto(toStream(flat))));
+        String withTs = "{\"ts\":1,\"key\":\"long value\",\"values\":{\"key\":\"abc\"}}";
+        assertSameTelemetry(withTs);
+    }
+
+    @Test(expected = IOException.class)
+    public void testLenientPayloadIsNotAccepted() throws IOException {
+        JsonStreamConverter.convertToTelemetryProto(toStream("{temperature: 42}"));
+    }
+
+    @Test(expected = IOException.class)
+    public void testDuplicateKeysAreNotAccepted() throws IOException {
+        JsonStreamConverter.convertToTelemetryProto(toStream("{\"a\":1,\"a\":2}"));
+    }
+
+    @Test
+    public void testThroughput() throws IOException {
+        StringBuilder values = new StringBuilder();
+        for (int i = 0; i < 20; i++) {
+            values.append(i > 0 ? "," : "").append("\"key").append(i).append("\":").append(i % 2 == 0 ? "\"" + i + ".5\"" : String.valueOf(i));
+        }
+        String json = "{\"ts\":1451649600512,\"values\":{" + values + "}}";
+        byte[] payload = json.getBytes(StandardCharsets.UTF_8);
+        int iterations = 50000;
+        for (int i = 0; i < iterations; i++) {
+            JsonConverter.convertToTelemetryProto(new JsonParser().parse(new String(payload, StandardCharsets.UTF_8)));
+            JsonStreamConverter.convertToTelemetryProto(new ByteArrayInputStream(payload));
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            JsonConverter.convertToTelemetryProto(new JsonParser().parse(new String(payload, StandardCharsets.UTF_8)));
+        }
+        long treeTime = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            JsonStreamConverter.convertToTelemetryProto(new ByteArrayInputStream(payload));
+        }
+        long streamTime = System.nanoTime() - start;
+        log.info("Converted {} payloads: tree {} ns/msg, stream {} ns/msg", iterations, treeTime / iterations, streamTime / iterations);
+    }
+
+    private void assertSameTelemetry(String json) throws IOException {
+        long startTs = System.currentTimeMillis();
+        PostTelemetryMsg expected = JsonConverter.convertToTelemetryProto(new JsonParser().parse(json));
+        PostTelemetryMsg actual = JsonStreamConverter.convertToTelemetryProto(toStream(json));
+        Assert.assertEquals(json, expected.getTsKvListCount(), actual.getTsKvListCount());
+        for (int i = 0; i < expected.getTsKvListCount(); i++) {
+            TsKvListProto expectedList = expected.getTsKvList(i);
+            TsKvListProto actualList = actual.getTsKvList(i);
+            if (expectedList.getTs() < startTs) {
+                Assert.assertEquals(json, expectedList.getTs(), actualList.getTs());
+            }
+            Assert.assertEquals(json, expectedList.getKvList(), actualList.getKvList());
+        }
+    }
+
+    private static ByteArrayInputStream toStream(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Class<? extends Throwable> failure(ThrowingRunnable runnable) {
+        try {
+            runnable.run();
+            return null;
+        } catch (Throwable t) {
+            return t.getClass();
+        }
+    }
+
+    private interface ThrowingRunnable {
+        void run() throws Exception;
+    }
+
+}
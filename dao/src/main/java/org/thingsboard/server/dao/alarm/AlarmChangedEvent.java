@@ -0,0 +1,42 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.alarm;
+
+import lombok.Getter;
+import org.springframework.context.ApplicationEvent;
+import org.thingsboard.server.common.data.alarm.Alarm;
+import org.thingsboard.server.common.data.id.TenantId;
+
+/**
+ * Published when an alarm was created, updated, acknowledged, cleared or deleted on this node,
+ * so that copies of the alarm cached by the rule engine can be dropped.
+ */
+public class AlarmChangedEvent extends ApplicationEvent {
+
+    @Getter
+    private final TenantId tenantId;
+    @Getter
+    private final Alarm alarm;
+    @Getter
+    private final boolean deleted;
+
+    public AlarmChangedEvent(Object source, TenantId tenantId, Alarm alarm, boolean deleted) {
+        super(source);
+        this.tenantId = tenantId;
+        this.alarm = alarm;
+        this.deleted = deleted;
+    }
+}
@@ -23,6 +23,7 @@ import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.MoreExecutors;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.util.CollectionUtils;
 import org.springframework.util.StringUtils;
@@ -80,6 +81,9 @@ public class BaseAlarmService extends AbstractEntityService implements AlarmServ
     @Autowired
     private EntityService entityService;
 
+    @Autowired(required = false)
+    private ApplicationEventPublisher eventPublisher;
+
     protected ExecutorService readResultsProcessingExecutor;
 
     @PostConstruct
@@ -132,7 +136,9 @@ public class BaseAlarmService extends AbstractEntityService implements AlarmServ
                 return false;
             }
             deleteEntityRelations(tenantId, alarm.getId());
-            return alarmDao.deleteAlarm(tenantId, alarm);
+            Boolean deleted = alarmDao.deleteAlarm(tenantId, alarm);
+            publishChange(tenantId, alarm, true);
+            return deleted;
         } catch (ExecutionException | InterruptedException e) {
             throw new RuntimeException(e);
         }
@@ -142,6 +148,7 @@ public class BaseAlarmService extends AbstractEntityService implements AlarmServ
         log.debug("New Alarm : {}", alarm);
         Alarm saved = alarmDao.save(alarm.getTenantId(), alarm);
         createAlarmRelations(saved);
+        publishChange(saved.getTenantId(), saved, false);
         return saved;
     }
 
@@ -198,6 +205,7 @@ public class BaseAlarmService extends AbstractEntityService implements AlarmServ
         } else if (oldStatus != newStatus) {
             updateRelations(oldAlarm, oldStatus, newStatus);
         }
+        publishChange(result.getTenantId(), result, false);
         return result;
     }
 
@@ -216,6 +224,7 @@ public class BaseAlarmService extends AbstractEntityService implements AlarmServ
                     alarm.setAckTs(ackTime);
                     alarmDao.save(alarm.getTenantId(), alarm);
                     updateRelations(alarm, oldStatus, newStatus);
+                    publishChange(tenantId, alarm, false);
                     return true;
                 }
             }
@@ -240,12 +249,19 @@ public class BaseAlarmService extends AbstractEntityService implements AlarmServ
                     }
                     alarmDao.save(alarm.getTenantId(), alarm);
                     updateRelations(alarm, oldStatus, newStatus);
+                    publishChange(tenantId, alarm, false);
                     return true;
                 }
             }
         });
     }
 
+    private void publishChange(TenantId tenantId, Alarm alarm, boolean deleted) {
+        if (eventPublisher != null) {
+            eventPublisher.publishEvent(new AlarmChangedEvent(this, tenantId, alarm, deleted));
+        }
+    }
+
     @Override
     public ListenableFuture<Alarm> findAlarmByIdAsync(TenantId tenantId, AlarmId alarmId) {
         log.trace("Executing findAlarmById [{}]", alarmId);
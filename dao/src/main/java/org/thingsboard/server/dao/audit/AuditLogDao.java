@@ -31,6 +31,8 @@ public interface AuditLogDao {
 
     ListenableFuture<Void> saveByTenantId(AuditLog auditLog);
 
+    void saveAll(List<AuditLog> auditLogs);
+
     PageData<AuditLog> findAuditLogsByTenantIdAndEntityId(UUID tenantId, EntityId entityId, List<ActionType> actionTypes, TimePageLink pageLink);
 
     PageData<AuditLog> findAuditLogsByTenantIdAndCustomerId(UUID tenantId, CustomerId customerId, List<ActionType> actionTypes, TimePageLink pageLink);
@@ -25,6 +25,7 @@ import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
@@ -50,7 +51,13 @@ import org.thingsboard.server.dao.audit.sink.AuditLogSink;
 import org.thingsboard.server.dao.entity.EntityService;
 import org.thingsboard.server.dao.exception.DataValidationException;
 import org.thingsboard.server.dao.service.DataValidator;
+import org.thingsboard.server.dao.sql.ScheduledLogExecutorComponent;
+import org.thingsboard.server.dao.sql.TbSqlBlockingQueue;
+import org.thingsboard.server.dao.sql.TbSqlBlockingQueueParams;
+import org.thingsboard.server.dao.sql.TbSqlQueueOverflowPolicy;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.util.List;
@@ -80,6 +87,48 @@ public class AuditLogServiceImpl implements AuditLogService {
     @Autowired
     private AuditLogSink auditLogSink;
 
+    @Autowired
+    private ScheduledLogExecutorComponent logExecutor;
+
+    @Value("${audit-log.queue.batch_size:1000}")
+    private int batchSize;
+
+    @Value("${audit-log.queue.batch_max_delay:50}")
+    private long maxDelay;
+
+    @Value("${audit-log.queue.max_size:100000}")
+    private int maxQueueSize;
+
+    @Value("${audit-log.queue.overflow_policy:DROP}")
+    private TbSqlQueueOverflowPolicy overflowPolicy;
+
+    @Value("${audit-log.queue.stats_print_interval_ms:10000}")
+    private long statsPrintIntervalMs;
+
+    private TbSqlBlockingQueue<AuditLog> queue;
+
+    @PostConstruct
+    public void init() {
+        TbSqlBlockingQueueParams params = TbSqlBlockingQueueParams.builder()
+                .logName("Audit logs")
+                .batchSize(batchSize)
+                .maxDelay(maxDelay)
+                .statsPrintIntervalMs(statsPrintIntervalMs)
+                .maxQueueSize(maxQueueSize)
+                .overflowPolicy(overflowPolicy)
+                .saveOneByOneOnFailure(true)
+                .build();
+        queue = new TbSqlBlockingQueue<>(params);
+        queue.init(logExecutor, this::saveAuditLogs);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (queue != null) {
+            queue.destroy();
+        }
+    }
+
     @Override
     public PageData<AuditLog> findAuditLogsByTenantIdAndCustomerId(TenantId tenantId, CustomerId customerId, List<ActionType> actionTypes, TimePageLink pageLink) {
         log.trace("Executing findAuditLogsByTenantIdAndCustomerId [{}], [{}], [{}]", tenantId, customerId, pageLink);
@@ -296,7 +345,6 @@ public class AuditLogServiceImpl implements AuditLogService {
                                          ActionStatus actionStatus,
                                          String actionFailureDetails) {
         AuditLog result = new AuditLog();
-        result.setId(new AuditLogId(Uuids.timeBased()));
         result.setTenantId(tenantId);
         result.setEntityId(entityId);
         result.setEntityName(entityName);
@@ -322,16 +370,25 @@ public class AuditLogServiceImpl implements AuditLogService {
                                                    String actionFailureDetails) {
         AuditLog auditLogEntry = createAuditLogEntry(tenantId, entityId, entityName, customerId, userId, userName,
                 actionType, actionData, actionStatus, actionFailureDetails);
+        // Time based id is assigned before the entry is queued, so that it reflects the time of the action and not of the flush.
+        auditLogEntry.setId(new AuditLogId(Uuids.timeBased()));
         log.trace("Executing logAction [{}]", auditLogEntry);
         auditLogValidator.validate(auditLogEntry, AuditLog::getTenantId);
         List<ListenableFuture<Void>> futures = Lists.newArrayListWithExpectedSize(INSERTS_PER_ENTRY);
-        futures.add(auditLogDao.saveByTenantId(auditLogEntry));
-
-        auditLogSink.logAction(auditLogEntry);
+        futures.add(queue.add(auditLogEntry));
 
         return Futures.allAsList(futures);
     }
 
+    private void saveAuditLogs(List<AuditLog> auditLogs) {
+        auditLogDao.saveAll(auditLogs);
+        try {
+            auditLogSink.logActions(auditLogs);
+        } catch (Exception e) {
+            log.warn("Failed to push {} audit logs to the sink", auditLogs.size(), e);
+        }
+    }
+
     private DataValidator<AuditLog> auditLogValidator =
             new DataValidator<AuditLog>() {
                 @Override
@@ -42,6 +42,7 @@ import javax.annotation.PostConstruct;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.Collections;
+import java.util.List;
 
 @Component
 @ConditionalOnProperty(prefix = "audit-log.sink", value = "type", havingValue = "elasticsearch")
@@ -111,6 +112,33 @@ public class ElasticsearchAuditLogSink implements AuditLogSink {
                 responseListener);
     }
 
+    @Override
+    public void logActions(List<AuditLog> auditLogEntries) {
+        if (auditLogEntries.isEmpty()) {
+            return;
+        }
+        StringBuilder bulkContent = new StringBuilder();
+        for (AuditLog auditLogEntry : auditLogEntries) {
+            ObjectNode actionNode = mapper.createObjectNode();
+            ObjectNode indexNode = actionNode.putObject("index");
+            indexNode.put("_index", getIndexName(auditLogEntry.getTenantId()));
+            indexNode.put("_type", INDEX_TYPE);
+            bulkContent.append(actionNode.toString()).append('\n');
+            bulkContent.append(createElasticJsonRecord(auditLogEntry)).append('\n');
+        }
+
+        HttpEntity entity = new NStringEntity(
+                bulkContent.toString(),
+                ContentType.APPLICATION_JSON);
+
+        restClient.performRequestAsync(
+                HttpMethod.POST.name(),
+                "/_bulk",
+                Collections.emptyMap(),
+                entity,
+                responseListener);
+    }
+
     private String createElasticJsonRecord(AuditLog auditLog) {
         ObjectNode auditLogNode = mapper.createObjectNode();
         auditLogNode.put("postDate", LocalDateTime.now().toString());
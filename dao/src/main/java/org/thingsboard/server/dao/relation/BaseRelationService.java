@@ -69,10 +69,18 @@ public class BaseRelationService implements RelationService {
     @Autowired
     private CacheManager cacheManager;
 
+    @Autowired
+    private RelationIndex relationIndex;
+
     @Override
     public ListenableFuture<Boolean> checkRelation(TenantId tenantId, EntityId from, EntityId to, String relationType, RelationTypeGroup typeGroup) {
         log.trace("Executing checkRelation [{}][{}][{}][{}]", from, to, relationType, typeGroup);
         validate(from, to, relationType, typeGroup);
+        if (relationIndex.isEnabled()) {
+            return Futures.transform(relationIndex.find(from, EntitySearchDirection.FROM, typeGroup, relationType,
+                    () -> relationDao.findAllByFrom(tenantId, from, typeGroup)),
+                    relations -> relations.stream().anyMatch(relation -> relation.getTo().equals(to)), MoreExecutors.directExecutor());
+        }
         return relationDao.checkRelation(tenantId, from, to, relationType, typeGroup);
     }
 
@@ -104,7 +112,9 @@ public class BaseRelationService implements RelationService {
     public boolean saveRelation(TenantId tenantId, EntityRelation relation) {
         log.trace("Executing saveRelation [{}]", relation);
         validate(relation);
-        return relationDao.saveRelation(tenantId, relation);
+        boolean result = relationDao.saveRelation(tenantId, relation);
+        relationIndex.onRelationSaved(relation);
+        return result;
     }
 
     @Caching(evict = {
@@ -118,7 +128,7 @@ public class BaseRelationService implements RelationService {
     public ListenableFuture<Boolean> saveRelationAsync(TenantId tenantId, EntityRelation relation) {
         log.trace("Executing saveRelationAsync [{}]", relation);
         validate(relation);
-        return relationDao.saveRelationAsync(tenantId, relation);
+        return onSuccess(relationDao.saveRelationAsync(tenantId, relation), () -> relationIndex.onRelationSaved(relation));
     }
 
     @Caching(evict = {
@@ -132,7 +142,9 @@ public class BaseRelationService implements RelationService {
     public boolean deleteRelation(TenantId tenantId, EntityRelation relation) {
         log.trace("Executing deleteRelation [{}]", relation);
         validate(relation);
-        return relationDao.deleteRelation(tenantId, relation);
+        boolean result = relationDao.deleteRelation(tenantId, relation);
+        relationIndex.onRelationDeleted(relation.getFrom(), relation.getTo(), relation.getType(), relation.getTypeGroup());
+        return result;
     }
 
     @Caching(evict = {
@@ -146,7 +158,8 @@ public class BaseRelationService implements RelationService {
     public ListenableFuture<Boolean> deleteRelationAsync(TenantId tenantId, EntityRelation relation) {
         log.trace("Executing deleteRelationAsync [{}]", relation);
         validate(relation);
-        return relationDao.deleteRelationAsync(tenantId, relation);
+        return onSuccess(relationDao.deleteRelationAsync(tenantId, relation),
+                () -> relationIndex.onRelationDeleted(relation.getFrom(), relation.getTo(), relation.getType(), relation.getTypeGroup()));
     }
 
     @Caching(evict = {
@@ -160,7 +173,9 @@ public class BaseRelationService implements RelationService {
     public boolean deleteRelation(TenantId tenantId, EntityId from, EntityId to, String relationType, RelationTypeGroup typeGroup) {
         log.trace("Executing deleteRelation [{}][{}][{}][{}]", from, to, relationType, typeGroup);
         validate(from, to, relationType, typeGroup);
-        return relationDao.deleteRelation(tenantId, from, to, relationType, typeGroup);
+        boolean result = relationDao.deleteRelation(tenantId, from, to, relationType, typeGroup);
+        relationIndex.onRelationDeleted(from, to, relationType, typeGroup);
+        return result;
     }
 
     @Caching(evict = {
@@ -174,7 +189,8 @@ public class BaseRelationService implements RelationService {
     public ListenableFuture<Boolean> deleteRelationAsync(TenantId tenantId, EntityId from, EntityId to, String relationType, RelationTypeGroup typeGroup) {
         log.trace("Executing deleteRelationAsync [{}][{}][{}][{}]", from, to, relationType, typeGroup);
         validate(from, to, relationType, typeGroup);
-        return relationDao.deleteRelationAsync(tenantId, from, to, relationType, typeGroup);
+        return onSuccess(relationDao.deleteRelationAsync(tenantId, from, to, relationType, typeGroup),
+                () -> relationIndex.onRelationDeleted(from, to, relationType, typeGroup));
     }
 
     @Override
@@ -222,7 +238,21 @@ public class BaseRelationService implements RelationService {
         return Futures.transform(Futures.transformAsync(deletionsFuture,
                 (deletions) -> relationDao.deleteOutboundRelationsAsync(tenantId, entityId),
                 MoreExecutors.directExecutor()),
-                result -> null, MoreExecutors.directExecutor());
+                result -> {
+                    relationIndex.onEntityDeleted(entityId);
+                    return null;
+                }, MoreExecutors.directExecutor());
+    }
+
+    private <T> ListenableFuture<T> onSuccess(ListenableFuture<T> future, Runnable action) {
+        if (relationIndex.isEnabled()) {
+            return Futures.transform(future, result -> {
+                action.run();
+                return result;
+            }, MoreExecutors.directExecutor());
+        } else {
+            return future;
+        }
     }
 
     private List<ListenableFuture<Boolean>> deleteRelationGroupsAsync(TenantId tenantId, List<List<EntityRelation>> relations, Cache cache, boolean deleteFromDb) {
@@ -235,6 +265,7 @@ public class BaseRelationService implements RelationService {
 
     private ListenableFuture<Boolean> deleteAsync(TenantId tenantId, Cache cache, EntityRelation relation, boolean deleteFromDb) {
         cacheEviction(relation, cache);
+        relationIndex.onRelationDeleted(relation.getFrom(), relation.getTo(), relation.getType(), relation.getTypeGroup());
         if (deleteFromDb) {
             return relationDao.deleteRelationAsync(tenantId, relation);
         } else {
@@ -295,6 +326,10 @@ public class BaseRelationService implements RelationService {
         validate(from);
         validateTypeGroup(typeGroup);
 
+        if (relationIndex.isEnabled()) {
+            return relationIndex.find(from, EntitySearchDirection.FROM, typeGroup, null, () -> relationDao.findAllByFrom(tenantId, from, typeGroup));
+        }
+
         List<Object> fromAndTypeGroup = new ArrayList<>();
         fromAndTypeGroup.add(from);
         fromAndTypeGroup.add(typeGroup);
@@ -355,6 +390,9 @@ public class BaseRelationService implements RelationService {
         validate(from);
         validateType(relationType);
         validateTypeGroup(typeGroup);
+        if (relationIndex.isEnabled()) {
+            return relationIndex.find(from, EntitySearchDirection.FROM, typeGroup, relationType, () -> relationDao.findAllByFrom(tenantId, from, typeGroup));
+        }
         return relationDao.findAllByFromAndType(tenantId, from, relationType, typeGroup);
     }
 
@@ -376,6 +414,10 @@ public class BaseRelationService implements RelationService {
         validate(to);
         validateTypeGroup(typeGroup);
 
+        if (relationIndex.isEnabled()) {
+            return relationIndex.find(to, EntitySearchDirection.TO, typeGroup, null, () -> relationDao.findAllByTo(tenantId, to, typeGroup));
+        }
+
         List<Object> toAndTypeGroup = new ArrayList<>();
         toAndTypeGroup.add(to);
         toAndTypeGroup.add(typeGroup);
@@ -447,6 +489,9 @@ public class BaseRelationService implements RelationService {
         validate(to);
         validateType(relationType);
         validateTypeGroup(typeGroup);
+        if (relationIndex.isEnabled()) {
+            return relationIndex.find(to, EntitySearchDirection.TO, typeGroup, relationType, () -> relationDao.findAllByTo(tenantId, to, typeGroup));
+        }
         return relationDao.findAllByToAndType(tenantId, to, relationType, typeGroup);
     }
 
@@ -0,0 +1,382 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.relation;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import org.thingsboard.server.common.data.EntityType;
+import org.thingsboard.server.common.data.id.EntityId;
+import org.thingsboard.server.common.data.id.EntityIdFactory;
+import org.thingsboard.server.common.data.relation.EntityRelation;
+import org.thingsboard.server.common.data.relation.EntitySearchDirection;
+import org.thingsboard.server.common.data.relation.RelationTypeGroup;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * In-memory adjacency index of entity relations.
+ * <p>
+ * For every entity, direction and type group that was requested at least once the index keeps the full list of
+ * adjacent entities in flat primitive arrays, so "from X" and "to X" lookups (optionally filtered by relation type)
+ * are served without the database and without serializing {@link EntityRelation} objects through the cache layer.
+ * Adjacency lists are loaded lazily, so each node only holds the entities that its own actors work with,
+ * and are updated in place on relation save and delete. Other nodes are notified with
+ * {@link RelationIndexInvalidationEvent} and drop their copies via {@link #invalidate(EntityId)}.
+ * Least used lists are evicted once the index is full, and all lists expire after the configured TTL.
+ */
+@Component
+@Slf4j
+public class RelationIndex {
+
+    private static final EntitySearchDirection[] DIRECTIONS = EntitySearchDirection.values();
+    private static final RelationTypeGroup[] TYPE_GROUPS = RelationTypeGroup.values();
+    private static final EntityType[] ENTITY_TYPES = EntityType.values();
+
+    @Getter
+    @Value("${cache.relations_index.enabled:false}")
+    private boolean enabled;
+
+    @Value("${cache.relations_index.max_entities:1000000}")
+    private int maxEntities;
+
+    @Value("${cache.relations_index.ttl_ms:3600000}")
+    private long ttlMs;
+
+    @Autowired(required = false)
+    private ApplicationEventPublisher eventPublisher;
+
+    private Cache<IndexKey, Adjacency> cache;
+    private ConcurrentMap<IndexKey, Adjacency> index;
+    private final ConcurrentMap<IndexKey, AtomicBoolean> pendingLoads = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, String> relationTypes = new ConcurrentHashMap<>();
+
+    public RelationIndex() {
+    }
+
+    RelationIndex(boolean enabled, int maxEntities, long ttlMs) {
+        this.enabled = enabled;
+        this.maxEntities = maxEntities;
+        this.ttlMs = ttlMs;
+        init();
+    }
+
+    @PostConstruct
+    public void init() {
+        cache = Caffeine.newBuilder()
+                .maximumSize(maxEntities)
+                .expireAfterWrite(ttlMs, TimeUnit.MILLISECONDS)
+                .build();
+        index = cache.asMap();
+    }
+
+    /**
+     * Returns relations of the entity in the given direction. The loader is used on index miss and must return
+     * all relations of the entity in that direction and type group, regardless of the relation type.
+     */
+    public ListenableFuture<List<EntityRelation>> find(EntityId entityId, EntitySearchDirection direction, RelationTypeGroup typeGroup,
+                                                       String relationType, Supplier<ListenableFuture<List<EntityRelation>>> loader) {
+        IndexKey key = new IndexKey(entityId, direction, typeGroup);
+        Adjacency adjacency = index.get(key);
+        if (adjacency != null) {
+            return Futures.immediateFuture(adjacency.toRelations(entityId, direction, typeGroup, relationType));
+        }
+        AtomicBoolean modified = new AtomicBoolean();
+        boolean registered = pendingLoads.putIfAbsent(key, modified) == null;
+        ListenableFuture<List<EntityRelation>> relationsFuture = loader.get();
+        return Futures.transform(relationsFuture, relations -> {
+            Adjacency loaded = toAdjacency(relations, direction);
+            if (registered) {
+                pendingLoads.remove(key, modified);
+                if (!modified.get()) {
+                    index.putIfAbsent(key, loaded);
+                }
+            }
+            return loaded.toRelations(entityId, direction, typeGroup, relationType);
+        }, MoreExecutors.directExecutor());
+    }
+
+    public void onRelationSaved(EntityRelation relation) {
+        if (!enabled) {
+            return;
+        }
+        String type = intern(relation.getType());
+        update(new IndexKey(relation.getFrom(), EntitySearchDirection.FROM, relation.getTypeGroup()),
+                adjacency -> adjacency.with(relation.getTo(), type, relation.getAdditionalInfo()));
+        update(new IndexKey(relation.getTo(), EntitySearchDirection.TO, relation.getTypeGroup()),
+                adjacency -> adjacency.with(relation.getFrom(), type, relation.getAdditionalInfo()));
+        publishInvalidation(relation.getFrom(), relation.getTo());
+    }
+
+    public void onRelationDeleted(EntityId from, EntityId to, String relationType, RelationTypeGroup typeGroup) {
+        if (!enabled) {
+            return;
+        }
+        update(new IndexKey(from, EntitySearchDirection.FROM, typeGroup), adjacency -> adjacency.without(to, relationType));
+        update(new IndexKey(to, EntitySearchDirection.TO, typeGroup), adjacency -> adjacency.without(from, relationType));
+        publishInvalidation(from, to);
+    }
+
+    public void onEntityDeleted(EntityId entityId) {
+        if (!enabled) {
+            return;
+        }
+        invalidate(entityId);
+        publishInvalidation(entityId);
+    }
+
+    /**
+     * Drops all adjacency lists of the entity. Used when relations of the entity were changed by another node.
+     */
+    public void invalidate(EntityId entityId) {
+        if (!enabled) {
+            return;
+        }
+        for (EntitySearchDirection direction : DIRECTIONS) {
+            for (RelationTypeGroup typeGroup : TYPE_GROUPS) {
+                IndexKey key = new IndexKey(entityId, direction, typeGroup);
+                markModified(key);
+                index.remove(key);
+            }
+        }
+    }
+
+    void cleanUp() {
+        cache.cleanUp();
+    }
+
+    public int getEntitiesCount() {
+        return index.size();
+    }
+
+    public long getRelationsCount() {
+        long count = 0;
+        for (Adjacency adjacency : index.values()) {
+            count += adjacency.size();
+        }
+        return count;
+    }
+
+    /**
+     * Rough estimation of the heap used by the index, assuming compressed object pointers.
+     * Relation type strings are interned and shared, so they are not taken into account.
+     */
+    public long getEstimatedSizeInBytes() {
+        long size = 0;
+        for (Adjacency adjacency : index.values()) {
+            // map node + key + adjacency object and array headers + per relation: two longs, entity type, relation type and additional info references
+            size += 32 + 32 + 32 + 5 * 16 + adjacency.size() * (8L + 8L + 4L + 4L + 4L);
+        }
+        return size;
+    }
+
+    private void publishInvalidation(EntityId... entityIds) {
+        if (eventPublisher != null) {
+            eventPublisher.publishEvent(new RelationIndexInvalidationEvent(this, Arrays.asList(entityIds)));
+        }
+    }
+
+    private void update(IndexKey key, UnaryOperator<Adjacency> function) {
+        markModified(key);
+        index.computeIfPresent(key, (k, adjacency) -> function.apply(adjacency));
+    }
+
+    private void markModified(IndexKey key) {
+        AtomicBoolean modified = pendingLoads.get(key);
+        if (modified != null) {
+            modified.set(true);
+        }
+    }
+
+    private Adjacency toAdjacency(List<EntityRelation> relations, EntitySearchDirection direction) {
+        int size = relations.size();
+        byte[] entityTypes = new byte[size];
+        long[] msbs = new long[size];
+        long[] lsbs = new long[size];
+        String[] types = new String[size];
+        JsonNode[] additionalInfos = null;
+        for (int i = 0; i < size; i++) {
+            EntityRelation relation = relations.get(i);
+            EntityId other = direction == EntitySearchDirection.FROM ? relation.getTo() : relation.getFrom();
+            entityTypes[i] = (byte) other.getEntityType().ordinal();
+            msbs[i] = other.getId().getMostSignificantBits();
+            lsbs[i] = other.getId().getLeastSignificantBits();
+            types[i] = intern(relation.getType());
+            if (relation.getAdditionalInfo() != null) {
+                if (additionalInfos == null) {
+                    additionalInfos = new JsonNode[size];
+                }
+                additionalInfos[i] = relation.getAdditionalInfo();
+            }
+        }
+        return new Adjacency(entityTypes, msbs, lsbs, types, additionalInfos);
+    }
+
+    private String intern(String relationType) {
+        String existing = relationTypes.putIfAbsent(relationType, relationType);
+        return existing != null ? existing : relationType;
+    }
+
+    @EqualsAndHashCode
+    private static final class IndexKey {
+        private final long msb;
+        private final long lsb;
+        private final byte entityType;
+        private final byte directionAndTypeGroup;
+
+        private IndexKey(EntityId entityId, EntitySearchDirection direction, RelationTypeGroup typeGroup) {
+            this.msb = entityId.getId().getMostSignificantBits();
+            this.lsb = entityId.getId().getLeastSignificantBits();
+            this.entityType = (byte) entityId.getEntityType().ordinal();
+            this.directionAndTypeGroup = (byte) (direction.ordinal() * TYPE_GROUPS.length + typeGroup.ordinal());
+        }
+    }
+
+    /**
+     * Immutable list of adjacent entities. Updates produce a copy, so readers never need to lock.
+     */
+    private static final class Adjacency {
+        private final byte[] entityTypes;
+        private final long[] msbs;
+        private final long[] lsbs;
+        private final String[] types;
+        private final JsonNode[] additionalInfos;
+
+        private Adjacency(byte[] entityTypes, long[] msbs, long[] lsbs, String[] types, JsonNode[] additionalInfos) {
+            this.entityTypes = entityTypes;
+            this.msbs = msbs;
+            this.lsbs = lsbs;
+            this.types = types;
+            this.additionalInfos = additionalInfos;
+        }
+
+        int size() {
+            return msbs.length;
+        }
+
+        List<EntityRelation> toRelations(EntityId entityId, EntitySearchDirection direction, RelationTypeGroup typeGroup, String relationType) {
+            if (msbs.length == 0) {
+                return Collections.emptyList();
+            }
+            List<EntityRelation> result = new ArrayList<>(relationType == null ? msbs.length : 4);
+            for (int i = 0; i < msbs.length; i++) {
+                if (relationType == null || relationType.equals(types[i])) {
+                    EntityId other = EntityIdFactory.getByTypeAndUuid(ENTITY_TYPES[entityTypes[i]], new UUID(msbs[i], lsbs[i]));
+                    JsonNode additionalInfo = additionalInfos != null ? additionalInfos[i] : null;
+                    if (direction == EntitySearchDirection.FROM) {
+                        result.add(new EntityRelation(entityId, other, types[i], typeGroup, additionalInfo));
+                    } else {
+                        result.add(new EntityRelation(other, entityId, types[i], typeGroup, additionalInfo));
+                    }
+                }
+            }
+            return result;
+        }
+
+        Adjacency with(EntityId other, String type, JsonNode additionalInfo) {
+            int idx = indexOf(other, type);
+            if (idx >= 0) {
+                JsonNode[] newAdditionalInfos = copyAdditionalInfos(msbs.length, additionalInfo != null);
+                if (newAdditionalInfos != null) {
+                    newAdditionalInfos[idx] = additionalInfo;
+                }
+                return new Adjacency(entityTypes, msbs, lsbs, types, newAdditionalInfos);
+            }
+            int size = msbs.length;
+            byte[] newEntityTypes = Arrays.copyOf(entityTypes, size + 1);
+            long[] newMsbs = Arrays.copyOf(msbs, size + 1);
+            long[] newLsbs = Arrays.copyOf(lsbs, size + 1);
+            String[] newTypes = Arrays.copyOf(types, size + 1);
+            JsonNode[] newAdditionalInfos = copyAdditionalInfos(size + 1, additionalInfo != null);
+            newEntityTypes[size] = (byte) other.getEntityType().ordinal();
+            newMsbs[size] = other.getId().getMostSignificantBits();
+            newLsbs[size] = other.getId().getLeastSignificantBits();
+            newTypes[size] = type;
+            if (newAdditionalInfos != null) {
+                newAdditionalInfos[size] = additionalInfo;
+            }
+            return new Adjacency(newEntityTypes, newMsbs, newLsbs, newTypes, newAdditionalInfos);
+        }
+
+        Adjacency without(EntityId other, String type) {
+            int idx = indexOf(other, type);
+            if (idx < 0) {
+                return this;
+            }
+            int size = msbs.length - 1;
+            byte[] newEntityTypes = new byte[size];
+            long[] newMsbs = new long[size];
+            long[] newLsbs = new long[size];
+            String[] newTypes = new String[size];
+            JsonNode[] newAdditionalInfos = additionalInfos != null ? new JsonNode[size] : null;
+            for (int i = 0, j = 0; i < msbs.length; i++) {
+                if (i != idx) {
+                    newEntityTypes[j] = entityTypes[i];
+                    newMsbs[j] = msbs[i];
+                    newLsbs[j] = lsbs[i];
+                    newTypes[j] = types[i];
+                    if (newAdditionalInfos != null) {
+                        newAdditionalInfos[j] = additionalInfos[i];
+                    }
+                    j++;
+                }
+            }
+            return new Adjacency(newEntityTypes, newMsbs, newLsbs, newTypes, newAdditionalInfos);
+        }
+
+        private int indexOf(EntityId other, String type) {
+            long msb = other.getId().getMostSignificantBits();
+            long lsb = other.getId().getLeastSignificantBits();
+            for (int i = 0; i < msbs.length; i++) {
+                if (msbs[i] == msb && lsbs[i] == lsb && types[i].equals(type)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private JsonNode[] copyAdditionalInfos(int size, boolean required) {
+            if (additionalInfos != null) {
+                return Arrays.copyOf(additionalInfos, size);
+            } else if (required) {
+                return new JsonNode[size];
+            } else {
+                return null;
+            }
+        }
+    }
+}
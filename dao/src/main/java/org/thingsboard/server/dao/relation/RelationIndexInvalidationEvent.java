@@ -0,0 +1,37 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.relation;
+
+import lombok.Getter;
+import org.springframework.context.ApplicationEvent;
+import org.thingsboard.server.common.data.id.EntityId;
+
+import java.util.List;
+
+/**
+ * Published when relations of the entities were saved or deleted on this node, so that the other nodes
+ * can drop the entities from their {@link RelationIndex}.
+ */
+public class RelationIndexInvalidationEvent extends ApplicationEvent {
+
+    @Getter
+    private final List<EntityId> entityIds;
+
+    public RelationIndexInvalidationEvent(Object source, List<EntityId> entityIds) {
+        super(source);
+        this.entityIds = entityIds;
+    }
+}
@@ -21,12 +21,14 @@ import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.thingsboard.server.common.data.BaseData;
+import org.thingsboard.server.common.data.DataConstants;
 import org.thingsboard.server.common.data.EntityType;
 import org.thingsboard.server.common.data.Tenant;
 import org.thingsboard.server.common.data.id.EntityId;
 import org.thingsboard.server.common.data.id.RuleChainId;
 import org.thingsboard.server.common.data.id.RuleNodeId;
 import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.data.kv.KvEntry;
 import org.thingsboard.server.common.data.page.PageData;
 import org.thingsboard.server.common.data.page.PageLink;
 import org.thingsboard.server.common.data.relation.EntityRelation;
@@ -36,6 +38,7 @@ import org.thingsboard.server.common.data.rule.RuleChain;
 import org.thingsboard.server.common.data.rule.RuleChainConnectionInfo;
 import org.thingsboard.server.common.data.rule.RuleChainMetaData;
 import org.thingsboard.server.common.data.rule.RuleNode;
+import org.thingsboard.server.dao.attributes.AttributesService;
 import org.thingsboard.server.dao.entity.AbstractEntityService;
 import org.thingsboard.server.dao.exception.DataValidationException;
 import org.thingsboard.server.dao.service.DataValidator;
@@ -66,6 +69,9 @@ public class BaseRuleChainService extends AbstractEntityService implements RuleC
     @Autowired
     private TenantDao tenantDao;
 
+    @Autowired
+    private AttributesService attributesService;
+
     @Override
     public RuleChain saveRuleChain(RuleChain ruleChain) {
         ruleChainValidator.validate(ruleChain, RuleChain::getTenantId);
@@ -377,9 +383,23 @@ public class BaseRuleChainService extends AbstractEntityService implements RuleC
 
     private void deleteRuleNode(TenantId tenantId, EntityId entityId) {
         deleteEntityRelations(tenantId, entityId);
+        deleteRuleNodeStates(tenantId, entityId);
         ruleNodeDao.removeById(tenantId, entityId.getId());
     }
 
+    private void deleteRuleNodeStates(TenantId tenantId, EntityId entityId) {
+        log.trace("Executing deleteRuleNodeStates [{}]", entityId);
+        try {
+            List<String> keys = attributesService.findAll(tenantId, entityId, DataConstants.SERVER_SCOPE).get()
+                    .stream().map(KvEntry::getKey).collect(Collectors.toList());
+            if (!keys.isEmpty()) {
+                attributesService.removeAll(tenantId, entityId, DataConstants.SERVER_SCOPE, keys).get();
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            log.warn("[{}] Failed to delete rule node states", entityId, e);
+        }
+    }
+
     private void createRelation(TenantId tenantId, EntityRelation relation) throws ExecutionException, InterruptedException {
         log.debug("Creating relation: {}", relation);
         relationService.saveRelation(tenantId, relation);
@@ -21,11 +21,13 @@ import lombok.extern.slf4j.Slf4j;
 import org.thingsboard.common.util.ThingsBoardThreadFactory;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
@@ -34,17 +36,22 @@ import java.util.stream.Collectors;
 @Slf4j
 public class TbSqlBlockingQueue<E> implements TbSqlQueue<E> {
 
-    private final BlockingQueue<TbSqlQueueElement<E>> queue = new LinkedBlockingQueue<>();
+    private static final long DESTROY_TIMEOUT_SECONDS = 10;
+
+    private final BlockingQueue<TbSqlQueueElement<E>> queue;
     private final AtomicInteger addedCount = new AtomicInteger();
     private final AtomicInteger savedCount = new AtomicInteger();
     private final AtomicInteger failedCount = new AtomicInteger();
+    private final AtomicInteger droppedCount = new AtomicInteger();
     private final TbSqlBlockingQueueParams params;
 
     private ExecutorService executor;
     private ScheduledLogExecutorComponent logExecutor;
+    private volatile boolean stopped;
 
     public TbSqlBlockingQueue(TbSqlBlockingQueueParams params) {
         this.params = params;
+        this.queue = params.getMaxQueueSize() > 0 ? new LinkedBlockingQueue<>(params.getMaxQueueSize()) : new LinkedBlockingQueue<>();
     }
 
     @Override
@@ -56,7 +63,7 @@ public class TbSqlBlockingQueue<E> implements TbSqlQueue<E> {
             int batchSize = params.getBatchSize();
             long maxDelay = params.getMaxDelay();
             List<TbSqlQueueElement<E>> entities = new ArrayList<>(batchSize);
-            while (!Thread.interrupted()) {
+            while (!stopped && !Thread.interrupted()) {
                 try {
                     long currentTs = System.currentTimeMillis();
                     TbSqlQueueElement<E> attr = queue.poll(maxDelay, TimeUnit.MILLISECONDS);
@@ -67,11 +74,8 @@ public class TbSqlBlockingQueue<E> implements TbSqlQueue<E> {
                     }
                     queue.drainTo(entities, batchSize - 1);
                     boolean fullPack = entities.size() == batchSize;
-                    log.debug("[{}] Going to save {} entities", logName, entities.size());
-                    saveFunction.accept(entities.stream().map(TbSqlQueueElement::getEntity).collect(Collectors.toList()));
-                    entities.forEach(v -> v.getFuture().set(null));
-                    savedCount.addAndGet(entities.size());
-                    if (!fullPack) {
+                    save(saveFunction, entities);
+                    if (!fullPack && !stopped) {
                         long remainingDelay = maxDelay - (System.currentTimeMillis() - currentTs);
                         if (remainingDelay > 0) {
                             Thread.sleep(remainingDelay);
@@ -82,7 +86,7 @@ public class TbSqlBlockingQueue<E> implements TbSqlQueue<E> {
                     entities.forEach(entityFutureWrapper -> entityFutureWrapper.getFuture().setException(e));
                     if (e instanceof InterruptedException) {
                         log.info("[{}] Queue polling was interrupted", logName);
-                        break;
+                        return;
                     } else {
                         log.error("[{}] Failed to save {} entities", logName, entities.size(), e);
                     }
@@ -90,27 +94,101 @@ public class TbSqlBlockingQueue<E> implements TbSqlQueue<E> {
                     entities.clear();
                 }
             }
+            while (queue.drainTo(entities, batchSize) > 0) {
+                try {
+                    save(saveFunction, entities);
+                } catch (Exception e) {
+                    failedCount.addAndGet(entities.size());
+                    entities.forEach(entityFutureWrapper -> entityFutureWrapper.getFuture().setException(e));
+                    log.error("[{}] Failed to save {} entities on shutdown", logName, entities.size(), e);
+                } finally {
+                    entities.clear();
+                }
+            }
         });
 
         logExecutor.scheduleAtFixedRate(() -> {
-            if (queue.size() > 0 || addedCount.get() > 0 || savedCount.get() > 0 || failedCount.get() > 0) {
-                log.info("[{}] queueSize [{}] totalAdded [{}] totalSaved [{}] totalFailed [{}]",
-                        params.getLogName(), queue.size(), addedCount.getAndSet(0), savedCount.getAndSet(0), failedCount.getAndSet(0));
+            if (queue.size() > 0 || addedCount.get() > 0 || savedCount.get() > 0 || failedCount.get() > 0 || droppedCount.get() > 0) {
+                log.info("[{}] queueSize [{}] totalAdded [{}] totalSaved [{}] totalFailed [{}] totalDropped [{}]",
+                        params.getLogName(), queue.size(), addedCount.getAndSet(0), savedCount.getAndSet(0), failedCount.getAndSet(0), droppedCount.getAndSet(0));
             }
         }, params.getStatsPrintIntervalMs(), params.getStatsPrintIntervalMs(), TimeUnit.MILLISECONDS);
     }
 
+    private void save(Consumer<List<E>> saveFunction, List<TbSqlQueueElement<E>> entities) {
+        log.debug("[{}] Going to save {} entities", params.getLogName(), entities.size());
+        try {
+            saveFunction.accept(entities.stream().map(TbSqlQueueElement::getEntity).collect(Collectors.toList()));
+        } catch (Exception e) {
+            if (!params.isSaveOneByOneOnFailure() || entities.size() == 1) {
+                throw e;
+            }
+            log.warn("[{}] Failed to save {} entities, going to save them one by one", params.getLogName(), entities.size(), e);
+            saveOneByOne(saveFunction, entities);
+            return;
+        }
+        entities.forEach(v -> v.getFuture().set(null));
+        savedCount.addAndGet(entities.size());
+    }
+
+    private void saveOneByOne(Consumer<List<E>> saveFunction, List<TbSqlQueueElement<E>> entities) {
+        for (TbSqlQueueElement<E> entity : entities) {
+            try {
+                saveFunction.accept(Collections.singletonList(entity.getEntity()));
+                entity.getFuture().set(null);
+                savedCount.incrementAndGet();
+            } catch (Exception e) {
+                log.error("[{}] Failed to save entity {}", params.getLogName(), entity.getEntity(), e);
+                entity.getFuture().setException(e);
+                failedCount.incrementAndGet();
+            }
+        }
+    }
+
     @Override
     public void destroy() {
+        stopped = true;
         if (executor != null) {
-            executor.shutdownNow();
+            executor.shutdown();
+            try {
+                if (!executor.awaitTermination(DESTROY_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                    log.warn("[{}] Failed to save {} entities in {} seconds on shutdown", params.getLogName(), queue.size(), DESTROY_TIMEOUT_SECONDS);
+                    executor.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                executor.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
         }
+        List<TbSqlQueueElement<E>> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        remaining.forEach(entityFutureWrapper -> entityFutureWrapper.getFuture().setException(
+                new RejectedExecutionException("[" + params.getLogName() + "] Queue is stopped")));
     }
 
     @Override
     public ListenableFuture<Void> add(E element) {
         SettableFuture<Void> future = SettableFuture.create();
-        queue.add(new TbSqlQueueElement<>(future, element));
+        if (stopped) {
+            future.setException(new RejectedExecutionException("[" + params.getLogName() + "] Queue is stopped"));
+            return future;
+        }
+        TbSqlQueueElement<E> queueElement = new TbSqlQueueElement<>(future, element);
+        if (params.getOverflowPolicy() == TbSqlQueueOverflowPolicy.DROP) {
+            if (!queue.offer(queueElement)) {
+                droppedCount.incrementAndGet();
+                future.setException(new RejectedExecutionException("[" + params.getLogName() + "] Queue is full"));
+                return future;
+            }
+        } else {
+            try {
+                queue.put(queueElement);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                future.setException(e);
+                return future;
+            }
+        }
         addedCount.incrementAndGet();
         return future;
     }
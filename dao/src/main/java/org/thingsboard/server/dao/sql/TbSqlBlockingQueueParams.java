@@ -28,4 +28,8 @@ public class TbSqlBlockingQueueParams {
     private final int batchSize;
     private final long maxDelay;
     private final long statsPrintIntervalMs;
+    private final int maxQueueSize;
+    private final TbSqlQueueOverflowPolicy overflowPolicy;
+    // Saves the elements of a failed batch one by one, so one bad element does not fail the whole batch
+    private final boolean saveOneByOneOnFailure;
 }
@@ -22,6 +22,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import org.thingsboard.server.common.data.EntityType;
 import org.thingsboard.server.common.data.UUIDConverter;
 import org.thingsboard.server.common.data.id.EntityId;
 import org.thingsboard.server.common.data.id.TenantId;
@@ -38,8 +39,12 @@ import org.thingsboard.server.dao.util.SqlDao;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
@@ -119,6 +124,28 @@ public class JpaAttributeDao extends JpaAbstractDaoListeningExecutorService impl
                                 attributeType))));
     }
 
+    @Override
+    public ListenableFuture<Map<EntityId, List<AttributeKvEntry>>> find(TenantId tenantId, Collection<EntityId> entityIds, String attributeType, Collection<String> attributeKeys) {
+        Map<EntityType, Map<String, EntityId>> idsByType = new HashMap<>();
+        Map<EntityId, List<AttributeKvEntry>> result = new LinkedHashMap<>();
+        for (EntityId entityId : entityIds) {
+            idsByType.computeIfAbsent(entityId.getEntityType(), type -> new HashMap<>()).put(fromTimeUUID(entityId.getId()), entityId);
+            result.put(entityId, new ArrayList<>());
+        }
+        idsByType.forEach((entityType, ids) -> {
+            List<AttributeKvEntity> entities;
+            if (attributeKeys.isEmpty()) {
+                entities = attributeKvRepository.findAllByEntityTypeAndEntityIdsAndAttributeType(entityType, ids.keySet(), attributeType);
+            } else {
+                entities = attributeKvRepository.findAllByEntityTypeAndEntityIdsAndAttributeTypeAndAttributeKeys(entityType, ids.keySet(), attributeType, attributeKeys);
+            }
+            for (AttributeKvEntity entity : entities) {
+                result.get(ids.get(entity.getId().getEntityId())).add(entity.toData());
+            }
+        });
+        return Futures.immediateFuture(result);
+    }
+
     @Override
     public ListenableFuture<Void> save(TenantId tenantId, EntityId entityId, String attributeType, AttributeKvEntry attribute) {
         AttributeKvEntity entity = new AttributeKvEntity();
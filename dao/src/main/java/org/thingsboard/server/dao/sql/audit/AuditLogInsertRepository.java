@@ -0,0 +1,83 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sql.audit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallbackWithoutResult;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.thingsboard.server.dao.model.sql.AuditLogEntity;
+import org.thingsboard.server.dao.util.SqlDao;
+
+import java.util.List;
+
+@SqlDao
+@Repository
+public class AuditLogInsertRepository {
+
+    // Keeps the number of bind parameters of a single statement well below the PostgreSQL limit of 32767
+    private static final int MAX_ROWS_PER_INSERT = 1000;
+
+    private static final String INSERT = "INSERT INTO audit_log (id, tenant_id, customer_id, entity_id, entity_type, entity_name, " +
+            "user_id, user_name, action_type, action_data, action_status, action_failure_details) VALUES ";
+    private static final String ROW_VALUES = "(?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    public void saveAll(List<AuditLogEntity> entities) {
+        transactionTemplate.execute(new TransactionCallbackWithoutResult() {
+            @Override
+            protected void doInTransactionWithoutResult(TransactionStatus status) {
+                for (int from = 0; from < entities.size(); from += MAX_ROWS_PER_INSERT) {
+                    insert(entities.subList(from, Math.min(from + MAX_ROWS_PER_INSERT, entities.size())));
+                }
+            }
+        });
+    }
+
+    private void insert(List<AuditLogEntity> rows) {
+        StringBuilder sql = new StringBuilder(INSERT);
+        for (int i = 0; i < rows.size(); i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(ROW_VALUES);
+        }
+        jdbcTemplate.update(sql.toString(), ps -> {
+            int index = 1;
+            for (AuditLogEntity entity : rows) {
+                ps.setString(index++, entity.getId());
+                ps.setString(index++, entity.getTenantId());
+                ps.setString(index++, entity.getCustomerId());
+                ps.setString(index++, entity.getEntityId());
+                ps.setString(index++, entity.getEntityType() != null ? entity.getEntityType().name() : null);
+                ps.setString(index++, entity.getEntityName());
+                ps.setString(index++, entity.getUserId());
+                ps.setString(index++, entity.getUserName());
+                ps.setString(index++, entity.getActionType() != null ? entity.getActionType().name() : null);
+                ps.setString(index++, entity.getActionData() != null ? entity.getActionData().toString() : null);
+                ps.setString(index++, entity.getActionStatus() != null ? entity.getActionStatus().name() : null);
+                ps.setString(index++, entity.getActionFailureDetails());
+            }
+        });
+    }
+}
@@ -32,6 +32,7 @@ import org.thingsboard.server.dao.model.sql.AuditLogEntity;
 import org.thingsboard.server.dao.sql.JpaAbstractDao;
 import org.thingsboard.server.dao.util.SqlDao;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
 import java.util.UUID;
@@ -47,6 +48,9 @@ public class JpaAuditLogDao extends JpaAbstractDao<AuditLogEntity, AuditLog> imp
     @Autowired
     private AuditLogRepository auditLogRepository;
 
+    @Autowired
+    private AuditLogInsertRepository auditLogInsertRepository;
+
     @Override
     protected Class<AuditLogEntity> getEntityClass() {
         return AuditLogEntity.class;
@@ -65,6 +69,18 @@ public class JpaAuditLogDao extends JpaAbstractDao<AuditLogEntity, AuditLog> imp
         });
     }
 
+    @Override
+    public void saveAll(List<AuditLog> auditLogs) {
+        List<AuditLogEntity> entities = new ArrayList<>(auditLogs.size());
+        for (AuditLog auditLog : auditLogs) {
+            if (auditLog.getId() == null) {
+                throw new IllegalArgumentException("Audit log id should be assigned before the audit log is queued!");
+            }
+            entities.add(new AuditLogEntity(auditLog));
+        }
+        auditLogInsertRepository.saveAll(entities);
+    }
+
     @Override
     public PageData<AuditLog> findAuditLogsByTenantIdAndEntityId(UUID tenantId, EntityId entityId, List<ActionType> actionTypes, TimePageLink pageLink) {
         return DaoUtil.toPageData(
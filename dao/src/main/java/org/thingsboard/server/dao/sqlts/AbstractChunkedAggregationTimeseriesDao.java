@@ -40,7 +40,9 @@ import org.thingsboard.server.dao.timeseries.TimeseriesDao;
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
@@ -109,6 +111,11 @@ public abstract class AbstractChunkedAggregationTimeseriesDao extends AbstractSq
         return getFindAllLatestFuture(entityId);
     }
 
+    @Override
+    public ListenableFuture<Map<EntityId, List<TsKvEntry>>> findLatest(TenantId tenantId, Collection<EntityId> entityIds, Collection<String> keys) {
+        return getFindLatestFuture(entityIds, keys);
+    }
+
     @Override
     public ListenableFuture<Void> savePartition(TenantId tenantId, EntityId entityId, long tsKvEntryTs, String key, long ttl) {
         return Futures.immediateFuture(null);
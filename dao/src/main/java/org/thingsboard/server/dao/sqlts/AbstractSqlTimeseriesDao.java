@@ -22,7 +22,6 @@ import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.MoreExecutors;
 import lombok.extern.slf4j.Slf4j;
-import org.hibernate.exception.ConstraintViolationException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.thingsboard.server.common.data.id.EntityId;
@@ -35,15 +34,15 @@ import org.thingsboard.server.common.data.kv.ReadTsKvQuery;
 import org.thingsboard.server.common.data.kv.StringDataEntry;
 import org.thingsboard.server.common.data.kv.TsKvEntry;
 import org.thingsboard.server.dao.DaoUtil;
-import org.thingsboard.server.dao.model.sqlts.dictionary.TsKvDictionary;
-import org.thingsboard.server.dao.model.sqlts.dictionary.TsKvDictionaryCompositeKey;
 import org.thingsboard.server.dao.model.sqlts.latest.TsKvLatestCompositeKey;
 import org.thingsboard.server.dao.model.sqlts.latest.TsKvLatestEntity;
 import org.thingsboard.server.dao.sql.JpaAbstractDaoListeningExecutorService;
 import org.thingsboard.server.dao.sql.ScheduledLogExecutorComponent;
 import org.thingsboard.server.dao.sql.TbSqlBlockingQueue;
 import org.thingsboard.server.dao.sql.TbSqlBlockingQueueParams;
+import org.thingsboard.server.dao.sqlts.dictionary.TsKvDictionaryCache;
 import org.thingsboard.server.dao.sqlts.dictionary.TsKvDictionaryRepository;
+import org.thingsboard.server.dao.sqlts.insert.dictionary.InsertTsKvDictionaryRepository;
 import org.thingsboard.server.dao.sqlts.insert.latest.InsertLatestTsRepository;
 import org.thingsboard.server.dao.sqlts.latest.SearchTsKvLatestRepository;
 import org.thingsboard.server.dao.sqlts.latest.TsKvLatestRepository;
@@ -52,13 +51,16 @@ import org.thingsboard.server.dao.timeseries.SimpleListenableFuture;
 import javax.annotation.Nullable;
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
+import java.util.UUID;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -66,10 +68,6 @@ public abstract class AbstractSqlTimeseriesDao extends JpaAbstractDaoListeningEx
 
     private static final String DESC_ORDER = "DESC";
 
-    private final ConcurrentMap<String, Integer> tsKvDictionaryMap = new ConcurrentHashMap<>();
-
-    private static final ReentrantLock tsCreationLock = new ReentrantLock();
-
     @Autowired
     private TsKvLatestRepository tsKvLatestRepository;
 
@@ -82,8 +80,22 @@ public abstract class AbstractSqlTimeseriesDao extends JpaAbstractDaoListeningEx
     @Autowired
     private TsKvDictionaryRepository dictionaryRepository;
 
+    @Autowired
+    private InsertTsKvDictionaryRepository insertTsKvDictionaryRepository;
+
     private TbSqlBlockingQueue<TsKvLatestEntity> tsLatestQueue;
 
+    private TsKvDictionaryCache tsKvDictionaryCache;
+
+    @Value("${sql.ts_kv_dictionary.batch_size:1000}")
+    private int tsKvDictionaryBatchSize;
+
+    @Value("${sql.ts_kv_dictionary.batch_max_delay:10}")
+    private long tsKvDictionaryMaxDelay;
+
+    @Value("${sql.ts_kv_dictionary.stats_print_interval_ms:10000}")
+    private long tsKvDictionaryStatsPrintIntervalMs;
+
     @Value("${sql.ts_latest.batch_size:1000}")
     private int tsLatestBatchSize;
 
@@ -115,6 +127,16 @@ public abstract class AbstractSqlTimeseriesDao extends JpaAbstractDaoListeningEx
                 .build();
         tsLatestQueue = new TbSqlBlockingQueue<>(tsLatestParams);
         tsLatestQueue.init(logExecutor, v -> insertLatestTsRepository.saveOrUpdate(v));
+
+        TbSqlBlockingQueueParams tsKvDictionaryParams = TbSqlBlockingQueueParams.builder()
+                .logName("TS KV Dictionary")
+                .batchSize(tsKvDictionaryBatchSize)
+                .maxDelay(tsKvDictionaryMaxDelay)
+                .statsPrintIntervalMs(tsKvDictionaryStatsPrintIntervalMs)
+                .build();
+        tsKvDictionaryCache = new TsKvDictionaryCache(tsKvDictionaryParams);
+        loadTsKvDictionary();
+        tsKvDictionaryCache.init(logExecutor, keys -> insertTsKvDictionaryRepository.saveOrFind(keys));
     }
 
     @PreDestroy
@@ -122,6 +144,9 @@ public abstract class AbstractSqlTimeseriesDao extends JpaAbstractDaoListeningEx
         if (tsLatestQueue != null) {
             tsLatestQueue.destroy();
         }
+        if (tsKvDictionaryCache != null) {
+            tsKvDictionaryCache.destroy();
+        }
     }
 
     protected ListenableFuture<List<TsKvEntry>> processFindAllAsync(TenantId tenantId, EntityId entityId, List<ReadTsKvQuery> queries) {
@@ -246,6 +271,25 @@ public abstract class AbstractSqlTimeseriesDao extends JpaAbstractDaoListeningEx
                         searchTsKvLatestRepository.findAllByEntityId(entityId.getId()))));
     }
 
+    protected ListenableFuture<Map<EntityId, List<TsKvEntry>>> getFindLatestFuture(Collection<EntityId> entityIds, Collection<String> keys) {
+        Map<UUID, EntityId> ids = new HashMap<>();
+        Map<EntityId, List<TsKvEntry>> result = new LinkedHashMap<>();
+        for (EntityId entityId : entityIds) {
+            ids.put(entityId.getId(), entityId);
+            result.put(entityId, new ArrayList<>());
+        }
+        List<TsKvLatestEntity> entities;
+        if (keys.isEmpty()) {
+            entities = searchTsKvLatestRepository.findAllByEntityIds(ids.keySet());
+        } else {
+            entities = searchTsKvLatestRepository.findAllByEntityIdsAndKeys(ids.keySet(), keys);
+        }
+        for (TsKvLatestEntity entity : entities) {
+            result.get(ids.get(entity.getEntityId())).add(DaoUtil.getData(entity));
+        }
+        return Futures.immediateFuture(result);
+    }
+
     protected ListenableFuture<Void> getSaveLatestFuture(EntityId entityId, TsKvEntry tsKvEntry) {
         TsKvLatestEntity latestEntity = new TsKvLatestEntity();
         latestEntity.setEntityId(entityId.getId());
@@ -261,39 +305,17 @@ public abstract class AbstractSqlTimeseriesDao extends JpaAbstractDaoListeningEx
     }
 
     protected Integer getOrSaveKeyId(String strKey) {
-        Integer keyId = tsKvDictionaryMap.get(strKey);
-        if (keyId == null) {
-            Optional<TsKvDictionary> tsKvDictionaryOptional;
-            tsKvDictionaryOptional = dictionaryRepository.findById(new TsKvDictionaryCompositeKey(strKey));
-            if (!tsKvDictionaryOptional.isPresent()) {
-                tsCreationLock.lock();
-                try {
-                    tsKvDictionaryOptional = dictionaryRepository.findById(new TsKvDictionaryCompositeKey(strKey));
-                    if (!tsKvDictionaryOptional.isPresent()) {
-                        TsKvDictionary tsKvDictionary = new TsKvDictionary();
-                        tsKvDictionary.setKey(strKey);
-                        try {
-                            TsKvDictionary saved = dictionaryRepository.save(tsKvDictionary);
-                            tsKvDictionaryMap.put(saved.getKey(), saved.getKeyId());
-                            keyId = saved.getKeyId();
-                        } catch (ConstraintViolationException e) {
-                            tsKvDictionaryOptional = dictionaryRepository.findById(new TsKvDictionaryCompositeKey(strKey));
-                            TsKvDictionary dictionary = tsKvDictionaryOptional.orElseThrow(() -> new RuntimeException("Failed to get TsKvDictionary entity from DB!"));
-                            tsKvDictionaryMap.put(dictionary.getKey(), dictionary.getKeyId());
-                            keyId = dictionary.getKeyId();
-                        }
-                    } else {
-                        keyId = tsKvDictionaryOptional.get().getKeyId();
-                    }
-                } finally {
-                    tsCreationLock.unlock();
-                }
-            } else {
-                keyId = tsKvDictionaryOptional.get().getKeyId();
-                tsKvDictionaryMap.put(strKey, keyId);
-            }
+        return tsKvDictionaryCache.getOrSaveKeyId(strKey);
+    }
+
+    private void loadTsKvDictionary() {
+        try {
+            tsKvDictionaryCache.load(dictionaryRepository.findAll());
+            log.info("Loaded {} timeseries keys into the dictionary cache", tsKvDictionaryCache.size());
+        } catch (Exception e) {
+            // The table does not exist yet during the first install, keys are resolved on demand in that case.
+            log.warn("Failed to preload timeseries key dictionary", e);
         }
-        return keyId;
     }
 
     private ListenableFuture<Void> getNewLatestEntryFuture(EntityId entityId, DeleteTsKvQuery query) {
@@ -0,0 +1,103 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sqlts.dictionary;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import lombok.extern.slf4j.Slf4j;
+import org.thingsboard.server.dao.model.sqlts.dictionary.TsKvDictionary;
+import org.thingsboard.server.dao.sql.ScheduledLogExecutorComponent;
+import org.thingsboard.server.dao.sql.TbSqlBlockingQueue;
+import org.thingsboard.server.dao.sql.TbSqlBlockingQueueParams;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+
+/**
+ * Maps timeseries keys to the ids of the ts_kv_dictionary table.
+ * Known keys are served from a concurrent map without locking.
+ * Unknown keys are pushed to a queue that saves them in batches; concurrent callers for the same key wait for the same future.
+ */
+@Slf4j
+public class TsKvDictionaryCache {
+
+    private final ConcurrentMap<String, Integer> keyIds = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, ListenableFuture<Void>> pendingKeys = new ConcurrentHashMap<>();
+    private final TbSqlBlockingQueue<String> queue;
+
+    public TsKvDictionaryCache(TbSqlBlockingQueueParams params) {
+        this.queue = new TbSqlBlockingQueue<>(params);
+    }
+
+    public void init(ScheduledLogExecutorComponent logExecutor, Function<List<String>, List<TsKvDictionary>> saveOrFindFunction) {
+        queue.init(logExecutor, keys -> saveOrFindFunction.apply(keys).forEach(this::put));
+    }
+
+    public void destroy() {
+        queue.destroy();
+    }
+
+    public void load(Iterable<TsKvDictionary> dictionaries) {
+        dictionaries.forEach(this::put);
+    }
+
+    public int size() {
+        return keyIds.size();
+    }
+
+    public Integer getOrSaveKeyId(String strKey) {
+        Integer keyId = keyIds.get(strKey);
+        if (keyId != null) {
+            return keyId;
+        }
+        ListenableFuture<Void> future = pendingKeys.get(strKey);
+        if (future == null) {
+            SettableFuture<Void> newFuture = SettableFuture.create();
+            future = pendingKeys.putIfAbsent(strKey, newFuture);
+            if (future == null) {
+                future = newFuture;
+                // The key may have been saved and its future removed after the lookup above.
+                if (keyIds.containsKey(strKey)) {
+                    newFuture.set(null);
+                } else {
+                    newFuture.setFuture(queue.add(strKey));
+                }
+                newFuture.addListener(() -> pendingKeys.remove(strKey, newFuture), MoreExecutors.directExecutor());
+            }
+        }
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while saving TsKvDictionary entity for key: " + strKey, e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Failed to save TsKvDictionary entity for key: " + strKey, e.getCause());
+        }
+        keyId = keyIds.get(strKey);
+        if (keyId == null) {
+            throw new RuntimeException("Failed to get TsKvDictionary entity from DB!");
+        }
+        return keyId;
+    }
+
+    private void put(TsKvDictionary dictionary) {
+        keyIds.put(dictionary.getKey(), dictionary.getKeyId());
+    }
+}
@@ -0,0 +1,52 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sqlts.insert.dictionary;
+
+import org.thingsboard.server.dao.model.sqlts.dictionary.TsKvDictionary;
+import org.thingsboard.server.dao.sqlts.insert.AbstractInsertRepository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+public abstract class AbstractInsertTsKvDictionaryRepository extends AbstractInsertRepository implements InsertTsKvDictionaryRepository {
+
+    private static final String SELECT_BY_KEYS = "SELECT key, key_id FROM ts_kv_dictionary WHERE key IN (%s)";
+
+    protected List<TsKvDictionary> findByKeys(Collection<String> keys) {
+        if (keys.isEmpty()) {
+            return Collections.emptyList();
+        }
+        String query = String.format(SELECT_BY_KEYS, String.join(",", Collections.nCopies(keys.size(), "?")));
+        return jdbcTemplate.query(query, keys.toArray(), (rs, rowNum) -> toDictionary(rs.getString(1), rs.getInt(2)));
+    }
+
+    protected static TsKvDictionary toDictionary(String key, int keyId) {
+        TsKvDictionary dictionary = new TsKvDictionary();
+        dictionary.setKey(key);
+        dictionary.setKeyId(keyId);
+        return dictionary;
+    }
+
+    protected static List<String> missingKeys(Collection<String> keys, List<TsKvDictionary> found) {
+        Set<String> missing = new LinkedHashSet<>(keys);
+        found.forEach(dictionary -> missing.remove(dictionary.getKey()));
+        return new ArrayList<>(missing);
+    }
+}
@@ -0,0 +1,58 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sqlts.insert.dictionary.hsql;
+
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.stereotype.Repository;
+import org.thingsboard.server.dao.model.sqlts.dictionary.TsKvDictionary;
+import org.thingsboard.server.dao.sqlts.insert.dictionary.AbstractInsertTsKvDictionaryRepository;
+import org.thingsboard.server.dao.util.HsqlDao;
+import org.thingsboard.server.dao.util.SqlTsDao;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+@SqlTsDao
+@HsqlDao
+@Repository
+public class HsqlInsertTsKvDictionaryRepository extends AbstractInsertTsKvDictionaryRepository {
+
+    private static final String INSERT_IF_NOT_EXISTS =
+            "MERGE INTO ts_kv_dictionary USING(VALUES ?) T (key) " +
+                    "ON (ts_kv_dictionary.key=T.key) " +
+                    "WHEN NOT MATCHED THEN INSERT (key) VALUES (T.key);";
+
+    @Override
+    public List<TsKvDictionary> saveOrFind(Collection<String> keys) {
+        List<String> uniqueKeys = new ArrayList<>(new LinkedHashSet<>(keys));
+        jdbcTemplate.batchUpdate(INSERT_IF_NOT_EXISTS, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                ps.setString(1, uniqueKeys.get(i));
+            }
+
+            @Override
+            public int getBatchSize() {
+                return uniqueKeys.size();
+            }
+        });
+        return findByKeys(uniqueKeys);
+    }
+}
@@ -0,0 +1,48 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sqlts.insert.dictionary.psql;
+
+import org.springframework.stereotype.Repository;
+import org.thingsboard.server.dao.model.sqlts.dictionary.TsKvDictionary;
+import org.thingsboard.server.dao.sqlts.insert.dictionary.AbstractInsertTsKvDictionaryRepository;
+import org.thingsboard.server.dao.util.PsqlTsAnyDao;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+@PsqlTsAnyDao
+@Repository
+public class PsqlInsertTsKvDictionaryRepository extends AbstractInsertTsKvDictionaryRepository {
+
+    private static final String INSERT_ON_CONFLICT_DO_NOTHING =
+            "INSERT INTO ts_kv_dictionary (key) VALUES %s ON CONFLICT (key) DO NOTHING RETURNING key, key_id";
+
+    @Override
+    public List<TsKvDictionary> saveOrFind(Collection<String> keys) {
+        List<String> uniqueKeys = new ArrayList<>(new LinkedHashSet<>(keys));
+        String query = String.format(INSERT_ON_CONFLICT_DO_NOTHING, String.join(",", Collections.nCopies(uniqueKeys.size(), "(?)")));
+        List<TsKvDictionary> result = new ArrayList<>(uniqueKeys.size());
+        result.addAll(jdbcTemplate.query(query, uniqueKeys.toArray(), (rs, rowNum) -> toDictionary(rs.getString(1), rs.getInt(2))));
+        // Keys inserted by other servers are skipped by ON CONFLICT DO NOTHING and have to be selected separately.
+        if (result.size() < uniqueKeys.size()) {
+            result.addAll(findByKeys(missingKeys(uniqueKeys, result)));
+        }
+        return result;
+    }
+}
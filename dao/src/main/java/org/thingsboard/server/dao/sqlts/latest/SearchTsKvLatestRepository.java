@@ -21,6 +21,7 @@ import org.thingsboard.server.dao.util.SqlTsAnyDao;
 
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 
@@ -34,6 +35,12 @@ public class SearchTsKvLatestRepository {
             " ts_kv_latest.bool_v AS boolValue, ts_kv_latest.long_v AS longValue, ts_kv_latest.dbl_v AS doubleValue, ts_kv_latest.json_v AS jsonValue, ts_kv_latest.ts AS ts FROM ts_kv_latest " +
             "INNER JOIN ts_kv_dictionary ON ts_kv_latest.key = ts_kv_dictionary.key_id WHERE ts_kv_latest.entity_id = cast(:id AS uuid)";
 
+    public static final String FIND_ALL_BY_ENTITY_IDS_QUERY = "SELECT new org.thingsboard.server.dao.model.sqlts.latest.TsKvLatestEntity(l.entityId, l.key, d.key, l.strValue, " +
+            "l.booleanValue, l.longValue, l.doubleValue, l.jsonValue, l.ts) FROM TsKvLatestEntity l, TsKvDictionary d " +
+            "WHERE l.key = d.keyId AND l.entityId IN (:entityIds)";
+
+    public static final String FIND_ALL_BY_ENTITY_IDS_AND_KEYS_QUERY = FIND_ALL_BY_ENTITY_IDS_QUERY + " AND d.key IN (:keys)";
+
     @PersistenceContext
     private EntityManager entityManager;
 
@@ -43,4 +50,17 @@ public class SearchTsKvLatestRepository {
                 .getResultList();
     }
 
+    public List<TsKvLatestEntity> findAllByEntityIds(Collection<UUID> entityIds) {
+        return entityManager.createQuery(FIND_ALL_BY_ENTITY_IDS_QUERY, TsKvLatestEntity.class)
+                .setParameter("entityIds", entityIds)
+                .getResultList();
+    }
+
+    public List<TsKvLatestEntity> findAllByEntityIdsAndKeys(Collection<UUID> entityIds, Collection<String> keys) {
+        return entityManager.createQuery(FIND_ALL_BY_ENTITY_IDS_AND_KEYS_QUERY, TsKvLatestEntity.class)
+                .setParameter("entityIds", entityIds)
+                .setParameter("keys", keys)
+                .getResultList();
+    }
+
 }
@@ -43,8 +43,10 @@ import org.thingsboard.server.dao.util.TimescaleDBTsDao;
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
@@ -159,6 +161,11 @@ public class TimescaleTimeseriesDao extends AbstractSqlTimeseriesDao implements
         return getFindAllLatestFuture(entityId);
     }
 
+    @Override
+    public ListenableFuture<Map<EntityId, List<TsKvEntry>>> findLatest(TenantId tenantId, Collection<EntityId> entityIds, Collection<String> keys) {
+        return getFindLatestFuture(entityIds, keys);
+    }
+
     @Override
     public ListenableFuture<Void> save(TenantId tenantId, EntityId entityId, TsKvEntry tsKvEntry, long ttl) {
         String strKey = tsKvEntry.getKey();
@@ -18,6 +18,7 @@ package org.thingsboard.server.dao.timeseries;
 import com.google.common.collect.Lists;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
@@ -38,7 +39,9 @@ import org.thingsboard.server.dao.service.Validator;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 import static org.apache.commons.lang3.StringUtils.isBlank;
@@ -123,6 +126,34 @@ public class BaseTimeseriesService implements TimeseriesService {
         }
     }
 
+    @Override
+    public ListenableFuture<Map<EntityId, List<TsKvEntry>>> findLatest(TenantId tenantId, Collection<EntityId> entityIds, Collection<String> keys) {
+        entityIds.forEach(entityId -> validate(entityId));
+        keys.forEach(key -> Validator.validateString(key, "Incorrect key " + key));
+        List<EntityId> ids = new ArrayList<>();
+        Map<EntityId, ListenableFuture<List<TsKvEntry>>> entityViewFutures = new LinkedHashMap<>();
+        for (EntityId entityId : entityIds) {
+            if (entityId.getEntityType().equals(EntityType.ENTITY_VIEW)) {
+                entityViewFutures.put(entityId, keys.isEmpty() ? findAllLatest(tenantId, entityId) : findLatest(tenantId, entityId, keys));
+            } else {
+                ids.add(entityId);
+            }
+        }
+        if (entityViewFutures.isEmpty()) {
+            return timeseriesDao.findLatest(tenantId, ids, keys);
+        }
+        ListenableFuture<Map<EntityId, List<TsKvEntry>>> future = ids.isEmpty() ?
+                Futures.immediateFuture(new LinkedHashMap<>()) : timeseriesDao.findLatest(tenantId, ids, keys);
+        return Futures.transformAsync(future, entitiesResult -> Futures.transform(Futures.allAsList(entityViewFutures.values()), entityViewResults -> {
+            Map<EntityId, List<TsKvEntry>> result = new LinkedHashMap<>(entitiesResult);
+            int i = 0;
+            for (EntityId entityViewId : entityViewFutures.keySet()) {
+                result.put(entityViewId, entityViewResults.get(i++));
+            }
+            return result;
+        }, MoreExecutors.directExecutor()), MoreExecutors.directExecutor());
+    }
+
     @Override
     public ListenableFuture<List<Void>> save(TenantId tenantId, EntityId entityId, TsKvEntry tsKvEntry) {
         validate(entityId);
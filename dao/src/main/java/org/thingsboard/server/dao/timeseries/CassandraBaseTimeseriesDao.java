@@ -65,8 +65,12 @@ import java.time.ZoneOffset;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ExecutionException;
 import java.util.stream.Collectors;
@@ -340,6 +344,31 @@ public class CassandraBaseTimeseriesDao extends CassandraAbstractAsyncDao implem
         return getFutureAsync(executeAsyncRead(tenantId, stmt), rs -> convertAsyncResultSetToTsKvEntryList(rs));
     }
 
+    @Override
+    public ListenableFuture<Map<EntityId, List<TsKvEntry>>> findLatest(TenantId tenantId, Collection<EntityId> entityIds, Collection<String> keys) {
+        // ts_kv_latest_cf is partitioned by entity, so multi-partition IN queries would only move the fan-out to the coordinator.
+        List<EntityId> ids = new ArrayList<>(new LinkedHashSet<>(entityIds));
+        List<ListenableFuture<List<TsKvEntry>>> futures = new ArrayList<>(ids.size());
+        for (EntityId entityId : ids) {
+            if (keys.isEmpty()) {
+                futures.add(findAllLatest(tenantId, entityId));
+            } else {
+                List<ListenableFuture<TsKvEntry>> keyFutures = new ArrayList<>(keys.size());
+                keys.forEach(key -> keyFutures.add(findLatest(tenantId, entityId, key)));
+                futures.add(Futures.transform(Futures.allAsList(keyFutures),
+                        entries -> entries.stream().filter(entry -> entry.getValue() != null).collect(Collectors.toList()),
+                        MoreExecutors.directExecutor()));
+            }
+        }
+        return Futures.transform(Futures.allAsList(futures), results -> {
+            Map<EntityId, List<TsKvEntry>> result = new LinkedHashMap<>();
+            for (int i = 0; i < ids.size(); i++) {
+                result.put(ids.get(i), results.get(i));
+            }
+            return result;
+        }, MoreExecutors.directExecutor());
+    }
+
     @Override
     public ListenableFuture<Void> save(TenantId tenantId, EntityId entityId, TsKvEntry tsKvEntry, long ttl) {
         List<ListenableFuture<Void>> futures = new ArrayList<>();
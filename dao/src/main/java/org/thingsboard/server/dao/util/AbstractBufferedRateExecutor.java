@@ -27,6 +27,10 @@ import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.SettableFuture;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
 import org.thingsboard.common.util.ThingsBoardThreadFactory;
 import org.thingsboard.server.common.data.id.TenantId;
@@ -34,6 +38,12 @@ import org.thingsboard.server.common.msg.tools.TbRateLimits;
 import org.thingsboard.server.dao.nosql.CassandraStatementTask;
 
 import javax.annotation.Nullable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -41,23 +51,37 @@ import java.util.regex.Matcher;
 
 /**
  * Created by ashvayka on 24.10.18.
+ *
+ * Tasks are queued per tenant and dispatched in deficit round-robin order, so a tenant that floods the executor
+ * does not delay the tasks of other tenants. A task is launched as soon as a permit is available;
+ * permits are released by the completion callbacks of the launched tasks.
+ *
+ * Queue depth and wait time of each tenant are exported as the nosql.tenant.queue.size and nosql.tenant.wait meters.
  */
 @Slf4j
 public abstract class AbstractBufferedRateExecutor<T extends AsyncTask, F extends ListenableFuture<V>, V> implements BufferedRateExecutor<T, F> {
 
     private final long maxWaitTime;
-    private final long pollMs;
-    private final BlockingQueue<AsyncTaskContext<T, V>> queue;
+    private final int queueLimit;
+    private final int tenantQuantum;
     private final ExecutorService dispatcherExecutor;
     private final ExecutorService callbackExecutor;
     private final ScheduledExecutorService timeoutExecutor;
-    private final int concurrencyLimit;
     private final int printQueriesFreq;
     private final boolean perTenantLimitsEnabled;
     private final String perTenantLimitsConfiguration;
     private final ConcurrentMap<TenantId, TbRateLimits> perTenantLimits = new ConcurrentHashMap<>();
     protected final ConcurrentMap<TenantId, AtomicInteger> rateLimitedTenants = new ConcurrentHashMap<>();
 
+    private final Object queueLock = new Object();
+    private final Map<TenantId, TenantQueue<T, V>> tenantQueues = new HashMap<>();
+    private final Deque<TenantQueue<T, V>> activeTenants = new ArrayDeque<>();
+    private int queueSize;
+    private int availablePermits;
+    private final String metricsName;
+    private final ConcurrentMap<TenantId, Timer> tenantWaitTimers = new ConcurrentHashMap<>();
+    private final List<Meter> meters = new CopyOnWriteArrayList<>();
+
     protected final AtomicInteger concurrencyLevel = new AtomicInteger();
     protected final AtomicInteger totalAdded = new AtomicInteger();
     protected final AtomicInteger totalLaunched = new AtomicInteger();
@@ -68,21 +92,19 @@ public abstract class AbstractBufferedRateExecutor<T extends AsyncTask, F extend
     protected final AtomicInteger totalRateLimited = new AtomicInteger();
     protected final AtomicInteger printQueriesIdx = new AtomicInteger();
 
-    public AbstractBufferedRateExecutor(int queueLimit, int concurrencyLimit, long maxWaitTime, int dispatcherThreads, int callbackThreads, long pollMs,
+    public AbstractBufferedRateExecutor(int queueLimit, int concurrencyLimit, long maxWaitTime, int dispatcherThreads, int callbackThreads, int tenantQuantum,
                                         boolean perTenantLimitsEnabled, String perTenantLimitsConfiguration, int printQueriesFreq) {
         this.maxWaitTime = maxWaitTime;
-        this.pollMs = pollMs;
-        this.concurrencyLimit = concurrencyLimit;
+        this.queueLimit = queueLimit;
+        this.availablePermits = concurrencyLimit;
+        this.tenantQuantum = Math.max(1, tenantQuantum);
         this.printQueriesFreq = printQueriesFreq;
-        this.queue = new LinkedBlockingDeque<>(queueLimit);
         this.dispatcherExecutor = Executors.newFixedThreadPool(dispatcherThreads, ThingsBoardThreadFactory.forName("nosql-dispatcher"));
         this.callbackExecutor = Executors.newWorkStealingPool(callbackThreads);
         this.timeoutExecutor = Executors.newSingleThreadScheduledExecutor(ThingsBoardThreadFactory.forName("nosql-timeout"));
         this.perTenantLimitsEnabled = perTenantLimitsEnabled;
         this.perTenantLimitsConfiguration = perTenantLimitsConfiguration;
-        for (int i = 0; i < dispatcherThreads; i++) {
-            dispatcherExecutor.submit(this::dispatch);
-        }
+        this.metricsName = getClass().getSimpleName();
     }
 
     @Override
@@ -104,12 +126,12 @@ public abstract class AbstractBufferedRateExecutor<T extends AsyncTask, F extend
             }
         }
         if (!perTenantLimitReached) {
-            try {
-                totalAdded.incrementAndGet();
-                queue.add(new AsyncTaskContext<>(UUID.randomUUID(), task, settableFuture, System.currentTimeMillis()));
-            } catch (IllegalStateException e) {
+            totalAdded.incrementAndGet();
+            if (enqueue(new AsyncTaskContext<>(UUID.randomUUID(), task, settableFuture, System.currentTimeMillis()))) {
+                dispatch();
+            } else {
                 totalRejected.incrementAndGet();
-                settableFuture.setException(e);
+                settableFuture.setException(new IllegalStateException("Queue full"));
             }
         }
         return result;
@@ -125,6 +147,8 @@ public abstract class AbstractBufferedRateExecutor<T extends AsyncTask, F extend
         if (timeoutExecutor != null) {
             timeoutExecutor.shutdownNow();
         }
+        meters.forEach(Metrics.globalRegistry::remove);
+        meters.clear();
     }
 
     protected abstract SettableFuture<V> create();
@@ -133,73 +157,165 @@ public abstract class AbstractBufferedRateExecutor<T extends AsyncTask, F extend
 
     protected abstract ListenableFuture<V> execute(AsyncTaskContext<T, V> taskCtx);
 
+    /**
+     * Share of the tenant quantum consumed by the task. Tasks that carry several queries may cost more than one.
+     */
+    protected int getTaskCost(T task) {
+        return 1;
+    }
+
+    private boolean enqueue(AsyncTaskContext<T, V> taskCtx) {
+        TenantId tenantId = getTenantId(taskCtx);
+        synchronized (queueLock) {
+            if (queueSize >= queueLimit) {
+                return false;
+            }
+            TenantQueue<T, V> tenantQueue = tenantQueues.computeIfAbsent(tenantId, TenantQueue::new);
+            if (tenantQueue.tasks.isEmpty()) {
+                activeTenants.addLast(tenantQueue);
+            }
+            tenantQueue.tasks.addLast(taskCtx);
+            queueSize++;
+            return true;
+        }
+    }
+
     private void dispatch() {
-        log.info("Buffered rate executor thread started");
-        while (!Thread.interrupted()) {
-            int curLvl = concurrencyLevel.get();
-            AsyncTaskContext<T, V> taskCtx = null;
+        while (true) {
+            AsyncTaskContext<T, V> taskCtx;
+            synchronized (queueLock) {
+                if (availablePermits == 0 || queueSize == 0) {
+                    return;
+                }
+                taskCtx = pollNext();
+                availablePermits--;
+            }
+            concurrencyLevel.incrementAndGet();
             try {
-                if (curLvl <= concurrencyLimit) {
-                    taskCtx = queue.take();
-                    final AsyncTaskContext<T, V> finalTaskCtx = taskCtx;
-                    if (printQueriesFreq > 0) {
-                        if (printQueriesIdx.incrementAndGet() >= printQueriesFreq) {
-                            printQueriesIdx.set(0);
-                            String query = queryToString(finalTaskCtx);
-                            log.info("[{}] Cassandra query: {}", taskCtx.getId(), query);
-                        }
-                    }
-                    logTask("Processing", finalTaskCtx);
-                    concurrencyLevel.incrementAndGet();
-                    long timeout = finalTaskCtx.getCreateTime() + maxWaitTime - System.currentTimeMillis();
-                    if (timeout > 0) {
-                        totalLaunched.incrementAndGet();
-                        ListenableFuture<V> result = execute(finalTaskCtx);
-                        result = Futures.withTimeout(result, timeout, TimeUnit.MILLISECONDS, timeoutExecutor);
-                        Futures.addCallback(result, new FutureCallback<V>() {
-                            @Override
-                            public void onSuccess(@Nullable V result) {
-                                logTask("Releasing", finalTaskCtx);
-                                totalReleased.incrementAndGet();
-                                concurrencyLevel.decrementAndGet();
-                                finalTaskCtx.getFuture().set(result);
-                            }
+                dispatcherExecutor.execute(() -> launch(taskCtx));
+            } catch (RejectedExecutionException e) {
+                failAll(taskCtx, e);
+                return;
+            }
+        }
+    }
 
-                            @Override
-                            public void onFailure(Throwable t) {
-                                if (t instanceof TimeoutException) {
-                                    logTask("Expired During Execution", finalTaskCtx);
-                                } else {
-                                    logTask("Failed", finalTaskCtx);
-                                }
-                                totalFailed.incrementAndGet();
-                                concurrencyLevel.decrementAndGet();
-                                finalTaskCtx.getFuture().setException(t);
-                                log.debug("[{}] Failed to execute task: {}", finalTaskCtx.getId(), finalTaskCtx.getTask(), t);
-                            }
-                        }, callbackExecutor);
-                    } else {
-                        logTask("Expired Before Execution", finalTaskCtx);
-                        totalExpired.incrementAndGet();
-                        concurrencyLevel.decrementAndGet();
-                        taskCtx.getFuture().setException(new TimeoutException());
-                    }
-                } else {
-                    Thread.sleep(pollMs);
+    /**
+     * The dispatcher is shut down, so none of the queued tasks can be launched anymore.
+     * Fails them in a loop: failing them one by one through {@link #release()} would recurse once per queued task.
+     */
+    private void failAll(AsyncTaskContext<T, V> rejectedTask, RejectedExecutionException e) {
+        List<AsyncTaskContext<T, V>> tasks = new ArrayList<>();
+        tasks.add(rejectedTask);
+        synchronized (queueLock) {
+            availablePermits++;
+            for (TenantQueue<T, V> tenantQueue : activeTenants) {
+                tasks.addAll(tenantQueue.tasks);
+            }
+            activeTenants.clear();
+            tenantQueues.clear();
+            queueSize = 0;
+        }
+        concurrencyLevel.decrementAndGet();
+        log.debug("Dispatcher is stopped, failing [{}] tasks", tasks.size());
+        for (AsyncTaskContext<T, V> taskCtx : tasks) {
+            totalFailed.incrementAndGet();
+            taskCtx.getFuture().setException(e);
+        }
+    }
+
+    private AsyncTaskContext<T, V> pollNext() {
+        while (true) {
+            TenantQueue<T, V> tenantQueue = activeTenants.peekFirst();
+            AsyncTaskContext<T, V> taskCtx = tenantQueue.tasks.peekFirst();
+            int cost = getTaskCost(taskCtx.getTask());
+            if (tenantQueue.deficit < cost) {
+                // The tenant starts its turn and receives the quantum.
+                tenantQueue.deficit += tenantQuantum;
+                if (tenantQueue.deficit < cost) {
+                    activeTenants.addLast(activeTenants.pollFirst());
+                    continue;
                 }
-            } catch (InterruptedException e) {
-                break;
-            } catch (Throwable e) {
-                if (taskCtx != null) {
-                    log.debug("[{}] Failed to execute task: {}", taskCtx.getId(), taskCtx, e);
-                    totalFailed.incrementAndGet();
-                    concurrencyLevel.decrementAndGet();
-                } else {
-                    log.debug("Failed to queue task:", e);
+            }
+            tenantQueue.deficit -= cost;
+            tenantQueue.tasks.pollFirst();
+            queueSize--;
+            if (tenantQueue.tasks.isEmpty()) {
+                activeTenants.pollFirst();
+                tenantQueues.remove(tenantQueue.tenantId);
+            } else if (tenantQueue.deficit < getTaskCost(tenantQueue.tasks.peekFirst().getTask())) {
+                // The tenant has used its quantum, the next task will be taken from another tenant.
+                activeTenants.addLast(activeTenants.pollFirst());
+            }
+            return taskCtx;
+        }
+    }
+
+    private void release() {
+        concurrencyLevel.decrementAndGet();
+        synchronized (queueLock) {
+            availablePermits++;
+        }
+        dispatch();
+    }
+
+    private void launch(AsyncTaskContext<T, V> taskCtx) {
+        try {
+            long waitTime = System.currentTimeMillis() - taskCtx.getCreateTime();
+            getWaitTimer(getTenantId(taskCtx)).record(waitTime, TimeUnit.MILLISECONDS);
+            if (printQueriesFreq > 0) {
+                if (printQueriesIdx.incrementAndGet() >= printQueriesFreq) {
+                    printQueriesIdx.set(0);
+                    String query = queryToString(taskCtx);
+                    log.info("[{}] Cassandra query: {}", taskCtx.getId(), query);
                 }
             }
+            logTask("Processing", taskCtx);
+            long timeout = maxWaitTime - waitTime;
+            if (timeout > 0) {
+                totalLaunched.incrementAndGet();
+                ListenableFuture<V> result = execute(taskCtx);
+                result = Futures.withTimeout(result, timeout, TimeUnit.MILLISECONDS, timeoutExecutor);
+                Futures.addCallback(result, new FutureCallback<V>() {
+                    @Override
+                    public void onSuccess(@Nullable V result) {
+                        logTask("Releasing", taskCtx);
+                        totalReleased.incrementAndGet();
+                        release();
+                        taskCtx.getFuture().set(result);
+                    }
+
+                    @Override
+                    public void onFailure(Throwable t) {
+                        if (t instanceof TimeoutException) {
+                            logTask("Expired During Execution", taskCtx);
+                        } else {
+                            logTask("Failed", taskCtx);
+                        }
+                        AbstractBufferedRateExecutor.this.onFailure(taskCtx, t);
+                    }
+                }, callbackExecutor);
+            } else {
+                logTask("Expired Before Execution", taskCtx);
+                totalExpired.incrementAndGet();
+                release();
+                taskCtx.getFuture().setException(new TimeoutException());
+            }
+        } catch (Throwable e) {
+            onFailure(taskCtx, e);
         }
-        log.info("Buffered rate executor thread stopped");
+    }
+
+    private void onFailure(AsyncTaskContext<T, V> taskCtx, Throwable t) {
+        totalFailed.incrementAndGet();
+        release();
+        taskCtx.getFuture().setException(t);
+        log.debug("[{}] Failed to execute task: {}", taskCtx.getId(), taskCtx.getTask(), t);
+    }
+
+    private TenantId getTenantId(AsyncTaskContext<T, V> taskCtx) {
+        TenantId tenantId = taskCtx.getTask().getTenantId();
+        return tenantId != null ? tenantId : TenantId.SYS_TENANT_ID;
     }
 
     private void logTask(String action, AsyncTaskContext<T, V> taskCtx) {
@@ -251,6 +367,45 @@ public abstract class AbstractBufferedRateExecutor<T extends AsyncTask, F extend
     }
 
     protected int getQueueSize() {
-        return queue.size();
+        synchronized (queueLock) {
+            return queueSize;
+        }
+    }
+
+    protected int getTenantQueueSize(TenantId tenantId) {
+        synchronized (queueLock) {
+            TenantQueue<T, V> tenantQueue = tenantQueues.get(tenantId);
+            return tenantQueue != null ? tenantQueue.tasks.size() : 0;
+        }
+    }
+
+    private Timer getWaitTimer(TenantId tenantId) {
+        Timer timer = tenantWaitTimers.get(tenantId);
+        if (timer == null) {
+            timer = tenantWaitTimers.computeIfAbsent(tenantId, id -> {
+                Timer waitTimer = Timer.builder("nosql.tenant.wait")
+                        .description("Time the tasks of the tenant waited in the queue before launch")
+                        .tags("executor", metricsName, "tenantId", id.getId().toString())
+                        .register(Metrics.globalRegistry);
+                Gauge queueSizeGauge = Gauge.builder("nosql.tenant.queue.size", this, executor -> executor.getTenantQueueSize(id))
+                        .description("Number of queued tasks of the tenant")
+                        .tags("executor", metricsName, "tenantId", id.getId().toString())
+                        .register(Metrics.globalRegistry);
+                meters.add(waitTimer);
+                meters.add(queueSizeGauge);
+                return waitTimer;
+            });
+        }
+        return timer;
+    }
+
+    private static class TenantQueue<T extends AsyncTask, V> {
+        private final TenantId tenantId;
+        private final Deque<AsyncTaskContext<T, V>> tasks = new ArrayDeque<>();
+        private int deficit;
+
+        private TenantQueue(TenantId tenantId) {
+            this.tenantId = tenantId;
+        }
     }
 }
@@ -0,0 +1,157 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.relation;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.thingsboard.server.common.data.id.AssetId;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.id.EntityId;
+import org.thingsboard.server.common.data.relation.EntityRelation;
+import org.thingsboard.server.common.data.relation.EntitySearchDirection;
+import org.thingsboard.server.common.data.relation.RelationTypeGroup;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Slf4j
+public class RelationIndexTest {
+
+    private RelationIndex relationIndex;
+    private AtomicInteger loads;
+
+    @Before
+    public void before() {
+        relationIndex = new RelationIndex(true, 1000000, TimeUnit.HOURS.toMillis(1));
+        loads = new AtomicInteger();
+    }
+
+    @Test
+    public void testLookupsAreServedFromIndex() throws Exception {
+        AssetId asset = new AssetId(UUID.randomUUID());
+        DeviceId device1 = new DeviceId(UUID.randomUUID());
+        DeviceId device2 = new DeviceId(UUID.randomUUID());
+        List<EntityRelation> relations = Arrays.asList(
+                new EntityRelation(asset, device1, EntityRelation.CONTAINS_TYPE),
+                new EntityRelation(asset, device2, EntityRelation.MANAGES_TYPE));
+
+        Assert.assertEquals(relations, findFrom(asset, null, relations));
+        Assert.assertEquals(Collections.singletonList(relations.get(0)), findFrom(asset, EntityRelation.CONTAINS_TYPE, relations));
+        Assert.assertEquals(Collections.singletonList(relations.get(1)), findFrom(asset, EntityRelation.MANAGES_TYPE, relations));
+        Assert.assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void testIndexIsUpdatedOnSaveAndDelete() throws Exception {
+        AssetId asset = new AssetId(UUID.randomUUID());
+        DeviceId device = new DeviceId(UUID.randomUUID());
+        EntityRelation relation = new EntityRelation(asset, device, EntityRelation.CONTAINS_TYPE);
+
+        Assert.assertTrue(findFrom(asset, null, Collections.emptyList()).isEmpty());
+        Assert.assertTrue(findTo(device, Collections.emptyList()).isEmpty());
+
+        relationIndex.onRelationSaved(relation);
+        Assert.assertEquals(Collections.singletonList(relation), findFrom(asset, EntityRelation.CONTAINS_TYPE, Collections.emptyList()));
+        Assert.assertEquals(Collections.singletonList(relation), findTo(device, Collections.emptyList()));
+
+        relationIndex.onRelationDeleted(asset, device, EntityRelation.CONTAINS_TYPE, RelationTypeGroup.COMMON);
+        Assert.assertTrue(findFrom(asset, null, Collections.emptyList()).isEmpty());
+        Assert.assertTrue(findTo(device, Collections.emptyList()).isEmpty());
+        Assert.assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void testLoadIsDiscardedWhenModifiedConcurrently() throws Exception {
+        AssetId asset = new AssetId(UUID.randomUUID());
+        DeviceId device = new DeviceId(UUID.randomUUID());
+        SettableFuture<List<EntityRelation>> pendingLoad = SettableFuture.create();
+        ListenableFuture<List<EntityRelation>> result = relationIndex.find(asset, EntitySearchDirection.FROM, RelationTypeGroup.COMMON, null, () -> pendingLoad);
+
+        relationIndex.onRelationSaved(new EntityRelation(asset, device, EntityRelation.CONTAINS_TYPE));
+        pendingLoad.set(Collections.emptyList());
+
+        Assert.assertTrue(result.get().isEmpty());
+        Assert.assertEquals(0, relationIndex.getEntitiesCount());
+    }
+
+    @Test
+    public void testInvalidatedEntityIsReloaded() throws Exception {
+        AssetId asset = new AssetId(UUID.randomUUID());
+        DeviceId device = new DeviceId(UUID.randomUUID());
+        EntityRelation relation = new EntityRelation(asset, device, EntityRelation.CONTAINS_TYPE);
+
+        Assert.assertTrue(findFrom(asset, null, Collections.emptyList()).isEmpty());
+        relationIndex.invalidate(asset);
+        Assert.assertEquals(Collections.singletonList(relation), findFrom(asset, null, Collections.singletonList(relation)));
+        Assert.assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void testLeastUsedEntitiesAreEvicted() throws Exception {
+        relationIndex = new RelationIndex(true, 100, TimeUnit.HOURS.toMillis(1));
+        for (int i = 0; i < 1000; i++) {
+            findFrom(new AssetId(UUID.randomUUID()), null, Collections.emptyList());
+        }
+        relationIndex.cleanUp();
+        Assert.assertTrue(relationIndex.getEntitiesCount() <= 100);
+    }
+
+    @Test
+    public void testMemoryPerMillionRelations() throws Exception {
+        int assets = 10000;
+        int devicesPerAsset = 10;
+        for (int i = 0; i < assets; i++) {
+            AssetId asset = new AssetId(UUID.randomUUID());
+            List<EntityRelation> relations = new ArrayList<>(devicesPerAsset);
+            for (int j = 0; j < devicesPerAsset; j++) {
+                relations.add(new EntityRelation(asset, new DeviceId(UUID.randomUUID()), EntityRelation.CONTAINS_TYPE));
+            }
+            findFrom(asset, null, relations);
+            for (EntityRelation relation : relations) {
+                findTo(relation.getTo(), Collections.singletonList(relation));
+            }
+        }
+        long relationsCount = (long) assets * devicesPerAsset;
+        Assert.assertEquals(relationsCount * 2, relationIndex.getRelationsCount());
+        long bytesPerMillion = relationIndex.getEstimatedSizeInBytes() * 1000000 / relationsCount;
+        log.info("Relation index: [{}] entities, [{}] relations, estimated [{}] MB per million relations indexed in both directions",
+                relationIndex.getEntitiesCount(), relationsCount, bytesPerMillion / (1024 * 1024));
+        Assert.assertTrue(bytesPerMillion > 0);
+    }
+
+    private List<EntityRelation> findFrom(EntityId from, String type, List<EntityRelation> stored) throws Exception {
+        return relationIndex.find(from, EntitySearchDirection.FROM, RelationTypeGroup.COMMON, type, () -> load(stored)).get();
+    }
+
+    private List<EntityRelation> findTo(EntityId to, List<EntityRelation> stored) throws Exception {
+        return relationIndex.find(to, EntitySearchDirection.TO, RelationTypeGroup.COMMON, null, () -> load(stored)).get();
+    }
+
+    private ListenableFuture<List<EntityRelation>> load(List<EntityRelation> stored) {
+        loads.incrementAndGet();
+        return Futures.immediateFuture(stored);
+    }
+}
@@ -22,14 +22,20 @@ import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.thingsboard.server.common.data.DataConstants;
 import org.thingsboard.server.common.data.Tenant;
 import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.data.kv.AttributeKvEntry;
+import org.thingsboard.server.common.data.kv.BaseAttributeKvEntry;
+import org.thingsboard.server.common.data.kv.StringDataEntry;
 import org.thingsboard.server.common.data.page.PageData;
 import org.thingsboard.server.common.data.page.PageLink;
 import org.thingsboard.server.common.data.relation.EntityRelation;
 import org.thingsboard.server.common.data.rule.RuleChain;
 import org.thingsboard.server.common.data.rule.RuleChainMetaData;
 import org.thingsboard.server.common.data.rule.RuleNode;
+import org.thingsboard.server.dao.attributes.AttributesService;
 import org.thingsboard.server.dao.exception.DataValidationException;
 
 import java.io.IOException;
@@ -45,6 +51,9 @@ public abstract class BaseRuleChainServiceTest extends AbstractServiceTest {
     private IdComparator<RuleChain> idComparator = new IdComparator<>();
     private IdComparator<RuleNode> ruleNodeIdComparator = new IdComparator<>();
 
+    @Autowired
+    private AttributesService attributesService;
+
     private TenantId tenantId;
 
     @Before
@@ -317,6 +326,18 @@ public abstract class BaseRuleChainServiceTest extends AbstractServiceTest {
         ruleChainService.deleteRuleChainById(tenantId, savedRuleChainMetaData.getRuleChainId());
     }
 
+    @Test
+    public void testDeleteRuleChainDeletesRuleNodeStates() throws Exception {
+        RuleChainMetaData savedRuleChainMetaData = createRuleChainMetadata();
+        RuleNode ruleNode = savedRuleChainMetaData.getNodes().get(0);
+        AttributeKvEntry state = new BaseAttributeKvEntry(new StringDataEntry("DEVICE_" + Uuids.timeBased(), "state"), System.currentTimeMillis());
+        attributesService.save(tenantId, ruleNode.getId(), DataConstants.SERVER_SCOPE, Collections.singletonList(state)).get();
+
+        ruleChainService.deleteRuleChainById(tenantId, savedRuleChainMetaData.getRuleChainId());
+
+        Assert.assertTrue(attributesService.findAll(tenantId, ruleNode.getId(), DataConstants.SERVER_SCOPE).get().isEmpty());
+    }
+
     private RuleChainMetaData createRuleChainMetadata() throws Exception {
         RuleChain ruleChain = new RuleChain();
         ruleChain.setName("My RuleChain");
@@ -21,7 +21,9 @@ import org.junit.Before;
 import org.junit.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.thingsboard.server.common.data.DataConstants;
+import org.thingsboard.server.common.data.id.AssetId;
 import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.id.EntityId;
 import org.thingsboard.server.common.data.kv.AttributeKvEntry;
 import org.thingsboard.server.common.data.kv.BaseAttributeKvEntry;
 import org.thingsboard.server.common.data.kv.KvEntry;
@@ -29,8 +31,10 @@ import org.thingsboard.server.common.data.kv.StringDataEntry;
 import org.thingsboard.server.dao.attributes.AttributesService;
 import org.thingsboard.server.dao.service.AbstractServiceTest;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 /**
@@ -100,4 +104,29 @@ public abstract class BaseAttributesServiceTest extends AbstractServiceTest {
         Assert.assertEquals(attrBNew, saved.get(1));
     }
 
+
+    @Test
+    public void findForMultipleEntities() throws Exception {
+        DeviceId deviceId = new DeviceId(Uuids.timeBased());
+        DeviceId otherDeviceId = new DeviceId(Uuids.timeBased());
+        AssetId assetId = new AssetId(Uuids.timeBased());
+
+        AttributeKvEntry attrA = new BaseAttributeKvEntry(new StringDataEntry("A", "value1"), 42L);
+        AttributeKvEntry attrB = new BaseAttributeKvEntry(new StringDataEntry("B", "value2"), 42L);
+        attributesService.save(SYSTEM_TENANT_ID, deviceId, DataConstants.SERVER_SCOPE, Arrays.asList(attrA, attrB)).get();
+        attributesService.save(SYSTEM_TENANT_ID, otherDeviceId, DataConstants.SERVER_SCOPE, Collections.singletonList(attrB)).get();
+        attributesService.save(SYSTEM_TENANT_ID, assetId, DataConstants.SERVER_SCOPE, Collections.singletonList(attrA)).get();
+
+        Map<EntityId, List<AttributeKvEntry>> saved = attributesService.find(SYSTEM_TENANT_ID,
+                Arrays.asList(deviceId, otherDeviceId, assetId), DataConstants.SERVER_SCOPE, Collections.singletonList("A")).get();
+        Assert.assertEquals(3, saved.size());
+        Assert.assertEquals(Collections.singletonList(attrA), saved.get(deviceId));
+        Assert.assertTrue(saved.get(otherDeviceId).isEmpty());
+        Assert.assertEquals(Collections.singletonList(attrA), saved.get(assetId));
+
+        saved = attributesService.find(SYSTEM_TENANT_ID,
+                Arrays.asList(deviceId, otherDeviceId), DataConstants.SERVER_SCOPE, Collections.emptyList()).get();
+        Assert.assertEquals(2, saved.get(deviceId).size());
+        Assert.assertEquals(Collections.singletonList(attrB), saved.get(otherDeviceId));
+    }
 }
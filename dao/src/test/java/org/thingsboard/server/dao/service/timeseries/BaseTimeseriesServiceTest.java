@@ -41,6 +41,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ExecutionException;
 
 import static org.junit.Assert.assertEquals;
@@ -149,6 +150,34 @@ public abstract class BaseTimeseriesServiceTest extends AbstractServiceTest {
         Assert.assertEquals(toTsEntry(TS, stringKvEntry), entries.get(0));
     }
 
+    @Test
+    public void testFindLatestForMultipleEntities() throws Exception {
+        DeviceId deviceId = new DeviceId(Uuids.timeBased());
+        DeviceId otherDeviceId = new DeviceId(Uuids.timeBased());
+        DeviceId emptyDeviceId = new DeviceId(Uuids.timeBased());
+
+        saveEntries(deviceId, TS - 1);
+        saveEntries(deviceId, TS);
+        saveEntries(otherDeviceId, TS);
+
+        EntityView entityView = saveAndCreateEntityView(deviceId, Arrays.asList(STRING_KEY));
+
+        Map<EntityId, List<TsKvEntry>> latest = tsService.findLatest(tenantId,
+                Arrays.asList(deviceId, otherDeviceId, emptyDeviceId, entityView.getId()), Arrays.asList(STRING_KEY, LONG_KEY)).get();
+        Assert.assertEquals(4, latest.size());
+        Assert.assertEquals(2, latest.get(deviceId).size());
+        Assert.assertEquals(2, latest.get(otherDeviceId).size());
+        Assert.assertTrue(latest.get(emptyDeviceId).isEmpty());
+        Assert.assertEquals(Collections.singletonList(toTsEntry(TS, stringKvEntry)), latest.get(entityView.getId()));
+
+        latest = tsService.findLatest(tenantId, Arrays.asList(deviceId, otherDeviceId), Collections.emptyList()).get();
+        Assert.assertEquals(4, latest.get(deviceId).size());
+        Assert.assertEquals(4, latest.get(otherDeviceId).size());
+        for (TsKvEntry entry : latest.get(deviceId)) {
+            Assert.assertEquals(TS, entry.getTs());
+        }
+    }
+
     @Test
     public void testFindByQueryAscOrder() throws Exception {
         DeviceId deviceId = new DeviceId(Uuids.timeBased());
@@ -0,0 +1,242 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sql;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import lombok.Data;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+public class TbSqlBlockingQueueTest {
+
+    private static final int PRODUCERS = 8;
+    private static final int ENTITIES_PER_PRODUCER = 10;
+    private static final int ELEMENTS_PER_ENTITY = 500;
+
+    private final ScheduledLogExecutorComponent logExecutor = Mockito.mock(ScheduledLogExecutorComponent.class);
+    private final List<Entry> saved = Collections.synchronizedList(new ArrayList<>());
+    private TbSqlBlockingQueue<Entry> queue;
+
+    @After
+    public void after() {
+        if (queue != null) {
+            queue.destroy();
+        }
+    }
+
+    @Test
+    public void testNoLossOnGracefulShutdown() throws Exception {
+        queue = createQueue(100, 1000, TbSqlQueueOverflowPolicy.BLOCK);
+        queue.init(logExecutor, entries -> {
+            sleep(5);
+            saved.addAll(entries);
+        });
+
+        ExecutorService producers = Executors.newFixedThreadPool(PRODUCERS);
+        List<Future<List<ListenableFuture<Void>>>> producerResults = new ArrayList<>();
+        for (int p = 0; p < PRODUCERS; p++) {
+            int producer = p;
+            producerResults.add(producers.submit(() -> {
+                List<ListenableFuture<Void>> futures = new ArrayList<>();
+                for (int seq = 0; seq < ELEMENTS_PER_ENTITY; seq++) {
+                    for (int e = 0; e < ENTITIES_PER_PRODUCER; e++) {
+                        futures.add(queue.add(new Entry(producer + ":" + e, seq)));
+                    }
+                }
+                return futures;
+            }));
+        }
+        List<ListenableFuture<Void>> futures = new ArrayList<>();
+        for (Future<List<ListenableFuture<Void>>> producerResult : producerResults) {
+            futures.addAll(producerResult.get(30, TimeUnit.SECONDS));
+        }
+        producers.shutdown();
+
+        queue.destroy();
+
+        for (ListenableFuture<Void> future : futures) {
+            Assert.assertTrue(future.isDone());
+            future.get();
+        }
+        int total = PRODUCERS * ENTITIES_PER_PRODUCER * ELEMENTS_PER_ENTITY;
+        Assert.assertEquals(total, saved.size());
+
+        Map<String, Integer> lastSeq = new HashMap<>();
+        for (Entry entry : saved) {
+            int expected = lastSeq.getOrDefault(entry.getEntityId(), -1) + 1;
+            Assert.assertEquals("Order of entity " + entry.getEntityId(), expected, entry.getSeq());
+            lastSeq.put(entry.getEntityId(), entry.getSeq());
+        }
+        Assert.assertEquals(PRODUCERS * ENTITIES_PER_PRODUCER, lastSeq.size());
+    }
+
+    @Test
+    public void testDropPolicyRejectsElementsWhenFull() throws Exception {
+        CountDownLatch saving = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        queue = createQueue(1, 2, TbSqlQueueOverflowPolicy.DROP);
+        queue.init(logExecutor, entries -> {
+            saving.countDown();
+            await(release);
+            saved.addAll(entries);
+        });
+
+        ListenableFuture<Void> inProgress = queue.add(new Entry("a", 0));
+        Assert.assertTrue(saving.await(5, TimeUnit.SECONDS));
+        ListenableFuture<Void> first = queue.add(new Entry("a", 1));
+        ListenableFuture<Void> second = queue.add(new Entry("a", 2));
+        ListenableFuture<Void> dropped = queue.add(new Entry("a", 3));
+
+        Assert.assertTrue(dropped.isDone());
+        try {
+            dropped.get();
+            Assert.fail("Element should be dropped");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof RejectedExecutionException);
+        }
+
+        release.countDown();
+        inProgress.get(5, TimeUnit.SECONDS);
+        first.get(5, TimeUnit.SECONDS);
+        second.get(5, TimeUnit.SECONDS);
+        Assert.assertEquals(3, saved.size());
+    }
+
+    @Test
+    public void testBlockPolicyWaitsForFreeSpace() throws Exception {
+        CountDownLatch saving = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        queue = createQueue(1, 1, TbSqlQueueOverflowPolicy.BLOCK);
+        queue.init(logExecutor, entries -> {
+            saving.countDown();
+            await(release);
+            saved.addAll(entries);
+        });
+
+        queue.add(new Entry("a", 0));
+        Assert.assertTrue(saving.await(5, TimeUnit.SECONDS));
+        queue.add(new Entry("a", 1));
+
+        ExecutorService producer = Executors.newSingleThreadExecutor();
+        Future<ListenableFuture<Void>> blocked = producer.submit(() -> queue.add(new Entry("a", 2)));
+        sleep(200);
+        Assert.assertFalse(blocked.isDone());
+
+        release.countDown();
+        blocked.get(5, TimeUnit.SECONDS).get(5, TimeUnit.SECONDS);
+        producer.shutdown();
+        Assert.assertEquals(3, saved.size());
+    }
+
+    @Test
+    public void testElementsAddedAfterShutdownAreRejected() throws Exception {
+        queue = createQueue(10, 0, null);
+        queue.init(logExecutor, saved::addAll);
+        queue.destroy();
+
+        ListenableFuture<Void> future = queue.add(new Entry("a", 0));
+        Assert.assertTrue(future.isDone());
+        try {
+            future.get();
+            Assert.fail("Element should be rejected");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof RejectedExecutionException);
+        }
+        Assert.assertTrue(saved.isEmpty());
+    }
+
+    @Test
+    public void testFailedBatchIsSavedOneByOne() throws Exception {
+        TbSqlBlockingQueueParams params = TbSqlBlockingQueueParams.builder()
+                .logName("Test")
+                .batchSize(10)
+                .maxDelay(10)
+                .statsPrintIntervalMs(10000)
+                .saveOneByOneOnFailure(true)
+                .build();
+        queue = new TbSqlBlockingQueue<>(params);
+        queue.init(logExecutor, entries -> {
+            if (entries.stream().anyMatch(entry -> entry.getSeq() == 3)) {
+                throw new IllegalArgumentException("Bad entry");
+            }
+            saved.addAll(entries);
+        });
+
+        List<ListenableFuture<Void>> futures = new ArrayList<>();
+        for (int seq = 0; seq < 5; seq++) {
+            futures.add(queue.add(new Entry("a", seq)));
+        }
+        for (int seq = 0; seq < 5; seq++) {
+            try {
+                futures.get(seq).get(5, TimeUnit.SECONDS);
+                Assert.assertNotEquals(3, seq);
+            } catch (ExecutionException e) {
+                Assert.assertEquals(3, seq);
+                Assert.assertTrue(e.getCause() instanceof IllegalArgumentException);
+            }
+        }
+        Assert.assertEquals(4, saved.size());
+    }
+
+    private static TbSqlBlockingQueue<Entry> createQueue(int batchSize, int maxQueueSize, TbSqlQueueOverflowPolicy overflowPolicy) {
+        TbSqlBlockingQueueParams params = TbSqlBlockingQueueParams.builder()
+                .logName("Test")
+                .batchSize(batchSize)
+                .maxDelay(10)
+                .statsPrintIntervalMs(10000)
+                .maxQueueSize(maxQueueSize)
+                .overflowPolicy(overflowPolicy)
+                .build();
+        return new TbSqlBlockingQueue<>(params);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static void sleep(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Data
+    private static class Entry {
+        private final String entityId;
+        private final int seq;
+    }
+}
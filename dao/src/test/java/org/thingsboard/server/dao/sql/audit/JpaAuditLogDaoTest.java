@@ -15,7 +15,63 @@
  */
 package org.thingsboard.server.dao.sql.audit;
 
+import com.datastax.oss.driver.api.core.uuid.Uuids;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.thingsboard.server.common.data.audit.ActionStatus;
+import org.thingsboard.server.common.data.audit.ActionType;
+import org.thingsboard.server.common.data.audit.AuditLog;
+import org.thingsboard.server.common.data.id.AuditLogId;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.data.id.UserId;
+import org.thingsboard.server.common.data.page.PageData;
+import org.thingsboard.server.common.data.page.TimePageLink;
 import org.thingsboard.server.dao.AbstractJpaDaoTest;
+import org.thingsboard.server.dao.audit.AuditLogDao;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
 
 public class JpaAuditLogDaoTest extends AbstractJpaDaoTest {
+
+    @Autowired
+    private AuditLogDao auditLogDao;
+
+    @Test
+    public void testSaveAll() {
+        TenantId tenantId = new TenantId(Uuids.timeBased());
+        DeviceId deviceId = new DeviceId(Uuids.timeBased());
+        UserId userId = new UserId(Uuids.timeBased());
+        List<AuditLog> auditLogs = new ArrayList<>();
+        for (int i = 0; i < 2500; i++) {
+            AuditLog auditLog = new AuditLog(new AuditLogId(Uuids.timeBased()));
+            auditLog.setTenantId(tenantId);
+            auditLog.setEntityId(deviceId);
+            auditLog.setEntityName("Device " + i);
+            auditLog.setUserId(userId);
+            auditLog.setUserName("tenant@thingsboard.org");
+            auditLog.setActionType(ActionType.UPDATED);
+            auditLog.setActionStatus(ActionStatus.SUCCESS);
+            auditLog.setActionFailureDetails("");
+            auditLogs.add(auditLog);
+        }
+        auditLogDao.saveAll(auditLogs);
+
+        PageData<AuditLog> pageData = auditLogDao.findAuditLogsByTenantIdAndEntityId(tenantId.getId(), deviceId, null, new TimePageLink(10));
+        assertEquals(2500, pageData.getTotalElements());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSaveAllRejectsAuditLogWithoutId() {
+        AuditLog auditLog = new AuditLog();
+        auditLog.setTenantId(new TenantId(Uuids.timeBased()));
+        auditLog.setEntityId(new DeviceId(Uuids.timeBased()));
+        auditLog.setActionType(ActionType.UPDATED);
+        auditLog.setActionStatus(ActionStatus.SUCCESS);
+        auditLogDao.saveAll(Collections.singletonList(auditLog));
+    }
 }
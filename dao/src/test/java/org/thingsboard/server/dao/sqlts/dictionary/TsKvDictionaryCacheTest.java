@@ -0,0 +1,173 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sqlts.dictionary;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.thingsboard.server.dao.model.sqlts.dictionary.TsKvDictionary;
+import org.thingsboard.server.dao.sql.ScheduledLogExecutorComponent;
+import org.thingsboard.server.dao.sql.TbSqlBlockingQueueParams;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+@Slf4j
+public class TsKvDictionaryCacheTest {
+
+    private static final int KEYS = 10000;
+    private static final int THREADS = 32;
+    private static final long ROUND_TRIP_NANOS = TimeUnit.MICROSECONDS.toNanos(200);
+
+    private final Map<String, Integer> table = new ConcurrentHashMap<>();
+    private final AtomicInteger sequence = new AtomicInteger();
+    private final AtomicInteger roundTrips = new AtomicInteger();
+
+    private ScheduledLogExecutorComponent logExecutor;
+    private TsKvDictionaryCache cache;
+
+    @Before
+    public void before() {
+        logExecutor = new ScheduledLogExecutorComponent();
+        logExecutor.init();
+        cache = new TsKvDictionaryCache(TbSqlBlockingQueueParams.builder()
+                .logName("TS KV Dictionary Test")
+                .batchSize(1000)
+                .maxDelay(1)
+                .statsPrintIntervalMs(10000)
+                .build());
+        cache.init(logExecutor, this::saveOrFind);
+    }
+
+    @After
+    public void after() {
+        cache.destroy();
+        logExecutor.stop();
+    }
+
+    @Test
+    public void testPreloadedKeysAreServedWithoutRoundTrips() {
+        TsKvDictionary dictionary = new TsKvDictionary();
+        dictionary.setKey("temperature");
+        dictionary.setKeyId(42);
+        cache.load(Collections.singletonList(dictionary));
+
+        Assert.assertEquals(42, cache.getOrSaveKeyId("temperature").intValue());
+        Assert.assertEquals(0, roundTrips.get());
+    }
+
+    @Test
+    public void testConcurrentCallersShareKeyIds() throws Exception {
+        List<String> keys = newKeys("shared");
+        Map<String, Integer> seen = new ConcurrentHashMap<>();
+        long elapsed = runConcurrently(keys, key -> {
+            Integer keyId = cache.getOrSaveKeyId(key);
+            Integer previous = seen.putIfAbsent(key, keyId);
+            if (previous != null && !previous.equals(keyId)) {
+                throw new IllegalStateException("Different ids for key " + key);
+            }
+        });
+        Assert.assertEquals(KEYS, seen.size());
+        Assert.assertEquals(KEYS, table.size());
+        for (String key : keys) {
+            Assert.assertEquals(table.get(key), seen.get(key));
+        }
+        log.info("Resolved {} new keys from {} threads in {} ms using {} round trips", KEYS, THREADS, elapsed, roundTrips.get());
+        Assert.assertTrue(roundTrips.get() < KEYS / 10);
+    }
+
+    @Test
+    public void benchmarkAgainstGlobalLock() throws Exception {
+        ReentrantLock lock = new ReentrantLock();
+        Map<String, Integer> lockedMap = new ConcurrentHashMap<>();
+        long lockedElapsed = runConcurrently(newKeys("locked"), key -> {
+            if (lockedMap.get(key) == null) {
+                lock.lock();
+                try {
+                    if (lockedMap.get(key) == null) {
+                        lockedMap.put(key, saveOrFind(Collections.singletonList(key)).get(0).getKeyId());
+                    }
+                } finally {
+                    lock.unlock();
+                }
+            }
+        });
+        int lockedRoundTrips = roundTrips.getAndSet(0);
+
+        long cacheElapsed = runConcurrently(newKeys("batched"), cache::getOrSaveKeyId);
+        log.info("{} new keys across {} threads: global lock {} ms ({} round trips), batched cache {} ms ({} round trips)",
+                KEYS, THREADS, lockedElapsed, lockedRoundTrips, cacheElapsed, roundTrips.get());
+        Assert.assertTrue(cacheElapsed < lockedElapsed);
+    }
+
+    private List<String> newKeys(String prefix) {
+        List<String> keys = new ArrayList<>(KEYS);
+        for (int i = 0; i < KEYS; i++) {
+            keys.add(prefix + "_" + i);
+        }
+        return keys;
+    }
+
+    private long runConcurrently(List<String> keys, KeyConsumer consumer) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        long startTs = System.nanoTime();
+        for (int t = 0; t < THREADS; t++) {
+            int offset = t * (KEYS / THREADS);
+            futures.add(executor.submit(() -> {
+                // Every thread walks over all keys starting from its own offset, so most keys are requested concurrently.
+                for (int i = 0; i < keys.size(); i++) {
+                    consumer.accept(keys.get((offset + i) % keys.size()));
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTs);
+        executor.shutdownNow();
+        return elapsed;
+    }
+
+    private List<TsKvDictionary> saveOrFind(List<String> keys) {
+        roundTrips.incrementAndGet();
+        LockSupport.parkNanos(ROUND_TRIP_NANOS);
+        List<TsKvDictionary> result = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            TsKvDictionary dictionary = new TsKvDictionary();
+            dictionary.setKey(key);
+            dictionary.setKeyId(table.computeIfAbsent(key, k -> sequence.getAndIncrement()));
+            result.add(dictionary);
+        }
+        return result;
+    }
+
+    private interface KeyConsumer {
+        void accept(String key);
+    }
+}
@@ -0,0 +1,223 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.util;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.thingsboard.server.common.data.id.TenantId;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Slf4j
+public class AbstractBufferedRateExecutorTest {
+
+    private static final int CONCURRENCY_LIMIT = 4;
+    private static final long SERVICE_TIME_MS = 2;
+
+    private ScheduledExecutorService database;
+    private TestBufferedRateExecutor executor;
+    private SimpleMeterRegistry meterRegistry;
+
+    @Before
+    public void before() {
+        meterRegistry = new SimpleMeterRegistry();
+        Metrics.globalRegistry.add(meterRegistry);
+        database = Executors.newScheduledThreadPool(CONCURRENCY_LIMIT * 2);
+        executor = new TestBufferedRateExecutor(100000, CONCURRENCY_LIMIT, 60000, 1);
+    }
+
+    @After
+    public void after() {
+        executor.stop();
+        database.shutdownNow();
+        Metrics.globalRegistry.remove(meterRegistry);
+    }
+
+    @Test
+    public void testConcurrencyLimitIsRespected() throws Exception {
+        TenantId tenantId = new TenantId(UUID.randomUUID());
+        List<ListenableFuture<Long>> futures = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            futures.add(executor.submit(new TestTask(tenantId)));
+        }
+        for (ListenableFuture<Long> future : futures) {
+            future.get(10, TimeUnit.SECONDS);
+        }
+        Assert.assertTrue(executor.maxConcurrency.get() <= CONCURRENCY_LIMIT);
+        Assert.assertEquals(0, executor.concurrencyLevel.get());
+        Assert.assertEquals(0, executor.getQueueSize());
+    }
+
+    @Test
+    public void testQueueLimitRejectsTasks() throws Exception {
+        executor.stop();
+        executor = new TestBufferedRateExecutor(10, 1, 60000, 1);
+        TenantId tenantId = new TenantId(UUID.randomUUID());
+        List<ListenableFuture<Long>> futures = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            futures.add(executor.submit(new TestTask(tenantId)));
+        }
+        int rejected = 0;
+        for (ListenableFuture<Long> future : futures) {
+            try {
+                future.get(10, TimeUnit.SECONDS);
+            } catch (ExecutionException e) {
+                Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+                rejected++;
+            }
+        }
+        Assert.assertTrue(rejected > 0);
+    }
+
+    @Test
+    public void testQuietTenantsLatencyIsBoundedWithHotTenant() throws Exception {
+        TenantId hotTenant = new TenantId(UUID.randomUUID());
+        int hotTasks = 5000;
+        List<ListenableFuture<Long>> hotFutures = new ArrayList<>(hotTasks);
+        for (int i = 0; i < hotTasks; i++) {
+            hotFutures.add(executor.submit(new TestTask(hotTenant)));
+        }
+
+        int quietTenants = 50;
+        List<ListenableFuture<Long>> quietFutures = new ArrayList<>();
+        for (int round = 0; round < 5; round++) {
+            for (int i = 0; i < quietTenants; i++) {
+                quietFutures.add(executor.submit(new TestTask(new TenantId(UUID.randomUUID()))));
+            }
+            Thread.sleep(20);
+        }
+        long quietMaxLatency = 0;
+        for (ListenableFuture<Long> future : quietFutures) {
+            quietMaxLatency = Math.max(quietMaxLatency, future.get(60, TimeUnit.SECONDS));
+        }
+        long hotMaxLatency = 0;
+        for (ListenableFuture<Long> future : hotFutures) {
+            hotMaxLatency = Math.max(hotMaxLatency, future.get(60, TimeUnit.SECONDS));
+        }
+        log.info("Hot tenant max latency {} ms, quiet tenants max latency {} ms", hotMaxLatency, quietMaxLatency);
+
+        // With a single FIFO queue quiet tasks would wait for the whole backlog of the hot tenant.
+        long hotBacklogTime = hotTasks * SERVICE_TIME_MS / CONCURRENCY_LIMIT;
+        Assert.assertTrue(quietMaxLatency < hotBacklogTime / 4);
+        Assert.assertTrue(hotMaxLatency >= hotBacklogTime / 2);
+
+        Timer hotWaitTimer = meterRegistry.get("nosql.tenant.wait").tag("tenantId", hotTenant.getId().toString()).timer();
+        Assert.assertEquals(hotTasks, hotWaitTimer.count());
+        Assert.assertEquals(0, meterRegistry.get("nosql.tenant.queue.size").tag("tenantId", hotTenant.getId().toString()).gauge().value(), 0);
+        Assert.assertEquals(1 + quietTenants * 5, meterRegistry.get("nosql.tenant.wait").timers().size());
+    }
+
+    @Test
+    public void testQueuedTasksFailWhenStopped() throws Exception {
+        executor.stop();
+        executor = new TestBufferedRateExecutor(200000, 1, 60000, 1);
+        CountDownLatch started = new CountDownLatch(1);
+        executor.blocker = started;
+        TenantId tenantId = new TenantId(UUID.randomUUID());
+        ListenableFuture<Long> blocked = executor.submit(new TestTask(tenantId));
+        Assert.assertTrue(started.await(10, TimeUnit.SECONDS));
+
+        int queued = 100000;
+        List<ListenableFuture<Long>> futures = new ArrayList<>(queued);
+        for (int i = 0; i < queued; i++) {
+            futures.add(executor.submit(new TestTask(tenantId)));
+        }
+        Assert.assertEquals(queued, executor.getQueueSize());
+        executor.stop();
+
+        try {
+            blocked.get(10, TimeUnit.SECONDS);
+            Assert.fail("Blocked task should fail");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        for (ListenableFuture<Long> future : futures) {
+            try {
+                future.get(10, TimeUnit.SECONDS);
+                Assert.fail("Queued task should fail");
+            } catch (ExecutionException e) {
+                Assert.assertTrue(e.getCause() instanceof RejectedExecutionException);
+            }
+        }
+        Assert.assertEquals(0, executor.getQueueSize());
+        Assert.assertEquals(0, executor.concurrencyLevel.get());
+    }
+
+    @Data
+    private static class TestTask implements AsyncTask {
+        private final TenantId tenantId;
+        private final long createTime = System.currentTimeMillis();
+    }
+
+    private class TestBufferedRateExecutor extends AbstractBufferedRateExecutor<TestTask, ListenableFuture<Long>, Long> {
+
+        private final AtomicInteger running = new AtomicInteger();
+        private final AtomicInteger maxConcurrency = new AtomicInteger();
+        private volatile CountDownLatch blocker;
+
+        TestBufferedRateExecutor(int queueLimit, int concurrencyLimit, long maxWaitTime, int tenantQuantum) {
+            super(queueLimit, concurrencyLimit, maxWaitTime, 2, 2, tenantQuantum, false, null, 0);
+        }
+
+        @Override
+        protected SettableFuture<Long> create() {
+            return SettableFuture.create();
+        }
+
+        @Override
+        protected ListenableFuture<Long> wrap(TestTask task, SettableFuture<Long> future) {
+            return future;
+        }
+
+        @Override
+        protected ListenableFuture<Long> execute(AsyncTaskContext<TestTask, Long> taskCtx) {
+            if (blocker != null) {
+                // Holds the only permit until the dispatcher is shut down and interrupts the launching thread.
+                blocker.countDown();
+                try {
+                    new CountDownLatch(1).await();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException("Interrupted", e);
+                }
+            }
+            maxConcurrency.accumulateAndGet(running.incrementAndGet(), Math::max);
+            SettableFuture<Long> result = SettableFuture.create();
+            database.schedule(() -> {
+                running.decrementAndGet();
+                result.set(System.currentTimeMillis() - taskCtx.getTask().getCreateTime());
+            }, SERVICE_TIME_MS, TimeUnit.MILLISECONDS);
+            return result;
+        }
+    }
+}
@@ -18,6 +18,7 @@
 const COMPILATION_ERROR = 0;
 const RUNTIME_ERROR = 1;
 const TIMEOUT_ERROR = 2;
+const NOT_FOUND_ERROR = 3;
 const UNRECOGNIZED = -1;
 
 const config = require('config'),
@@ -56,6 +57,8 @@ JsInvokeMessageProcessor.prototype.onJsInvokeMessage = function(message) {
             this.processCompileRequest(requestId, responseTopic, headers, request.compileRequest);
         } else if (request.invokeRequest) {
             this.processInvokeRequest(requestId, responseTopic, headers, request.invokeRequest);
+        } else if (request.invokeBatchRequest) {
+            this.processInvokeBatchRequest(requestId, responseTopic, headers, request.invokeBatchRequest);
         } else if (request.releaseRequest) {
             this.processReleaseRequest(requestId, responseTopic, headers, request.releaseRequest);
         } else {
@@ -74,7 +77,7 @@ JsInvokeMessageProcessor.prototype.processCompileRequest = function(requestId, r
 
     this.executor.compileScript(compileRequest.scriptBody).then(
         (script) => {
-            this.cacheScript(scriptId, script);
+            this.cacheScript(getScriptKey(compileRequest), script);
             var compileResponse = createCompileResponse(scriptId, true);
             logger.debug('[%s] Sending success compile response, scriptId: [%s]', requestId, scriptId);
             this.sendResponse(requestId, responseTopic, headers, scriptId, compileResponse);
@@ -88,53 +91,82 @@ JsInvokeMessageProcessor.prototype.processCompileRequest = function(requestId, r
 }
 
 JsInvokeMessageProcessor.prototype.processInvokeRequest = function(requestId, responseTopic, headers, invokeRequest) {
+    var scriptId = getScriptId(invokeRequest);
+    this.invokeScript(requestId, invokeRequest).then(
+        (invokeResponse) => {
+            this.sendResponse(requestId, responseTopic, headers, scriptId, null, invokeResponse);
+        }
+    );
+}
+
+JsInvokeMessageProcessor.prototype.processInvokeBatchRequest = function(requestId, responseTopic, headers, invokeBatchRequest) {
+    var invokeRequests = invokeBatchRequest.invokeRequests || [];
+    logger.debug('[%s] Processing invoke batch request, size: [%s]', requestId, invokeRequests.length);
+    var key = invokeRequests.length ? getScriptKey(invokeRequests[0]) : '';
+    Promise.all(invokeRequests.map((invokeRequest) => this.invokeScript(requestId, invokeRequest))).then(
+        (invokeResponses) => {
+            var remoteResponse = createRemoteResponse(requestId);
+            remoteResponse.invokeBatchResponse = {
+                invokeResponses: invokeResponses
+            };
+            this.sendRemoteResponse(requestId, responseTopic, headers, key, remoteResponse);
+        }
+    );
+}
+
+JsInvokeMessageProcessor.prototype.invokeScript = function(requestId, invokeRequest) {
     var scriptId = getScriptId(invokeRequest);
     logger.debug('[%s] Processing invoke request, scriptId: [%s]', requestId, scriptId);
     this.executedScriptsCounter++;
     if ( this.executedScriptsCounter >= scriptBodyTraceFrequency ) {
         this.executedScriptsCounter = 0;
         if (logger.levels[logger.level] >= logger.levels['debug']) {
-            logger.debug('[%s] Executing script body: [%s]', scriptId, invokeRequest.scriptBody);
+            logger.debug('[%s] Executing script, hash: [%s]', scriptId, invokeRequest.scriptHash);
         }
     }
-    this.getOrCompileScript(scriptId, invokeRequest.scriptBody).then(
-        (script) => {
-            this.executor.executeScript(script, invokeRequest.args, invokeRequest.timeout).then(
-                (result) => {
-                    var invokeResponse = createInvokeResponse(result, true);
-                    logger.debug('[%s] Sending success invoke response, scriptId: [%s]', requestId, scriptId);
-                    this.sendResponse(requestId, responseTopic, headers, scriptId, null, invokeResponse);
-                },
-                (err) => {
-                    var errorCode;
-                    if (err.message.includes('Script execution timed out')) {
-                        errorCode = TIMEOUT_ERROR;
-                    } else {
-                        errorCode = RUNTIME_ERROR;
-                    }
-                    var invokeResponse = createInvokeResponse("", false, errorCode, err);
-                    logger.debug('[%s] Sending failed invoke response, scriptId: [%s], errorCode: [%s]', requestId, scriptId, errorCode);
-                    this.sendResponse(requestId, responseTopic, headers, scriptId, null, invokeResponse);
+    return new Promise((resolve) => {
+        this.getOrCompileScript(getScriptKey(invokeRequest), invokeRequest.scriptBody).then(
+            (script) => {
+                if (!script) {
+                    logger.debug('[%s] Script is not compiled, scriptId: [%s], hash: [%s]', requestId, scriptId, invokeRequest.scriptHash);
+                    resolve(createInvokeResponse("", false, NOT_FOUND_ERROR, null));
+                    return;
                 }
-            )
-        },
-        (err) => {
-            var invokeResponse = createInvokeResponse("", false, COMPILATION_ERROR, err);
-            logger.debug('[%s] Sending failed invoke response, scriptId: [%s], errorCode: [%s]', requestId, scriptId, COMPILATION_ERROR);
-            this.sendResponse(requestId, responseTopic, headers, scriptId, null, invokeResponse);
-        }
-    );
+                this.executor.executeScript(script, invokeRequest.args, invokeRequest.timeout).then(
+                    (result) => {
+                        logger.debug('[%s] Sending success invoke response, scriptId: [%s]', requestId, scriptId);
+                        resolve(createInvokeResponse(result, true));
+                    },
+                    (err) => {
+                        var errorCode;
+                        if (err.message.includes('Script execution timed out')) {
+                            errorCode = TIMEOUT_ERROR;
+                        } else {
+                            errorCode = RUNTIME_ERROR;
+                        }
+                        logger.debug('[%s] Sending failed invoke response, scriptId: [%s], errorCode: [%s]', requestId, scriptId, errorCode);
+                        resolve(createInvokeResponse("", false, errorCode, err));
+                    }
+                )
+            },
+            (err) => {
+                logger.debug('[%s] Sending failed invoke response, scriptId: [%s], errorCode: [%s]', requestId, scriptId, COMPILATION_ERROR);
+                resolve(createInvokeResponse("", false, COMPILATION_ERROR, err));
+            }
+        );
+    });
 }
 
 JsInvokeMessageProcessor.prototype.processReleaseRequest = function(requestId, responseTopic, headers, releaseRequest) {
     var scriptId = getScriptId(releaseRequest);
+    var scriptKey = getScriptKey(releaseRequest);
     logger.debug('[%s] Processing release request, scriptId: [%s]', requestId, scriptId);
-    if (this.scriptMap[scriptId]) {
-        var index = this.scriptIds.indexOf(scriptId);
+    if (this.scriptMap[scriptKey]) {
+        var index = this.scriptIds.indexOf(scriptKey);
         if (index > -1) {
             this.scriptIds.splice(index, 1);
         }
-        delete this.scriptMap[scriptId];
+        delete this.scriptMap[scriptKey];
     }
     var releaseResponse = createReleaseResponse(scriptId, true);
     logger.debug('[%s] Sending success release response, scriptId: [%s]', requestId, scriptId);
@@ -143,8 +175,12 @@ JsInvokeMessageProcessor.prototype.processReleaseRequest = function(requestId, r
 
 JsInvokeMessageProcessor.prototype.sendResponse = function (requestId, responseTopic, headers, scriptId, compileResponse, invokeResponse, releaseResponse) {
     var remoteResponse = createRemoteResponse(requestId, compileResponse, invokeResponse, releaseResponse);
+    this.sendRemoteResponse(requestId, responseTopic, headers, scriptId, remoteResponse);
+}
+
+JsInvokeMessageProcessor.prototype.sendRemoteResponse = function (requestId, responseTopic, headers, key, remoteResponse) {
     var rawResponse = Buffer.from(JSON.stringify(remoteResponse), 'utf8');
-    this.producer.send(responseTopic, scriptId, rawResponse, headers).then(
+    this.producer.send(responseTopic, key, rawResponse, headers).then(
         () => {},
         (err) => {
             if (err) {
@@ -160,6 +196,8 @@ JsInvokeMessageProcessor.prototype.getOrCompileScript = function(scriptId, scrip
     return new Promise(function(resolve, reject) {
         if (self.scriptMap[scriptId]) {
             resolve(self.scriptMap[scriptId]);
+        } else if (!scriptBody) {
+            resolve(null);
         } else {
             self.executor.compileScript(scriptBody).then(
                 (script) => {
@@ -251,4 +289,8 @@ function getScriptId(request) {
     return Utils.toUUIDString(request.scriptIdMSB, request.scriptIdLSB);
 }
 
+function getScriptKey(request) {
+    return request.scriptHash ? request.scriptHash : getScriptId(request);
+}
+
 module.exports = JsInvokeMessageProcessor;
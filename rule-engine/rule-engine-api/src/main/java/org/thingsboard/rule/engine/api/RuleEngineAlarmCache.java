@@ -0,0 +1,43 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.rule.engine.api;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import org.thingsboard.server.common.data.alarm.Alarm;
+import org.thingsboard.server.common.data.id.EntityId;
+import org.thingsboard.server.common.data.id.TenantId;
+
+/**
+ * Latest alarm of each originator and alarm type, shared by the alarm rule nodes of this server.
+ * <p>
+ * Only originators of the rule engine partitions that belong to this server are cached. The cache is filled on demand
+ * and kept up to date by the alarm rule nodes, which have to report every alarm they create, update or clear.
+ * Every other change made through the alarm service evicts the entry, either directly or, when the originator
+ * belongs to another server, via a component lifecycle notification.
+ */
+public interface RuleEngineAlarmCache {
+
+    /**
+     * @return copy of the latest alarm of the originator with the given type, or null if there is no such alarm.
+     */
+    ListenableFuture<Alarm> findLatestByOriginatorAndType(TenantId tenantId, EntityId originator, String type);
+
+    /**
+     * Has to be called with the saved alarm after a rule node created, updated or cleared it.
+     */
+    void onAlarmSaved(TenantId tenantId, Alarm alarm);
+
+}
@@ -57,4 +57,11 @@ public @interface RuleNode {
 
     boolean customRelations() default false;
 
+    /**
+     * Marks rule nodes that keep no state between messages.
+     * Such nodes may be processed by several actor instances in parallel,
+     * messages are distributed between the instances by originator.
+     */
+    boolean parallelizable() default false;
+
 }
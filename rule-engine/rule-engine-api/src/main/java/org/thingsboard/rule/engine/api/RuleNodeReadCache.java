@@ -0,0 +1,51 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.rule.engine.api;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import org.thingsboard.server.common.data.id.EntityId;
+
+import java.util.function.Supplier;
+
+/**
+ * Read-through cache for the lookups of a rule node instance.
+ * <p>
+ * Concurrent lookups of the same entity and key share a single call of the loader. If the cache was created with
+ * a positive TTL, successful results are also kept for that long after they are loaded. Cached results of an entity
+ * are dropped as soon as telemetry or attributes of the entity are saved through this server.
+ * Failed lookups are never cached.
+ */
+public interface RuleNodeReadCache<V> {
+
+    /**
+     * @param key identifies the lookup within the entity and has to implement equals and hashCode.
+     * @return the cached or in-flight result of the lookup, or the result of the loader if there is none.
+     */
+    ListenableFuture<V> get(EntityId entityId, Object key, Supplier<ListenableFuture<V>> loader);
+
+    /**
+     * @return number of lookups served from the cache or joined to a lookup in flight.
+     */
+    long getHitCount();
+
+    /**
+     * @return number of lookups passed to the loader.
+     */
+    long getMissCount();
+
+    void destroy();
+
+}
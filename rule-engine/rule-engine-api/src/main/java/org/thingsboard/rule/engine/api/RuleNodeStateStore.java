@@ -0,0 +1,73 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.rule.engine.api;
+
+import com.google.common.util.concurrent.AsyncFunction;
+import com.google.common.util.concurrent.ListenableFuture;
+import org.thingsboard.server.common.data.id.EntityId;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Per-entity state of a rule node.
+ * <p>
+ * States are kept in a bounded in-memory cache. The states of the entities that belong to this instance are preloaded
+ * when the partitions are assigned, others are loaded asynchronously on a miss.
+ * Changed states are written behind in batches, so the state survives restarts and partition moves.
+ * States are removed when the rule node is deleted.
+ * <p>
+ * State objects may be mutated in place, but every change has to be followed by {@link #put(EntityId, Object)}.
+ */
+public interface RuleNodeStateStore<S> {
+
+    /**
+     * @return the state of the entity or a future of {@code null} if no state was stored yet.
+     */
+    ListenableFuture<S> get(EntityId entityId);
+
+    /**
+     * Passes the state of the entity, or {@code null} if no state was stored yet, to the processor.
+     * Unlike {@link #get(EntityId)}, the processor is called only after the processors of the earlier calls
+     * for the same entity have completed, so messages of the same originator are processed in order.
+     * The processor is called on the calling thread if the state is cached and nothing is pending for the entity,
+     * otherwise on the executor. Calls for the same entity are expected from a single thread.
+     */
+    ListenableFuture<Void> process(EntityId entityId, AsyncFunction<S, Void> processor, Executor executor);
+
+    /**
+     * Stores the initial state of the entity unless another one was stored concurrently.
+     *
+     * @return the state that is stored for the entity.
+     */
+    S putIfAbsent(EntityId entityId, S state);
+
+    /**
+     * Marks the state as changed. The state is persisted with the next batch.
+     */
+    void put(EntityId entityId, S state);
+
+    /**
+     * Persists changed states, evicts the states of entities that no longer belong to this instance
+     * and preloads the states of the entities that belong to it now.
+     */
+    void onPartitionChange();
+
+    /**
+     * Persists changed states and releases the store. The states are removed instead if the rule node was deleted.
+     */
+    void destroy();
+
+}
@@ -171,6 +171,8 @@ public interface TbContext {
 
     AlarmService getAlarmService();
 
+    RuleEngineAlarmCache getAlarmCache();
+
     RuleChainService getRuleChainService();
 
     RuleEngineRpcService getRpcService();
@@ -212,4 +214,15 @@ public interface TbContext {
     @Deprecated
     RedisTemplate<String, Object> getRedisTemplate();
 
+    /**
+     * Creates the per-entity state store of this rule node instance. The store has to be destroyed with the node.
+     */
+    <S> RuleNodeStateStore<S> createStateStore(RuleNodeStateCodec<S> codec);
+
+    /**
+     * Creates the read cache of this rule node instance. A zero TTL only coalesces concurrent lookups.
+     * The cache has to be destroyed with the node.
+     */
+    <V> RuleNodeReadCache<V> createReadCache(long ttlMs);
+
 }
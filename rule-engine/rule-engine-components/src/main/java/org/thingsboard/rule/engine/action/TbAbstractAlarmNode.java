@@ -91,6 +91,12 @@ public abstract class TbAbstractAlarmNode<C extends TbAbstractAlarmNodeConfigura
         }
     }
 
+    protected Alarm saveAlarm(TbContext ctx, Alarm alarm) {
+        Alarm savedAlarm = ctx.getAlarmService().createOrUpdateAlarm(alarm);
+        ctx.getAlarmCache().onAlarmSaved(ctx.getTenantId(), savedAlarm);
+        return savedAlarm;
+    }
+
     private TbMsg toAlarmMsg(TbContext ctx, AlarmResult alarmResult, TbMsg originalMsg) {
         JsonNode jsonNodes = mapper.valueToTree(alarmResult.alarm);
         String data = jsonNodes.toString();
@@ -82,7 +82,7 @@ public class TbCreateAlarmNode extends TbAbstractAlarmNode<TbCreateAlarmNodeConf
             }
         }
 
-        ListenableFuture<Alarm> latest = ctx.getAlarmService().findLatestByOriginatorAndType(ctx.getTenantId(), msg.getOriginator(), alarmType);
+        ListenableFuture<Alarm> latest = ctx.getAlarmCache().findLatestByOriginatorAndType(ctx.getTenantId(), msg.getOriginator(), alarmType);
         return Futures.transformAsync(latest, existingAlarm -> {
             if (existingAlarm == null || existingAlarm.getStatus().isCleared()) {
                 return createNewAlarm(ctx, msg, msgAlarm);
@@ -119,7 +119,7 @@ public class TbCreateAlarmNode extends TbAbstractAlarmNode<TbCreateAlarmNodeConf
                     }, MoreExecutors.directExecutor());
         }
         ListenableFuture<Alarm> asyncCreated = Futures.transform(asyncAlarm,
-                alarm -> ctx.getAlarmService().createOrUpdateAlarm(alarm), ctx.getDbCallbackExecutor());
+                alarm -> saveAlarm(ctx, alarm), ctx.getDbCallbackExecutor());
         return Futures.transform(asyncCreated, alarm -> new AlarmResult(true, false, false, alarm), MoreExecutors.directExecutor());
     }
 
@@ -138,7 +138,7 @@ public class TbCreateAlarmNode extends TbAbstractAlarmNode<TbCreateAlarmNodeConf
             }
             existingAlarm.setDetails(details);
             existingAlarm.setEndTs(System.currentTimeMillis());
-            return ctx.getAlarmService().createOrUpdateAlarm(existingAlarm);
+            return saveAlarm(ctx, existingAlarm);
         }, ctx.getDbCallbackExecutor());
 
         return Futures.transform(asyncUpdated, a -> new AlarmResult(false, true, false, a), MoreExecutors.directExecutor());
@@ -16,20 +16,23 @@
 package org.thingsboard.rule.engine.action;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
 import lombok.extern.slf4j.Slf4j;
 import org.thingsboard.rule.engine.api.*;
 import org.thingsboard.rule.engine.api.util.TbNodeUtils;
+import org.thingsboard.server.common.data.id.EntityId;
 import org.thingsboard.server.common.data.plugin.ComponentType;
 import org.thingsboard.server.common.msg.TbMsg;
-import org.thingsboard.server.common.msg.TbMsgDataType;
 import org.thingsboard.server.common.msg.TbMsgMetaData;
 import org.thingsboard.server.common.msg.queue.ServiceQueue;
 import org.thingsboard.server.common.msg.session.SessionMsgType;
 
-import java.util.UUID;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicLong;
 
 import static org.thingsboard.rule.engine.api.TbRelationTypes.SUCCESS;
 
@@ -46,57 +49,111 @@ import static org.thingsboard.rule.engine.api.TbRelationTypes.SUCCESS;
 )
 public class TbMsgCountNode implements TbNode {
 
-    private static final String TB_MSG_COUNT_NODE_MSG = "TbMsgCountNodeMsg";
+    private static final String TB_MSG_COUNT_NODE_PARTIAL_MSG = "TbMsgCountNodePartialMsg";
+    private static final String TOTAL = "total";
+    private static final String TYPES = "types";
 
-    private AtomicLong messagesProcessed = new AtomicLong(0);
     private final Gson gson = new Gson();
-    private UUID nextTickId;
+    private final JsonParser parser = new JsonParser();
+    private TbMsgCountNodeConfiguration config;
+    private TbMsgCounter counter;
+    private TbMsgCounter clusterCounter;
+    private ScheduledFuture<?> tickFuture;
     private long delay;
     private String telemetryPrefix;
-    private long lastScheduledTs;
+    private long lastTickTs;
 
     @Override
     public void init(TbContext ctx, TbNodeConfiguration configuration) throws TbNodeException {
-        TbMsgCountNodeConfiguration config = TbNodeUtils.convert(configuration, TbMsgCountNodeConfiguration.class);
+        this.config = TbNodeUtils.convert(configuration, TbMsgCountNodeConfiguration.class);
         this.delay = TimeUnit.SECONDS.toMillis(config.getInterval());
         this.telemetryPrefix = config.getTelemetryPrefix();
-        scheduleTickMsg(ctx);
-
+        this.counter = new TbMsgCounter(config.isCountByMsgType(), config.isCountByOriginator());
+        this.clusterCounter = new TbMsgCounter(config.isCountByMsgType(), false);
+        this.lastTickTs = System.currentTimeMillis();
+        this.tickFuture = ctx.getSharedEventLoop().scheduleAtFixedRate(() -> onTick(ctx), delay, delay, TimeUnit.MILLISECONDS);
     }
 
     @Override
     public void onMsg(TbContext ctx, TbMsg msg) {
-        if (msg.getType().equals(TB_MSG_COUNT_NODE_MSG) && msg.getId().equals(nextTickId)) {
-            JsonObject telemetryJson = new JsonObject();
-            telemetryJson.addProperty(this.telemetryPrefix + "_" + ctx.getServiceId(), messagesProcessed.longValue());
-
-            messagesProcessed = new AtomicLong(0);
+        if (msg.getType().equals(TB_MSG_COUNT_NODE_PARTIAL_MSG) && ctx.getSelfId().equals(msg.getOriginator())) {
+            JsonObject partial = parser.parse(msg.getData()).getAsJsonObject();
+            Map<String, Long> typeCounts = new HashMap<>();
+            if (partial.has(TYPES)) {
+                for (Map.Entry<String, JsonElement> entry : partial.getAsJsonObject(TYPES).entrySet()) {
+                    typeCounts.put(entry.getKey(), entry.getValue().getAsLong());
+                }
+            }
+            clusterCounter.add(partial.get(TOTAL).getAsLong(), typeCounts);
+        } else {
+            counter.increment(msg.getType(), msg.getOriginator());
+        }
+        ctx.ack(msg);
+    }
 
+    private void onTick(TbContext ctx) {
+        try {
+            long curTs = System.currentTimeMillis();
             TbMsgMetaData metaData = new TbMsgMetaData();
-            metaData.putValue("delta", Long.toString(System.currentTimeMillis() - lastScheduledTs + delay));
+            metaData.putValue("delta", Long.toString(curTs - lastTickTs));
+            lastTickTs = curTs;
 
-            TbMsg tbMsg = TbMsg.newMsg(msg.getQueueName(), SessionMsgType.POST_TELEMETRY_REQUEST.name(), ctx.getTenantId(), metaData, gson.toJson(telemetryJson));
-            ctx.enqueueForTellNext(tbMsg, SUCCESS);
-            scheduleTickMsg(ctx);
-        } else {
-            messagesProcessed.incrementAndGet();
-            ctx.ack(msg);
+            TbMsgCounter.Snapshot snapshot = counter.snapshot();
+            if (config.isAggregateClusterWide()) {
+                sendPartial(ctx, snapshot);
+                TbMsgCounter.Snapshot clusterSnapshot = clusterCounter.snapshot();
+                // Only the owner of the rule node partition receives partial counts and reports the series.
+                if (clusterSnapshot.getTotal() != 0 || ctx.isLocalEntity(ctx.getSelfId())) {
+                    tellTelemetry(ctx, ctx.getTenantId(), metaData, toTelemetry(telemetryPrefix, clusterSnapshot));
+                }
+            } else {
+                tellTelemetry(ctx, ctx.getTenantId(), metaData, toTelemetry(telemetryPrefix + "_" + ctx.getServiceId(), snapshot));
+            }
+            for (Map.Entry<EntityId, Long> entry : snapshot.getByOriginator().entrySet()) {
+                JsonObject telemetryJson = new JsonObject();
+                telemetryJson.addProperty(telemetryPrefix, entry.getValue());
+                tellTelemetry(ctx, entry.getKey(), metaData, telemetryJson);
+            }
+        } catch (Throwable t) {
+            log.warn("[{}] Failed to report message count", ctx.getSelfId(), t);
         }
     }
 
-    private void scheduleTickMsg(TbContext ctx) {
-        long curTs = System.currentTimeMillis();
-        if (lastScheduledTs == 0L) {
-            lastScheduledTs = curTs;
+    private void sendPartial(TbContext ctx, TbMsgCounter.Snapshot snapshot) {
+        if (snapshot.getTotal() == 0) {
+            return;
         }
-        lastScheduledTs = lastScheduledTs + delay;
-        long curDelay = Math.max(0L, (lastScheduledTs - curTs));
-        TbMsg tickMsg = ctx.newMsg(ServiceQueue.MAIN, TB_MSG_COUNT_NODE_MSG, ctx.getSelfId(), new TbMsgMetaData(), "");
-        nextTickId = tickMsg.getId();
-        ctx.tellSelf(tickMsg, curDelay);
+        JsonObject partial = new JsonObject();
+        partial.addProperty(TOTAL, snapshot.getTotal());
+        if (!snapshot.getByType().isEmpty()) {
+            JsonObject types = new JsonObject();
+            snapshot.getByType().forEach(types::addProperty);
+            partial.add(TYPES, types);
+        }
+        TbMsg partialMsg = ctx.newMsg(ServiceQueue.MAIN, TB_MSG_COUNT_NODE_PARTIAL_MSG, ctx.getSelfId(), new TbMsgMetaData(), gson.toJson(partial));
+        ctx.enqueue(partialMsg, () -> {
+        }, t -> {
+            log.warn("[{}] Failed to push partial message count, will retry with the next one", ctx.getSelfId(), t);
+            counter.add(snapshot.getTotal(), snapshot.getByType());
+        });
+    }
+
+    private JsonObject toTelemetry(String key, TbMsgCounter.Snapshot snapshot) {
+        JsonObject telemetryJson = new JsonObject();
+        telemetryJson.addProperty(key, snapshot.getTotal());
+        snapshot.getByType().forEach((type, count) -> telemetryJson.addProperty(key + "_" + type, count));
+        return telemetryJson;
+    }
+
+    private void tellTelemetry(TbContext ctx, EntityId originator, TbMsgMetaData metaData, JsonObject telemetryJson) {
+        TbMsg tbMsg = TbMsg.newMsg(ServiceQueue.MAIN, SessionMsgType.POST_TELEMETRY_REQUEST.name(), originator, metaData, gson.toJson(telemetryJson));
+        ctx.enqueueForTellNext(tbMsg, SUCCESS);
     }
 
     @Override
     public void destroy() {
+        if (tickFuture != null) {
+            tickFuture.cancel(false);
+        }
     }
 }
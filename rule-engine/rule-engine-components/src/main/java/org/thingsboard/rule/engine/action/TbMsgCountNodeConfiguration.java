@@ -23,12 +23,16 @@ public class TbMsgCountNodeConfiguration implements NodeConfiguration<TbMsgCount
 
     private String telemetryPrefix;
     private int interval;
+    private boolean aggregateClusterWide;
+    private boolean countByMsgType;
+    private boolean countByOriginator;
 
     @Override
     public TbMsgCountNodeConfiguration defaultConfiguration() {
         TbMsgCountNodeConfiguration configuration = new TbMsgCountNodeConfiguration();
         configuration.setInterval(1);
         configuration.setTelemetryPrefix("messageCount");
+        configuration.setAggregateClusterWide(true);
         return configuration;
     }
 }
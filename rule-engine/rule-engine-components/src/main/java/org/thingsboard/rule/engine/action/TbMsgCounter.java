@@ -0,0 +1,141 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.rule.engine.action;
+
+import lombok.Getter;
+import org.thingsboard.server.common.data.id.EntityId;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Message counter with optional breakdowns by message type and by originator.
+ * <p>
+ * Counters are never reset. Each {@link #snapshot()} reports the difference to the previous one, so an increment
+ * that races with a snapshot is reported by the next one and every increment is reported exactly once.
+ * Increments may come from any thread, snapshots have to be taken by one thread at a time.
+ * Originators without messages since the previous snapshot are dropped, so the breakdown by originator is bounded
+ * by the originators that are active.
+ */
+public class TbMsgCounter {
+
+    private final Cell total = new Cell();
+    private final ConcurrentMap<String, Cell> byType;
+    private final ConcurrentMap<EntityId, Cell> byOriginator;
+
+    public TbMsgCounter(boolean countByType, boolean countByOriginator) {
+        this.byType = countByType ? new ConcurrentHashMap<>() : null;
+        this.byOriginator = countByOriginator ? new ConcurrentHashMap<>() : null;
+    }
+
+    public void increment(String type, EntityId originator) {
+        total.adder.increment();
+        if (byType != null) {
+            getCell(byType, type).adder.increment();
+        }
+        if (byOriginator != null) {
+            // Increments under the map lock of the key, so they never go to a cell that a snapshot has just dropped.
+            byOriginator.compute(originator, (key, cell) -> {
+                if (cell == null) {
+                    cell = new Cell();
+                }
+                cell.adder.increment();
+                return cell;
+            });
+        }
+    }
+
+    public void add(long count, Map<String, Long> typeCounts) {
+        total.adder.add(count);
+        if (byType != null && typeCounts != null) {
+            typeCounts.forEach((type, typeCount) -> getCell(byType, type).adder.add(typeCount));
+        }
+    }
+
+    public Snapshot snapshot() {
+        return new Snapshot(total.delta(), deltas(byType), evictingDeltas(byOriginator));
+    }
+
+    int getOriginatorCount() {
+        return byOriginator != null ? byOriginator.size() : 0;
+    }
+
+    private static <K> Cell getCell(ConcurrentMap<K, Cell> cells, K key) {
+        Cell cell = cells.get(key);
+        return cell != null ? cell : cells.computeIfAbsent(key, k -> new Cell());
+    }
+
+    private static <K> Map<K, Long> deltas(ConcurrentMap<K, Cell> cells) {
+        if (cells == null) {
+            return Collections.emptyMap();
+        }
+        Map<K, Long> result = new HashMap<>();
+        cells.forEach((key, cell) -> {
+            long delta = cell.delta();
+            if (delta != 0) {
+                result.put(key, delta);
+            }
+        });
+        return result;
+    }
+
+    private static <K> Map<K, Long> evictingDeltas(ConcurrentMap<K, Cell> cells) {
+        if (cells == null) {
+            return Collections.emptyMap();
+        }
+        Map<K, Long> result = new HashMap<>();
+        for (K key : cells.keySet()) {
+            cells.computeIfPresent(key, (k, cell) -> {
+                long delta = cell.delta();
+                if (delta == 0) {
+                    return null;
+                }
+                result.put(k, delta);
+                return cell;
+            });
+        }
+        return result;
+    }
+
+    private static class Cell {
+        private final LongAdder adder = new LongAdder();
+        private long reported;
+
+        private long delta() {
+            long sum = adder.sum();
+            long delta = sum - reported;
+            reported = sum;
+            return delta;
+        }
+    }
+
+    @Getter
+    public static class Snapshot {
+        private final long total;
+        private final Map<String, Long> byType;
+        private final Map<EntityId, Long> byOriginator;
+
+        private Snapshot(long total, Map<String, Long> byType, Map<EntityId, Long> byOriginator) {
+            this.total = total;
+            this.byType = byType;
+            this.byOriginator = byOriginator;
+        }
+    }
+}
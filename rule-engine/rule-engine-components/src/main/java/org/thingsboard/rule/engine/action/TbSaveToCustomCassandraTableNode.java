@@ -16,18 +16,18 @@
 package org.thingsboard.rule.engine.action;
 
 import com.datastax.oss.driver.api.core.ConsistencyLevel;
-import com.datastax.oss.driver.api.core.cql.AsyncResultSet;
+import com.datastax.oss.driver.api.core.cql.BatchStatement;
+import com.datastax.oss.driver.api.core.cql.BatchType;
+import com.datastax.oss.driver.api.core.cql.BatchableStatement;
 import com.datastax.oss.driver.api.core.cql.BoundStatement;
 import com.datastax.oss.driver.api.core.cql.BoundStatementBuilder;
 import com.datastax.oss.driver.api.core.cql.PreparedStatement;
 import com.datastax.oss.driver.api.core.cql.Statement;
-import com.google.common.base.Function;
-import com.google.common.util.concurrent.Futures;
-import com.google.common.util.concurrent.ListenableFuture;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 import com.google.gson.JsonPrimitive;
+import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
 import org.thingsboard.rule.engine.api.*;
 import org.thingsboard.rule.engine.api.util.TbNodeUtils;
@@ -38,12 +38,14 @@ import org.thingsboard.server.dao.cassandra.guava.GuavaSession;
 import org.thingsboard.server.dao.nosql.CassandraStatementTask;
 import org.thingsboard.server.dao.nosql.TbResultSetFuture;
 
-import javax.annotation.Nullable;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.thingsboard.common.util.DonAsynchron.withCallback;
@@ -59,7 +61,9 @@ import static org.thingsboard.common.util.DonAsynchron.withCallback;
                 "Administrator can configure the mapping between the Message field names and Table columns name.<br>" +
                 "<b>Note:</b>If the mapping key is <b>$entity_id</b>, that is identified by the Message Originator, then to the appropriate column name(mapping value) will be write the message originator id.<br><br>" +
                 "If specified message field does not exist or is not a JSON Primitive, the outbound message will be routed via <b>failure</b> chain," +
-                " otherwise, the message will be routed via <b>success</b> chain.",
+                " otherwise, the message will be routed via <b>success</b> chain.<br><br>" +
+                "If linger time is set, rows that belong to the same partition are collected during the linger time and written as a single unlogged batch." +
+                " Each message is still routed separately, based on the result of its own row.",
         uiResources = {"static/rulenode/rulenode-core-config.js"},
         configDirective = "tbActionNodeCustomTableConfig",
         icon = "file_upload")
@@ -74,9 +78,13 @@ public class TbSaveToCustomCassandraTableNode implements TbNode {
     private CassandraCluster cassandraCluster;
     private ConsistencyLevel defaultWriteLevel;
     private PreparedStatement saveStmt;
-    private ExecutorService readResultsProcessingExecutor;
     private Map<String, String> fieldsMap;
 
+    private TbContext ctx;
+    private final Object pendingWritesLock = new Object();
+    private Map<ByteBuffer, List<PendingWrite>> pendingWrites = new HashMap<>();
+    private ScheduledFuture<?> flushFuture;
+
     @Override
     public void init(TbContext ctx, TbNodeConfiguration configuration) throws TbNodeException {
         config = TbNodeUtils.convert(configuration, TbSaveToCustomCassandraTableNodeConfiguration.class);
@@ -84,30 +92,58 @@ public class TbSaveToCustomCassandraTableNode implements TbNode {
         if (cassandraCluster == null) {
             throw new RuntimeException("Unable to connect to Cassandra database");
         } else {
-            startExecutor();
+            this.ctx = ctx;
             saveStmt = getSaveStmt();
         }
     }
 
     @Override
     public void onMsg(TbContext ctx, TbMsg msg) {
-        withCallback(save(msg, ctx), aVoid -> ctx.tellSuccess(msg), e -> ctx.tellFailure(msg, e), ctx.getDbCallbackExecutor());
+        PendingWrite write = new PendingWrite(msg, bind(msg));
+        if (config.getLingerMs() <= 0 || config.getMaxBatchSize() <= 1) {
+            save(ctx, Collections.singletonList(write));
+            return;
+        }
+        ByteBuffer partitionKey = write.getStatement().getRoutingKey();
+        if (partitionKey == null) {
+            save(ctx, Collections.singletonList(write));
+            return;
+        }
+        List<PendingWrite> fullBatch = null;
+        synchronized (pendingWritesLock) {
+            List<PendingWrite> batch = pendingWrites.computeIfAbsent(partitionKey, key -> new ArrayList<>());
+            batch.add(write);
+            if (batch.size() >= config.getMaxBatchSize()) {
+                fullBatch = pendingWrites.remove(partitionKey);
+            }
+            if (flushFuture == null && !pendingWrites.isEmpty()) {
+                flushFuture = ctx.getSharedEventLoop().schedule(() -> flush(ctx), config.getLingerMs(), TimeUnit.MILLISECONDS);
+            }
+        }
+        if (fullBatch != null) {
+            save(ctx, fullBatch);
+        }
     }
 
     @Override
     public void destroy() {
-        stopExecutor();
+        if (ctx != null) {
+            flush(ctx);
+        }
         saveStmt = null;
     }
 
-    private void startExecutor() {
-        readResultsProcessingExecutor = Executors.newCachedThreadPool();
-    }
-
-    private void stopExecutor() {
-        if (readResultsProcessingExecutor != null) {
-            readResultsProcessingExecutor.shutdownNow();
+    private void flush(TbContext ctx) {
+        Map<ByteBuffer, List<PendingWrite>> writes;
+        synchronized (pendingWritesLock) {
+            if (flushFuture != null) {
+                flushFuture.cancel(false);
+                flushFuture = null;
+            }
+            writes = pendingWrites;
+            pendingWrites = new HashMap<>();
         }
+        writes.values().forEach(batch -> save(ctx, batch));
     }
 
     private PreparedStatement prepare(String query) {
@@ -161,7 +197,27 @@ public class TbSaveToCustomCassandraTableNode implements TbNode {
         return query.toString();
     }
 
-    private ListenableFuture<Void> save(TbMsg msg, TbContext ctx) {
+    private void save(TbContext ctx, List<PendingWrite> writes) {
+        if (writes.size() == 1) {
+            PendingWrite write = writes.get(0);
+            withCallback(executeAsyncWrite(ctx, write.getStatement()),
+                    rs -> ctx.tellSuccess(write.getMsg()),
+                    e -> ctx.tellFailure(write.getMsg(), e),
+                    ctx.getDbCallbackExecutor());
+        } else {
+            List<BatchableStatement<?>> statements = new ArrayList<>(writes.size());
+            writes.forEach(write -> statements.add(write.getStatement()));
+            withCallback(executeAsyncWrite(ctx, BatchStatement.newInstance(BatchType.UNLOGGED, statements)),
+                    rs -> writes.forEach(write -> ctx.tellSuccess(write.getMsg())),
+                    e -> {
+                        log.debug("Failed to save batch of {} rows, retrying rows one by one", writes.size(), e);
+                        writes.forEach(write -> save(ctx, Collections.singletonList(write)));
+                    },
+                    ctx.getDbCallbackExecutor());
+        }
+    }
+
+    private BoundStatement bind(TbMsg msg) {
         JsonElement data = parser.parse(msg.getData());
         if (!data.isJsonObject()) {
             throw new IllegalStateException("Invalid message structure, it is not a JSON Object:" + data);
@@ -192,7 +248,7 @@ public class TbSaveToCustomCassandraTableNode implements TbNode {
                 }
                 i.getAndIncrement();
             });
-            return getFuture(executeAsyncWrite(ctx, stmtBuilder.build()), rs -> null);
+            return stmtBuilder.build();
         }
     }
 
@@ -205,7 +261,7 @@ public class TbSaveToCustomCassandraTableNode implements TbNode {
             log.debug("Execute cassandra async statement {}", statementToString(statement));
         }
         if (statement.getConsistencyLevel() == null) {
-            statement.setConsistencyLevel(level);
+            statement = statement.setConsistencyLevel(level);
         }
         return ctx.submitCassandraTask(new CassandraStatementTask(ctx.getTenantId(), getSession(), statement));
     }
@@ -213,19 +269,18 @@ public class TbSaveToCustomCassandraTableNode implements TbNode {
     private static String statementToString(Statement statement) {
         if (statement instanceof BoundStatement) {
             return ((BoundStatement) statement).getPreparedStatement().getQuery();
+        } else if (statement instanceof BatchStatement) {
+            BatchStatement batch = (BatchStatement) statement;
+            return "BATCH of " + batch.size() + " statements: " + statementToString(batch.iterator().next());
         } else {
             return statement.toString();
         }
     }
 
-    private <T> ListenableFuture<T> getFuture(TbResultSetFuture future, java.util.function.Function<AsyncResultSet, T> transformer) {
-        return Futures.transform(future, new Function<AsyncResultSet, T>() {
-            @Nullable
-            @Override
-            public T apply(@Nullable AsyncResultSet input) {
-                return transformer.apply(input);
-            }
-        }, readResultsProcessingExecutor);
+    @Data
+    private static class PendingWrite {
+        private final TbMsg msg;
+        private final BoundStatement statement;
     }
 
 }
@@ -27,6 +27,8 @@ public class TbSaveToCustomCassandraTableNodeConfiguration implements NodeConfig
 
     private String tableName;
     private Map<String, String> fieldsMapping;
+    private int lingerMs;
+    private int maxBatchSize;
 
 
     @Override
@@ -36,6 +38,8 @@ public class TbSaveToCustomCassandraTableNodeConfiguration implements NodeConfig
         Map<String, String> map = new HashMap<>();
         map.put("", "");
         configuration.setFieldsMapping(map);
+        configuration.setLingerMs(20);
+        configuration.setMaxBatchSize(100);
         return configuration;
     }
 }
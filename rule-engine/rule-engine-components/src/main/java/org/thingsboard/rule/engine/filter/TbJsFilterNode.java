@@ -28,6 +28,7 @@ import static org.thingsboard.common.util.DonAsynchron.withCallback;
 @RuleNode(
         type = ComponentType.FILTER,
         name = "script", relationTypes = {"True", "False"},
+        parallelizable = true,
         configClazz = TbJsFilterNodeConfiguration.class,
         nodeDescription = "Filter incoming messages using JS script",
         nodeDetails = "Evaluate incoming Message with configured JS condition. " +
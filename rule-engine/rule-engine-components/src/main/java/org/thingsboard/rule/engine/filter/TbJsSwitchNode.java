@@ -31,6 +31,7 @@ import static org.thingsboard.common.util.DonAsynchron.withCallback;
         type = ComponentType.FILTER,
         name = "switch", customRelations = true,
         relationTypes = {},
+        parallelizable = true,
         configClazz = TbJsSwitchNodeConfiguration.class,
         nodeDescription = "Route incoming Message to one or multiple output chains",
         nodeDetails = "Node executes configured JS script. Script should return array of next Chain names where Message should be routed. " +
@@ -15,6 +15,8 @@
  */
 package org.thingsboard.rule.engine.geo;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
@@ -33,51 +35,58 @@ import java.util.List;
 
 public abstract class AbstractGeofencingNode<T extends TbGpsGeofencingFilterNodeConfiguration> implements TbNode {
 
+    private static final int MAX_CACHED_PERIMETERS = 1000;
+
     protected T config;
     protected JtsSpatialContext jtsCtx;
 
+    private final JsonParser parser = new JsonParser();
+    private CompiledPerimeter configPerimeter;
+    private Cache<String, CompiledPerimeter> metadataPerimeters;
+
     @Override
     public void init(TbContext ctx, TbNodeConfiguration configuration) throws TbNodeException {
         this.config = TbNodeUtils.convert(configuration, getConfigClazz());
         JtsSpatialContextFactory factory = new JtsSpatialContextFactory();
         factory.normWrapLongitude = true;
         jtsCtx = factory.newSpatialContext();
+        if (config.isFetchPerimeterInfoFromMessageMetadata()) {
+            metadataPerimeters = CacheBuilder.newBuilder().maximumSize(MAX_CACHED_PERIMETERS).build();
+        } else {
+            configPerimeter = CompiledPerimeter.compile(getConfigPerimeter());
+        }
     }
 
     abstract protected Class<T> getConfigClazz();
 
     protected boolean checkMatches(TbMsg msg) throws TbNodeException {
-        JsonElement msgDataElement = new JsonParser().parse(msg.getData());
+        JsonElement msgDataElement = parser.parse(msg.getData());
         if (!msgDataElement.isJsonObject()) {
             throw new TbNodeException("Incoming Message is not a valid JSON object");
         }
         JsonObject msgDataObj = msgDataElement.getAsJsonObject();
         double latitude = getValueFromMessageByName(msg, msgDataObj, config.getLatitudeKeyName());
         double longitude = getValueFromMessageByName(msg, msgDataObj, config.getLongitudeKeyName());
-        List<Perimeter> perimeters = getPerimeters(msg, msgDataObj);
-        boolean matches = false;
-        for (Perimeter perimeter : perimeters) {
-            if (checkMatches(perimeter, latitude, longitude)) {
-                matches = true;
-                break;
-            }
-        }
-        return matches;
+        return getCompiledPerimeter(msg).contains(latitude, longitude);
     }
 
-    protected boolean checkMatches(Perimeter perimeter, double latitude, double longitude) throws TbNodeException {
-        if (perimeter.getPerimeterType() == PerimeterType.CIRCLE) {
-            Coordinates entityCoordinates = new Coordinates(latitude, longitude);
-            Coordinates perimeterCoordinates = new Coordinates(perimeter.getCenterLatitude(), perimeter.getCenterLongitude());
-            return perimeter.getRange() > GeoUtil.distance(entityCoordinates, perimeterCoordinates, perimeter.getRangeUnit());
-        } else if (perimeter.getPerimeterType() == PerimeterType.POLYGON) {
-            return GeoUtil.contains(perimeter.getPolygonsDefinition(), new Coordinates(latitude, longitude));
-        } else {
-            throw new TbNodeException("Unsupported perimeter type: " + perimeter.getPerimeterType());
+    private CompiledPerimeter getCompiledPerimeter(TbMsg msg) throws TbNodeException {
+        if (configPerimeter != null) {
+            return configPerimeter;
+        }
+        String polygonsDefinition = msg.getMetaData().getValue("perimeter");
+        if (StringUtils.isEmpty(polygonsDefinition)) {
+            return CompiledPerimeter.compile(getPerimeters(msg).get(0));
         }
+        CompiledPerimeter perimeter = metadataPerimeters.getIfPresent(polygonsDefinition);
+        if (perimeter == null) {
+            perimeter = CompiledPerimeter.compilePolygons(polygonsDefinition);
+            metadataPerimeters.put(polygonsDefinition, perimeter);
+        }
+        return perimeter;
     }
 
-    protected List<Perimeter> getPerimeters(TbMsg msg, JsonObject msgDataObj) throws TbNodeException {
+    protected List<Perimeter> getPerimeters(TbMsg msg) throws TbNodeException {
         if (config.isFetchPerimeterInfoFromMessageMetadata()) {
             //TODO: add fetching perimeters from the message itself, if configuration is empty.
             if (!StringUtils.isEmpty(msg.getMetaData().getValue("perimeter"))) {
@@ -97,18 +106,22 @@ public abstract class AbstractGeofencingNode<T extends TbGpsGeofencingFilterNode
                 throw new TbNodeException("Missing perimeter definition!");
             }
         } else {
-            Perimeter perimeter = new Perimeter();
-            perimeter.setPerimeterType(config.getPerimeterType());
-            perimeter.setCenterLatitude(config.getCenterLatitude());
-            perimeter.setCenterLongitude(config.getCenterLongitude());
-            perimeter.setRange(config.getRange());
-            perimeter.setRangeUnit(config.getRangeUnit());
-            perimeter.setPolygonsDefinition(config.getPolygonsDefinition());
-            return Collections.singletonList(perimeter);
+            return Collections.singletonList(getConfigPerimeter());
         }
     }
 
-    protected Double getValueFromMessageByName(TbMsg msg, JsonObject msgDataObj, String keyName) throws TbNodeException {
+    private Perimeter getConfigPerimeter() {
+        Perimeter perimeter = new Perimeter();
+        perimeter.setPerimeterType(config.getPerimeterType());
+        perimeter.setCenterLatitude(config.getCenterLatitude());
+        perimeter.setCenterLongitude(config.getCenterLongitude());
+        perimeter.setRange(config.getRange());
+        perimeter.setRangeUnit(config.getRangeUnit());
+        perimeter.setPolygonsDefinition(config.getPolygonsDefinition());
+        return perimeter;
+    }
+
+    protected double getValueFromMessageByName(TbMsg msg, JsonObject msgDataObj, String keyName) throws TbNodeException {
         double value;
         if (msgDataObj.has(keyName) && msgDataObj.get(keyName).isJsonPrimitive()) {
             value = msgDataObj.get(keyName).getAsDouble();
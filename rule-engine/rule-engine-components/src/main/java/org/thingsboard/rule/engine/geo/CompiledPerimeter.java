@@ -0,0 +1,152 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.rule.engine.geo;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.index.strtree.AbstractNode;
+import org.locationtech.jts.index.strtree.Boundable;
+import org.locationtech.jts.index.strtree.ItemBoundable;
+import org.locationtech.jts.index.strtree.STRtree;
+import org.locationtech.spatial4j.shape.Rectangle;
+import org.locationtech.spatial4j.shape.Shape;
+import org.thingsboard.rule.engine.api.TbNodeException;
+
+/**
+ * {@link Perimeter} with its geometry built once. Instances are immutable and are evaluated concurrently without locking.
+ * <p>
+ * A polygons definition is either a single polygon, i.e. an array of [latitude, longitude] pairs,
+ * or an array of such polygons. Multiple polygons are looked up through an R-tree of their bounding boxes.
+ */
+public abstract class CompiledPerimeter {
+
+    public abstract boolean contains(double latitude, double longitude);
+
+    public static CompiledPerimeter compile(Perimeter perimeter) throws TbNodeException {
+        if (perimeter.getPerimeterType() == PerimeterType.CIRCLE) {
+            if (perimeter.getCenterLatitude() == null || perimeter.getCenterLongitude() == null
+                    || perimeter.getRange() == null || perimeter.getRangeUnit() == null) {
+                throw new TbNodeException("Missing circle perimeter definition!");
+            }
+            return new Circle(new Coordinates(perimeter.getCenterLatitude(), perimeter.getCenterLongitude()),
+                    perimeter.getRange(), perimeter.getRangeUnit());
+        } else if (perimeter.getPerimeterType() == PerimeterType.POLYGON) {
+            return compilePolygons(perimeter.getPolygonsDefinition());
+        } else {
+            throw new TbNodeException("Unsupported perimeter type: " + perimeter.getPerimeterType());
+        }
+    }
+
+    public static CompiledPerimeter compilePolygons(String polygonsDefinition) throws TbNodeException {
+        JsonArray polygonsArray;
+        try {
+            polygonsArray = new JsonParser().parse(polygonsDefinition).getAsJsonArray();
+        } catch (RuntimeException e) {
+            throw new TbNodeException("Invalid polygons definition: " + polygonsDefinition);
+        }
+        if (polygonsArray.size() == 0) {
+            throw new TbNodeException("Empty polygons definition!");
+        }
+        if (!isMultiPolygon(polygonsArray)) {
+            return new Polygon(GeoUtil.buildPolygon(polygonsArray));
+        }
+        STRtree index = new STRtree();
+        for (JsonElement polygon : polygonsArray) {
+            Shape shape = GeoUtil.buildPolygon(polygon.getAsJsonArray());
+            Rectangle bbox = shape.getBoundingBox();
+            if (bbox.getCrossesDateLine()) {
+                index.insert(new Envelope(bbox.getMinX(), 180, bbox.getMinY(), bbox.getMaxY()), shape);
+                index.insert(new Envelope(-180, bbox.getMaxX(), bbox.getMinY(), bbox.getMaxY()), shape);
+            } else {
+                index.insert(new Envelope(bbox.getMinX(), bbox.getMaxX(), bbox.getMinY(), bbox.getMaxY()), shape);
+            }
+        }
+        return new MultiPolygon(index.getRoot());
+    }
+
+    private static boolean isMultiPolygon(JsonArray polygonsArray) {
+        JsonElement first = polygonsArray.get(0);
+        return first.isJsonArray() && first.getAsJsonArray().size() > 0 && first.getAsJsonArray().get(0).isJsonArray();
+    }
+
+    private static class Circle extends CompiledPerimeter {
+
+        private final Coordinates center;
+        private final double range;
+        private final RangeUnit rangeUnit;
+
+        private Circle(Coordinates center, double range, RangeUnit rangeUnit) {
+            this.center = center;
+            this.range = range;
+            this.rangeUnit = rangeUnit;
+        }
+
+        @Override
+        public boolean contains(double latitude, double longitude) {
+            return range > GeoUtil.distance(new Coordinates(latitude, longitude), center, rangeUnit);
+        }
+    }
+
+    private static class Polygon extends CompiledPerimeter {
+
+        private final Shape shape;
+
+        private Polygon(Shape shape) {
+            this.shape = shape;
+        }
+
+        @Override
+        public boolean contains(double latitude, double longitude) {
+            return GeoUtil.contains(shape, new Coordinates(latitude, longitude));
+        }
+    }
+
+    /**
+     * Walks the nodes of the built tree directly: {@link STRtree#query} goes through a synchronized build check on every call.
+     */
+    private static class MultiPolygon extends CompiledPerimeter {
+
+        private final AbstractNode root;
+
+        private MultiPolygon(AbstractNode root) {
+            this.root = root;
+        }
+
+        @Override
+        public boolean contains(double latitude, double longitude) {
+            return contains(root, new Coordinates(latitude, longitude));
+        }
+
+        private static boolean contains(AbstractNode node, Coordinates coordinates) {
+            for (Object child : node.getChildBoundables()) {
+                Boundable boundable = (Boundable) child;
+                if (!((Envelope) boundable.getBounds()).covers(coordinates.getLongitude(), coordinates.getLatitude())) {
+                    continue;
+                }
+                if (boundable instanceof AbstractNode) {
+                    if (contains((AbstractNode) boundable, coordinates)) {
+                        return true;
+                    }
+                } else if (GeoUtil.contains((Shape) ((ItemBoundable) boundable).getItem(), coordinates)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
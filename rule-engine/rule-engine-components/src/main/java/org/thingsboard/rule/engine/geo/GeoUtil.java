@@ -26,6 +26,7 @@ import org.locationtech.spatial4j.shape.Point;
 import org.locationtech.spatial4j.shape.Shape;
 import org.locationtech.spatial4j.shape.ShapeFactory;
 import org.locationtech.spatial4j.shape.SpatialRelation;
+import org.locationtech.spatial4j.shape.jts.JtsGeometry;
 
 public class GeoUtil {
 
@@ -38,15 +39,27 @@ public class GeoUtil {
         jtsCtx = factory.newSpatialContext();
     }
 
-    public static synchronized double distance(Coordinates x, Coordinates y, RangeUnit unit) {
+    public static double distance(Coordinates x, Coordinates y, RangeUnit unit) {
         Point xLL = distCtx.getShapeFactory().pointXY(x.getLongitude(), x.getLatitude());
         Point yLL = distCtx.getShapeFactory().pointXY(y.getLongitude(), y.getLatitude());
         return unit.fromKm(distCtx.getDistCalc().distance(xLL, yLL) * DistanceUtils.DEG_TO_KM);
     }
 
-    public static synchronized boolean contains(String polygon, Coordinates coordinates) {
+    public static boolean contains(String polygon, Coordinates coordinates) {
+        return contains(buildPolygon(new JsonParser().parse(polygon).getAsJsonArray()), coordinates);
+    }
+
+    public static boolean contains(Shape shape, Coordinates coordinates) {
+        Point point = jtsCtx.makePoint(coordinates.getLongitude(), coordinates.getLatitude());
+        return shape.relate(point).equals(SpatialRelation.CONTAINS);
+    }
+
+    /**
+     * Builds the shape of a polygon defined as an array of [latitude, longitude] pairs.
+     * The shape is indexed and warmed up, so that it can be shared between threads and evaluated without locking.
+     */
+    public static Shape buildPolygon(JsonArray polygonArray) {
         ShapeFactory.PolygonBuilder polygonBuilder = jtsCtx.getShapeFactory().polygon();
-        JsonArray polygonArray = new JsonParser().parse(polygon).getAsJsonArray();
         boolean first = true;
         double firstLat = 0.0;
         double firstLng = 0.0;
@@ -62,7 +75,11 @@ public class GeoUtil {
         }
         polygonBuilder.pointXY(jtsCtx.getShapeFactory().normX(firstLng), jtsCtx.getShapeFactory().normY(firstLat));
         Shape shape = polygonBuilder.buildOrRect();
-        Point point = jtsCtx.makePoint(coordinates.getLongitude(), coordinates.getLatitude());
-        return shape.relate(point).equals(SpatialRelation.CONTAINS);
+        if (shape instanceof JtsGeometry) {
+            ((JtsGeometry) shape).index();
+            // JTS builds parts of the prepared geometry lazily on the first lookup, so do it before the shape is published.
+            shape.relate(shape.getCenter());
+        }
+        return shape;
     }
 }
@@ -15,29 +15,28 @@
  */
 package org.thingsboard.rule.engine.geo;
 
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
 import com.google.gson.Gson;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 import lombok.extern.slf4j.Slf4j;
 import org.thingsboard.rule.engine.api.RuleNode;
+import org.thingsboard.rule.engine.api.RuleNodeStateCodec;
+import org.thingsboard.rule.engine.api.RuleNodeStateStore;
 import org.thingsboard.rule.engine.api.TbContext;
+import org.thingsboard.rule.engine.api.TbNodeConfiguration;
 import org.thingsboard.rule.engine.api.TbNodeException;
 import org.thingsboard.server.common.data.DataConstants;
 import org.thingsboard.server.common.data.id.EntityId;
-import org.thingsboard.server.common.data.kv.AttributeKvEntry;
-import org.thingsboard.server.common.data.kv.BaseAttributeKvEntry;
-import org.thingsboard.server.common.data.kv.StringDataEntry;
 import org.thingsboard.server.common.data.plugin.ComponentType;
 import org.thingsboard.server.common.msg.TbMsg;
+import org.thingsboard.server.common.msg.queue.PartitionChangeMsg;
 
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-import java.util.Optional;
-import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
+
+import static org.thingsboard.common.util.DonAsynchron.withCallback;
 
 /**
  * Created by ashvayka on 19.01.18.
@@ -55,76 +54,115 @@ import java.util.concurrent.TimeoutException;
 )
 public class TbGpsGeofencingActionNode extends AbstractGeofencingNode<TbGpsGeofencingActionNodeConfiguration> {
 
-    private final Map<EntityId, EntityGeofencingState> entityStates = new HashMap<>();
-    private final Gson gson = new Gson();
-    private final JsonParser parser = new JsonParser();
+    private static final StateCodec STATE_CODEC = new StateCodec();
+
+    private RuleNodeStateStore<EntityGeofencingState> entityStates;
+
+    @Override
+    public void init(TbContext ctx, TbNodeConfiguration configuration) throws TbNodeException {
+        super.init(ctx, configuration);
+        entityStates = ctx.createStateStore(STATE_CODEC);
+    }
 
     @Override
     public void onMsg(TbContext ctx, TbMsg msg) throws TbNodeException {
         boolean matches = checkMatches(msg);
         long ts = System.currentTimeMillis();
 
-        EntityGeofencingState entityState = entityStates.computeIfAbsent(msg.getOriginator(), key -> {
-            try {
-                Optional<AttributeKvEntry> entry = ctx.getAttributesService()
-                        .find(ctx.getTenantId(), msg.getOriginator(), DataConstants.SERVER_SCOPE, ctx.getServiceId())
-                        .get(1, TimeUnit.MINUTES);
-                if (entry.isPresent()) {
-                    JsonObject element = parser.parse(entry.get().getValueAsString()).getAsJsonObject();
-                    return new EntityGeofencingState(element.get("inside").getAsBoolean(), element.get("stateSwitchTime").getAsLong(), element.get("stayed").getAsBoolean());
-                } else {
-                    return new EntityGeofencingState(false, 0L, false);
-                }
-            } catch (InterruptedException | TimeoutException | ExecutionException e) {
-                throw new RuntimeException(e);
+        ListenableFuture<Void> processed = entityStates.process(msg.getOriginator(), entityState -> {
+            if (entityState != null) {
+                processState(ctx, msg, entityState, matches, ts);
+                return Futures.immediateFuture(null);
             }
-        });
+            return Futures.transform(getLegacyEntityState(ctx, msg.getOriginator()), legacyState -> {
+                processState(ctx, msg, legacyState, matches, ts);
+                return null;
+            }, ctx.getDbCallbackExecutor());
+        }, ctx.getDbCallbackExecutor());
+        withCallback(processed, v -> {}, t -> ctx.tellFailure(msg, t));
+    }
 
-        boolean told = false;
-        if (entityState.getStateSwitchTime() == 0L || entityState.isInside() != matches) {
-            switchState(ctx, msg.getOriginator(), entityState, matches, ts);
-            ctx.tellNext(msg, matches ? "Entered" : "Left");
-            told = true;
-        } else {
-            if (!entityState.isStayed()) {
-                long stayTime = ts - entityState.getStateSwitchTime();
-                if (stayTime > (entityState.isInside() ?
-                        TimeUnit.valueOf(config.getMinInsideDurationTimeUnit()).toMillis(config.getMinInsideDuration()) : TimeUnit.valueOf(config.getMinOutsideDurationTimeUnit()).toMillis(config.getMinOutsideDuration()))) {
-                    setStaid(ctx, msg.getOriginator(), entityState);
-                    ctx.tellNext(msg, entityState.isInside() ? "Inside" : "Outside");
-                    told = true;
+    private ListenableFuture<EntityGeofencingState> getLegacyEntityState(TbContext ctx, EntityId entityId) {
+        // Falls back to the state persisted by previous versions as an attribute of the originator.
+        return Futures.transform(ctx.getAttributesService().find(ctx.getTenantId(), entityId, DataConstants.SERVER_SCOPE, ctx.getServiceId()),
+                entry -> entityStates.putIfAbsent(entityId, entry != null && entry.isPresent() ?
+                        STATE_CODEC.decode(entry.get().getValueAsString()) : new EntityGeofencingState(false, 0L, false)),
+                MoreExecutors.directExecutor());
+    }
+
+    private void processState(TbContext ctx, TbMsg msg, EntityGeofencingState entityState, boolean matches, long ts) {
+        String relationType = null;
+        synchronized (entityState) {
+            if (entityState.getStateSwitchTime() == 0L || entityState.isInside() != matches) {
+                switchState(msg.getOriginator(), entityState, matches, ts);
+                relationType = matches ? "Entered" : "Left";
+            } else {
+                if (!entityState.isStayed()) {
+                    long stayTime = ts - entityState.getStateSwitchTime();
+                    if (stayTime > (entityState.isInside() ?
+                            TimeUnit.valueOf(config.getMinInsideDurationTimeUnit()).toMillis(config.getMinInsideDuration()) : TimeUnit.valueOf(config.getMinOutsideDurationTimeUnit()).toMillis(config.getMinOutsideDuration()))) {
+                        setStaid(msg.getOriginator(), entityState);
+                        relationType = entityState.isInside() ? "Inside" : "Outside";
+                    }
                 }
             }
         }
-        if (!told) {
+        if (relationType != null) {
+            ctx.tellNext(msg, relationType);
+        } else {
             ctx.tellSuccess(msg);
         }
     }
 
-    private void switchState(TbContext ctx, EntityId entityId, EntityGeofencingState entityState, boolean matches, long ts) {
+    private void switchState(EntityId entityId, EntityGeofencingState entityState, boolean matches, long ts) {
         entityState.setInside(matches);
         entityState.setStateSwitchTime(ts);
         entityState.setStayed(false);
-        persist(ctx, entityId, entityState);
+        entityStates.put(entityId, entityState);
     }
 
-    private void setStaid(TbContext ctx, EntityId entityId, EntityGeofencingState entityState) {
+    private void setStaid(EntityId entityId, EntityGeofencingState entityState) {
         entityState.setStayed(true);
-        persist(ctx, entityId, entityState);
+        entityStates.put(entityId, entityState);
+    }
+
+    @Override
+    public void onPartitionChangeMsg(TbContext ctx, PartitionChangeMsg msg) {
+        entityStates.onPartitionChange();
     }
 
-    private void persist(TbContext ctx, EntityId entityId, EntityGeofencingState entityState) {
-        JsonObject object = new JsonObject();
-        object.addProperty("inside", entityState.isInside());
-        object.addProperty("stateSwitchTime", entityState.getStateSwitchTime());
-        object.addProperty("stayed", entityState.isStayed());
-        AttributeKvEntry entry = new BaseAttributeKvEntry(new StringDataEntry(ctx.getServiceId(), gson.toJson(object)), System.currentTimeMillis());
-        List<AttributeKvEntry> attributeKvEntryList = Collections.singletonList(entry);
-        ctx.getAttributesService().save(ctx.getTenantId(), entityId, DataConstants.SERVER_SCOPE, attributeKvEntryList);
+    @Override
+    public void destroy() {
+        if (entityStates != null) {
+            entityStates.destroy();
+        }
     }
 
     @Override
     protected Class<TbGpsGeofencingActionNodeConfiguration> getConfigClazz() {
         return TbGpsGeofencingActionNodeConfiguration.class;
     }
+
+    private static class StateCodec implements RuleNodeStateCodec<EntityGeofencingState> {
+
+        private final Gson gson = new Gson();
+        private final JsonParser parser = new JsonParser();
+
+        @Override
+        public String encode(EntityGeofencingState state) {
+            JsonObject object = new JsonObject();
+            synchronized (state) {
+                object.addProperty("inside", state.isInside());
+                object.addProperty("stateSwitchTime", state.getStateSwitchTime());
+                object.addProperty("stayed", state.isStayed());
+            }
+            return gson.toJson(object);
+        }
+
+        @Override
+        public EntityGeofencingState decode(String value) {
+            JsonObject element = parser.parse(value).getAsJsonObject();
+            return new EntityGeofencingState(element.get("inside").getAsBoolean(), element.get("stateSwitchTime").getAsLong(), element.get("stayed").getAsBoolean());
+        }
+    }
 }
@@ -34,6 +34,7 @@ import static org.thingsboard.rule.engine.mail.TbSendEmailNode.SEND_EMAIL_TYPE;
 @RuleNode(
         type = ComponentType.TRANSFORMATION,
         name = "to email",
+        parallelizable = true,
         configClazz = TbMsgToEmailNodeConfiguration.class,
         nodeDescription = "Transforms message to email message",
         nodeDetails = "Transforms message to email message by populating email fields using values derived from message metadata. " +
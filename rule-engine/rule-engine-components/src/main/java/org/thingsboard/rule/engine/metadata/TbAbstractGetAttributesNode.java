@@ -25,6 +25,7 @@ import com.google.common.util.concurrent.MoreExecutors;
 import com.google.gson.JsonParseException;
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang3.BooleanUtils;
+import org.thingsboard.rule.engine.api.RuleNodeReadCache;
 import org.thingsboard.rule.engine.api.TbContext;
 import org.thingsboard.rule.engine.api.TbNode;
 import org.thingsboard.rule.engine.api.TbNodeConfiguration;
@@ -56,10 +57,14 @@ public abstract class TbAbstractGetAttributesNode<C extends TbGetAttributesNodeC
     private static final String TS = "ts";
 
     protected C config;
+    private RuleNodeReadCache<List<AttributeKvEntry>> attributesCache;
+    private RuleNodeReadCache<List<TsKvEntry>> latestTsCache;
 
     @Override
     public void init(TbContext ctx, TbNodeConfiguration configuration) throws TbNodeException {
         this.config = loadGetAttributesNodeConfig(configuration);
+        this.attributesCache = ctx.createReadCache(config.getCacheTtlMs());
+        this.latestTsCache = ctx.createReadCache(config.getCacheTtlMs());
         mapper.configure(JsonGenerator.Feature.QUOTE_FIELD_NAMES, false);
         mapper.configure(JsonParser.Feature.ALLOW_UNQUOTED_FIELD_NAMES, true);
     }
@@ -80,6 +85,12 @@ public abstract class TbAbstractGetAttributesNode<C extends TbGetAttributesNodeC
 
     @Override
     public void destroy() {
+        if (attributesCache != null) {
+            attributesCache.destroy();
+        }
+        if (latestTsCache != null) {
+            latestTsCache.destroy();
+        }
     }
 
     protected abstract ListenableFuture<T> findEntityIdAsync(TbContext ctx, TbMsg msg);
@@ -108,7 +119,8 @@ public abstract class TbAbstractGetAttributesNode<C extends TbGetAttributesNodeC
         if (CollectionUtils.isEmpty(keys)) {
             return Futures.immediateFuture(null);
         }
-        ListenableFuture<List<AttributeKvEntry>> attributeKvEntryListFuture = ctx.getAttributesService().find(ctx.getTenantId(), entityId, scope, keys);
+        ListenableFuture<List<AttributeKvEntry>> attributeKvEntryListFuture = attributesCache.get(entityId, scope,
+                () -> ctx.getAttributesService().find(ctx.getTenantId(), entityId, scope, keys));
         return Futures.transform(attributeKvEntryListFuture, attributeKvEntryList -> {
             if (!CollectionUtils.isEmpty(attributeKvEntryList)) {
                 List<AttributeKvEntry> existingAttributesKvEntry = attributeKvEntryList.stream().filter(attributeKvEntry -> keys.contains(attributeKvEntry.getKey())).collect(Collectors.toList());
@@ -129,7 +141,8 @@ public abstract class TbAbstractGetAttributesNode<C extends TbGetAttributesNodeC
         if (CollectionUtils.isEmpty(keys)) {
             return Futures.immediateFuture(null);
         }
-        ListenableFuture<List<TsKvEntry>> latest = ctx.getTimeseriesService().findLatest(ctx.getTenantId(), entityId, keys);
+        ListenableFuture<List<TsKvEntry>> latest = latestTsCache.get(entityId, scope,
+                () -> ctx.getTimeseriesService().findLatest(ctx.getTenantId(), entityId, keys));
         return Futures.transform(latest, l -> {
             l.forEach(r -> {
                 boolean getLatestValueWithTs = BooleanUtils.toBooleanDefaultIfNull(this.config.isGetLatestValueWithTs(), false);
@@ -36,6 +36,8 @@ public class TbGetAttributesNodeConfiguration implements NodeConfiguration<TbGet
     private boolean tellFailureIfAbsent;
     private boolean getLatestValueWithTs;
 
+    private long cacheTtlMs;
+
     @Override
     public TbGetAttributesNodeConfiguration defaultConfiguration() {
         TbGetAttributesNodeConfiguration configuration = new TbGetAttributesNodeConfiguration();
@@ -45,6 +47,7 @@ public class TbGetAttributesNodeConfiguration implements NodeConfiguration<TbGet
         configuration.setLatestTsKeyNames(Collections.emptyList());
         configuration.setTellFailureIfAbsent(true);
         configuration.setGetLatestValueWithTs(false);
+        configuration.setCacheTtlMs(0);
         return configuration;
     }
 }
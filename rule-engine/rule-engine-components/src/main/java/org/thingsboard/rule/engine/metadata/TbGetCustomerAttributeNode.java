@@ -26,6 +26,7 @@ import org.thingsboard.server.common.data.plugin.ComponentType;
 @RuleNode(
         type = ComponentType.ENRICHMENT,
         name="customer attributes",
+        parallelizable = true,
         configClazz = TbGetEntityAttrNodeConfiguration.class,
         nodeDescription = "Add Originators Customer Attributes or Latest Telemetry into Message Metadata",
         nodeDetails = "If Attributes enrichment configured, server scope attributes are added into Message metadata. " +
@@ -31,6 +31,7 @@ import org.thingsboard.server.common.msg.TbMsg;
 @Slf4j
 @RuleNode(type = ComponentType.ENRICHMENT,
         name = "related device attributes",
+        parallelizable = true,
         configClazz = TbGetDeviceAttrNodeConfiguration.class,
         nodeDescription = "Add Originators Related Device Attributes and Latest Telemetry value into Message Metadata",
         nodeDetails = "If Attributes enrichment configured, <b>CLIENT/SHARED/SERVER</b> attributes are added into Message metadata " +
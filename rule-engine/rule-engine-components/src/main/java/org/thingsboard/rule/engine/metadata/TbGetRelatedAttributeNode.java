@@ -26,6 +26,7 @@ import org.thingsboard.server.common.data.plugin.ComponentType;
 @RuleNode(
         type = ComponentType.ENRICHMENT,
         name="related attributes",
+        parallelizable = true,
         configClazz = TbGetRelatedAttrNodeConfiguration.class,
         nodeDescription = "Add Originators Related Entity Attributes or Latest Telemetry into Message Metadata",
         nodeDetails = "Related Entity found using configured relation direction and Relation Type. " +
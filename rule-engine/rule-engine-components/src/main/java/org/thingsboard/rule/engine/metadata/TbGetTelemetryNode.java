@@ -29,6 +29,7 @@ import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.math.NumberUtils;
 import org.thingsboard.common.util.DonAsynchron;
 import org.thingsboard.rule.engine.api.RuleNode;
+import org.thingsboard.rule.engine.api.RuleNodeReadCache;
 import org.thingsboard.rule.engine.api.TbContext;
 import org.thingsboard.rule.engine.api.TbNode;
 import org.thingsboard.rule.engine.api.TbNodeConfiguration;
@@ -58,6 +59,7 @@ import static org.thingsboard.server.common.data.kv.Aggregation.NONE;
 @Slf4j
 @RuleNode(type = ComponentType.ENRICHMENT,
         name = "originator telemetry",
+        parallelizable = true,
         configClazz = TbGetTelemetryNodeConfiguration.class,
         nodeDescription = "Add Message Originator Telemetry for selected time range into Message Metadata\n",
         nodeDetails = "The node allows you to select fetch mode: <b>FIRST/LAST/ALL</b> to fetch telemetry of certain time range that are added into Message metadata without any prefix. " +
@@ -71,6 +73,7 @@ public class TbGetTelemetryNode implements TbNode {
 
     private static final String DESC_ORDER = "DESC";
     private static final String ASC_ORDER = "ASC";
+    private static final String RELATIVE_INTERVAL = "RELATIVE";
 
     private TbGetTelemetryNodeConfiguration config;
     private List<String> tsKeyNames;
@@ -78,6 +81,7 @@ public class TbGetTelemetryNode implements TbNode {
     private ObjectMapper mapper;
     private String fetchMode;
     private String orderByFetchAll;
+    private RuleNodeReadCache<List<TsKvEntry>> readCache;
 
     @Override
     public void init(TbContext ctx, TbNodeConfiguration configuration) throws TbNodeException {
@@ -92,6 +96,7 @@ public class TbGetTelemetryNode implements TbNode {
         mapper = new ObjectMapper();
         mapper.configure(JsonGenerator.Feature.QUOTE_FIELD_NAMES, false);
         mapper.configure(JsonParser.Feature.ALLOW_UNQUOTED_FIELD_NAMES, true);
+        readCache = ctx.createReadCache(config.getCacheTtlMs());
     }
 
     @Override
@@ -103,7 +108,10 @@ public class TbGetTelemetryNode implements TbNode {
                 if (config.isUseMetadataIntervalPatterns()) {
                     checkMetadataKeyPatterns(msg);
                 }
-                ListenableFuture<List<TsKvEntry>> list = ctx.getTimeseriesService().findAll(ctx.getTenantId(), msg.getOriginator(), buildQueries(msg));
+                // Relative intervals move with the current time, so lookups of the same originator share the cached window
+                Object cacheKey = config.isUseMetadataIntervalPatterns() ? getInterval(msg) : RELATIVE_INTERVAL;
+                ListenableFuture<List<TsKvEntry>> list = readCache.get(msg.getOriginator(), cacheKey,
+                        () -> ctx.getTimeseriesService().findAll(ctx.getTenantId(), msg.getOriginator(), buildQueries(msg)));
                 DonAsynchron.withCallback(list, data -> {
                     process(data, msg);
                     ctx.tellSuccess(ctx.transformMsg(msg, msg.getType(), msg.getOriginator(), msg.getMetaData(), msg.getData()));
@@ -116,6 +124,9 @@ public class TbGetTelemetryNode implements TbNode {
 
     @Override
     public void destroy() {
+        if (readCache != null) {
+            readCache.destroy();
+        }
     }
 
     private List<ReadTsKvQuery> buildQueries(TbMsg msg) {
@@ -50,6 +50,8 @@ public class TbGetTelemetryNodeConfiguration implements NodeConfiguration<TbGetT
 
     private List<String> latestTsKeyNames;
 
+    private long cacheTtlMs;
+
     @Override
     public TbGetTelemetryNodeConfiguration defaultConfiguration() {
         TbGetTelemetryNodeConfiguration configuration = new TbGetTelemetryNodeConfiguration();
@@ -64,6 +66,7 @@ public class TbGetTelemetryNodeConfiguration implements NodeConfiguration<TbGetT
         configuration.setEndIntervalPattern("");
         configuration.setOrderBy("ASC");
         configuration.setLimit(MAX_FETCH_SIZE);
+        configuration.setCacheTtlMs(0);
         return configuration;
     }
 }
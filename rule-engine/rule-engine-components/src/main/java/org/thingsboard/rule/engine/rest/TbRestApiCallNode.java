@@ -29,6 +29,7 @@ import org.thingsboard.server.common.msg.TbMsg;
 @RuleNode(
         type = ComponentType.EXTERNAL,
         name = "rest api call",
+        parallelizable = true,
         configClazz = TbRestApiCallNodeConfiguration.class,
         nodeDescription = "Invoke REST API calls to external REST server",
         nodeDetails = "Will invoke REST API call <code>GET | POST | PUT | DELETE</code> to external REST server. " +
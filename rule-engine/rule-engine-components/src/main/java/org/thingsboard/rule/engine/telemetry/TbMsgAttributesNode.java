@@ -39,6 +39,7 @@ import java.util.Set;
 @RuleNode(
         type = ComponentType.ACTION,
         name = "save attributes",
+        parallelizable = true,
         configClazz = TbMsgAttributesNodeConfiguration.class,
         nodeDescription = "Saves attributes data",
         nodeDetails = "Saves entity attributes based on configurable scope parameter. Expects messages with 'POST_ATTRIBUTES_REQUEST' message type",
@@ -40,6 +40,7 @@ import java.util.Map;
 @RuleNode(
         type = ComponentType.ACTION,
         name = "save timeseries",
+        parallelizable = true,
         configClazz = TbMsgTimeseriesNodeConfiguration.class,
         nodeDescription = "Saves timeseries data",
         nodeDetails = "Saves timeseries telemetry data based on configurable TTL parameter. Expects messages with 'POST_TELEMETRY_REQUEST' message type",
@@ -39,6 +39,7 @@ import java.util.HashSet;
 @RuleNode(
         type = ComponentType.TRANSFORMATION,
         name = "change originator",
+        parallelizable = true,
         configClazz = TbChangeOriginatorNodeConfiguration.class,
         nodeDescription = "Change Message Originator To Tenant/Customer/Related Entity/Alarm Originator",
         nodeDetails = "Related Entity found using configured relation direction and Relation Type. " +
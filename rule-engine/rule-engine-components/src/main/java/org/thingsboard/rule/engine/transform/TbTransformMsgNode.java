@@ -27,6 +27,7 @@ import static org.thingsboard.rule.engine.api.TbRelationTypes.SUCCESS;
 @RuleNode(
         type = ComponentType.TRANSFORMATION,
         name = "script",
+        parallelizable = true,
         configClazz = TbTransformMsgNodeConfiguration.class,
         nodeDescription = "Change Message payload, Metadata or Message type using JavaScript",
         nodeDetails = "JavaScript function receive 3 input parameters <br/> " +
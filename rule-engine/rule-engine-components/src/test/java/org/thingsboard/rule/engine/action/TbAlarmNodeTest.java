@@ -30,6 +30,7 @@ import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 import org.mockito.stubbing.Answer;
 import org.thingsboard.common.util.ListeningExecutor;
+import org.thingsboard.rule.engine.api.RuleEngineAlarmCache;
 import org.thingsboard.rule.engine.api.ScriptEngine;
 import org.thingsboard.rule.engine.api.TbContext;
 import org.thingsboard.rule.engine.api.TbNodeConfiguration;
@@ -80,6 +81,8 @@ public class TbAlarmNodeTest {
     private TbContext ctx;
     @Mock
     private AlarmService alarmService;
+    @Mock
+    private RuleEngineAlarmCache alarmCache;
 
     @Mock
     private ScriptEngine detailsJs;
@@ -125,7 +128,7 @@ public class TbAlarmNodeTest {
         TbMsg msg = TbMsg.newMsg("USER", originator, metaData, TbMsgDataType.JSON, rawJson, ruleChainId, ruleNodeId);
 
         when(detailsJs.executeJsonAsync(msg)).thenReturn(Futures.immediateFuture(null));
-        when(alarmService.findLatestByOriginatorAndType(tenantId, originator, "SomeType")).thenReturn(Futures.immediateFuture(null));
+        when(alarmCache.findLatestByOriginatorAndType(tenantId, originator, "SomeType")).thenReturn(Futures.immediateFuture(null));
         doAnswer((Answer<Alarm>) invocationOnMock -> (Alarm) (invocationOnMock.getArguments())[0]).when(alarmService).createOrUpdateAlarm(any(Alarm.class));
 
         node.onMsg(ctx, msg);
@@ -133,6 +136,7 @@ public class TbAlarmNodeTest {
         verify(ctx).enqueue(any(), successCaptor.capture(), failureCaptor.capture());
         successCaptor.getValue().run();
         verify(ctx).tellNext(any(), eq("Created"));
+        verify(alarmCache).onAlarmSaved(eq(tenantId), any(Alarm.class));
 
         ArgumentCaptor<TbMsg> msgCaptor = ArgumentCaptor.forClass(TbMsg.class);
         ArgumentCaptor<String> typeCaptor = ArgumentCaptor.forClass(String.class);
@@ -168,20 +172,20 @@ public class TbAlarmNodeTest {
         TbMsg msg = TbMsg.newMsg("USER", originator, metaData, TbMsgDataType.JSON, rawJson, ruleChainId, ruleNodeId);
 
         when(detailsJs.executeJsonAsync(msg)).thenReturn(Futures.immediateFailedFuture(new NotImplementedException("message")));
-        when(alarmService.findLatestByOriginatorAndType(tenantId, originator, "SomeType")).thenReturn(Futures.immediateFuture(null));
+        when(alarmCache.findLatestByOriginatorAndType(tenantId, originator, "SomeType")).thenReturn(Futures.immediateFuture(null));
 
         node.onMsg(ctx, msg);
 
         verifyError(msg, "message", NotImplementedException.class);
 
         verify(ctx).createJsScriptEngine("DETAILS");
-        verify(ctx).getAlarmService();
+        verify(ctx).getAlarmCache();
         verify(ctx, times(3)).getDbCallbackExecutor();
         verify(ctx).logJsEvalRequest();
         verify(ctx).getTenantId();
-        verify(alarmService).findLatestByOriginatorAndType(tenantId, originator, "SomeType");
+        verify(alarmCache).findLatestByOriginatorAndType(tenantId, originator, "SomeType");
 
-        verifyNoMoreInteractions(ctx, alarmService);
+        verifyNoMoreInteractions(ctx, alarmService, alarmCache);
     }
 
     @Test
@@ -193,7 +197,7 @@ public class TbAlarmNodeTest {
         Alarm clearedAlarm = Alarm.builder().status(CLEARED_ACK).build();
 
         when(detailsJs.executeJsonAsync(msg)).thenReturn(Futures.immediateFuture(null));
-        when(alarmService.findLatestByOriginatorAndType(tenantId, originator, "SomeType")).thenReturn(Futures.immediateFuture(clearedAlarm));
+        when(alarmCache.findLatestByOriginatorAndType(tenantId, originator, "SomeType")).thenReturn(Futures.immediateFuture(clearedAlarm));
 
         doAnswer((Answer<Alarm>) invocationOnMock -> (Alarm) (invocationOnMock.getArguments())[0]).when(alarmService).createOrUpdateAlarm(any(Alarm.class));
 
@@ -241,13 +245,14 @@ public class TbAlarmNodeTest {
         Alarm activeAlarm = Alarm.builder().type("SomeType").tenantId(tenantId).originator(originator).status(ACTIVE_UNACK).severity(WARNING).endTs(oldEndDate).build();
 
         when(detailsJs.executeJsonAsync(msg)).thenReturn(Futures.immediateFuture(null));
-        when(alarmService.findLatestByOriginatorAndType(tenantId, originator, "SomeType")).thenReturn(Futures.immediateFuture(activeAlarm));
+        when(alarmCache.findLatestByOriginatorAndType(tenantId, originator, "SomeType")).thenReturn(Futures.immediateFuture(activeAlarm));
 
         doAnswer((Answer<Alarm>) invocationOnMock -> (Alarm) (invocationOnMock.getArguments())[0]).when(alarmService).createOrUpdateAlarm(activeAlarm);
 
         node.onMsg(ctx, msg);
 
         verify(ctx).tellNext(any(), eq("Updated"));
+        verify(alarmCache).onAlarmSaved(tenantId, activeAlarm);
 
         ArgumentCaptor<TbMsg> msgCaptor = ArgumentCaptor.forClass(TbMsg.class);
         ArgumentCaptor<String> typeCaptor = ArgumentCaptor.forClass(String.class);
@@ -288,7 +293,7 @@ public class TbAlarmNodeTest {
         Alarm activeAlarm = Alarm.builder().type("SomeType").tenantId(tenantId).originator(originator).status(ACTIVE_UNACK).severity(WARNING).endTs(oldEndDate).build();
 
         when(detailsJs.executeJsonAsync(msg)).thenReturn(Futures.immediateFuture(null));
-        when(alarmService.findLatestByOriginatorAndType(tenantId, originator, "SomeType")).thenReturn(Futures.immediateFuture(activeAlarm));
+        when(alarmCache.findLatestByOriginatorAndType(tenantId, originator, "SomeType")).thenReturn(Futures.immediateFuture(activeAlarm));
         when(alarmService.clearAlarm(eq(activeAlarm.getTenantId()), eq(activeAlarm.getId()), org.mockito.Mockito.any(JsonNode.class), anyLong())).thenReturn(Futures.immediateFuture(true));
         when(alarmService.findAlarmByIdAsync(eq(activeAlarm.getTenantId()), eq(activeAlarm.getId()))).thenReturn(Futures.immediateFuture(activeAlarm));
 //        doAnswer((Answer<Alarm>) invocationOnMock -> (Alarm) (invocationOnMock.getArguments())[0]).when(alarmService).createOrUpdateAlarm(activeAlarm);
@@ -296,6 +301,7 @@ public class TbAlarmNodeTest {
         node.onMsg(ctx, msg);
 
         verify(ctx).tellNext(any(), eq("Cleared"));
+        verify(alarmCache).onAlarmSaved(tenantId, activeAlarm);
 
         ArgumentCaptor<TbMsg> msgCaptor = ArgumentCaptor.forClass(TbMsg.class);
         ArgumentCaptor<String> typeCaptor = ArgumentCaptor.forClass(String.class);
@@ -339,6 +345,7 @@ public class TbAlarmNodeTest {
 
             when(ctx.getTenantId()).thenReturn(tenantId);
             when(ctx.getAlarmService()).thenReturn(alarmService);
+            when(ctx.getAlarmCache()).thenReturn(alarmCache);
             when(ctx.getDbCallbackExecutor()).thenReturn(dbExecutor);
 
             node = new TbCreateAlarmNode();
@@ -360,6 +367,7 @@ public class TbAlarmNodeTest {
 
             when(ctx.getTenantId()).thenReturn(tenantId);
             when(ctx.getAlarmService()).thenReturn(alarmService);
+            when(ctx.getAlarmCache()).thenReturn(alarmCache);
             when(ctx.getDbCallbackExecutor()).thenReturn(dbExecutor);
 
             node = new TbClearAlarmNode();
@@ -0,0 +1,149 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.rule.engine.action;
+
+import com.datastax.oss.driver.api.core.uuid.Uuids;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.netty.channel.DefaultEventLoopGroup;
+import io.netty.channel.EventLoopGroup;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.thingsboard.rule.engine.api.TbContext;
+import org.thingsboard.rule.engine.api.TbNodeConfiguration;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.id.EntityId;
+import org.thingsboard.server.common.data.id.RuleChainId;
+import org.thingsboard.server.common.data.id.RuleNodeId;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.msg.TbMsg;
+import org.thingsboard.server.common.msg.TbMsgMetaData;
+import org.thingsboard.server.common.msg.queue.ServiceQueue;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.thingsboard.rule.engine.api.TbRelationTypes.SUCCESS;
+
+@RunWith(MockitoJUnitRunner.class)
+public class TbMsgCountNodeTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final RuleChainId ruleChainId = new RuleChainId(Uuids.timeBased());
+    private final RuleNodeId ruleNodeId = new RuleNodeId(Uuids.timeBased());
+    private final TenantId tenantId = new TenantId(Uuids.timeBased());
+
+    @Mock
+    private TbContext ctx;
+
+    private EventLoopGroup eventLoop;
+    private TbMsgCountNode node;
+
+    @Before
+    public void before() {
+        eventLoop = new DefaultEventLoopGroup(1);
+        when(ctx.getSharedEventLoop()).thenReturn(eventLoop);
+        when(ctx.getSelfId()).thenReturn(ruleNodeId);
+        when(ctx.getTenantId()).thenReturn(tenantId);
+        when(ctx.getServiceId()).thenReturn("tb-rule-engine-0");
+        when(ctx.isLocalEntity(ruleNodeId)).thenReturn(true);
+        when(ctx.newMsg(anyString(), anyString(), any(), any(), anyString())).thenAnswer(invocation -> {
+            Object[] args = invocation.getArguments();
+            return TbMsg.newMsg((String) args[0], (String) args[1], (EntityId) args[2],
+                    (TbMsgMetaData) args[3], (String) args[4], ruleChainId, ruleNodeId);
+        });
+    }
+
+    @After
+    public void after() {
+        if (node != null) {
+            node.destroy();
+        }
+        eventLoop.shutdownGracefully();
+    }
+
+    @Test
+    public void testPartialCountsAreAggregatedIntoSingleSeries() throws Exception {
+        node = initNode(true);
+        DeviceId deviceId = new DeviceId(Uuids.timeBased());
+        for (int i = 0; i < 5; i++) {
+            node.onMsg(ctx, TbMsg.newMsg("POST_TELEMETRY_REQUEST", deviceId, new TbMsgMetaData(), "{}"));
+        }
+
+        ArgumentCaptor<TbMsg> partialCaptor = ArgumentCaptor.forClass(TbMsg.class);
+        verify(ctx, timeout(5000)).enqueue(partialCaptor.capture(), any(Runnable.class), any(Consumer.class));
+        TbMsg partial = partialCaptor.getValue();
+        assertEquals(ruleNodeId, partial.getOriginator());
+        assertEquals(5, mapper.readTree(partial.getData()).get("total").asLong());
+
+        // Partial counts of other servers are delivered to the owner of the rule node partition through the queue.
+        node.onMsg(ctx, partial);
+        node.onMsg(ctx, TbMsg.newMsg(ServiceQueue.MAIN, partial.getType(), ruleNodeId, new TbMsgMetaData(), "{\"total\":7,\"types\":{\"POST_TELEMETRY_REQUEST\":7}}", ruleChainId, ruleNodeId));
+
+        ArgumentCaptor<TbMsg> telemetryCaptor = ArgumentCaptor.forClass(TbMsg.class);
+        verify(ctx, timeout(5000).atLeast(2)).enqueueForTellNext(telemetryCaptor.capture(), eq(SUCCESS));
+        long total = 0;
+        for (TbMsg msg : telemetryCaptor.getAllValues()) {
+            JsonNode data = mapper.readTree(msg.getData());
+            if (msg.getOriginator().equals(tenantId)) {
+                assertTrue(data.has("messageCount"));
+                total += data.get("messageCount").asLong();
+            }
+        }
+        assertEquals(12, total);
+    }
+
+    @Test
+    public void testPerServiceSeriesWithOriginatorBreakdown() throws Exception {
+        node = initNode(false);
+        DeviceId deviceId = new DeviceId(Uuids.timeBased());
+        for (int i = 0; i < 3; i++) {
+            node.onMsg(ctx, TbMsg.newMsg("POST_TELEMETRY_REQUEST", deviceId, new TbMsgMetaData(), "{}"));
+        }
+        ArgumentCaptor<TbMsg> telemetryCaptor = ArgumentCaptor.forClass(TbMsg.class);
+        verify(ctx, timeout(5000).atLeast(2)).enqueueForTellNext(telemetryCaptor.capture(), eq(SUCCESS));
+        List<TbMsg> msgs = telemetryCaptor.getAllValues();
+        TbMsg tenantMsg = msgs.stream().filter(m -> m.getOriginator().equals(tenantId)).findFirst().get();
+        assertEquals(3, mapper.readTree(tenantMsg.getData()).get("messageCount_tb-rule-engine-0").asLong());
+        TbMsg deviceMsg = msgs.stream().filter(m -> m.getOriginator().equals(deviceId)).findFirst().get();
+        assertEquals(3, mapper.readTree(deviceMsg.getData()).get("messageCount").asLong());
+        verify(ctx, atLeastOnce()).ack(any());
+    }
+
+    private TbMsgCountNode initNode(boolean aggregateClusterWide) throws Exception {
+        TbMsgCountNodeConfiguration config = new TbMsgCountNodeConfiguration().defaultConfiguration();
+        config.setAggregateClusterWide(aggregateClusterWide);
+        config.setCountByOriginator(!aggregateClusterWide);
+        config.setCountByMsgType(aggregateClusterWide);
+        TbMsgCountNode node = new TbMsgCountNode();
+        node.init(ctx, new TbNodeConfiguration(mapper.valueToTree(config)));
+        return node;
+    }
+}
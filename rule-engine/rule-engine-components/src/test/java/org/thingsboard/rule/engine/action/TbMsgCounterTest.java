@@ -0,0 +1,120 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.rule.engine.action;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.id.EntityId;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+public class TbMsgCounterTest {
+
+    private static final String[] TYPES = {"POST_TELEMETRY_REQUEST", "POST_ATTRIBUTES_REQUEST"};
+
+    @Test
+    public void testCountsAreExactUnderConcurrentSnapshots() throws Exception {
+        TbMsgCounter counter = new TbMsgCounter(true, true);
+        int threads = 8;
+        int iterations = 200000;
+        List<EntityId> originators = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            originators.add(new DeviceId(UUID.randomUUID()));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch started = new CountDownLatch(threads);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(executor.submit(() -> {
+                started.countDown();
+                for (int i = 0; i < iterations; i++) {
+                    counter.increment(TYPES[i % TYPES.length], originators.get(i % originators.size()));
+                }
+            }));
+        }
+
+        long total = 0;
+        Map<String, Long> byType = new HashMap<>();
+        Map<EntityId, Long> byOriginator = new HashMap<>();
+        started.await(10, TimeUnit.SECONDS);
+        boolean running = true;
+        while (running) {
+            running = futures.stream().anyMatch(f -> !f.isDone());
+            TbMsgCounter.Snapshot snapshot = counter.snapshot();
+            total += snapshot.getTotal();
+            snapshot.getByType().forEach((key, value) -> byType.merge(key, value, Long::sum));
+            snapshot.getByOriginator().forEach((key, value) -> byOriginator.merge(key, value, Long::sum));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdownNow();
+
+        long expected = (long) threads * iterations;
+        Assert.assertEquals(expected, total);
+        Assert.assertEquals(expected / TYPES.length, byType.get(TYPES[0]).longValue());
+        Assert.assertEquals(expected / TYPES.length, byType.get(TYPES[1]).longValue());
+        for (EntityId originator : originators) {
+            Assert.assertEquals(expected / originators.size(), byOriginator.get(originator).longValue());
+        }
+        Assert.assertEquals(0, counter.snapshot().getTotal());
+    }
+
+    @Test
+    public void testIdleOriginatorsAreDropped() {
+        TbMsgCounter counter = new TbMsgCounter(false, true);
+        DeviceId active = new DeviceId(UUID.randomUUID());
+        DeviceId idle = new DeviceId(UUID.randomUUID());
+        counter.increment(TYPES[0], active);
+        counter.increment(TYPES[0], idle);
+        Assert.assertEquals(2, counter.snapshot().getByOriginator().size());
+
+        counter.increment(TYPES[0], active);
+        TbMsgCounter.Snapshot snapshot = counter.snapshot();
+        Assert.assertEquals(1, snapshot.getByOriginator().size());
+        Assert.assertEquals(1L, snapshot.getByOriginator().get(active).longValue());
+        Assert.assertEquals(1, counter.getOriginatorCount());
+
+        Assert.assertTrue(counter.snapshot().getByOriginator().isEmpty());
+        Assert.assertEquals(0, counter.getOriginatorCount());
+
+        counter.increment(TYPES[0], idle);
+        Assert.assertEquals(1L, counter.snapshot().getByOriginator().get(idle).longValue());
+    }
+
+    @Test
+    public void testBreakdownsAreOptional() {
+        TbMsgCounter counter = new TbMsgCounter(false, false);
+        counter.increment(TYPES[0], new DeviceId(UUID.randomUUID()));
+        counter.add(2, null);
+        TbMsgCounter.Snapshot snapshot = counter.snapshot();
+        Assert.assertEquals(3, snapshot.getTotal());
+        Assert.assertTrue(snapshot.getByType().isEmpty());
+        Assert.assertTrue(snapshot.getByOriginator().isEmpty());
+    }
+
+}
@@ -0,0 +1,261 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.rule.engine.action;
+
+import com.datastax.oss.driver.api.core.CqlSession;
+import com.datastax.oss.driver.api.core.DefaultConsistencyLevel;
+import com.datastax.oss.driver.api.core.cql.Row;
+import com.datastax.oss.driver.api.core.uuid.Uuids;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import io.netty.channel.DefaultEventLoopGroup;
+import io.netty.channel.EventLoopGroup;
+import org.apache.commons.lang3.StringUtils;
+import org.cassandraunit.utils.EmbeddedCassandraServerHelper;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.thingsboard.common.util.ListeningExecutor;
+import org.thingsboard.rule.engine.api.TbContext;
+import org.thingsboard.rule.engine.api.TbNodeConfiguration;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.msg.TbMsg;
+import org.thingsboard.server.common.msg.TbMsgMetaData;
+import org.thingsboard.server.dao.cassandra.CassandraCluster;
+import org.thingsboard.server.dao.cassandra.guava.GuavaSession;
+import org.thingsboard.server.dao.cassandra.guava.GuavaSessionUtils;
+import org.thingsboard.server.dao.nosql.CassandraStatementTask;
+import org.thingsboard.server.dao.nosql.TbResultSet;
+import org.thingsboard.server.dao.nosql.TbResultSetFuture;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class TbSaveToCustomCassandraTableNodeTest {
+
+    private static final String KEYSPACE = "tb_custom_table_test";
+
+    private static GuavaSession guavaSession;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final TenantId tenantId = new TenantId(Uuids.timeBased());
+    private final AtomicInteger submittedTasks = new AtomicInteger();
+
+    @Mock
+    private TbContext ctx;
+    @Mock
+    private CassandraCluster cassandraCluster;
+
+    private EventLoopGroup eventLoop;
+    private TbSaveToCustomCassandraTableNode node;
+
+    @BeforeClass
+    public static void startCassandra() throws Exception {
+        EmbeddedCassandraServerHelper.startEmbeddedCassandra(30000L);
+        System.setSecurityManager(null);
+        CqlSession session = EmbeddedCassandraServerHelper.getSession();
+        session.execute("CREATE KEYSPACE IF NOT EXISTS " + KEYSPACE + " WITH replication = {'class': 'SimpleStrategy', 'replication_factor': 1}");
+        session.execute("CREATE TABLE IF NOT EXISTS " + KEYSPACE + ".cs_tb_readings (entity_id uuid, name text, value bigint, PRIMARY KEY (entity_id, name))");
+        guavaSession = GuavaSessionUtils.builder()
+                .addContactPoint(new InetSocketAddress(EmbeddedCassandraServerHelper.getHost(), EmbeddedCassandraServerHelper.getNativeTransportPort()))
+                .withLocalDatacenter("datacenter1")
+                .withKeyspace(KEYSPACE)
+                .build();
+    }
+
+    @AfterClass
+    public static void stopCassandra() {
+        if (guavaSession != null) {
+            guavaSession.close();
+        }
+        EmbeddedCassandraServerHelper.cleanEmbeddedCassandra();
+    }
+
+    @Before
+    public void before() {
+        eventLoop = new DefaultEventLoopGroup(1);
+        ListeningExecutor dbExecutor = new ListeningExecutor() {
+            @Override
+            public <T> ListenableFuture<T> executeAsync(Callable<T> task) {
+                try {
+                    return Futures.immediateFuture(task.call());
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }
+
+            @Override
+            public void execute(Runnable command) {
+                command.run();
+            }
+        };
+        when(cassandraCluster.getSession()).thenReturn(guavaSession);
+        when(cassandraCluster.getDefaultWriteConsistencyLevel()).thenReturn(DefaultConsistencyLevel.ONE);
+        when(ctx.getCassandraCluster()).thenReturn(cassandraCluster);
+        when(ctx.getSharedEventLoop()).thenReturn(eventLoop);
+        when(ctx.getDbCallbackExecutor()).thenReturn(dbExecutor);
+        when(ctx.getTenantId()).thenReturn(tenantId);
+        when(ctx.submitCassandraTask(any(CassandraStatementTask.class))).thenAnswer(invocation -> {
+            submittedTasks.incrementAndGet();
+            CassandraStatementTask task = (CassandraStatementTask) invocation.getArguments()[0];
+            SettableFuture<TbResultSet> future = SettableFuture.create();
+            Futures.addCallback(task.executeAsync(statement -> null), new FutureCallback<TbResultSet>() {
+                @Override
+                public void onSuccess(TbResultSet result) {
+                    future.set(result);
+                }
+
+                @Override
+                public void onFailure(Throwable t) {
+                    future.setException(t);
+                }
+            }, MoreExecutors.directExecutor());
+            return new TbResultSetFuture(future);
+        });
+    }
+
+    @After
+    public void after() {
+        if (node != null) {
+            node.destroy();
+        }
+        eventLoop.shutdownGracefully();
+    }
+
+    @Test
+    public void testRowsOfSamePartitionAreWrittenAsSingleBatch() throws Exception {
+        node = initNode(60000, 10);
+        DeviceId deviceId = new DeviceId(Uuids.timeBased());
+        List<TbMsg> msgs = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            TbMsg msg = newMsg(deviceId, "key" + i, i);
+            msgs.add(msg);
+            node.onMsg(ctx, msg);
+        }
+        for (TbMsg msg : msgs) {
+            verify(ctx, timeout(10000)).tellSuccess(msg);
+        }
+        assertEquals(1, submittedTasks.get());
+        assertEquals(10, countRows(deviceId));
+    }
+
+    @Test
+    public void testPendingRowsAreWrittenAfterLinger() throws Exception {
+        node = initNode(50, 100);
+        DeviceId first = new DeviceId(Uuids.timeBased());
+        DeviceId second = new DeviceId(Uuids.timeBased());
+        TbMsg firstMsg = newMsg(first, "temperature", 1);
+        TbMsg secondMsg = newMsg(second, "temperature", 2);
+        node.onMsg(ctx, firstMsg);
+        node.onMsg(ctx, secondMsg);
+
+        verify(ctx, timeout(10000)).tellSuccess(firstMsg);
+        verify(ctx, timeout(10000)).tellSuccess(secondMsg);
+        assertEquals(2, submittedTasks.get());
+        assertEquals(1, countRows(first));
+        assertEquals(1, countRows(second));
+    }
+
+    @Test
+    public void testFailedRowIsRoutedToFailureWithoutAffectingBatch() throws Exception {
+        node = initNode(60000, 3);
+        DeviceId deviceId = new DeviceId(Uuids.timeBased());
+        TbMsg good1 = newMsg(deviceId, "humidity", 1);
+        // Clustering key values longer than 64KB are rejected by Cassandra, which fails the whole batch.
+        TbMsg bad = newMsg(deviceId, StringUtils.repeat('k', 70000), 2);
+        TbMsg good2 = newMsg(deviceId, "pressure", 3);
+        node.onMsg(ctx, good1);
+        node.onMsg(ctx, bad);
+        node.onMsg(ctx, good2);
+
+        verify(ctx, timeout(10000)).tellSuccess(good1);
+        verify(ctx, timeout(10000)).tellSuccess(good2);
+        verify(ctx, timeout(10000)).tellFailure(eq(bad), any(Throwable.class));
+        verify(ctx, never()).tellSuccess(bad);
+        verify(ctx, never()).tellFailure(eq(good1), any(Throwable.class));
+        verify(ctx, never()).tellFailure(eq(good2), any(Throwable.class));
+        assertEquals(2, countRows(deviceId));
+    }
+
+    @Test
+    public void testInvalidMessageIsRejectedBeforeBatching() throws Exception {
+        node = initNode(60000, 2);
+        DeviceId deviceId = new DeviceId(Uuids.timeBased());
+        TbMsg invalid = TbMsg.newMsg("POST_TELEMETRY_REQUEST", deviceId, new TbMsgMetaData(), "{\"name\": \"temperature\"}");
+        try {
+            node.onMsg(ctx, invalid);
+            fail("Message without mapped field should be rejected");
+        } catch (RuntimeException e) {
+            // the rule node actor routes the message to the failure chain
+        }
+        TbMsg valid1 = newMsg(deviceId, "temperature", 1);
+        TbMsg valid2 = newMsg(deviceId, "humidity", 2);
+        node.onMsg(ctx, valid1);
+        node.onMsg(ctx, valid2);
+        verify(ctx, timeout(10000)).tellSuccess(valid1);
+        verify(ctx, timeout(10000)).tellSuccess(valid2);
+        assertEquals(1, submittedTasks.get());
+    }
+
+    private TbSaveToCustomCassandraTableNode initNode(int lingerMs, int maxBatchSize) throws Exception {
+        TbSaveToCustomCassandraTableNodeConfiguration config = new TbSaveToCustomCassandraTableNodeConfiguration();
+        config.setTableName("readings");
+        Map<String, String> mapping = new LinkedHashMap<>();
+        mapping.put("$entityId", "entity_id");
+        mapping.put("name", "name");
+        mapping.put("value", "value");
+        config.setFieldsMapping(mapping);
+        config.setLingerMs(lingerMs);
+        config.setMaxBatchSize(maxBatchSize);
+        TbSaveToCustomCassandraTableNode node = new TbSaveToCustomCassandraTableNode();
+        node.init(ctx, new TbNodeConfiguration(mapper.valueToTree(config)));
+        return node;
+    }
+
+    private TbMsg newMsg(DeviceId deviceId, String name, long value) {
+        return TbMsg.newMsg("POST_TELEMETRY_REQUEST", deviceId, new TbMsgMetaData(), "{\"name\": \"" + name + "\", \"value\": " + value + "}");
+    }
+
+    private int countRows(DeviceId deviceId) {
+        List<Row> rows = guavaSession.execute("SELECT name FROM cs_tb_readings WHERE entity_id = ?", deviceId.getId()).all();
+        return rows.size();
+    }
+}
@@ -0,0 +1,127 @@
+/**
+ * Copyright © 2016-2020 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.rule.engine.geo;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.Assert;
+import org.junit.Test;
+import org.thingsboard.rule.engine.api.TbNodeException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+@Slf4j
+public class CompiledPerimeterTest {
+
+    private static final String SQUARE = "[[50.0, 30.0], [50.0, 31.0], [51.0, 31.0], [51.0, 30.0]]";
+    private static final String TRIANGLE = "[[40.0, 10.0], [41.0, 10.5], [40.0, 11.0]]";
+
+    @Test
+    public void testPolygonMatchesGeoUtil() throws TbNodeException {
+        CompiledPerimeter perimeter = CompiledPerimeter.compilePolygons(TRIANGLE);
+        for (int i = 0; i < 1000; i++) {
+            double lat = 39.5 + ThreadLocalRandom.current().nextDouble(2.0);
+            double lng = 9.5 + ThreadLocalRandom.current().nextDouble(2.0);
+            Assert.assertEquals(GeoUtil.contains(TRIANGLE, new Coordinates(lat, lng)), perimeter.contains(lat, lng));
+        }
+    }
+
+    @Test
+    public void testMultiPolygon() throws TbNodeException {
+        CompiledPerimeter perimeter = CompiledPerimeter.compilePolygons("[" + SQUARE + "," + TRIANGLE + "]");
+        Assert.assertTrue(perimeter.contains(50.5, 30.5));
+        Assert.assertTrue(perimeter.contains(40.2, 10.5));
+        Assert.assertFalse(perimeter.contains(40.9, 10.1));
+        Assert.assertFalse(perimeter.contains(45.0, 20.0));
+    }
+
+    @Test
+    public void testCircle() throws TbNodeException {
+        Perimeter circle = new Perimeter();
+        circle.setPerimeterType(PerimeterType.CIRCLE);
+        circle.setCenterLatitude(50.0);
+        circle.setCenterLongitude(30.0);
+        circle.setRange(1.0);
+        circle.setRangeUnit(RangeUnit.KILOMETER);
+        CompiledPerimeter perimeter = CompiledPerimeter.compile(circle);
+        Assert.assertTrue(perimeter.contains(50.005, 30.0));
+        Assert.assertFalse(perimeter.contains(50.01, 30.0));
+    }
+
+    @Test(expected = TbNodeException.class)
+    public void testInvalidDefinition() throws TbNodeException {
+        CompiledPerimeter.compilePolygons("{}");
+    }
+
+    @Test
+    public void testLargePolygonThroughput() throws Exception {
+        String polygon = buildCircularPolygon(10000);
+        CompiledPerimeter perimeter = CompiledPerimeter.compilePolygons(polygon);
+
+        int parsedIterations = 20;
+        long start = System.nanoTime();
+        for (int i = 0; i < parsedIterations; i++) {
+            Assert.assertTrue(GeoUtil.contains(polygon, new Coordinates(50.0, 30.0)));
+        }
+        long parsedTime = (System.nanoTime() - start) / parsedIterations;
+
+        int threads = 4;
+        int compiledIterations = 100000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            start = System.nanoTime();
+            for (int t = 0; t < threads; t++) {
+                results.add(executor.submit(() -> {
+                    int inside = 0;
+                    for (int i = 0; i < compiledIterations; i++) {
+                        double lat = 49.0 + ThreadLocalRandom.current().nextDouble(2.0);
+                        double lng = 29.0 + ThreadLocalRandom.current().nextDouble(2.0);
+                        if (perimeter.contains(lat, lng)) {
+                            inside++;
+                        }
+                    }
+                    return inside;
+                }));
+            }
+            for (Future<Integer> result : results) {
+                Assert.assertTrue(result.get() > 0);
+            }
+            long compiledTime = (System.nanoTime() - start) / ((long) threads * compiledIterations);
+            log.info("10k vertex polygon: parse per message {} ns/check, compiled {} ns/check on {} threads", parsedTime, compiledTime, threads);
+            Assert.assertTrue(compiledTime < parsedTime);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static String buildCircularPolygon(int vertices) {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < vertices; i++) {
+            double angle = 2 * Math.PI * i / vertices;
+            double radius = i % 2 == 0 ? 1.0 : 0.98;
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append('[').append(50.0 + radius * Math.sin(angle)).append(',').append(30.0 + radius * Math.cos(angle)).append(']');
+        }
+        return sb.append(']').toString();
+    }
+}